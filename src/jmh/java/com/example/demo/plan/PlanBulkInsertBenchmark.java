@@ -0,0 +1,169 @@
+package com.example.demo.plan;
+
+import com.example.demo.plan.entity.MemberRole;
+import com.example.demo.plan.entity.Plan;
+import com.example.demo.plan.entity.PlanMember;
+import com.example.demo.plan.entity.Task;
+import com.example.demo.user.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Ghi một plan 365 ngày x 3 task/ngày (giống createPlanWithSchedule: cascade Plan -> Task, PlanMember)
+ * vào H2 chế độ PostgreSQL, đếm số lần gọi JDBC execute* (mỗi lần là một round-trip tới CSDL).
+ * - batchSize = 1: không batch, mỗi dòng một INSERT (tương đương IDENTITY trước đây).
+ * - batchSize = 50: id cấp từ pooled sequence, INSERT gom theo batch (cấu hình hiện tại).
+ *
+ * Chạy: gradle jmh -PjmhInclude=PlanBulkInsertBenchmark
+ * Số round-trip mỗi plan được in ra khi kết thúc mỗi trial.
+ */
+@State(Scope.Benchmark)
+public class PlanBulkInsertBenchmark {
+
+    private static final int DAYS = 365;
+    private static final int TASKS_PER_DAY = 3;
+
+    @Param({"1", "50"})
+    public int batchSize;
+
+    private final AtomicLong roundTrips = new AtomicLong();
+    private long operations;
+    private EntityManagerFactory entityManagerFactory;
+    private Integer creatorId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DriverManagerDataSource h2 = new DriverManagerDataSource(
+                "jdbc:h2:mem:bench" + batchSize + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+
+        Map<String, Object> jpaProperties = new HashMap<>();
+        jpaProperties.put("hibernate.hbm2ddl.auto", "create-drop");
+        jpaProperties.put("hibernate.physical_naming_strategy",
+                "org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy");
+        jpaProperties.put("hibernate.jdbc.batch_size", String.valueOf(batchSize));
+        jpaProperties.put("hibernate.order_inserts", "true");
+        jpaProperties.put("hibernate.order_updates", "true");
+
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(countingDataSource(h2));
+        factoryBean.setPackagesToScan("com.example.demo");
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setJpaPropertyMap(jpaProperties);
+        factoryBean.afterPropertiesSet();
+        entityManagerFactory = factoryBean.getObject();
+
+        EntityManager em = entityManagerFactory.createEntityManager();
+        em.getTransaction().begin();
+        User creator = User.builder().email("bench@example.com").password("x").build();
+        em.persist(creator);
+        em.getTransaction().commit();
+        em.close();
+        creatorId = creator.getId();
+
+        roundTrips.set(0);
+        operations = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (operations > 0) {
+            System.out.printf("%n[PlanBulkInsertBenchmark] batchSize=%d: %d JDBC round-trips / plan (%d tasks)%n",
+                    batchSize, roundTrips.get() / operations, DAYS * TASKS_PER_DAY);
+        }
+        entityManagerFactory.close();
+    }
+
+    @Benchmark
+    public Integer createYearLongPlan() {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            User creator = em.getReference(User.class, creatorId);
+            LocalDate startDate = LocalDate.of(2025, 1, 1);
+
+            Plan plan = Plan.builder()
+                    .title("Benchmark plan")
+                    .durationInDays(DAYS)
+                    .startDate(startDate)
+                    .creator(creator)
+                    .members(new ArrayList<>())
+                    .dailyTasks(new ArrayList<>())
+                    .build();
+            for (int day = 0; day < DAYS; day++) {
+                for (int i = 0; i < TASKS_PER_DAY; i++) {
+                    plan.addTask(Task.builder()
+                            .description("Task " + i)
+                            .deadlineTime(LocalTime.of(20, 0))
+                            .order(i)
+                            .taskDate(startDate.plusDays(day))
+                            .build());
+                }
+            }
+            plan.getMembers().add(PlanMember.builder().plan(plan).user(creator).role(MemberRole.OWNER).build());
+
+            em.persist(plan);
+            em.getTransaction().commit();
+            operations++;
+            return plan.getId();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Bọc DataSource -> Connection -> Statement bằng dynamic proxy để đếm mọi lời gọi execute*.
+     */
+    private DataSource countingDataSource(DataSource target) {
+        return proxy(DataSource.class, target, result ->
+                result instanceof Connection connection ? proxy(Connection.class, connection, this::countingStatement) : result);
+    }
+
+    private Object countingStatement(Object result) {
+        if (result instanceof PreparedStatement statement) {
+            return proxy(PreparedStatement.class, statement, r -> r);
+        }
+        if (result instanceof Statement statement) {
+            return proxy(Statement.class, statement, r -> r);
+        }
+        return result;
+    }
+
+    private <T> T proxy(Class<T> type, T target, UnaryOperator<Object> resultMapper) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                roundTrips.incrementAndGet();
+            }
+            try {
+                return resultMapper.apply(method.invoke(target, args));
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
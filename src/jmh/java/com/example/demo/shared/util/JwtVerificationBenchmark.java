@@ -0,0 +1,54 @@
+package com.example.demo.shared.util;
+
+import com.example.demo.user.entity.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+
+/**
+ * So sánh chi phí CPU xác thực JWT cho mỗi request:
+ * - legacyPerRequest: dựng key + parser mới rồi parse 2 lần (getEmailFromToken + validateToken) như filter cũ.
+ * - singleParseCachedKey: parser dựng sẵn, verify chữ ký 1 lần (JwtUtil.validateAndGetClaims).
+ *
+ * Chạy: gradle jmh -PjmhInclude=JwtVerificationBenchmark
+ */
+@State(Scope.Benchmark)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET = "BenchmarkSecretKeyForJwtUtilWhichIsDefinitelyLongEnoughForHs512Signing";
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "accessTokenExpirationMs", 3_600_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpirationMs", 86_400_000L);
+        jwtUtil.init();
+        token = jwtUtil.generateAccessToken(User.builder().id(1).email("bench@example.com").build());
+    }
+
+    @Benchmark
+    public boolean legacyPerRequest() {
+        SecretKey emailKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+        String email = Jwts.parserBuilder().setSigningKey(emailKey).build()
+                .parseClaimsJws(token).getBody().getSubject();
+        SecretKey validateKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+        Jwts.parserBuilder().setSigningKey(validateKey).build().parseClaimsJws(token);
+        return email != null;
+    }
+
+    @Benchmark
+    public Claims singleParseCachedKey() {
+        return jwtUtil.validateAndGetClaims(token);
+    }
+}
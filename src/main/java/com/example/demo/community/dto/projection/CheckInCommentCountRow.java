@@ -0,0 +1,9 @@
+package com.example.demo.community.dto.projection;
+
+/**
+ * Số bình luận của một check-in.
+ */
+public interface CheckInCommentCountRow {
+    Long getCheckInEventId();
+    Long getCount();
+}
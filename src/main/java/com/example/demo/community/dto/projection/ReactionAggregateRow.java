@@ -0,0 +1,13 @@
+package com.example.demo.community.dto.projection;
+
+import com.example.demo.community.entity.ReactionType;
+
+/**
+ * Tổng hợp reaction theo (check-in, loại): số lượng và số reaction của người đang xem.
+ */
+public interface ReactionAggregateRow {
+    Long getCheckInEventId();
+    ReactionType getType();
+    Long getCount();
+    Long getViewerCount();
+}
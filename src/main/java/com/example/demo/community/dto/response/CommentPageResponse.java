@@ -0,0 +1,17 @@
+package com.example.demo.community.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Một trang bình luận của check-in, sắp xếp cũ -> mới. Gửi lại nextCursor qua tham số cursor
+ * để lấy các bình luận cũ hơn; nextCursor = null khi đã hết.
+ */
+@Getter
+@Builder
+public class CommentPageResponse {
+    private List<CommentResponse> comments;
+    private Long nextCursor;
+}
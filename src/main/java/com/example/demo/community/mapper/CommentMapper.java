@@ -3,14 +3,23 @@ package com.example.demo.community.mapper;
 import com.example.demo.community.dto.response.CommentResponse;
 import com.example.demo.community.entity.ProgressComment;
 import com.example.demo.user.entity.User;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.user.service.UserDisplayNameResolver.UserDisplay;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.time.OffsetDateTime;
-import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 @Component // Đánh dấu đây là một Spring Bean
+@RequiredArgsConstructor
 public class CommentMapper {
 
+    private final UserDisplayNameResolver userDisplayNameResolver;
+
     /**
      * Chuyển đổi thủ công từ Entity ProgressComment sang DTO CommentResponse.
      * Ánh xạ chính xác các trường trong CommentResponse DTO mới.
@@ -19,19 +28,39 @@ public class CommentMapper {
         if (comment == null) {
             return null;
         }
+        return toCommentResponse(comment, userDisplayNameResolver.get(comment.getAuthor()));
+    }
 
+    /**
+     * Map cả luồng bình luận: thông tin tác giả của mọi bình luận lấy bằng 1 query.
+     */
+    public List<CommentResponse> toCommentResponses(Collection<ProgressComment> comments) {
+        Map<Integer, UserDisplay> authors = userDisplayNameResolver.getAll(comments.stream()
+                .map(ProgressComment::getAuthor)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toList()));
+        return comments.stream()
+                .map(comment -> {
+                    User author = comment.getAuthor();
+                    UserDisplay display = author == null ? null : authors.get(author.getId());
+                    return toCommentResponse(comment, display != null ? display : userDisplayNameResolver.get(author));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private CommentResponse toCommentResponse(ProgressComment comment, UserDisplay author) {
         CommentResponse.CommentResponseBuilder builder = CommentResponse.builder();
 
         // Map các trường cơ bản
         builder.id(comment.getId());
         builder.content(comment.getContent());
 
-        // SỬA LỖI 1: Sử dụng "author" (từ ProgressComment.java)
-        User author = comment.getAuthor();
+        // Tác giả: email/tên lấy từ UserDisplayNameResolver, không chạm tới User.customer/employee
         if (author != null) {
-            builder.authorEmail(author.getEmail());
-            builder.authorId(author.getId()); // Map trường authorId
-            builder.authorFullName(toAuthorFullName(author)); 
+            builder.authorEmail(author.email());
+            builder.authorId(author.userId()); // Map trường authorId
+            builder.authorFullName(author.displayName());
         }
 
         // Map ID của CheckInEvent
@@ -46,23 +75,4 @@ public class CommentMapper {
 
         return builder.build();
     }
-
-    /**
-     * Hàm helper (viết thủ công) để lấy FullName
-     * (Logic này dựa trên cấu trúc User/Customer/Employee của bạn)
-     */
-    private String toAuthorFullName(User author) {
-        if (author == null) {
-            return "Người dùng ẩn danh";
-        }
-        
-        if (author.getCustomer() != null && author.getCustomer().getFullname() != null) {
-            return author.getCustomer().getFullname();
-        }
-        if (author.getEmployee() != null && author.getEmployee().getFullname() != null) {
-            return author.getEmployee().getFullname();
-        }
-        // Fallback
-        return author.getEmail().split("@")[0];
-    }
-}
\ No newline at end of file
+}
@@ -1,13 +1,16 @@
 package com.example.demo.community.repository;
 
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.demo.community.dto.projection.CheckInCommentCountRow;
 import com.example.demo.community.entity.ProgressComment;
 
 @Repository
@@ -15,4 +18,46 @@ public interface ProgressCommentRepository extends JpaRepository<ProgressComment
 	@Modifying
     @Query("DELETE FROM ProgressComment pc WHERE pc.dailyProgress.id IN :progressIds")
     void deleteAllByDailyProgressIdIn(@Param("progressIds") List<Long> progressIds);
-}
\ No newline at end of file
+
+    /**
+     * Số bình luận của từng check-in, một query cho cả timeline.
+     */
+    @Query("SELECT pc.checkInEvent.id AS checkInEventId, COUNT(pc) AS count FROM ProgressComment pc " +
+           "WHERE pc.checkInEvent.id IN :eventIds GROUP BY pc.checkInEvent.id")
+    List<CheckInCommentCountRow> countByCheckInEventIds(@Param("eventIds") Collection<Long> eventIds);
+
+    /**
+     * Id của :limit bình luận mới nhất cho mỗi check-in (trang đầu tiên), một query cho cả timeline.
+     */
+    @Query(value = "SELECT id FROM (" +
+                   "  SELECT pc.id, ROW_NUMBER() OVER (PARTITION BY pc.check_in_event_id " +
+                   "                                   ORDER BY pc.created_at DESC, pc.id DESC) AS rn " +
+                   "  FROM progress_comments pc WHERE pc.check_in_event_id IN (:eventIds)) ranked " +
+                   "WHERE rn <= :limit",
+           nativeQuery = true)
+    List<Long> findLatestIdsPerCheckInEvent(@Param("eventIds") Collection<Long> eventIds, @Param("limit") int limit);
+
+    /**
+     * Bình luận theo id kèm tác giả (và tên hiển thị), sắp xếp cũ -> mới.
+     */
+    @Query("SELECT pc FROM ProgressComment pc " +
+           "JOIN FETCH pc.author a LEFT JOIN FETCH a.customer LEFT JOIN FETCH a.employee " +
+           "WHERE pc.id IN :ids ORDER BY pc.createdAt ASC, pc.id ASC")
+    List<ProgressComment> findAllWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Trang đầu bình luận của một check-in (mới -> cũ), dùng cho API phân trang.
+     */
+    @Query("SELECT pc.id FROM ProgressComment pc WHERE pc.checkInEvent.id = :eventId " +
+           "ORDER BY pc.createdAt DESC, pc.id DESC")
+    List<Long> findPageIds(@Param("eventId") Long eventId, Pageable pageable);
+
+    /**
+     * Trang bình luận cũ hơn bình luận :beforeId (keyset theo createdAt, id), mới -> cũ.
+     */
+    @Query("SELECT pc.id FROM ProgressComment pc, ProgressComment c " +
+           "WHERE c.id = :beforeId AND c.checkInEvent.id = :eventId AND pc.checkInEvent.id = :eventId " +
+           "AND (pc.createdAt < c.createdAt OR (pc.createdAt = c.createdAt AND pc.id < c.id)) " +
+           "ORDER BY pc.createdAt DESC, pc.id DESC")
+    List<Long> findPageIdsBefore(@Param("eventId") Long eventId, @Param("beforeId") Long beforeId, Pageable pageable);
+}
@@ -1,9 +1,13 @@
 package com.example.demo.community.repository;
 
+import com.example.demo.community.dto.projection.ReactionAggregateRow;
 import com.example.demo.community.entity.ProgressReaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 // THÊM IMPORT NÀY
@@ -21,4 +25,14 @@ public interface ProgressReactionRepository extends JpaRepository<ProgressReacti
     // === KẾT THÚC THÊM MỚI ===
 
 	void deleteAllByDailyProgressIdIn(List<Long> progressIds);
-}
\ No newline at end of file
+
+    /**
+     * Số reaction theo (check-in, loại) và số reaction của người xem (:viewerId), một query cho cả timeline.
+     */
+    @Query("SELECT r.checkInEvent.id AS checkInEventId, r.type AS type, COUNT(r) AS count, " +
+           "       SUM(CASE WHEN r.user.id = :viewerId THEN 1 ELSE 0 END) AS viewerCount " +
+           "FROM ProgressReaction r WHERE r.checkInEvent.id IN :eventIds " +
+           "GROUP BY r.checkInEvent.id, r.type")
+    List<ReactionAggregateRow> aggregateByCheckInEventIds(@Param("eventIds") Collection<Long> eventIds,
+                                                          @Param("viewerId") Integer viewerId);
+}
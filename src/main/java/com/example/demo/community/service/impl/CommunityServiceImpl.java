@@ -7,15 +7,17 @@ import com.example.demo.community.dto.response.CommentResponse;
 import com.example.demo.community.entity.ProgressComment;
 import com.example.demo.community.entity.ProgressReaction;
 import com.example.demo.community.entity.ReactionType;
+import com.example.demo.community.mapper.CommentMapper;
 import com.example.demo.community.repository.ProgressCommentRepository;
 import com.example.demo.community.repository.ProgressReactionRepository;
 import com.example.demo.community.service.CommunityService;
 import com.example.demo.feed.entity.FeedEventType;
 import com.example.demo.feed.service.FeedService;
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
 import com.example.demo.notification.service.NotificationService;
-import com.example.demo.plan.entity.MemberRole;
 import com.example.demo.plan.entity.Plan;
 import com.example.demo.plan.entity.PlanMember;
+import com.example.demo.plan.service.PlanMembershipIndex;
 // import com.example.demo.progress.entity.DailyProgress; // <-- XÓA BỎ
 // import com.example.demo.progress.repository.DailyProgressRepository; // <-- XÓA BỎ
 import com.example.demo.progress.entity.checkin.CheckInEvent; // <-- THÊM MỚI
@@ -23,16 +25,20 @@ import com.example.demo.progress.repository.CheckInEventRepository; // <-- THÊM
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.ZoneId; // <-- THÊM IMPORT NÀY
 import java.time.format.DateTimeFormatter; // <-- THÊM IMPORT NÀY
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -52,8 +58,11 @@ public class CommunityServiceImpl implements CommunityService {
     private final ProgressReactionRepository reactionRepository;
     private final ProgressCommentRepository commentRepository;
     private final NotificationService notificationService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PlanEventSequencer planEventSequencer;
     private final FeedService feedService;
+    private final PlanMembershipIndex planMembershipIndex;
+    private final CommentMapper commentMapper;
+    private final UserDisplayNameResolver userDisplayNameResolver;
     // === KẾT THÚC THAY ĐỔI ===
 
     private static final Pattern MENTION_PATTERN = Pattern.compile("@\\[[^\\]]+?\\]\\((\\d+?)\\)");
@@ -74,8 +83,8 @@ public class CommunityServiceImpl implements CommunityService {
         // (Trường createdAt trong ProgressComment đã có @Builder.Default nên tự động được set)
 
         ProgressComment savedComment = commentRepository.save(comment);
-        CommentResponse commentResponse = toCommentResponse(savedComment);
-        String authorName = getUserFullName(author);
+        CommentResponse commentResponse = commentMapper.toCommentResponse(savedComment);
+        String authorName = userDisplayNameResolver.displayName(author);
 
         // --- XỬ LÝ NOTIFICATION THÔNG THƯỜNG & MENTION ---
         User progressOwner = checkInEvent.getPlanMember().getUser();
@@ -86,19 +95,19 @@ public class CommunityServiceImpl implements CommunityService {
              String link = String.format("/plan/%s?date=%s#comment-%d", plan.getShareableLink(), progressDateStr, savedComment.getId());
              notificationService.createNotification(progressOwner, message, link);
         }
+        // Gom mọi mention thành 1 lô; kiểm tra thành viên qua index, không cần load User
         Set<Integer> mentionedUserIds = extractMentionedUserIds(savedComment.getContent());
+        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận về check-in (%s) trong %s.", authorName, formatTime(checkInEvent), plan.getTitle());
+        String mentionLink = String.format("/plan/%s?date=%s#comment-%d", plan.getShareableLink(), progressDateStr, savedComment.getId());
+        List<CreateNotificationRequest> mentionNotifications = new ArrayList<>();
         for (Integer mentionedUserId : mentionedUserIds) {
-            if (!mentionedUserId.equals(author.getId()) && !mentionedUserId.equals(progressOwner.getId())) {
-                userRepository.findById(mentionedUserId).ifPresent(mentionedUser -> {
-                    if (isUserMemberOfPlan(mentionedUser, plan)) {
-                        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận về check-in (%s) trong %s.", authorName, formatTime(checkInEvent), plan.getTitle());
-                        String mentionLink = String.format("/plan/%s?date=%s#comment-%d", plan.getShareableLink(), progressDateStr, savedComment.getId());
-                        notificationService.createNotification(mentionedUser, mentionMessage, mentionLink);
-                        log.info("Sent mention notification to user {} from comment {}", mentionedUserId, savedComment.getId());
-                    }
-                });
+            if (!mentionedUserId.equals(author.getId()) && !mentionedUserId.equals(progressOwner.getId())
+                    && planMembershipIndex.isMember(plan.getId(), mentionedUserId)) {
+                mentionNotifications.add(new CreateNotificationRequest(mentionedUserId, mentionMessage, mentionLink));
             }
         }
+        notificationService.createNotifications(mentionNotifications);
+        log.info("Queued {} mention notifications from comment {}", mentionNotifications.size(), savedComment.getId());
         // --- KẾT THÚC XỬ LÝ NOTIFICATION ---
 
         // *** GỬI FEED EVENT COMMENT_ADDED ***
@@ -109,9 +118,8 @@ public class CommunityServiceImpl implements CommunityService {
         // *** KẾT THÚC GỬI FEED EVENT ***
 
         // GỬI MESSAGE WEBSOCKET NEW_COMMENT
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/community";
         Map<String, Object> payload = Map.of( "type", "NEW_COMMENT", "checkInEventId", checkInEventId, "comment", commentResponse ); // Sửa progressId
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.COMMUNITY, payload);
 
         return commentResponse;
     }
@@ -131,34 +139,32 @@ public class CommunityServiceImpl implements CommunityService {
 
         CheckInEvent checkInEvent = comment.getCheckInEvent(); // Sửa
         Plan plan = checkInEvent.getPlanMember().getPlan(); // Sửa
-        CommentResponse commentResponse = toCommentResponse(updatedComment);
-        String authorName = getUserFullName(user);
+        CommentResponse commentResponse = commentMapper.toCommentResponse(updatedComment);
+        String authorName = userDisplayNameResolver.displayName(user);
         
         String progressDateStr = checkInEvent.getCheckInTimestamp().atZone(VIETNAM_ZONE).toLocalDate().toString();
 
         // --- XỬ LÝ NOTIFICATION MENTION KHI UPDATE ---
          Set<Integer> oldMentionedIds = extractMentionedUserIds(oldContent);
          Set<Integer> newMentionedIds = extractMentionedUserIds(updatedComment.getContent());
+         String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận đã sửa về check-in (%s) trong %s.", authorName, formatTime(checkInEvent), plan.getTitle());
+         String mentionLink = String.format("/plan/%s?date=%s#comment-%d", plan.getShareableLink(), progressDateStr, updatedComment.getId());
+         List<CreateNotificationRequest> mentionNotifications = new ArrayList<>();
          for (Integer mentionedUserId : newMentionedIds) {
              if (!oldMentionedIds.contains(mentionedUserId) &&
                  !mentionedUserId.equals(user.getId()) &&
-                 !mentionedUserId.equals(checkInEvent.getPlanMember().getUser().getId())) { // Sửa
-                 userRepository.findById(mentionedUserId).ifPresent(mentionedUser -> {
-                      if (isUserMemberOfPlan(mentionedUser, plan)) {
-                         String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận đã sửa về check-in (%s) trong %s.", authorName, formatTime(checkInEvent), plan.getTitle()); // Sửa
-                         String mentionLink = String.format("/plan/%s?date=%s#comment-%d", plan.getShareableLink(), progressDateStr, updatedComment.getId()); // Sửa
-                         notificationService.createNotification(mentionedUser, mentionMessage, mentionLink);
-                         log.info("Sent mention notification (update) to user {} from comment {}", mentionedUserId, updatedComment.getId());
-                      }
-                 });
+                 !mentionedUserId.equals(checkInEvent.getPlanMember().getUser().getId()) &&
+                 planMembershipIndex.isMember(plan.getId(), mentionedUserId)) {
+                 mentionNotifications.add(new CreateNotificationRequest(mentionedUserId, mentionMessage, mentionLink));
              }
          }
+         notificationService.createNotifications(mentionNotifications);
+         log.info("Queued {} mention notifications (update) from comment {}", mentionNotifications.size(), updatedComment.getId());
         // --- KẾT THÚC XỬ LÝ NOTIFICATION ---
 
         // GỬI MESSAGE WEBSOCKET UPDATE_COMMENT
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/community";
         Map<String, Object> payload = Map.of( "type", "UPDATE_COMMENT", "checkInEventId", checkInEvent.getId(), "comment", commentResponse ); // Sửa
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.COMMUNITY, payload);
         
         return commentResponse;
     }
@@ -172,9 +178,7 @@ public class CommunityServiceImpl implements CommunityService {
         Long checkInEventId = checkInEvent.getId(); // Store before deleting comment
 
         boolean isAuthor = comment.getAuthor().getId().equals(user.getId());
-        plan.getMembers().size(); 
-        boolean isPlanOwner = plan.getMembers().stream()
-                .anyMatch(m -> m.getUser() != null && m.getUser().getId().equals(user.getId()) && m.getRole() == MemberRole.OWNER);
+        boolean isPlanOwner = planMembershipIndex.isOwner(plan.getId(), user.getId());
 
         if (!isAuthor && !isPlanOwner) {
             throw new AccessDeniedException("Bạn không có quyền xóa bình luận này.");
@@ -184,9 +188,8 @@ public class CommunityServiceImpl implements CommunityService {
         log.info("User {} deleted comment {}", userEmail, commentId);
 
         // GỬI MESSAGE WEBSOCKET DELETE_COMMENT
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/community";
         Map<String, Object> payload = Map.of( "type", "DELETE_COMMENT", "checkInEventId", checkInEventId, "commentId", commentId ); // Sửa
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.COMMUNITY, payload);
     }
 
 
@@ -212,7 +215,7 @@ public class CommunityServiceImpl implements CommunityService {
         String progressDateStr = checkInEvent.getCheckInTimestamp().atZone(VIETNAM_ZONE).toLocalDate().toString();
         
         if (typeChanged && !reactor.getId().equals(progressOwner.getId())) {
-             String reactorName = getUserFullName(reactor);
+             String reactorName = userDisplayNameResolver.displayName(reactor);
              String message = reactorName + " đã bày tỏ cảm xúc về check-in (" + formatTime(checkInEvent) + ") của bạn trong kế hoạch '" + plan.getTitle() + "'."; // Sửa
              String link = String.format("/plan/%s?date=%s#checkin-%d", plan.getShareableLink(), progressDateStr, checkInEventId); // Sửa
              notificationService.createNotification(progressOwner, message, link);
@@ -230,14 +233,13 @@ public class CommunityServiceImpl implements CommunityService {
         // *** KẾT THÚC GỬI FEED EVENT ***
 
         // GỬI MESSAGE WEBSOCKET UPDATE_REACTION
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/community";
         Map<String, Object> simplePayload = Map.of(
             "type", "UPDATE_REACTION",
             "checkInEventId", checkInEventId, // Sửa
             "userId", reactor.getId(),
             "reactionType", request.getReactionType().name()
         );
-        messagingTemplate.convertAndSend(destination, simplePayload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.COMMUNITY, simplePayload);
     }
 
     @Override
@@ -253,13 +255,12 @@ public class CommunityServiceImpl implements CommunityService {
         log.info("User {} removed reaction from check-in {}", userEmail, checkInEventId);
 
         // GỬI MESSAGE WEBSOCKET REMOVE_REACTION
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/community";
          Map<String, Object> payload = Map.of(
             "type", "REMOVE_REACTION",
             "checkInEventId", checkInEventId, // Sửa
             "userId", userIdToRemove
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.COMMUNITY, payload);
     }
 
     // --- Helper Methods ---
@@ -275,10 +276,9 @@ public class CommunityServiceImpl implements CommunityService {
     }
 
     private boolean isUserMemberOfPlan(User user, Plan plan) {
-         if (plan == null || plan.getMembers() == null || user == null) return false;
-         plan.getMembers().size(); // Trigger load if necessary
-         return plan.getMembers().stream()
-                    .anyMatch(member -> member.getUser() != null && member.getUser().getId().equals(user.getId()));
+         if (plan == null || user == null) return false;
+         // Tra cứu O(1) trên PlanMembershipIndex thay vì duyệt plan.getMembers()
+         return planMembershipIndex.isMember(plan.getId(), user.getId());
      }
 
     // === THÊM HELPER MỚI ===
@@ -291,7 +291,6 @@ public class CommunityServiceImpl implements CommunityService {
                     Plan plan = event.getPlanMember().getPlan();
                     plan.getShareableLink(); 
                     plan.getTitle(); 
-                    plan.getMembers().size(); 
                     return event;
                 })
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy sự kiện check-in với ID: " + id));
@@ -320,7 +319,6 @@ public class CommunityServiceImpl implements CommunityService {
                              if (c.getCheckInEvent().getPlanMember().getPlan() != null) {
                                  c.getCheckInEvent().getPlanMember().getPlan().getShareableLink();
                                  c.getCheckInEvent().getPlanMember().getPlan().getTitle();
-                                 c.getCheckInEvent().getPlanMember().getPlan().getMembers().size();
                              }
                         }
                     }
@@ -329,45 +327,6 @@ public class CommunityServiceImpl implements CommunityService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy bình luận với ID: " + id));
     }
 
-    // --- HELPER METHODS (ĐÃ SỬA LỖI) ---
-
-    /**
-     * Chuyển đổi ProgressComment entity sang CommentResponse DTO.
-     * SỬA: Bỏ .createdAt() vì DTO không có.
-     */
-    private CommentResponse toCommentResponse(ProgressComment comment) {
-         if (comment == null) return null;
-         User author = comment.getAuthor();
-         return CommentResponse.builder()
-                .id(comment.getId())
-                .content(comment.getContent())
-                .authorEmail(author != null ? author.getEmail() : "N/A")
-                .authorFullName(author != null ? getUserFullName(author) : "Người dùng ẩn danh")
-                // .createdAt(comment.getCreatedAt()) // <-- LỖI GÂY RA DO TÔI "ĐOÁN", DTO KHÔNG CÓ TRƯỜNG NÀY
-                .build();
-    }
-
-    /**
-     * Lấy tên đầy đủ của User (ưu tiên Customer, sau đó Employee, cuối cùng là email).
-     * SỬA: Bỏ .getFullName() vì User entity không có.
-     */
-    private String getUserFullName(User user) {
-        if (user == null) return "N/A";
-        // Ưu tiên Customer trước
-        if (user.getCustomer() != null && user.getCustomer().getFullname() != null && !user.getCustomer().getFullname().isBlank()) {
-            return user.getCustomer().getFullname();
-        }
-        // Sau đó Employee
-        if (user.getEmployee() != null && user.getEmployee().getFullname() != null && !user.getEmployee().getFullname().isBlank()) {
-            return user.getEmployee().getFullname();
-        }
-        // LỖI GÂY RA DO TÔI "ĐOÁN":
-        // if (user.getFullName() != null && !user.getFullName().isBlank()) {
-        //     return user.getFullName();
-        // }
-        return user.getEmail(); // Fallback về email (luôn tồn tại)
-    }
-    
     /**
      * Helper để format thời gian (HH:mm)
      */
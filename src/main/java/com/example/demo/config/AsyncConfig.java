@@ -2,29 +2,85 @@
 
 package com.example.demo.config;
 
+import com.example.demo.config.async.AsyncWorkload;
+import com.example.demo.config.async.InstrumentedTaskExecutor;
+import com.example.demo.config.async.RejectionPolicy;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-
-import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync // Bật tính năng xử lý bất đồng bộ của Spring
 public class AsyncConfig {
 
     /**
-     * Định nghĩa một bean Executor tùy chỉnh cho các tác vụ bất đồng bộ.
+     * Executor mặc định cho các @Async không chỉ định tên.
      * Bean này sẽ có tên là "taskExecutor" theo tên phương thức.
      */
-    @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);      // Số luồng cơ bản trong pool
-        executor.setMaxPoolSize(5);       // Số luồng tối đa
-        executor.setQueueCapacity(500);   // Sức chứa của hàng đợi
-        executor.setThreadNamePrefix("Async-");
-        executor.initialize();
-        return executor;
-    }
-}
\ No newline at end of file
+    @Bean(name = AsyncWorkload.DEFAULT_EXECUTOR)
+    public InstrumentedTaskExecutor taskExecutor(Environment env) {
+        return build(AsyncWorkload.DEFAULT, env);
+    }
+
+    // --- Mỗi loại tác vụ một pool riêng (bulkhead) ---
+
+    @Bean(name = AsyncWorkload.FEED_EXECUTOR)
+    public InstrumentedTaskExecutor feedExecutor(Environment env) {
+        return build(AsyncWorkload.FEED, env);
+    }
+
+    @Bean(name = AsyncWorkload.NOTIFICATION_EXECUTOR)
+    public InstrumentedTaskExecutor notificationExecutor(Environment env) {
+        return build(AsyncWorkload.NOTIFICATION, env);
+    }
+
+    @Bean(name = AsyncWorkload.EMAIL_EXECUTOR)
+    public InstrumentedTaskExecutor emailExecutor(Environment env) {
+        return build(AsyncWorkload.EMAIL, env);
+    }
+
+    @Bean(name = AsyncWorkload.ACTIVITY_LOG_EXECUTOR)
+    public InstrumentedTaskExecutor activityLogExecutor(Environment env) {
+        return build(AsyncWorkload.ACTIVITY_LOG, env);
+    }
+
+    @Bean(name = AsyncWorkload.UPLOAD_EXECUTOR)
+    public InstrumentedTaskExecutor uploadExecutor(Environment env) {
+        // FileUploadController join() trên từng tác vụ: tác vụ bị bỏ hoặc nằm chờ trong hàng đợi phụ
+        // sẽ giữ luồng request mãi (hoặc tới khi pool rảnh)
+        RejectionPolicy policy = rejectionPolicy(AsyncWorkload.UPLOAD, env);
+        if (policy == RejectionPolicy.SPILL || policy == RejectionPolicy.DISCARD || policy == RejectionPolicy.DISCARD_OLDEST) {
+            throw new IllegalStateException("app.async.upload.rejection-policy không hợp lệ: " + policy
+                    + " (ABORT|CALLER_RUNS)");
+        }
+        return build(AsyncWorkload.UPLOAD, env);
+    }
+
+    @Bean(name = AsyncWorkload.THUMBNAIL_EXECUTOR)
+    public InstrumentedTaskExecutor thumbnailExecutor(Environment env) {
+        return build(AsyncWorkload.THUMBNAIL, env);
+    }
+
+    /**
+     * Đọc cấu hình app.async.{key}.mode|core-size|max-size|queue-capacity|rejection-policy|spill-capacity,
+     * thiếu thì dùng mặc định của {@link AsyncWorkload} (spill-capacity mặc định bằng queue-capacity).
+     */
+    private InstrumentedTaskExecutor build(AsyncWorkload workload, Environment env) {
+        String prefix = "app.async." + workload.getKey() + ".";
+        int queueCapacity = env.getProperty(prefix + "queue-capacity", Integer.class, workload.getDefaultQueueCapacity());
+        return new InstrumentedTaskExecutor(
+                workload,
+                env.getProperty(prefix + "mode", AsyncWorkload.ExecutorMode.class, workload.getDefaultMode()),
+                env.getProperty(prefix + "core-size", Integer.class, workload.getDefaultCoreSize()),
+                env.getProperty(prefix + "max-size", Integer.class, workload.getDefaultMaxSize()),
+                queueCapacity,
+                rejectionPolicy(workload, env),
+                env.getProperty(prefix + "spill-capacity", Integer.class, queueCapacity));
+    }
+
+    private static RejectionPolicy rejectionPolicy(AsyncWorkload workload, Environment env) {
+        return env.getProperty("app.async." + workload.getKey() + ".rejection-policy", RejectionPolicy.class,
+                workload.getDefaultRejectionPolicy());
+    }
+}
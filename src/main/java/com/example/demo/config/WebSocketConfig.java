@@ -1,19 +1,29 @@
 package com.example.demo.config;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.core.Ordered; // *** THÊM IMPORT ***
 import org.springframework.core.annotation.Order; // *** THÊM IMPORT ***
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 import com.example.demo.config.security.WebSocketAuthInterceptor; // *** THÊM IMPORT ***
+import com.example.demo.config.websocket.ClusterBrokerBridge;
 
 import lombok.RequiredArgsConstructor; // *** THÊM IMPORT ***
+import lombok.extern.slf4j.Slf4j;
 
 
+@Slf4j
 @Configuration
 @EnableWebSocketMessageBroker
 @RequiredArgsConstructor // *** THÊM ANNOTATION ***
@@ -21,11 +31,72 @@ import lombok.RequiredArgsConstructor; // *** THÊM IMPORT ***
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthInterceptor webSocketAuthInterceptor; // *** INJECT INTERCEPTOR ***
+    // Chỉ có ở chế độ "bus" (xem BrokerBusConfig)
+    private final ObjectProvider<ClusterBrokerBridge> clusterBrokerBridge;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    // simple: broker trong bộ nhớ (1 node) | bus: simple broker + BrokerBus giữa các node | relay: STOMP broker ngoài
+    @Value("${app.websocket.broker.mode:simple}")
+    private String brokerMode = "simple";
+
+    @Value("${app.websocket.broker.relay.host:localhost}")
+    private String relayHost = "localhost";
+    @Value("${app.websocket.broker.relay.port:61613}")
+    private int relayPort = 61613;
+    @Value("${app.websocket.broker.relay.login:guest}")
+    private String relayLogin = "guest";
+    @Value("${app.websocket.broker.relay.passcode:guest}")
+    private String relayPasscode = "guest";
+
+    // Heartbeat STOMP [server gửi, server mong nhận] (ms)
+    @Value("${app.websocket.heartbeat.send-ms:10000}")
+    private long heartbeatSendMs = 10_000;
+    @Value("${app.websocket.heartbeat.receive-ms:10000}")
+    private long heartbeatReceiveMs = 10_000;
+
+    // Client chậm: vượt buffer hoặc thời gian gửi thì đóng session (client kết nối lại và tải lại dữ liệu)
+    @Value("${app.websocket.outbound.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit = 512 * 1024;
+    @Value("${app.websocket.outbound.send-time-limit-ms:15000}")
+    private int sendTimeLimitMs = 15_000;
+    @Value("${app.websocket.inbound.message-size-limit:65536}")
+    private int messageSizeLimit = 64 * 1024;
+    @Value("${app.websocket.outbound.pool-size:8}")
+    private int outboundPoolSize = 8;
+    @Value("${app.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity = 10_000;
+
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // TCP client là reactor-netty (có trong build.gradle); broker ngoài phải hỗ trợ STOMP (RabbitMQ, ActiveMQ...)
+            config.enableStompBrokerRelay("/topic")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setSystemHeartbeatSendInterval(heartbeatSendMs)
+                    .setSystemHeartbeatReceiveInterval(heartbeatReceiveMs);
+            log.info("WebSocket broker: STOMP relay {}:{}", relayHost, relayPort);
+            return;
+        }
+
+        config.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{heartbeatSendMs, heartbeatReceiveMs})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         // config.setApplicationDestinationPrefixes("/app"); // Bỏ comment nếu cần gửi message từ client lên server xử lý
+        clusterBrokerBridge.ifAvailable(bridge -> {
+            config.configureBrokerChannel().interceptors(bridge);
+            log.info("WebSocket broker: simple broker bridged over BrokerBus (node {})", bridge.getNodeId());
+        });
     }
 
     @Override
@@ -41,4 +112,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registration.interceptors(webSocketAuthInterceptor);
     }
     // *** KẾT THÚC THÊM ***
-}
\ No newline at end of file
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundPoolSize)
+                .maxPoolSize(outboundPoolSize)
+                .queueCapacity(outboundQueueCapacity);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setSendTimeLimit(sendTimeLimitMs)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+}
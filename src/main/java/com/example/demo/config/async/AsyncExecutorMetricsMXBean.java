@@ -0,0 +1,42 @@
+package com.example.demo.config.async;
+
+/**
+ * Số liệu của một executor @Async, xuất qua JMX tại
+ * com.example.demo:type=AsyncExecutor,name={workload}.
+ */
+public interface AsyncExecutorMetricsMXBean {
+
+    String getWorkload();
+
+    String getMode();
+
+    String getRejectionPolicy();
+
+    int getQueueDepth();
+
+    int getQueueCapacity();
+
+    int getActiveCount();
+
+    int getPoolSize();
+
+    long getSubmittedCount();
+
+    long getCompletedCount();
+
+    long getRejectedCount();
+
+    /** Số tác vụ đang nằm trong hàng đợi phụ (chính sách SPILL). */
+    int getSpillDepth();
+
+    /** Số tác vụ bị bỏ hẳn (DISCARD/DISCARD_OLDEST, hoặc SPILL khi hàng đợi phụ cũng đầy). */
+    long getDroppedCount();
+
+    /** Thời gian chờ trong hàng đợi trung bình (ms). */
+    double getAverageWaitMillis();
+
+    /** Thời gian chờ lớn nhất (ms) từ lần reset gần nhất. */
+    long getMaxWaitMillis();
+
+    void resetMaxWait();
+}
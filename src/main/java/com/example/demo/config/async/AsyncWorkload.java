@@ -0,0 +1,52 @@
+package com.example.demo.config.async;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Các nhóm tác vụ @Async, mỗi nhóm một executor riêng (bulkhead): SMTP chậm không chiếm luồng
+ * của feed/notification.
+ *
+ * Giá trị mặc định có thể ghi đè bằng app.async.{key}.* trong application.properties.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum AsyncWorkload {
+
+    // Tác vụ @Transactional / I/O: tràn vào hàng đợi phụ (SPILL), không chạy trên luồng request
+    // (CALLER_RUNS sẽ tham gia transaction của caller, lỗi có thể làm rollback cả request)
+    DEFAULT("default", AsyncWorkload.DEFAULT_EXECUTOR, ExecutorMode.PLATFORM, 2, 5, 500, RejectionPolicy.SPILL),
+    FEED("feed", AsyncWorkload.FEED_EXECUTOR, ExecutorMode.PLATFORM, 2, 8, 1000, RejectionPolicy.SPILL),
+    NOTIFICATION("notification", AsyncWorkload.NOTIFICATION_EXECUTOR, ExecutorMode.PLATFORM, 2, 8, 1000, RejectionPolicy.SPILL),
+    // Gửi mail chờ I/O mạng: dùng virtual thread nếu JVM hỗ trợ
+    EMAIL("email", AsyncWorkload.EMAIL_EXECUTOR, ExecutorMode.VIRTUAL, 1, 20, 500, RejectionPolicy.SPILL),
+    // Log hoạt động là best-effort: đầy hàng đợi thì bỏ qua, không làm chậm request
+    ACTIVITY_LOG("activity-log", AsyncWorkload.ACTIVITY_LOG_EXECUTOR, ExecutorMode.PLATFORM, 1, 4, 2000, RejectionPolicy.DISCARD),
+    // Ghi song song các file trong 1 request upload; đầy thì luồng request tự ghi
+    UPLOAD("upload", AsyncWorkload.UPLOAD_EXECUTOR, ExecutorMode.PLATFORM, 2, 8, 100, RejectionPolicy.CALLER_RUNS),
+    // Giải mã/thu nhỏ ảnh tốn CPU và heap: ít luồng; đầy hàng đợi thì bỏ qua (client dùng ảnh gốc)
+    THUMBNAIL("thumbnail", AsyncWorkload.THUMBNAIL_EXECUTOR, ExecutorMode.PLATFORM, 1, 2, 200, RejectionPolicy.DISCARD);
+
+    // Tên bean dùng trong @Async("...")
+    public static final String DEFAULT_EXECUTOR = "taskExecutor";
+    public static final String FEED_EXECUTOR = "feedExecutor";
+    public static final String NOTIFICATION_EXECUTOR = "notificationExecutor";
+    public static final String EMAIL_EXECUTOR = "emailExecutor";
+    public static final String ACTIVITY_LOG_EXECUTOR = "activityLogExecutor";
+    public static final String UPLOAD_EXECUTOR = "uploadExecutor";
+    public static final String THUMBNAIL_EXECUTOR = "thumbnailExecutor";
+
+    private final String key;
+    private final String beanName;
+    private final ExecutorMode defaultMode;
+    private final int defaultCoreSize;
+    private final int defaultMaxSize;
+    private final int defaultQueueCapacity;
+    private final RejectionPolicy defaultRejectionPolicy;
+
+    public enum ExecutorMode {
+        PLATFORM,
+        // Virtual thread (JDK 21+); JVM cũ hơn sẽ tự quay về PLATFORM
+        VIRTUAL
+    }
+}
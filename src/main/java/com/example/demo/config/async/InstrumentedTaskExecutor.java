@@ -0,0 +1,251 @@
+package com.example.demo.config.async;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThreadPoolTaskExecutor có đo đạc: độ sâu hàng đợi, số luồng đang chạy, thời gian chờ trong hàng
+ * đợi và số tác vụ bị từ chối. Số liệu xuất qua JMX ({@link AsyncExecutorMetricsMXBean}).
+ *
+ * Chế độ VIRTUAL dùng virtual thread làm luồng của pool (pool vẫn giới hạn số tác vụ chạy đồng
+ * thời = maxPoolSize, đóng vai trò bulkhead). JVM chưa hỗ trợ virtual thread thì dùng luồng thường.
+ *
+ * Chính sách {@link RejectionPolicy#SPILL}: tác vụ bị từ chối vào hàng đợi phụ (spillCapacity); mỗi khi một
+ * tác vụ chạy xong, luồng của pool chuyển 1 tác vụ từ hàng đợi phụ sang hàng đợi chính. Hàng đợi phụ
+ * cũng đầy thì ném RejectedExecutionException về luồng gọi (không bỏ tác vụ trong im lặng).
+ */
+@Slf4j
+public class InstrumentedTaskExecutor extends ThreadPoolTaskExecutor implements AsyncExecutorMetricsMXBean {
+
+    private final AsyncWorkload workload;
+    private final AsyncWorkload.ExecutorMode mode;
+    private final RejectionPolicy rejectionPolicy;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final BlockingDeque<Runnable> spill;
+    private final LongAdder waitedTasks = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    private ObjectName objectName;
+
+    public InstrumentedTaskExecutor(AsyncWorkload workload, AsyncWorkload.ExecutorMode mode,
+                                    int coreSize, int maxSize, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        this(workload, mode, coreSize, maxSize, queueCapacity, rejectionPolicy, queueCapacity);
+    }
+
+    public InstrumentedTaskExecutor(AsyncWorkload workload, AsyncWorkload.ExecutorMode mode,
+                                    int coreSize, int maxSize, int queueCapacity, RejectionPolicy rejectionPolicy,
+                                    int spillCapacity) {
+        this.workload = workload;
+        this.rejectionPolicy = rejectionPolicy;
+        this.spill = new LinkedBlockingDeque<>(Math.max(1, spillCapacity));
+
+        ThreadFactory virtualFactory = mode == AsyncWorkload.ExecutorMode.VIRTUAL ? virtualThreadFactory(threadPrefix()) : null;
+        if (mode == AsyncWorkload.ExecutorMode.VIRTUAL && virtualFactory == null) {
+            log.warn("Virtual threads are not supported on Java {}, executor '{}' falls back to platform threads",
+                    Runtime.version().feature(), workload.getKey());
+        }
+        this.mode = virtualFactory != null ? AsyncWorkload.ExecutorMode.VIRTUAL : AsyncWorkload.ExecutorMode.PLATFORM;
+
+        setCorePoolSize(coreSize);
+        setMaxPoolSize(maxSize);
+        setQueueCapacity(queueCapacity);
+        setThreadNamePrefix(threadPrefix());
+        if (virtualFactory != null) {
+            setThreadFactory(virtualFactory);
+            // Virtual thread rẻ: không cần giữ luồng core khi rảnh
+            setAllowCoreThreadTimeOut(true);
+        }
+        // Chờ tác vụ đang chạy (email, ghi log...) khi tắt ứng dụng
+        setWaitForTasksToCompleteOnShutdown(true);
+        setAwaitTerminationSeconds(10);
+        setRejectedExecutionHandler((task, executor) -> {
+            rejected.increment();
+            log.warn("Async executor '{}' is saturated (queue {}/{}), applying {}",
+                    workload.getKey(), executor.getQueue().size(), getQueueCapacity(), rejectionPolicy);
+            if (rejectionPolicy == RejectionPolicy.SPILL) {
+                if (executor.isShutdown() || !spill.offerLast(task)) {
+                    throw new RejectedExecutionException("Async executor '" + workload.getKey()
+                            + "' spill queue is full (" + spill.size() + ")");
+                }
+                return;
+            }
+            if (rejectionPolicy == RejectionPolicy.DISCARD || rejectionPolicy == RejectionPolicy.DISCARD_OLDEST) {
+                dropped.increment();
+            }
+            rejectionPolicy.handler().rejectedExecution(task, executor);
+        });
+        setTaskDecorator(task -> {
+            submitted.increment();
+            long enqueuedAt = System.nanoTime();
+            return () -> {
+                recordWait(System.nanoTime() - enqueuedAt);
+                try {
+                    task.run();
+                } finally {
+                    drainSpill();
+                }
+            };
+        });
+    }
+
+    /**
+     * Chuyển 1 tác vụ từ hàng đợi phụ sang hàng đợi chính (gọi trên luồng của pool sau mỗi tác vụ).
+     */
+    private void drainSpill() {
+        Runnable next = spill.pollFirst();
+        if (next == null) {
+            return;
+        }
+        if (!getThreadPoolExecutor().getQueue().offer(next) && !spill.offerFirst(next)) {
+            // Hàng đợi chính và phụ vừa bị lấp đầy: chạy luôn trên luồng của pool này thay vì bỏ
+            next.run();
+        }
+    }
+
+    private String threadPrefix() {
+        return "async-" + workload.getKey() + "-";
+    }
+
+    private void recordWait(long nanos) {
+        waitedTasks.increment();
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Tạo ThreadFactory virtual thread bằng reflection để vẫn biên dịch được với Java 17.
+     * Trả về null nếu JVM đang chạy không hỗ trợ.
+     */
+    static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void initialize() {
+        super.initialize();
+        registerMBean();
+    }
+
+    @Override
+    public void destroy() {
+        unregisterMBean();
+        super.destroy();
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.example.demo:type=AsyncExecutor,name=" + workload.getKey());
+            // Nhiều context (test) dùng chung MBeanServer: thay bản cũ
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            log.warn("Could not export metrics for async executor '{}': {}", workload.getKey(), e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.debug("Could not unregister metrics for async executor '{}': {}", workload.getKey(), e.getMessage());
+        }
+        objectName = null;
+    }
+
+    // --- AsyncExecutorMetricsMXBean ---
+
+    @Override
+    public String getWorkload() {
+        return workload.getKey();
+    }
+
+    @Override
+    public String getMode() {
+        return mode.name();
+    }
+
+    @Override
+    public String getRejectionPolicy() {
+        return rejectionPolicy.name();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return getQueueSize();
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        ThreadPoolExecutor executor = getThreadPoolExecutor();
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public int getSpillDepth() {
+        return spill.size();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long count = waitedTasks.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1_000_000.0 / count;
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public void resetMaxWait() {
+        maxWaitNanos.set(0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.config.async;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Cách xử lý khi executor đã đầy (đủ luồng tối đa và hàng đợi đầy).
+ */
+public enum RejectionPolicy {
+
+    // Ném TaskRejectedException về luồng gọi (hành vi cũ)
+    ABORT(new ThreadPoolExecutor.AbortPolicy()),
+    // Tràn sang luồng gọi: tác vụ vẫn chạy, luồng gọi bị chậm lại (tự điều tiết).
+    // Không dùng cho @Async @Transactional: tác vụ sẽ tham gia transaction của request gọi nó
+    CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy()),
+    // Tràn vào hàng đợi phụ có giới hạn của executor, luồng của pool lấy dần khi rảnh; hàng đợi phụ
+    // cũng đầy thì ném TaskRejectedException như ABORT. Luồng gọi không bao giờ tự chạy tác vụ
+    SPILL(null),
+    // Bỏ tác vụ mới
+    DISCARD(new ThreadPoolExecutor.DiscardPolicy()),
+    // Bỏ tác vụ cũ nhất trong hàng đợi để nhận tác vụ mới
+    DISCARD_OLDEST(new ThreadPoolExecutor.DiscardOldestPolicy());
+
+    private final RejectedExecutionHandler handler;
+
+    RejectionPolicy(RejectedExecutionHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * null với {@link #SPILL} (executor tự xử lý vì cần hàng đợi phụ riêng).
+     */
+    public RejectedExecutionHandler handler() {
+        return handler;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.demo.config.security;
+
+import com.example.demo.user.dto.projection.UserTokenState;
+import com.example.demo.user.entity.UserStatus;
+import com.example.demo.user.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache principal cho JwtAuthenticationFilter / WebSocketAuthInterceptor.
+ * Authorities được dựng từ claim "roles" mà JwtUtil.generateAccessToken đã ký vào token,
+ * nên request đã xác thực chỉ truy vấn CSDL khi entry của user chưa có / hết hạn (tối đa một lần mỗi ttl-ms).
+ *
+ * Lúc nạp entry, trạng thái tài khoản được đọc từ CSDL: user đã xóa / bị khóa bị từ chối, và token cấp trước
+ * users.tokens_valid_after bị từ chối. Khi role, trạng thái employee hoặc trạng thái user thay đổi, service gọi
+ * {@link #invalidate(String)}: mốc tokens_valid_after được ghi cùng transaction với thay đổi (node khác thấy khi
+ * entry của chúng hết hạn, vẫn còn sau restart), còn entry trên node này bị xóa ngay sau khi commit.
+ * Client nhận 401 và dùng refresh token để lấy access token mới với quyền hiện tại.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AuthenticatedPrincipalCache {
+
+    static final String ROLES_CLAIM = "roles";
+
+    private final UserRepository userRepository;
+
+    // Cũng là độ trễ tối đa để node khác thấy một lần thu hồi
+    @Value("${app.security.principal-cache.ttl-ms:60000}")
+    private long ttlMs = 60_000;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private int maxSize = 10_000;
+
+    // Token sống tối đa chừng này, mốc thu hồi cũ hơn không còn tác dụng
+    @Value("${app.jwt.access-token-expiration-ms:3600000}")
+    private long accessTokenExpirationMs = 3_600_000;
+
+    private final Map<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    // email -> thời điểm (epoch giây) thu hồi trên node này. Chặn cả entry cũ mà một request song song
+    // đã đọc từ CSDL trước khi transaction thu hồi commit rồi đưa lại vào cache.
+    private final Map<String, Long> invalidatedAt = new ConcurrentHashMap<>();
+
+    /**
+     * Lấy principal từ claims của một access token đã được xác thực chữ ký.
+     * @return null nếu token không còn được chấp nhận (user không còn / bị khóa, hoặc token cấp trước
+     *         lần thay đổi quyền gần nhất).
+     */
+    public UserDetails resolve(Claims claims) {
+        String email = claims.getSubject();
+        if (!StringUtils.hasText(email)) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        // "iat" của JWT chỉ có độ phân giải giây
+        long issuedAtSec = claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() / 1000 : 0L;
+        if (isRevokedLocally(email, issuedAtSec, now)) {
+            log.debug("Rejecting token for {} issued before its last authority change", email);
+            return null;
+        }
+
+        String roles = claims.get(ROLES_CLAIM, String.class);
+        CachedPrincipal cached = principals.get(email);
+        if (cached == null || cached.expiresAt() <= now) {
+            Long tokensValidAfterSec = loadTokensValidAfter(email);
+            if (tokensValidAfterSec == null) {
+                principals.remove(email);
+                log.debug("Rejecting token for {}: user no longer exists or is suspended", email);
+                return null;
+            }
+            cached = store(email, new CachedPrincipal(buildPrincipal(email, roles), roles, tokensValidAfterSec, now + ttlMs), now);
+        }
+        if (issuedAtSec < cached.tokensValidAfterSec()) {
+            log.debug("Rejecting token for {} issued before its last authority change", email);
+            return null;
+        }
+        if (!Objects.equals(cached.roles(), roles)) {
+            // Token khác (role khác) của cùng user: dựng lại principal, giữ trạng thái đã nạp
+            cached = store(email, new CachedPrincipal(buildPrincipal(email, roles), roles,
+                    cached.tokensValidAfterSec(), cached.expiresAt()), now);
+        }
+        return cached.principal();
+    }
+
+    /**
+     * Gọi khi role / trạng thái employee / trạng thái user của một tài khoản thay đổi, trong transaction của
+     * thay đổi đó: mốc thu hồi được ghi cùng transaction, entry trên node này bị xóa sau khi commit.
+     */
+    @Transactional
+    public void invalidate(String email) {
+        if (!StringUtils.hasText(email)) {
+            return;
+        }
+        OffsetDateTime now = OffsetDateTime.now();
+        // Trả về đúng entity đang được quản lý nếu caller đã load user -> dirty checking ghi cột cùng transaction
+        userRepository.findByEmail(email).ifPresent(user -> user.setTokensValidAfter(now));
+        long revokedAtSec = now.toEpochSecond();
+        Runnable evict = () -> {
+            invalidatedAt.merge(email, revokedAtSec, Math::max);
+            principals.remove(email);
+            log.info("Invalidated cached principal for {}", email);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict.run();
+                }
+            });
+        } else {
+            evict.run();
+        }
+    }
+
+    /**
+     * @return mốc tokens_valid_after (epoch giây, 0 nếu chưa từng thu hồi); null nếu user không còn hoặc bị khóa
+     */
+    private Long loadTokensValidAfter(String email) {
+        Optional<UserTokenState> state = userRepository.findTokenStateByEmail(email);
+        if (state.isEmpty() || state.get().getStatus() == UserStatus.SUSPENDED) {
+            return null;
+        }
+        OffsetDateTime tokensValidAfter = state.get().getTokensValidAfter();
+        return tokensValidAfter != null ? tokensValidAfter.toEpochSecond() : 0L;
+    }
+
+    private CachedPrincipal store(String email, CachedPrincipal entry, long now) {
+        if (principals.size() >= maxSize) {
+            evictExpired(now);
+        }
+        principals.put(email, entry);
+        return entry;
+    }
+
+    private boolean isRevokedLocally(String email, long issuedAtSec, long now) {
+        Long revokedAtSec = invalidatedAt.get(email);
+        if (revokedAtSec == null) {
+            return false;
+        }
+        if (revokedAtSec * 1000 + accessTokenExpirationMs < now) {
+            // Mọi token cấp trước mốc này đều đã hết hạn
+            invalidatedAt.remove(email, revokedAtSec);
+            return false;
+        }
+        return issuedAtSec < revokedAtSec;
+    }
+
+    private UserDetails buildPrincipal(String email, String roles) {
+        List<GrantedAuthority> authorities = !StringUtils.hasText(roles) ? List.of() :
+                Arrays.stream(roles.split(","))
+                        .map(String::trim)
+                        .filter(StringUtils::hasText)
+                        .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                        .toList();
+        // Không giữ password trong principal dựng từ token
+        return new User(email, "", true, true, true, true, authorities);
+    }
+
+    private void evictExpired(long now) {
+        principals.values().removeIf(entry -> entry.expiresAt() <= now);
+        invalidatedAt.values().removeIf(revokedAtSec -> revokedAtSec * 1000 + accessTokenExpirationMs < now);
+        // Vẫn đầy (toàn entry còn hạn) -> bỏ bớt một entry bất kỳ để giữ giới hạn
+        Iterator<String> it = principals.keySet().iterator();
+        while (principals.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private record CachedPrincipal(UserDetails principal, String roles, long tokensValidAfterSec, long expiresAt) {
+    }
+}
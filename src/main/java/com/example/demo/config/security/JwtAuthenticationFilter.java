@@ -1,6 +1,7 @@
 package com.example.demo.config.security;
 
 import com.example.demo.shared.util.JwtUtil;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,10 +11,8 @@ import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
-import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
@@ -23,7 +22,7 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final AuthenticatedPrincipalCache principalCache;
 
     @Override
     protected void doFilterInternal(
@@ -51,30 +50,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         final String jwt = authHeader.substring(7);
-        final String userEmail;
-        
-        try {
-             userEmail = jwtUtil.getEmailFromToken(jwt);
-        } catch (io.jsonwebtoken.ExpiredJwtException e) {
-            // Đây là nơi log frontend "Received 401"
-            // Chỉ cần cho request đi tiếp, CustomAuthenticationEntryPoint sẽ xử lý
+        // Verify chữ ký đúng 1 lần; null nếu token hết hạn/sai (CustomAuthenticationEntryPoint sẽ trả 401)
+        final Claims claims = jwtUtil.validateAndGetClaims(jwt);
+        if (claims == null) {
             filterChain.doFilter(request, response);
             return;
-        } catch (Exception e) {
-             // Lỗi token khác (malformed, etc.)
-//             log.warn("Invalid JWT Token: {}", e.getMessage());
-             filterChain.doFilter(request, response);
-             return;
         }
 
+        // Nếu chưa được xác thực trong SecurityContext
+        if (SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Principal dựng từ claim "roles" và được cache -> chỉ truy vấn CSDL khi entry của user hết hạn
+            UserDetails userDetails = principalCache.resolve(claims);
 
-        // Nếu có email và chưa được xác thực trong SecurityContext
-        if (StringUtils.hasText(userEmail) && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
-
-            // Nếu token hợp lệ, tạo đối tượng xác thực và đặt vào SecurityContext
-            // (validateToken giờ chỉ kiểm tra tính hợp lệ chứ không kiểm tra hết hạn, vì getEmailFromToken đã làm)
-            if (jwtUtil.validateToken(jwt)) { // Giả sử validateToken kiểm tra chữ ký
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null, // credentials
@@ -8,12 +8,13 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import com.example.demo.shared.util.JwtUtil; // Import JwtUtil
 
+import io.jsonwebtoken.Claims;
+
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -23,7 +24,7 @@ import lombok.extern.slf4j.Slf4j;
 public class WebSocketAuthInterceptor implements ChannelInterceptor {
 
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    private final AuthenticatedPrincipalCache principalCache;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -41,12 +42,17 @@ public class WebSocketAuthInterceptor implements ChannelInterceptor {
                 String jwt = authorizationHeader.substring(7);
 
                 try {
-                    if (jwtUtil.validateToken(jwt)) {
-                        String username = jwtUtil.getEmailFromToken(jwt); // Lấy email (username)
+                    Claims claims = jwtUtil.validateAndGetClaims(jwt); // Verify + lấy claims trong 1 lần parse
+                    if (claims != null) {
+                        String username = claims.getSubject(); // Lấy email (username)
                         log.debug("JWT validated for user: {}", username);
 
-                        // Load user details từ UserDetailsService
-                        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                        // Principal dựng từ claim "roles" (có cache), chỉ load trạng thái user từ CSDL khi entry hết hạn
+                        UserDetails userDetails = principalCache.resolve(claims);
+                        if (userDetails == null) {
+                            log.warn("JWT for {} was issued before its last authority change.", username);
+                            return message;
+                        }
 
                         // Tạo đối tượng Authentication
                         UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
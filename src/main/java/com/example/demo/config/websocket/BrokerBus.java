@@ -0,0 +1,18 @@
+package com.example.demo.config.websocket;
+
+import java.util.function.Consumer;
+
+/**
+ * Kênh pub/sub giữa các node dùng cho chế độ broker "bus" (app.websocket.broker.mode=bus).
+ * Mỗi node giữ simple broker trong bộ nhớ cho subscription của client kết nối vào nó; message do server
+ * phát ra được đẩy lên bus để các node khác phát lại cho subscriber của chúng.
+ *
+ * Mặc định là {@link PostgresBrokerBus} (LISTEN/NOTIFY); {@link LoopbackBrokerBus} chỉ dùng trong một JVM.
+ * Triển khai khác (Redis pub/sub, NATS, Kafka...) chỉ cần khai báo một bean BrokerBus.
+ */
+public interface BrokerBus {
+
+    void publish(BrokerEnvelope envelope);
+
+    void subscribe(Consumer<BrokerEnvelope> listener);
+}
@@ -0,0 +1,69 @@
+package com.example.demo.config.websocket;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+/**
+ * Bean cho chế độ broker "bus": mỗi node chạy simple broker, message server phát ra được chia sẻ qua BrokerBus.
+ * Mặc định dùng {@link PostgresBrokerBus}; khai báo bean BrokerBus khác (Redis, NATS...) để thay thế.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.websocket.broker.mode", havingValue = "bus")
+public class BrokerBusConfig {
+
+    // postgres: LISTEN/NOTIFY trên DB dùng chung (nhiều node) | loopback: trong 1 JVM (chạy thử 1 node)
+    @Bean
+    @ConditionalOnMissingBean(BrokerBus.class)
+    public BrokerBus brokerBus(@Value("${app.websocket.broker.bus.type:postgres}") String type,
+                               ObjectProvider<DataSource> dataSource,
+                               @Value("${app.websocket.broker.bus.channel:broker_bus}") String channel,
+                               @Value("${app.websocket.broker.bus.reconnect-delay-ms:5000}") long reconnectDelayMs,
+                               @Value("${app.websocket.broker.bus.queue-capacity:10000}") int queueCapacity) {
+        if ("loopback".equalsIgnoreCase(type)) {
+            return new LoopbackBrokerBus();
+        }
+        if (!"postgres".equalsIgnoreCase(type)) {
+            throw new IllegalStateException("app.websocket.broker.bus.type không hợp lệ: " + type + " (postgres|loopback)");
+        }
+        return new PostgresBrokerBus(dataSource.getObject(), channel, reconnectDelayMs, queueCapacity);
+    }
+
+    /**
+     * PostgresBrokerBus giữ cố định 2 connection (publisher + listener): cộng thêm vào pool để request
+     * vẫn có đủ số connection đã cấu hình. Chạy sau khi Boot bind spring.datasource.hikari.*.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.websocket.broker.bus.type", havingValue = "postgres", matchIfMissing = true)
+    static BeanPostProcessor brokerBusPoolSizer() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    hikari.setMaximumPoolSize(hikari.getMaximumPoolSize() + PostgresBrokerBus.HELD_CONNECTIONS);
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public ClusterBrokerBridge clusterBrokerBridge(BrokerBus brokerBus,
+                                                   @Lazy @Qualifier("brokerChannel") MessageChannel brokerChannel,
+                                                   @Value("${app.websocket.node-id:}") String nodeId) {
+        String resolvedNodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+        return new ClusterBrokerBridge(brokerBus, resolvedNodeId, () -> brokerChannel);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.config.websocket;
+
+/**
+ * Một message broker (đã serialize) truyền giữa các node qua {@link BrokerBus}.
+ *
+ * @param originNodeId node đã phát message (node nhận bỏ qua message của chính nó)
+ * @param destination  destination STOMP, VD: /topic/plan/{link}/progress
+ * @param contentType  content-type của payload (thường là application/json)
+ * @param payload      body đã serialize
+ */
+public record BrokerEnvelope(String originNodeId, String destination, String contentType, byte[] payload) {
+}
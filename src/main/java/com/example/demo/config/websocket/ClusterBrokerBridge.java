@@ -0,0 +1,86 @@
+package com.example.demo.config.websocket;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Nối simple broker của node này với {@link BrokerBus}:
+ * - Interceptor trên brokerChannel: message server gửi (SimpMessagingTemplate) được đẩy lên bus.
+ * - Listener của bus: message từ node khác được gửi vào brokerChannel local (gắn header
+ *   {@link #ORIGIN_HEADER} để không bị đẩy ngược lên bus), rồi báo cho các listener {@link #onRemoteMessage}.
+ */
+@Slf4j
+public class ClusterBrokerBridge implements ChannelInterceptor {
+
+    static final String ORIGIN_HEADER = "x-broker-origin-node";
+
+    private final BrokerBus bus;
+    @Getter
+    private final String nodeId;
+    private final Supplier<MessageChannel> localBroker;
+    private final List<Consumer<BrokerEnvelope>> remoteListeners = new CopyOnWriteArrayList<>();
+
+    public ClusterBrokerBridge(BrokerBus bus, String nodeId, Supplier<MessageChannel> localBroker) {
+        this.bus = bus;
+        this.nodeId = nodeId;
+        this.localBroker = localBroker;
+        bus.subscribe(this::deliverLocally);
+    }
+
+    /**
+     * Nhận các message đến từ node khác (VD: PlanEventSequencer ghi lại để client kết nối lại vào node này bù được).
+     */
+    public void onRemoteMessage(Consumer<BrokerEnvelope> listener) {
+        remoteListeners.add(listener);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (message.getHeaders().containsKey(ORIGIN_HEADER)
+                || message.getHeaders().get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER) != SimpMessageType.MESSAGE) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null || !(message.getPayload() instanceof byte[] payload)) {
+            log.warn("[ClusterBrokerBridge] Message to {} not forwarded (payload {})", destination,
+                    message.getPayload().getClass().getSimpleName());
+            return message;
+        }
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        bus.publish(new BrokerEnvelope(nodeId, destination, contentType != null ? contentType.toString() : null, payload));
+        return message;
+    }
+
+    private void deliverLocally(BrokerEnvelope envelope) {
+        if (nodeId.equals(envelope.originNodeId())) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.destination());
+        if (envelope.contentType() != null) {
+            accessor.setContentType(MimeTypeUtils.parseMimeType(envelope.contentType()));
+        }
+        accessor.setHeader(ORIGIN_HEADER, envelope.originNodeId());
+        localBroker.get().send(MessageBuilder.createMessage(envelope.payload(), accessor.getMessageHeaders()));
+        for (Consumer<BrokerEnvelope> listener : remoteListeners) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.error("[ClusterBrokerBridge] Remote listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+}
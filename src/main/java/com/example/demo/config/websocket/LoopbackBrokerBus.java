@@ -0,0 +1,34 @@
+package com.example.demo.config.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * BrokerBus trong cùng JVM: phát đồng bộ tới mọi listener đã đăng ký.
+ * Dùng khi chạy 1 node ở chế độ bus (app.websocket.broker.bus.type=loopback) và trong test (nhiều "node" dùng chung 1 instance)
+ * để kiểm tra fan-out liên node mà không cần broker ngoài.
+ */
+@Slf4j
+public class LoopbackBrokerBus implements BrokerBus {
+
+    private final List<Consumer<BrokerEnvelope>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(BrokerEnvelope envelope) {
+        for (Consumer<BrokerEnvelope> listener : listeners) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.error("[LoopbackBrokerBus] Listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<BrokerEnvelope> listener) {
+        listeners.add(listener);
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.demo.config.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * BrokerBus giữa các node qua Postgres LISTEN/NOTIFY (không cần broker ngoài, các node đã dùng chung DB).
+ *
+ * - publish: chỉ đưa message vào hàng đợi có giới hạn, không chạm DB trên luồng gửi (thường đang trong
+ *   transaction của service). Thread publisher gom những gì đang chờ và gửi cả lô bằng 1 câu
+ *   {@code SELECT pg_notify(channel, w) FROM unnest(?)} trong 1 transaction trên connection riêng.
+ * - subscribe: từ listener đầu tiên, một thread daemon giữ connection riêng đã LISTEN, nhận notification và phát cho listener;
+ *   mất kết nối thì mở lại sau {@code reconnectDelayMs}.
+ *
+ * NOTIFY giới hạn payload ~8000 byte. Message lớn hơn được nén gzip; vẫn quá lớn thì ghi vào bảng
+ * broker_bus_payloads (cùng transaction với NOTIFY) và chỉ NOTIFY id, node nhận đọc lại từ bảng.
+ * Bus giữ cố định 2 connection của pool (publisher + listener), BrokerBusConfig cộng thêm vào kích thước pool.
+ */
+@Slf4j
+public class PostgresBrokerBus implements BrokerBus, AutoCloseable {
+
+    // Giới hạn mặc định của Postgres là 8000 byte, chừa chỗ cho phần header
+    static final int MAX_NOTIFY_BYTES = 7_900;
+    // Số connection bus giữ suốt vòng đời: publisher + listener
+    static final int HELD_CONNECTIONS = 2;
+    private static final int POLL_TIMEOUT_MS = 1_000;
+    private static final int MAX_BATCH = 200;
+    private static final long PAYLOAD_RETENTION_MS = 60_000;
+
+    // Tiền tố dạng gửi: message nguyên văn | nén gzip | id dòng trong broker_bus_payloads
+    private static final char INLINE = 'I';
+    private static final char COMPRESSED = 'Z';
+    private static final char STORED = 'R';
+
+    private final DataSource dataSource;
+    private final String channel;
+    private final long reconnectDelayMs;
+    private final List<Consumer<BrokerEnvelope>> listeners = new CopyOnWriteArrayList<>();
+    private final BlockingQueue<BrokerEnvelope> outbox;
+
+    // Chỉ thread publisher dùng
+    private Connection publishConnection;
+    private long lastPayloadCleanup = System.currentTimeMillis();
+    private boolean publisherStarted;
+
+    private volatile boolean running = true;
+    private final AtomicLong droppedQueueFull = new AtomicLong();
+    private final AtomicLong failedFrames = new AtomicLong();
+    private final AtomicLong storedPayloads = new AtomicLong();
+    private final Thread listenerThread;
+    private final Thread publisherThread;
+
+    public PostgresBrokerBus(DataSource dataSource, String channel, long reconnectDelayMs) {
+        this(dataSource, channel, reconnectDelayMs, 10_000);
+    }
+
+    public PostgresBrokerBus(DataSource dataSource, String channel, long reconnectDelayMs, int queueCapacity) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Tên kênh NOTIFY không hợp lệ: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.channel = channel;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.outbox = new ArrayBlockingQueue<>(queueCapacity);
+        this.listenerThread = new Thread(this::listenLoop, "broker-bus-listener");
+        this.listenerThread.setDaemon(true);
+        this.publisherThread = new Thread(this::publishLoop, "broker-bus-publisher");
+        this.publisherThread.setDaemon(true);
+    }
+
+    @Override
+    public void publish(BrokerEnvelope envelope) {
+        startPublisher();
+        if (!outbox.offer(envelope)) {
+            droppedQueueFull.incrementAndGet();
+            log.warn("[PostgresBrokerBus] Outbox full, message to {} not forwarded", envelope.destination());
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<BrokerEnvelope> listener) {
+        listeners.add(listener);
+        // Chỉ LISTEN khi đã có người nhận
+        if (running && !listenerThread.isAlive()) {
+            listenerThread.start();
+        }
+    }
+
+    public long getDroppedQueueFull() {
+        return droppedQueueFull.get();
+    }
+
+    public long getFailedFrames() {
+        return failedFrames.get();
+    }
+
+    public long getStoredPayloads() {
+        return storedPayloads.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        listenerThread.interrupt();
+        publisherThread.interrupt();
+    }
+
+    private synchronized void startPublisher() {
+        if (running && !publisherStarted) {
+            publisherStarted = true;
+            publisherThread.start();
+        }
+    }
+
+    private void publishLoop() {
+        try {
+            while (running) {
+                BrokerEnvelope first;
+                try {
+                    first = outbox.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (first != null) {
+                    List<BrokerEnvelope> batch = new ArrayList<>();
+                    batch.add(first);
+                    outbox.drainTo(batch, MAX_BATCH - 1);
+                    send(batch);
+                }
+                cleanupStoredPayloads();
+            }
+        } finally {
+            closeQuietly(publishConnection);
+            publishConnection = null;
+        }
+    }
+
+    /**
+     * Gửi cả lô trong 1 transaction: NOTIFY được phát khi commit, cùng lúc với các dòng payload lớn.
+     */
+    private void send(List<BrokerEnvelope> batch) {
+        try {
+            Connection connection = publishConnection();
+            try {
+                List<String> wire = new ArrayList<>(batch.size());
+                for (BrokerEnvelope envelope : batch) {
+                    String inline = toInlineWire(envelope);
+                    wire.add(inline != null ? inline : STORED + Long.toString(storePayload(connection, envelope)));
+                }
+                try (PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, w) FROM unnest(?) AS w")) {
+                    statement.setString(1, channel);
+                    statement.setArray(2, connection.createArrayOf("text", wire.toArray()));
+                    statement.execute();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException | RuntimeException e) {
+            failedFrames.addAndGet(batch.size());
+            log.error("[PostgresBrokerBus] Cannot publish {} messages: {}", batch.size(), e.getMessage());
+            closeQuietly(publishConnection);
+            publishConnection = null;
+        }
+    }
+
+    private Connection publishConnection() throws SQLException {
+        if (publishConnection == null || publishConnection.isClosed()) {
+            publishConnection = dataSource.getConnection();
+            publishConnection.setAutoCommit(false);
+        }
+        return publishConnection;
+    }
+
+    private long storePayload(Connection connection, BrokerEnvelope envelope) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO broker_bus_payloads (payload, created_at) VALUES (?, now()) RETURNING id")) {
+            statement.setString(1, encode(envelope));
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                storedPayloads.incrementAndGet();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    /**
+     * Dòng payload chỉ cần sống đủ lâu để các node đọc xong notification.
+     */
+    private void cleanupStoredPayloads() {
+        long now = System.currentTimeMillis();
+        if (now - lastPayloadCleanup < PAYLOAD_RETENTION_MS) {
+            return;
+        }
+        lastPayloadCleanup = now;
+        try {
+            Connection connection = publishConnection();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE FROM broker_bus_payloads WHERE created_at < now() - (? * interval '1 millisecond')")) {
+                statement.setLong(1, PAYLOAD_RETENTION_MS);
+                statement.executeUpdate();
+            }
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            log.warn("[PostgresBrokerBus] Cannot clean up stored payloads: {}", e.getMessage());
+            closeQuietly(publishConnection);
+            publishConnection = null;
+        }
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("[PostgresBrokerBus] Listening on channel {}", channel);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(connection, notification.getParameter());
+                        }
+                    }
+                }
+                // Trả connection về pool ở trạng thái sạch
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("UNLISTEN *");
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.error("[PostgresBrokerBus] Listener connection lost, retrying in {} ms: {}", reconnectDelayMs, e.getMessage());
+                    try {
+                        Thread.sleep(reconnectDelayMs);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private void dispatch(Connection connection, String payload) throws SQLException {
+        BrokerEnvelope envelope;
+        try {
+            envelope = fromWire(connection, payload);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            log.warn("[PostgresBrokerBus] Unreadable notification on {}: {}", channel, e.getMessage());
+            return;
+        }
+        if (envelope == null) {
+            return;
+        }
+        for (Consumer<BrokerEnvelope> listener : listeners) {
+            try {
+                listener.accept(envelope);
+            } catch (Exception e) {
+                log.error("[PostgresBrokerBus] Listener failed for {}: {}", envelope.destination(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Dạng gửi vừa 1 NOTIFY (nguyên văn, hoặc nén nếu cần); null nếu nén rồi vẫn quá lớn.
+     */
+    static String toInlineWire(BrokerEnvelope envelope) {
+        String inline = INLINE + encode(envelope);
+        if (fitsNotify(inline)) {
+            return inline;
+        }
+        String compressed = COMPRESSED + header(envelope) + Base64.getEncoder().encodeToString(gzip(envelope.payload()));
+        return fitsNotify(compressed) ? compressed : null;
+    }
+
+    /**
+     * @return null nếu dòng payload đã bị dọn (node nhận chậm quá thời gian giữ)
+     */
+    static BrokerEnvelope fromWire(Connection connection, String wire) throws SQLException {
+        if (wire.isEmpty()) {
+            throw new IllegalArgumentException("empty notification");
+        }
+        String body = wire.substring(1);
+        switch (wire.charAt(0)) {
+            case INLINE:
+                return decode(body);
+            case COMPRESSED: {
+                BrokerEnvelope compressed = decode(body);
+                return new BrokerEnvelope(compressed.originNodeId(), compressed.destination(), compressed.contentType(),
+                        gunzip(compressed.payload()));
+            }
+            case STORED: {
+                long id;
+                try {
+                    id = Long.parseLong(body);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("bad payload id " + body);
+                }
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT payload FROM broker_bus_payloads WHERE id = ?")) {
+                    statement.setLong(1, id);
+                    try (ResultSet rs = statement.executeQuery()) {
+                        if (!rs.next()) {
+                            log.warn("[PostgresBrokerBus] Stored payload {} already cleaned up", id);
+                            return null;
+                        }
+                        return decode(rs.getString(1));
+                    }
+                }
+            }
+            default:
+                throw new IllegalArgumentException("unknown notification kind " + wire.charAt(0));
+        }
+    }
+
+    /**
+     * originNodeId \n destination \n contentType (rỗng nếu không có) \n base64(payload).
+     */
+    static String encode(BrokerEnvelope envelope) {
+        return header(envelope) + Base64.getEncoder().encodeToString(envelope.payload());
+    }
+
+    static BrokerEnvelope decode(String text) {
+        String[] parts = text.split("\n", -1);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("expected 4 fields, got " + parts.length);
+        }
+        return new BrokerEnvelope(parts[0], parts[1], parts[2].isEmpty() ? null : parts[2],
+                Base64.getDecoder().decode(parts[3]));
+    }
+
+    private static String header(BrokerEnvelope envelope) {
+        return envelope.originNodeId() + '\n'
+                + envelope.destination() + '\n'
+                + (envelope.contentType() != null ? envelope.contentType() : "") + '\n';
+    }
+
+    private static boolean fitsNotify(String wire) {
+        return wire.getBytes(StandardCharsets.UTF_8).length <= MAX_NOTIFY_BYTES;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] data) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return gzip.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Connection đã hỏng, bỏ qua
+        }
+    }
+}
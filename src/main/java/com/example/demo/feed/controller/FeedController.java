@@ -1,6 +1,7 @@
 package com.example.demo.feed.controller;
 
 import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.feed.dto.FeedPageDto;
 import com.example.demo.feed.service.FeedService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -10,6 +11,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -29,4 +31,17 @@ public class FeedController {
         Page<FeedEventDto> feedPage = feedService.getRecentFeedForUser(userEmail, pageable);
         return ResponseEntity.ok(feedPage);
     }
-}
\ No newline at end of file
+
+    /**
+     * Feed theo cursor: GET /api/v1/feed/scroll?before={cursor}&size=20 (cursor là chuỗi opaque, xem FeedCursor)
+     * Không chạy câu COUNT; dùng nextCursor của trang trước làm before.
+     */
+    @GetMapping("/scroll")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<FeedPageDto> scrollMyFeed(
+            Authentication authentication,
+            @RequestParam(required = false) String before,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(feedService.getFeedForUserBefore(authentication.getName(), before, size));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.demo.feed.dto;
+
+import com.example.demo.shared.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+
+/**
+ * Vị trí (timestamp, id) của sự kiện cuối cùng client đã nhận.
+ *
+ * Dạng chuỗi là base64url (không padding) của "{epochMicros}:{id}" theo UTC: không chứa '+', '/', '=' nên
+ * đặt thẳng vào query string mà không cần encode (dạng ISO-8601 cũ có "+07:00" bị đọc thành dấu cách).
+ * Chuỗi không phải base64url (kể cả dạng cũ "{ISO-8601},{id}") -> 400.
+ */
+public record FeedCursor(OffsetDateTime timestamp, Long id) {
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    public static FeedCursor parse(String value) {
+        try {
+            String decoded = new String(DECODER.decode(value.trim()), StandardCharsets.US_ASCII);
+            int separator = decoded.indexOf(':');
+            if (separator <= 0 || separator == decoded.length() - 1) {
+                throw new BadRequestException("Cursor không hợp lệ: " + value);
+            }
+            long micros = Long.parseLong(decoded.substring(0, separator));
+            Instant instant = Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+            return new FeedCursor(instant.atOffset(ZoneOffset.UTC), Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException cũng là IllegalArgumentException
+            throw new BadRequestException("Cursor không hợp lệ: " + value);
+        }
+    }
+
+    public String format() {
+        long micros = ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant());
+        return ENCODER.encodeToString((micros + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -1,7 +1,7 @@
 package com.example.demo.feed.dto;
 
 import com.example.demo.feed.entity.FeedEventType; // Import Enum
-import com.fasterxml.jackson.databind.JsonNode; // Sử dụng JsonNode để linh hoạt hơn
+import com.fasterxml.jackson.annotation.JsonRawValue;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -24,6 +24,7 @@ public class FeedEventDto {
     private Integer planId;
     private String planTitle;
 
-    // Chi tiết sự kiện (dạng JSON object)
-    private JsonNode details; // Sử dụng JsonNode thay vì String
+    // Chi tiết sự kiện: chuỗi JSON lưu trong DB, ghi thẳng ra response (không parse thành cây)
+    @JsonRawValue
+    private String details;
 }
\ No newline at end of file
@@ -0,0 +1,17 @@
+package com.example.demo.feed.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Một trang feed theo cursor. Gửi lại nextCursor qua tham số before để lấy trang tiếp theo;
+ * nextCursor = null khi đã hết.
+ */
+@Getter
+@Builder
+public class FeedPageDto {
+    private List<FeedEventDto> items;
+    private String nextCursor;
+}
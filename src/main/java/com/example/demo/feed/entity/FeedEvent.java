@@ -17,12 +17,14 @@ import java.time.OffsetDateTime;
 @Entity
 @Table(name = "feed_events", indexes = {
         @Index(name = "idx_feedevent_timestamp", columnList = "timestamp DESC"),
-        @Index(name = "idx_feedevent_plan_id", columnList = "plan_id")
+        @Index(name = "idx_feedevent_plan_id", columnList = "plan_id"),
+        @Index(name = "idx_feedevent_plan_ts_id", columnList = "plan_id, timestamp DESC, id DESC") // Keyset feed theo plan
 }) // Thêm index để tối ưu query
 public class FeedEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "feed_events_seq")
+    @SequenceGenerator(name = "feed_events_seq", sequenceName = "feed_events_seq", allocationSize = 50)
     private Long id;
 
     @Enumerated(EnumType.STRING)
@@ -41,6 +43,19 @@ public class FeedEvent {
     @JoinColumn(name = "plan_id") // Kế hoạch liên quan (có thể null nếu không áp dụng)
     private Plan plan;
 
+    // --- Dữ liệu hiển thị lưu sẵn lúc ghi: đọc feed không cần load actor/plan ---
+    @Column(name = "user_id", insertable = false, updatable = false)
+    private Integer actorId;
+
+    @Column(name = "plan_id", insertable = false, updatable = false)
+    private Integer planId;
+
+    @Column(name = "actor_display_name")
+    private String actorDisplayName;
+
+    @Column(name = "plan_title")
+    private String planTitle;
+
     // Lưu trữ chi tiết bổ sung dưới dạng JSON
     // Ví dụ: {"streakDays": 5, "commentId": 123, "planTitle": "ReactJS Plan"}
     @JdbcTypeCode(SqlTypes.JSON)
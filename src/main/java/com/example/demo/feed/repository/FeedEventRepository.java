@@ -9,20 +9,45 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface FeedEventRepository extends JpaRepository<FeedEvent, Long> {
 
     // Lấy feed cho các plan mà một user cụ thể tham gia
-    // JOIN FETCH để lấy thông tin actor và plan (nếu có) trong 1 query
+    // Tên actor / tiêu đề plan đã lưu sẵn trong feed_events nên không cần JOIN FETCH
     @Query("SELECT fe FROM FeedEvent fe " +
-           "LEFT JOIN FETCH fe.actor a " + // Fetch người thực hiện
-           "LEFT JOIN FETCH fe.plan p " +   // Fetch kế hoạch
            "WHERE fe.plan.id IN (SELECT pm.plan.id FROM PlanMember pm WHERE pm.user.id = :userId) " + // Chỉ lấy event từ plan user tham gia
            "ORDER BY fe.timestamp DESC")
     Page<FeedEvent> findFeedForUserPlans(@Param("userId") Integer userId, Pageable pageable);
 
+    /**
+     * Keyset: ID của :limit sự kiện mới nhất đứng trước cursor (:beforeTs, :beforeId) trong các plan
+     * user tham gia. Mỗi plan là một luồng đọc bằng index (plan_id, timestamp DESC, id DESC) qua
+     * LATERAL, tối đa :limit dòng mỗi luồng, rồi trộn lại. Không OFFSET, không câu COUNT.
+     */
+    @Query(value = "SELECT fe.id FROM plan_members pm " +
+                   "CROSS JOIN LATERAL (" +
+                   "    SELECT f.id, f.timestamp FROM feed_events f " +
+                   "    WHERE f.plan_id = pm.plan_id " +
+                   "      AND (f.timestamp, f.id) < (:beforeTs, :beforeId) " +
+                   "    ORDER BY f.timestamp DESC, f.id DESC " +
+                   "    LIMIT :limit) fe " +
+                   "WHERE pm.user_id = :userId " +
+                   "ORDER BY fe.timestamp DESC, fe.id DESC " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findFeedIdsForUserBefore(@Param("userId") Integer userId,
+                                        @Param("beforeTs") OffsetDateTime beforeTs,
+                                        @Param("beforeId") Long beforeId,
+                                        @Param("limit") int limit);
+
+    // Chỉ đọc cột của feed_events (tên actor / tiêu đề plan đã lưu sẵn), không join
+    @Query("SELECT fe FROM FeedEvent fe WHERE fe.id IN :ids ORDER BY fe.timestamp DESC, fe.id DESC")
+    List<FeedEvent> findAllByIdIn(@Param("ids") Collection<Long> ids);
+
     // Có thể thêm các query khác nếu cần, ví dụ: lấy feed chỉ cho 1 plan cụ thể
     // Page<FeedEvent> findByPlanIdOrderByTimestampDesc(Integer planId, Pageable pageable);
     
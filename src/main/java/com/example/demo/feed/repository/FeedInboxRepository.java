@@ -0,0 +1,126 @@
+package com.example.demo.feed.repository;
+
+import com.example.demo.feed.entity.FeedEvent;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hộp feed theo user (bảng feed_inbox_owners / feed_inbox_entries, xem changeset 015).
+ * Chỉ thao tác bằng native query trên (userId, eventId, timestamp), không có entity riêng.
+ */
+public interface FeedInboxRepository extends org.springframework.data.repository.Repository<FeedEvent, Long> {
+
+    /**
+     * @return rỗng nếu user chưa có hộp (cold), ngược lại là cờ truncated.
+     */
+    @Query(value = "SELECT o.truncated FROM feed_inbox_owners o WHERE o.user_id = :userId", nativeQuery = true)
+    Optional<Boolean> findTruncatedByUserId(@Param("userId") Integer userId);
+
+    /**
+     * Khóa advisory (-1, userId) đến hết transaction, độc quyền: kích hoạt hộp chờ các fan-out đang dở
+     * commit xong rồi mới backfill (planId của lockPlanDay luôn dương nên không trùng khóa).
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(-1, :userId)) AS inbox_lock", nativeQuery = true)
+    Integer lockInbox(@Param("userId") Integer userId);
+
+    /**
+     * Khóa chia sẻ (-1, userId) của mọi thành viên plan đến hết transaction, lấy trước {@link #fanOut}:
+     * hoặc hộp đang kích hoạt đã commit (fan-out thấy owner), hoặc backfill chờ sự kiện này commit.
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT pg_advisory_xact_lock_shared(-1, pm.user_id) " +
+                   "FROM plan_members pm WHERE pm.plan_id = :planId) AS inbox_locks",
+           nativeQuery = true)
+    Long lockInboxesOfPlan(@Param("planId") Integer planId);
+
+    @Modifying
+    @Query(value = "INSERT INTO feed_inbox_owners (user_id, truncated, activated_at) VALUES (:userId, false, now()) " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insertOwner(@Param("userId") Integer userId);
+
+    /**
+     * Nạp hộp từ truy vấn gốc: :capacity sự kiện mới nhất của các plan user tham gia.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO feed_inbox_entries (user_id, feed_event_id, event_timestamp) " +
+                   "SELECT :userId, fe.id, fe.timestamp FROM plan_members pm " +
+                   "CROSS JOIN LATERAL (" +
+                   "    SELECT f.id, f.timestamp FROM feed_events f " +
+                   "    WHERE f.plan_id = pm.plan_id " +
+                   "    ORDER BY f.timestamp DESC, f.id DESC " +
+                   "    LIMIT :capacity) fe " +
+                   "WHERE pm.user_id = :userId " +
+                   "ORDER BY fe.timestamp DESC, fe.id DESC " +
+                   "LIMIT :capacity " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int backfill(@Param("userId") Integer userId, @Param("capacity") int capacity);
+
+    @Modifying
+    @Query(value = "UPDATE feed_inbox_owners SET truncated = true WHERE user_id = :userId", nativeQuery = true)
+    int markTruncated(@Param("userId") Integer userId);
+
+    /**
+     * Fan-out khi ghi: 1 câu INSERT cho mọi thành viên của plan đã có hộp.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO feed_inbox_entries (user_id, feed_event_id, event_timestamp) " +
+                   "SELECT pm.user_id, :eventId, :eventTimestamp FROM plan_members pm " +
+                   "JOIN feed_inbox_owners o ON o.user_id = pm.user_id " +
+                   "WHERE pm.plan_id = :planId " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int fanOut(@Param("planId") Integer planId,
+               @Param("eventId") Long eventId,
+               @Param("eventTimestamp") OffsetDateTime eventTimestamp);
+
+    /**
+     * Keyset trên hộp của user: một range scan trên idx_feed_inbox_user_ts_event.
+     */
+    @Query(value = "SELECT e.feed_event_id FROM feed_inbox_entries e " +
+                   "WHERE e.user_id = :userId " +
+                   "  AND (e.event_timestamp, e.feed_event_id) < (:beforeTs, :beforeId) " +
+                   "ORDER BY e.event_timestamp DESC, e.feed_event_id DESC " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<Long> findEventIdsBefore(@Param("userId") Integer userId,
+                                  @Param("beforeTs") OffsetDateTime beforeTs,
+                                  @Param("beforeId") Long beforeId,
+                                  @Param("limit") int limit);
+
+    /**
+     * Xóa hộp (entries bị xóa theo cascade); lần đọc sau sẽ nạp lại.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM feed_inbox_owners WHERE user_id = :userId", nativeQuery = true)
+    int deleteOwner(@Param("userId") Integer userId);
+
+    /**
+     * Đánh dấu truncated cho các hộp vượt quá :capacity (phải chạy trước trimEntries).
+     */
+    @Modifying
+    @Query(value = "UPDATE feed_inbox_owners o SET truncated = true " +
+                   "WHERE o.truncated = false " +
+                   "  AND (SELECT COUNT(*) FROM feed_inbox_entries e WHERE e.user_id = o.user_id) > :capacity",
+           nativeQuery = true)
+    int markOverCapacityTruncated(@Param("capacity") int capacity);
+
+    /**
+     * Cắt mỗi hộp còn :capacity sự kiện mới nhất.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM feed_inbox_entries e USING (" +
+                   "    SELECT r.user_id, r.feed_event_id FROM (" +
+                   "        SELECT user_id, feed_event_id, " +
+                   "               row_number() OVER (PARTITION BY user_id ORDER BY event_timestamp DESC, feed_event_id DESC) AS rn " +
+                   "        FROM feed_inbox_entries) r " +
+                   "    WHERE r.rn > :capacity) x " +
+                   "WHERE e.user_id = x.user_id AND e.feed_event_id = x.feed_event_id",
+           nativeQuery = true)
+    int trimEntries(@Param("capacity") int capacity);
+}
@@ -0,0 +1,93 @@
+package com.example.demo.feed.service;
+
+import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.plan.service.PlanMembershipIndex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Set;
+
+/**
+ * Phát FeedEvent qua WebSocket cho thành viên plan.
+ *
+ * Payload được serialize JSON đúng 1 lần thành byte[] dùng chung; mỗi destination chỉ tạo thêm
+ * một bộ header. Người nhận lấy từ {@link PlanMembershipIndex} (projection đã cache), không đụng
+ * tới entity Plan/PlanMember (có thể đã detached ở luồng @Async).
+ * - /topic/plan/{link}/feed: 1 lần gửi cho mọi thành viên đang mở plan.
+ * - /topic/user/{id}/feed: giữ cho client cũ, tắt bằng app.feed.fanout.per-user-topics=false.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FeedFanoutPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlanMembershipIndex planMembershipIndex;
+
+    @Value("${app.feed.fanout.per-user-topics:true}")
+    private boolean perUserTopics = true;
+
+    /**
+     * @param planId        plan của sự kiện (null: sự kiện không gắn plan, chỉ gửi cho actor)
+     * @param shareableLink link plan để gửi lên topic chung của plan (có thể null)
+     */
+    public void publish(FeedEventDto feedEventDto, Integer planId, String shareableLink) {
+        if (feedEventDto == null) {
+            return;
+        }
+
+        Set<Integer> recipientUserIds;
+        if (planId != null) {
+            recipientUserIds = planMembershipIndex.memberUserIds(planId);
+        } else if (feedEventDto.getActorId() != null) {
+            recipientUserIds = Set.of(feedEventDto.getActorId());
+        } else {
+            log.warn("Cannot determine recipients for FeedEvent ID: {}", feedEventDto.getId());
+            return;
+        }
+
+        Message<byte[]> message;
+        try {
+            message = jsonMessage(objectMapper.writeValueAsBytes(feedEventDto));
+        } catch (JsonProcessingException e) {
+            log.error("Error serializing feed event {}: {}", feedEventDto.getId(), e.getMessage(), e);
+            return;
+        }
+
+        if (shareableLink != null) {
+            send("/topic/plan/" + shareableLink + "/feed", message, feedEventDto.getId());
+        }
+        if (perUserTopics || shareableLink == null) {
+            for (Integer userId : recipientUserIds) {
+                send("/topic/user/" + userId + "/feed", message, feedEventDto.getId());
+            }
+        }
+        log.debug("Fanned out feed event {} to plan {} ({} members)", feedEventDto.getId(), shareableLink, recipientUserIds.size());
+    }
+
+    private void send(String destination, Message<byte[]> message, Long feedEventId) {
+        try {
+            // Message bất biến: template chỉ sao chép header + gắn destination, payload dùng chung
+            messagingTemplate.send(destination, message);
+        } catch (Exception e) {
+            log.error("Error sending feed event {} to {}: {}", feedEventId, destination, e.getMessage());
+        }
+    }
+
+    private Message<byte[]> jsonMessage(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.feed.service;
+
+import com.example.demo.feed.dto.FeedCursor;
+import com.example.demo.feed.entity.FeedEvent;
+import com.example.demo.feed.repository.FeedInboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Hộp feed theo user (fan-out khi ghi) cho người đọc feed nhiều.
+ *
+ * - Hộp được tạo ở lần đọc feed đầu tiên (nạp sẵn capacity sự kiện mới nhất).
+ * - Mỗi FeedEvent mới được chép (userId, eventId, timestamp) vào hộp của các thành viên plan
+ *   đã có hộp, trong cùng transaction với FeedEvent. Fan-out và kích hoạt hộp lấy chung khóa
+ *   theo user nên sự kiện ghi song song với lần kích hoạt không bị lọt khỏi hộp.
+ * - Đọc: một range scan trên hộp rồi hydrate theo lô. Khi hộp chưa có, hoặc trang vượt quá phần
+ *   hộp còn giữ (đã bị cắt), {@link #findEventIdsBefore} trả về rỗng và người gọi dùng truy vấn gốc.
+ * - Thay đổi thành viên plan phải gọi {@link #reset(Integer)} để hộp được nạp lại đúng quyền.
+ */
+@Slf4j
+@Component
+public class FeedInbox {
+
+    private final FeedInboxRepository feedInboxRepository;
+    private final TransactionTemplate writeTransaction;
+
+    @Value("${app.feed.inbox.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.feed.inbox.capacity:500}")
+    private int capacity = 500;
+
+    public FeedInbox(FeedInboxRepository feedInboxRepository, PlatformTransactionManager transactionManager) {
+        this.feedInboxRepository = feedInboxRepository;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * ID sự kiện trong hộp đứng trước cursor, tối đa {@code limit}.
+     * @return rỗng nếu hộp không trả lời được trang này (chưa có hộp, hoặc hộp đã bị cắt và
+     *         không đủ {@code limit} dòng); khi đó dùng truy vấn gốc.
+     */
+    public Optional<List<Long>> findEventIdsBefore(Integer userId, FeedCursor cursor, int limit) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Optional<Boolean> truncated = feedInboxRepository.findTruncatedByUserId(userId);
+        if (truncated.isEmpty()) {
+            activate(userId);
+            return Optional.empty();
+        }
+        List<Long> ids = feedInboxRepository.findEventIdsBefore(userId, cursor.timestamp(), cursor.id(), limit);
+        // Hộp đã bị cắt: trang thiếu dòng có thể còn sự kiện cũ hơn nằm ngoài hộp
+        if (ids.size() < limit && truncated.get()) {
+            return Optional.empty();
+        }
+        return Optional.of(ids);
+    }
+
+    /**
+     * Chép sự kiện vào hộp của các thành viên plan (gọi trong transaction tạo FeedEvent).
+     */
+    public void fanOut(FeedEvent event) {
+        if (!enabled || event.getPlan() == null) {
+            return;
+        }
+        // Câu lệnh riêng, trước fanOut: snapshot của fanOut được lấy sau khi đã có khóa
+        feedInboxRepository.lockInboxesOfPlan(event.getPlan().getId());
+        int inserted = feedInboxRepository.fanOut(event.getPlan().getId(), event.getId(), event.getTimestamp());
+        log.debug("Fanned out feed event {} to {} inboxes", event.getId(), inserted);
+    }
+
+    /**
+     * Bỏ hộp của user (entries xóa theo cascade); lần đọc sau nạp lại theo thành viên hiện tại.
+     */
+    public void reset(Integer userId) {
+        if (userId != null) {
+            feedInboxRepository.deleteOwner(userId);
+        }
+    }
+
+    /**
+     * Cắt mỗi hộp còn capacity sự kiện mới nhất.
+     */
+    @Scheduled(cron = "${app.feed.inbox.trim-cron:0 15 * * * *}")
+    public void trim() {
+        if (!enabled) {
+            return;
+        }
+        Integer trimmed = writeTransaction.execute(status -> {
+            feedInboxRepository.markOverCapacityTruncated(capacity);
+            return feedInboxRepository.trimEntries(capacity);
+        });
+        log.info("[FeedInbox] Trimmed {} inbox entries", trimmed);
+    }
+
+    private void activate(Integer userId) {
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                // Chờ các transaction đang fan-out tới user này commit để backfill thấy sự kiện của chúng
+                feedInboxRepository.lockInbox(userId);
+                if (feedInboxRepository.insertOwner(userId) == 0) {
+                    return; // Request khác vừa tạo
+                }
+                int loaded = feedInboxRepository.backfill(userId, capacity);
+                // Nạp đủ capacity: có thể còn sự kiện cũ hơn không nằm trong hộp
+                if (loaded >= capacity) {
+                    feedInboxRepository.markTruncated(userId);
+                }
+                log.debug("[FeedInbox] Activated inbox for user {} with {} events", userId, loaded);
+            });
+        } catch (RuntimeException e) {
+            log.warn("[FeedInbox] Could not activate inbox for user {}: {}", userId, e.getMessage());
+        }
+    }
+}
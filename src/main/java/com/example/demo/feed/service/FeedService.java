@@ -1,6 +1,7 @@
 package com.example.demo.feed.service;
 
 import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.feed.dto.FeedPageDto;
 import com.example.demo.feed.entity.FeedEventType;
 import com.example.demo.plan.entity.Plan;
 import com.example.demo.user.entity.User;
@@ -19,6 +20,14 @@ public interface FeedService {
      */
     Page<FeedEventDto> getRecentFeedForUser(String userEmail, Pageable pageable);
 
+    /**
+     * Lấy feed theo cursor (keyset), độ trễ không phụ thuộc độ sâu trang và không có câu COUNT.
+     * @param userEmail Email của người dùng hiện tại.
+     * @param before Cursor "{timestamp},{id}" của sự kiện cuối trang trước (null: trang đầu).
+     * @param size Số sự kiện tối đa.
+     */
+    FeedPageDto getFeedForUserBefore(String userEmail, String before, int size);
+
     /**
      * Tạo và lưu một FeedEvent mới, đồng thời gửi qua WebSocket.
      * @param eventType Loại sự kiện.
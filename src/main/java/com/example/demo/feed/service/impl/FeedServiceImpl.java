@@ -1,31 +1,35 @@
 package com.example.demo.feed.service.impl;
 
+import com.example.demo.config.async.AsyncWorkload;
+import com.example.demo.feed.dto.FeedCursor;
 import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.feed.dto.FeedPageDto;
 import com.example.demo.feed.entity.FeedEvent;
 import com.example.demo.feed.entity.FeedEventType;
 import com.example.demo.feed.mapper.FeedMapper;
 import com.example.demo.feed.repository.FeedEventRepository;
+import com.example.demo.feed.service.FeedFanoutPublisher;
+import com.example.demo.feed.service.FeedInbox;
 import com.example.demo.feed.service.FeedService;
 import com.example.demo.plan.entity.Plan;
-import com.example.demo.plan.entity.PlanMember; // Import PlanMember
+import com.example.demo.plan.service.PlanMembershipIndex;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async; // Cho việc gửi WS bất đồng bộ
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Map;
-import java.util.Set; // Import Set
-import java.util.stream.Collectors; // Import Collectors
 
 @Slf4j
 @Service
@@ -33,11 +37,16 @@ import java.util.stream.Collectors; // Import Collectors
 @Transactional
 public class FeedServiceImpl implements FeedService {
 
+    private static final int MAX_FEED_PAGE_SIZE = 100;
+
     private final FeedEventRepository feedEventRepository;
     private final FeedMapper feedMapper;
     private final UserRepository userRepository;
     private final ObjectMapper objectMapper; // Inject ObjectMapper
-    private final SimpMessagingTemplate messagingTemplate; // Inject SimpMessagingTemplate
+    private final FeedFanoutPublisher feedFanoutPublisher;
+    private final PlanMembershipIndex planMembershipIndex;
+    private final FeedInbox feedInbox;
+    private final UserDisplayNameResolver userDisplayNameResolver;
 
     @Override
     @Transactional(readOnly = true)
@@ -50,7 +59,37 @@ public class FeedServiceImpl implements FeedService {
     }
 
     @Override
-    @Async("taskExecutor") // Chạy bất đồng bộ để không làm chậm luồng chính
+    @Transactional(readOnly = true)
+    public FeedPageDto getFeedForUserBefore(String userEmail, String before, int size) {
+        Integer userId = planMembershipIndex.resolveUserId(userEmail);
+        if (userId == null) {
+            throw new ResourceNotFoundException("Không tìm thấy người dùng với email: " + userEmail);
+        }
+        int limit = Math.max(1, Math.min(size, MAX_FEED_PAGE_SIZE));
+        // Trang đầu: cursor nằm sau mọi sự kiện hiện có
+        FeedCursor cursor = before == null || before.isBlank()
+                ? new FeedCursor(OffsetDateTime.now().plusDays(1), Long.MAX_VALUE)
+                : FeedCursor.parse(before);
+
+        // Lấy dư 1 dòng để biết còn trang sau hay không. Ưu tiên hộp feed của user, hộp chưa có
+        // hoặc không đủ thì dùng truy vấn trộn theo plan.
+        List<Long> ids = feedInbox.findEventIdsBefore(userId, cursor, limit + 1)
+                .orElseGet(() -> feedEventRepository.findFeedIdsForUserBefore(userId, cursor.timestamp(), cursor.id(), limit + 1));
+        boolean hasMore = ids.size() > limit;
+        List<FeedEventDto> items = ids.isEmpty() ? List.of()
+                : feedEventRepository.findAllByIdIn(hasMore ? ids.subList(0, limit) : ids).stream()
+                        .map(feedMapper::toDto)
+                        .toList();
+
+        FeedEventDto last = items.isEmpty() ? null : items.get(items.size() - 1);
+        return FeedPageDto.builder()
+                .items(items)
+                .nextCursor(hasMore && last != null ? new FeedCursor(last.getTimestamp(), last.getId()).format() : null)
+                .build();
+    }
+
+    @Override
+    @Async(AsyncWorkload.FEED_EXECUTOR) // Chạy bất đồng bộ để không làm chậm luồng chính
     @Transactional // Vẫn cần transaction để lưu entity
     public void createAndPublishFeedEvent(FeedEventType eventType, User actor, Plan plan, Map<String, Object> detailsMap) {
         // 1. Chuyển đổi Map details thành chuỗi JSON
@@ -59,7 +98,7 @@ public class FeedServiceImpl implements FeedService {
             try {
                 // Thêm thông tin actorFullName và planTitle vào detailsMap nếu có
                 if (actor != null && !detailsMap.containsKey("actorFullName")) {
-                    detailsMap.put("actorFullName", feedMapper.getUserFullName(actor));
+                    detailsMap.put("actorFullName", userDisplayNameResolver.displayName(actor));
                 }
                 if (plan != null && !detailsMap.containsKey("planTitle")) {
                     detailsMap.put("planTitle", plan.getTitle());
@@ -72,22 +111,29 @@ public class FeedServiceImpl implements FeedService {
             }
         }
 
-        // 2. Tạo và lưu FeedEvent Entity
+        // 2. Tạo và lưu FeedEvent Entity (kèm tên actor / tiêu đề plan để đọc feed không cần join)
         FeedEvent feedEvent = FeedEvent.builder()
                 .eventType(eventType)
                 .actor(actor)
                 .plan(plan)
+                .actorId(actor != null ? actor.getId() : null)
+                .planId(plan != null ? plan.getId() : null)
+                .actorDisplayName(userDisplayNameResolver.displayName(actor))
+                .planTitle(plan != null ? plan.getTitle() : null)
                 .details(detailsJson)
                 // timestamp tự động được gán
                 .build();
         FeedEvent savedEvent = feedEventRepository.save(feedEvent);
         log.info("Created FeedEvent ID: {}, Type: {}", savedEvent.getId(), eventType);
+        feedInbox.fanOut(savedEvent);
 
         // 3. Map sang DTO để gửi WebSocket
         FeedEventDto feedEventDto = feedMapper.toDto(savedEvent);
 
-        // 4. Gửi WebSocket đến các user liên quan
-        publishFeedEventViaWebSocket(feedEventDto, plan); // Gọi hàm helper
+        // 4. Gửi WebSocket đến các user liên quan (serialize 1 lần, người nhận lấy từ membership index)
+        feedFanoutPublisher.publish(feedEventDto,
+                plan != null ? plan.getId() : null,
+                plan != null ? plan.getShareableLink() : null);
     }
 
     // --- Helper Methods ---
@@ -96,40 +142,4 @@ public class FeedServiceImpl implements FeedService {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với email: " + email));
     }
-
-    // Hàm helper để gửi WebSocket
-    private void publishFeedEventViaWebSocket(FeedEventDto feedEventDto, Plan plan) {
-        if (feedEventDto == null) return;
-
-        // Xác định danh sách người nhận (tất cả thành viên của plan liên quan)
-        Set<Integer> recipientUserIds;
-        if (plan != null && plan.getMembers() != null) {
-            recipientUserIds = plan.getMembers().stream()
-                                  .map(PlanMember::getUser)
-                                  .filter(user -> user != null && user.getId() != null) // Lọc user null
-                                  .map(User::getId)
-                                  .collect(Collectors.toSet());
-        } else {
-            // Nếu không có plan (ví dụ: sự kiện hệ thống?), quyết định gửi cho ai?
-            // Hoặc có thể chỉ gửi cho actor nếu có?
-            if (feedEventDto.getActorId() != null) {
-                 recipientUserIds = Set.of(feedEventDto.getActorId());
-            } else {
-                 log.warn("Cannot determine recipients for FeedEvent ID: {}", feedEventDto.getId());
-                 return; // Không gửi nếu không xác định được người nhận
-            }
-        }
-
-
-        // Gửi message tới topic của từng user nhận
-        for (Integer userId : recipientUserIds) {
-            String userTopic = "/topic/user/" + userId + "/feed";
-            try {
-                messagingTemplate.convertAndSend(userTopic, feedEventDto);
-                log.debug("Sent feed event {} to user topic: {}", feedEventDto.getId(), userTopic);
-            } catch (Exception e) {
-                log.error("Error sending feed event {} to user topic {}: {}", feedEventDto.getId(), userTopic, e.getMessage());
-            }
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,5 +1,6 @@
 package com.example.demo.notification.controller;
 
+import com.example.demo.notification.dto.response.UnreadCountResponse;
 import com.example.demo.notification.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Pageable;
@@ -22,6 +23,12 @@ public class NotificationController {
         return ResponseEntity.ok(notificationService.getNotificationsForUser(userEmail, pageable));
     }
 
+    @GetMapping("/unread-count")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<UnreadCountResponse> getUnreadCount(Authentication authentication) {
+        return ResponseEntity.ok(notificationService.getUnreadCount(authentication.getName()));
+    }
+
     @PatchMapping("/{notificationId}/read")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<Void> markAsRead(
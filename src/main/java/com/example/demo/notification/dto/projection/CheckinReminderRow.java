@@ -0,0 +1,11 @@
+package com.example.demo.notification.dto.projection;
+
+/**
+ * Một thành viên chưa check-in trong ngày cần nhắc (kết quả của truy vấn tổng hợp).
+ */
+public interface CheckinReminderRow {
+    Integer getMemberId();
+    Integer getUserId();
+    String getPlanTitle();
+    String getShareableLink();
+}
@@ -0,0 +1,14 @@
+package com.example.demo.notification.dto.projection;
+
+/**
+ * Một cặp (thành viên, task) có deadline sắp đến mà thành viên chưa check-in task đó.
+ */
+public interface DeadlineReminderRow {
+    Integer getMemberId();
+    Integer getUserId();
+    Long getTaskId();
+    String getTaskDescription();
+    String getDeadlineTime(); // Đã format sẵn "HH:mm" trong SQL
+    String getPlanTitle();
+    String getShareableLink();
+}
@@ -0,0 +1,16 @@
+package com.example.demo.notification.dto.projection;
+
+/**
+ * Tiến độ tổng hợp của một thành viên: số ngày đã check-in so với số ngày đã trôi qua của plan.
+ */
+public interface MemberProgressRow {
+    Integer getMemberId();
+    Integer getUserId();
+    Integer getPlanId();
+    String getPlanTitle();
+    String getShareableLink();
+    String getDisplayName();
+    Integer getDaysSoFar();
+    Integer getDurationInDays();
+    Long getCheckedInDays();
+}
@@ -0,0 +1,10 @@
+package com.example.demo.notification.dto.projection;
+
+/**
+ * Tham chiếu gọn (planId, memberId, userId) dùng để xác định đồng đội mà không load entity.
+ */
+public interface PlanMemberRef {
+    Integer getPlanId();
+    Integer getMemberId();
+    Integer getUserId();
+}
@@ -0,0 +1,9 @@
+package com.example.demo.notification.dto.projection;
+
+/**
+ * Số thông báo chưa đọc của một người nhận.
+ */
+public interface UnreadCountRow {
+    Integer getRecipientId();
+    Long getUnreadCount();
+}
@@ -0,0 +1,17 @@
+package com.example.demo.notification.dto.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Một thông báo cần tạo, chỉ giữ ID người nhận để không phải load entity User.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class CreateNotificationRequest {
+    private final Integer recipientId;
+    private final String message;
+    private final String link;
+}
@@ -0,0 +1,10 @@
+package com.example.demo.notification.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class UnreadCountResponse {
+    private long unreadCount;
+}
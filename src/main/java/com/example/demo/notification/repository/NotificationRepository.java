@@ -1,5 +1,6 @@
 package com.example.demo.notification.repository;
 
+import com.example.demo.notification.dto.projection.UnreadCountRow;
 import com.example.demo.notification.entity.Notification;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -9,6 +10,9 @@ import org.springframework.data.jpa.repository.Query; // Thêm import
 import org.springframework.data.repository.query.Param; // Thêm import
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 
 @Repository
 public interface NotificationRepository extends JpaRepository<Notification, Long> {
@@ -19,4 +23,11 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     @Query("UPDATE Notification n SET n.read = true WHERE n.recipient.id = :recipientId AND n.read = false")
     int markAllAsReadForRecipient(@Param("recipientId") Integer recipientId);
     // --- KẾT THÚC THÊM ---
-}
\ No newline at end of file
+
+    // Đếm chưa đọc: chỉ quét partial index idx_notifications_unread_recipient (xem changeset 013)
+    long countByRecipientIdAndReadFalse(Integer recipientId);
+
+    @Query("SELECT n.recipient.id AS recipientId, COUNT(n) AS unreadCount FROM Notification n " +
+           "WHERE n.read = false AND n.recipient.id IN :recipientIds GROUP BY n.recipient.id")
+    List<UnreadCountRow> countUnreadByRecipientIds(@Param("recipientIds") Collection<Integer> recipientIds);
+}
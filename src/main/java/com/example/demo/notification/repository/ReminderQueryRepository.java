@@ -0,0 +1,128 @@
+package com.example.demo.notification.repository;
+
+import com.example.demo.notification.dto.projection.CheckinReminderRow;
+import com.example.demo.notification.dto.projection.DeadlineReminderRow;
+import com.example.demo.notification.dto.projection.MemberProgressRow;
+import com.example.demo.notification.dto.projection.PlanMemberRef;
+import com.example.demo.plan.entity.PlanMember;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Các truy vấn tổng hợp cho job nhắc nhở (ScheduledNotificationService).
+ * Tất cả đều phân trang theo keyset (id > cursor ... LIMIT) để job chạy với bộ nhớ phẳng,
+ * không load Plan/PlanMember/Task entity vào heap.
+ */
+public interface ReminderQueryRepository extends org.springframework.data.repository.Repository<PlanMember, Integer> {
+
+    /**
+     * Thành viên của các plan ACTIVE (đang diễn ra vào ngày :date) KHÔNG có check-in nào trong ngày đó.
+     */
+    @Query(value = "SELECT pm.id AS memberId, pm.user_id AS userId, " +
+                   "       p.title AS planTitle, p.shareable_link AS shareableLink " +
+                   "FROM plan_members pm " +
+                   "JOIN plans p ON p.id = pm.plan_id " +
+                   "WHERE p.status = 'ACTIVE' " +
+                   "  AND p.start_date <= :date " +
+                   "  AND p.start_date + (p.duration_in_days - 1) >= :date " +
+                   "  AND pm.id > :afterMemberId " +
+                   "  AND NOT EXISTS (SELECT 1 FROM check_in_events ce " +
+                   "                  WHERE ce.plan_member_id = pm.id " +
+                   "                    AND ce.check_in_timestamp >= :dayStart " +
+                   "                    AND ce.check_in_timestamp < :dayEnd) " +
+                   "ORDER BY pm.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<CheckinReminderRow> findMembersWithoutCheckIn(@Param("date") LocalDate date,
+                                                       @Param("dayStart") LocalDateTime dayStart,
+                                                       @Param("dayEnd") LocalDateTime dayEnd,
+                                                       @Param("afterMemberId") Integer afterMemberId,
+                                                       @Param("limit") int limit);
+
+    /**
+     * Các cặp (thành viên, task của ngày :date) có deadline trong khoảng (:from, :to)
+     * mà thành viên chưa check-in task đó trong ngày. Keyset theo (memberId, taskId).
+     * Task gồm task cụ thể và task lặp lại từ template của những ngày chưa materialize
+     * (mang id ảo âm giống TaskOccurrenceResolver, nên keyset phải bắt đầu từ Long.MIN_VALUE).
+     */
+    @Query(value = "SELECT pm.id AS memberId, pm.user_id AS userId, " +
+                   "       t.id AS taskId, t.description AS taskDescription, " +
+                   "       to_char(t.deadline_time, 'HH24:MI') AS deadlineTime, " +
+                   "       p.title AS planTitle, p.shareable_link AS shareableLink " +
+                   "FROM (SELECT pt.id, pt.plan_id, pt.description, pt.deadline_time " +
+                   "      FROM plan_tasks pt WHERE pt.task_date = :date " +
+                   "      UNION ALL " +
+                   "      SELECT -(tt.id * 100000 + (CAST(:date AS DATE) - tp.start_date)), tt.plan_id, tt.description, tt.deadline_time " +
+                   "      FROM plan_task_templates tt " +
+                   "      JOIN plans tp ON tp.id = tt.plan_id " +
+                   "      WHERE CAST(:date AS DATE) BETWEEN tp.start_date AND tp.start_date + (tp.duration_in_days - 1) " +
+                   "        AND NOT EXISTS (SELECT 1 FROM plan_task_days d " +
+                   "                        WHERE d.plan_id = tt.plan_id AND d.task_date = :date)) t " +
+                   "JOIN plans p ON p.id = t.plan_id " +
+                   "JOIN plan_members pm ON pm.plan_id = p.id " +
+                   "WHERE p.status = 'ACTIVE' " +
+                   "  AND t.deadline_time > :from AND t.deadline_time < :to " +
+                   "  AND (pm.id > :afterMemberId OR (pm.id = :afterMemberId AND t.id > :afterTaskId)) " +
+                   "  AND NOT EXISTS (SELECT 1 FROM check_in_tasks ct " +
+                   "                  JOIN check_in_events ce ON ce.id = ct.check_in_event_id " +
+                   "                  WHERE ce.plan_member_id = pm.id AND ct.task_id = t.id " +
+                   "                    AND ce.check_in_timestamp >= :dayStart " +
+                   "                    AND ce.check_in_timestamp < :dayEnd) " +
+                   "ORDER BY pm.id, t.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<DeadlineReminderRow> findPendingTasksWithUpcomingDeadline(@Param("date") LocalDate date,
+                                                                   @Param("from") LocalTime from,
+                                                                   @Param("to") LocalTime to,
+                                                                   @Param("dayStart") LocalDateTime dayStart,
+                                                                   @Param("dayEnd") LocalDateTime dayEnd,
+                                                                   @Param("afterMemberId") Integer afterMemberId,
+                                                                   @Param("afterTaskId") Long afterTaskId,
+                                                                   @Param("limit") int limit);
+
+    /**
+     * Tiến độ của từng thành viên trong các plan ACTIVE có ít nhất 2 thành viên
+     * và đã bắt đầu trước :latestStartDate. Số ngày check-in được đếm bằng COUNT(DISTINCT ngày).
+     * Keyset theo (planId, memberId) để các thành viên cùng plan nằm liền nhau.
+     */
+    @Query(value = "SELECT pm.id AS memberId, pm.user_id AS userId, " +
+                   "       p.id AS planId, p.title AS planTitle, p.shareable_link AS shareableLink, " +
+                   "       COALESCE(NULLIF(e.fullname, ''), NULLIF(c.full_name, ''), u.email) AS displayName, " +
+                   "       (CAST(:date AS date) - p.start_date + 1) AS daysSoFar, " +
+                   "       p.duration_in_days AS durationInDays, " +
+                   "       (SELECT COUNT(DISTINCT CAST(ce.check_in_timestamp AS date)) FROM check_in_events ce " +
+                   "        WHERE ce.plan_member_id = pm.id AND ce.check_in_timestamp < :dayEnd) AS checkedInDays " +
+                   "FROM plan_members pm " +
+                   "JOIN plans p ON p.id = pm.plan_id " +
+                   "JOIN users u ON u.id = pm.user_id " +
+                   "LEFT JOIN employees e ON e.user_id = u.id " +
+                   "LEFT JOIN customers c ON c.user_id = u.id " +
+                   "WHERE p.status = 'ACTIVE' " +
+                   "  AND p.start_date <= :latestStartDate " +
+                   "  AND p.start_date + (p.duration_in_days - 1) >= :date " +
+                   "  AND (SELECT COUNT(*) FROM plan_members m2 WHERE m2.plan_id = p.id) >= 2 " +
+                   "  AND (p.id > :afterPlanId OR (p.id = :afterPlanId AND pm.id > :afterMemberId)) " +
+                   "ORDER BY p.id, pm.id " +
+                   "LIMIT :limit",
+           nativeQuery = true)
+    List<MemberProgressRow> findMemberProgress(@Param("date") LocalDate date,
+                                               @Param("latestStartDate") LocalDate latestStartDate,
+                                               @Param("dayEnd") LocalDateTime dayEnd,
+                                               @Param("afterPlanId") Integer afterPlanId,
+                                               @Param("afterMemberId") Integer afterMemberId,
+                                               @Param("limit") int limit);
+
+    /**
+     * Danh sách thành viên (dạng tham chiếu gọn) của một nhóm plan.
+     */
+    @Query(value = "SELECT pm.plan_id AS planId, pm.id AS memberId, pm.user_id AS userId " +
+                   "FROM plan_members pm WHERE pm.plan_id IN (:planIds)",
+           nativeQuery = true)
+    List<PlanMemberRef> findMemberRefsByPlanIds(@Param("planIds") Collection<Integer> planIds);
+}
@@ -0,0 +1,198 @@
+package com.example.demo.notification.service;
+
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
+import com.example.demo.notification.entity.Notification;
+import com.example.demo.notification.repository.NotificationRepository;
+import com.example.demo.user.repository.UserRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Gom thông báo thành lô (micro-batching) trước khi ghi DB.
+ *
+ * Luồng ghi nền lấy thông báo từ hàng đợi, chờ thêm tối đa linger-ms hoặc tới khi đủ max-rows,
+ * rồi ghi cả lô trong 1 transaction (saveAll + JDBC batch, driver gộp thành INSERT nhiều dòng).
+ * Sau khi commit, bộ đếm chưa đọc của mỗi người nhận được cộng 1 lần cho cả lô ({@link UnreadNotificationCounter}).
+ * Hàng đợi đầy thì luồng gọi tự ghi phần tràn (backpressure, không làm mất thông báo).
+ * Lô ghi lỗi (VD: 1 người nhận đã bị xóa -> vi phạm FK) được chia đôi và ghi lại từng nửa,
+ * chỉ bỏ đúng những dòng lỗi.
+ */
+@Slf4j
+@Component
+public class NotificationBatchWriter {
+
+    private final NotificationRepository notificationRepository;
+    private final UserRepository userRepository;
+    private final UnreadNotificationCounter unreadNotificationCounter;
+    private final TransactionTemplate writeTransaction;
+
+    @Value("${app.notification.batch.max-rows:500}")
+    private int maxRows = 500;
+
+    @Value("${app.notification.batch.linger-ms:20}")
+    private long lingerMs = 20;
+
+    @Value("${app.notification.batch.queue-capacity:50000}")
+    private int queueCapacity = 50_000;
+
+    private BlockingQueue<CreateNotificationRequest> queue;
+    private Thread worker;
+    private volatile boolean running;
+
+    public NotificationBatchWriter(NotificationRepository notificationRepository,
+                                   UserRepository userRepository,
+                                   UnreadNotificationCounter unreadNotificationCounter,
+                                   PlatformTransactionManager transactionManager) {
+        this.notificationRepository = notificationRepository;
+        this.userRepository = userRepository;
+        this.unreadNotificationCounter = unreadNotificationCounter;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        running = true;
+        worker = new Thread(this::runLoop, "notification-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        // Ghi nốt phần còn lại trước khi tắt
+        flush();
+    }
+
+    /**
+     * Đưa thông báo vào hàng đợi ghi. Không chặn luồng gọi trừ khi hàng đợi đầy.
+     */
+    public void enqueue(Collection<CreateNotificationRequest> requests) {
+        List<CreateNotificationRequest> overflow = new ArrayList<>();
+        for (CreateNotificationRequest request : requests) {
+            if (!queue.offer(request)) {
+                overflow.add(request);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            log.warn("Notification queue is full ({}), writing {} notifications on caller thread", queueCapacity, overflow.size());
+            for (int from = 0; from < overflow.size(); from += maxRows) {
+                write(overflow.subList(from, Math.min(from + maxRows, overflow.size())));
+            }
+        }
+    }
+
+    /**
+     * Ghi đồng bộ toàn bộ thông báo đang chờ (theo lô max-rows).
+     */
+    void flush() {
+        if (queue == null) {
+            return;
+        }
+        List<CreateNotificationRequest> batch = new ArrayList<>();
+        while (queue.drainTo(batch, maxRows) > 0) {
+            write(batch);
+            batch = new ArrayList<>();
+        }
+    }
+
+    private void runLoop() {
+        while (running) {
+            try {
+                List<CreateNotificationRequest> batch = nextBatch();
+                // Bị ngắt giữa lúc gom: vẫn ghi lô đã lấy khỏi hàng đợi (flush() chỉ thấy phần còn trong hàng đợi).
+                // Tạm xóa cờ ngắt để việc lấy connection không bị hủy, ghi xong mới dừng.
+                boolean interrupted = Thread.interrupted();
+                write(batch);
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error in notification writer loop: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Chờ thông báo đầu tiên, sau đó gom thêm trong tối đa linger-ms hoặc tới khi đủ max-rows.
+     * Bị ngắt trong lúc gom thì trả về phần đã lấy (cờ ngắt được đặt lại), không làm mất thông báo.
+     */
+    private List<CreateNotificationRequest> nextBatch() throws InterruptedException {
+        List<CreateNotificationRequest> batch = new ArrayList<>();
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (batch.size() < maxRows) {
+            queue.drainTo(batch, maxRows - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= maxRows || remaining <= 0) {
+                break;
+            }
+            CreateNotificationRequest next;
+            try {
+                next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return batch;
+            }
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    private void write(List<CreateNotificationRequest> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            writeTransaction.executeWithoutResult(status -> notificationRepository.saveAll(batch.stream()
+                    // getReferenceById chỉ tạo proxy theo ID, không query bảng users
+                    .map(req -> Notification.builder()
+                            .recipient(userRepository.getReferenceById(req.getRecipientId()))
+                            .message(req.getMessage())
+                            .link(req.getLink())
+                            .build())
+                    .toList()));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                log.error("Dropping notification for recipient {}: {}", batch.get(0).getRecipientId(), e.getMessage(), e);
+                return;
+            }
+            // Chia đôi để cô lập dòng lỗi: k dòng lỗi tốn khoảng k * log2(n) lần ghi thêm
+            log.warn("Failed to write batch of {} notifications ({}), retrying in halves", batch.size(), e.getMessage());
+            int middle = batch.size() / 2;
+            write(batch.subList(0, middle));
+            write(batch.subList(middle, batch.size()));
+            return;
+        }
+        log.debug("Wrote batch of {} notifications", batch.size());
+        unreadNotificationCounter.recordCreated(batch.stream()
+                .collect(Collectors.groupingBy(CreateNotificationRequest::getRecipientId, Collectors.counting())));
+    }
+}
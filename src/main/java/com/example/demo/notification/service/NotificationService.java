@@ -1,13 +1,29 @@
 package com.example.demo.notification.service;
 
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
 import com.example.demo.notification.dto.response.NotificationResponse;
+import com.example.demo.notification.dto.response.UnreadCountResponse;
 import com.example.demo.user.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+
 public interface NotificationService {
     void createNotification(User recipient, String message, String link);
+
+    /**
+     * Tạo nhiều thông báo, ghi theo lô (dùng cho các job gửi hàng loạt và mention nhiều người).
+     * Ghi bất đồng bộ: thông báo được gom với các lời gọi khác trong vài ms rồi INSERT một lần.
+     * @param requests Danh sách thông báo, người nhận xác định bằng ID.
+     */
+    void createNotifications(Collection<CreateNotificationRequest> requests);
     Page<NotificationResponse> getNotificationsForUser(String userEmail, Pageable pageable);
     void markNotificationAsRead(Long notificationId, String userEmail);
     void markAllAsReadForUser(String userEmail); // Thêm phương thức này
+
+    /**
+     * Số thông báo chưa đọc (lấy từ bộ đếm trong bộ nhớ, chỉ COUNT lần đầu).
+     */
+    UnreadCountResponse getUnreadCount(String userEmail);
 }
\ No newline at end of file
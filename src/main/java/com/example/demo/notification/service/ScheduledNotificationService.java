@@ -6,10 +6,13 @@ public interface ScheduledNotificationService {
      */
     void sendCheckinReminders();
 
-	void sendEncouragementNotifications();
+    /**
+     * Nhắc các thành viên về những task trong ngày sắp đến hạn (trong vòng 1 giờ) mà chưa check-in.
+     */
+    void sendDeadlineReminders();
 
     /**
-     * (Tùy chọn) Gửi thông báo động viên/nhắc nhở khi có thành viên chậm tiến độ.
+     * Gửi thông báo động viên/nhắc nhở khi có thành viên chậm tiến độ.
      */
-    // void sendEncouragementNotifications();
+    void sendEncouragementNotifications();
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.example.demo.notification.service;
+
+import com.example.demo.notification.dto.projection.UnreadCountRow;
+import com.example.demo.notification.repository.NotificationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Bộ đếm thông báo chưa đọc theo người dùng.
+ *
+ * Lần đầu đọc sẽ COUNT trên partial index (recipient_id WHERE is_read = false), sau đó bộ đếm
+ * được cộng khi có thông báo mới và trừ khi đọc / đọc tất cả. Mỗi thay đổi được đẩy tới
+ * /topic/user/{id}/notifications dạng {type: UNREAD_COUNT, delta, unreadCount}.
+ * Thay đổi chạy song song với lần nạp đầu có thể làm lệch bộ đếm; job đối soát định kỳ đếm lại
+ * các user đang cache và sửa chênh lệch.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UnreadNotificationCounter {
+
+    private static final int RECONCILE_CHUNK_SIZE = 500;
+
+    private final NotificationRepository notificationRepository;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${app.notification.unread.cache-max-size:50000}")
+    private int maxSize = 50_000;
+
+    private final Map<Integer, AtomicLong> counters = new ConcurrentHashMap<>();
+
+    public long getUnreadCount(Integer userId) {
+        AtomicLong counter = counters.get(userId);
+        if (counter != null) {
+            return counter.get();
+        }
+        long count = notificationRepository.countByRecipientIdAndReadFalse(userId);
+        if (counters.size() >= maxSize) {
+            evictSome();
+        }
+        return counters.computeIfAbsent(userId, id -> new AtomicLong(count)).get();
+    }
+
+    /**
+     * Thông báo mới đã được ghi: số lượng theo người nhận.
+     */
+    public void recordCreated(Map<Integer, Long> countByRecipient) {
+        afterCommit(() -> countByRecipient.forEach((userId, count) -> apply(userId, count, null)));
+    }
+
+    /**
+     * Người dùng đã đọc {@code count} thông báo.
+     */
+    public void recordRead(Integer userId, long count) {
+        if (count > 0) {
+            afterCommit(() -> apply(userId, -count, null));
+        }
+    }
+
+    /**
+     * Người dùng đã đọc tất cả ({@code count} thông báo vừa chuyển sang đã đọc).
+     */
+    public void recordAllRead(Integer userId, long count) {
+        afterCommit(() -> apply(userId, -count, 0L));
+    }
+
+    /**
+     * Đếm lại từ DB cho các user đang có bộ đếm trong bộ nhớ, sửa và đẩy phần chênh lệch.
+     */
+    @Scheduled(fixedDelayString = "${app.notification.unread.reconcile-ms:300000}",
+               initialDelayString = "${app.notification.unread.reconcile-ms:300000}")
+    public void reconcile() {
+        List<Integer> userIds = new ArrayList<>(counters.keySet());
+        int corrected = 0;
+        for (int from = 0; from < userIds.size(); from += RECONCILE_CHUNK_SIZE) {
+            List<Integer> chunk = userIds.subList(from, Math.min(from + RECONCILE_CHUNK_SIZE, userIds.size()));
+            Map<Integer, Long> actual = notificationRepository.countUnreadByRecipientIds(chunk).stream()
+                    .collect(Collectors.toMap(UnreadCountRow::getRecipientId, UnreadCountRow::getUnreadCount));
+            for (Integer userId : chunk) {
+                AtomicLong counter = counters.get(userId);
+                long expected = actual.getOrDefault(userId, 0L);
+                if (counter == null) {
+                    continue;
+                }
+                long previous = counter.getAndSet(expected);
+                if (previous != expected) {
+                    corrected++;
+                    push(userId, expected - previous, expected);
+                }
+            }
+        }
+        if (corrected > 0) {
+            log.info("[UnreadNotificationCounter] Reconciled {} of {} cached counters", corrected, userIds.size());
+        }
+    }
+
+    private void apply(Integer userId, long delta, Long absoluteValue) {
+        AtomicLong counter = counters.get(userId);
+        Long unreadCount = null;
+        if (counter != null) {
+            unreadCount = absoluteValue != null
+                    ? setAndGet(counter, absoluteValue)
+                    : counter.updateAndGet(value -> Math.max(0, value + delta));
+        }
+        push(userId, delta, unreadCount);
+    }
+
+    private static long setAndGet(AtomicLong counter, long value) {
+        counter.set(value);
+        return value;
+    }
+
+    private void push(Integer userId, long delta, Long unreadCount) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("type", "UNREAD_COUNT");
+        payload.put("delta", delta);
+        // Chỉ có giá trị tuyệt đối khi bộ đếm đã nạp; client chưa nạp thì gọi /unread-count
+        if (unreadCount != null) {
+            payload.put("unreadCount", unreadCount);
+        }
+        try {
+            messagingTemplate.convertAndSend("/topic/user/" + userId + "/notifications", payload);
+        } catch (Exception e) {
+            log.error("Error pushing unread count to user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void evictSome() {
+        // Đầy: bỏ bớt các bộ đếm bất kỳ, chúng sẽ được đếm lại khi cần
+        Iterator<Integer> it = counters.keySet().iterator();
+        int toRemove = Math.max(1, maxSize / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.example.demo.notification.service.impl;
 
+import com.example.demo.config.async.AsyncWorkload;
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
 import com.example.demo.notification.dto.response.NotificationResponse;
+import com.example.demo.notification.dto.response.UnreadCountResponse;
 import com.example.demo.notification.entity.Notification;
 import com.example.demo.notification.mapper.NotificationMapper;
 import com.example.demo.notification.repository.NotificationRepository;
+import com.example.demo.notification.service.NotificationBatchWriter;
 import com.example.demo.notification.service.NotificationService;
+import com.example.demo.notification.service.UnreadNotificationCounter;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
@@ -15,6 +20,12 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -23,8 +34,10 @@ public class NotificationServiceImpl implements NotificationService {
     private final NotificationRepository notificationRepository;
     private final UserRepository userRepository;
     private final NotificationMapper notificationMapper;
+    private final NotificationBatchWriter notificationBatchWriter;
+    private final UnreadNotificationCounter unreadNotificationCounter;
 
-    @Async("taskExecutor")
+    @Async(AsyncWorkload.NOTIFICATION_EXECUTOR)
     @Override
     @Transactional
     public void createNotification(User recipient, String message, String link) {
@@ -34,6 +47,30 @@ public class NotificationServiceImpl implements NotificationService {
                 .link(link)
                 .build();
         notificationRepository.save(notification);
+        unreadNotificationCounter.recordCreated(Map.of(recipient.getId(), 1L));
+    }
+
+    /**
+     * Đưa vào {@link NotificationBatchWriter} để ghi theo lô. Nếu đang trong transaction ghi thì chỉ
+     * đưa vào hàng đợi sau khi commit (rollback thì không gửi thông báo).
+     */
+    @Override
+    public void createNotifications(Collection<CreateNotificationRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return;
+        }
+        List<CreateNotificationRequest> pending = List.copyOf(requests);
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    notificationBatchWriter.enqueue(pending);
+                }
+            });
+        } else {
+            notificationBatchWriter.enqueue(pending);
+        }
     }
 
     @Override
@@ -57,6 +94,7 @@ public class NotificationServiceImpl implements NotificationService {
         if (!notification.isRead()) { // Chỉ cập nhật nếu chưa đọc
             notification.setRead(true);
             notificationRepository.save(notification);
+            unreadNotificationCounter.recordRead(user.getId(), 1);
         }
     }
 
@@ -65,10 +103,20 @@ public class NotificationServiceImpl implements NotificationService {
     @Transactional
     public void markAllAsReadForUser(String userEmail) {
         User user = findUserByEmail(userEmail);
-        notificationRepository.markAllAsReadForRecipient(user.getId());
+        int updated = notificationRepository.markAllAsReadForRecipient(user.getId());
+        unreadNotificationCounter.recordAllRead(user.getId(), updated);
     }
     // --- KẾT THÚC THÊM ---
 
+    @Override
+    @Transactional(readOnly = true)
+    public UnreadCountResponse getUnreadCount(String userEmail) {
+        User user = findUserByEmail(userEmail);
+        return UnreadCountResponse.builder()
+                .unreadCount(unreadNotificationCounter.getUnreadCount(user.getId()))
+                .build();
+    }
+
     private User findUserByEmail(String email) {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với email: " + email));
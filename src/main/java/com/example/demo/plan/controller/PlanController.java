@@ -6,6 +6,7 @@ import com.example.demo.plan.dto.response.PlanPublicResponse;
 import com.example.demo.plan.dto.response.PlanSummaryResponse;
 import com.example.demo.plan.dto.response.TaskResponse;
 import com.example.demo.plan.service.PlanService;
+import com.example.demo.shared.dto.response.PlanEventsResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -53,10 +54,11 @@ public class PlanController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<PlanDetailResponse> joinPlan(
             @PathVariable String shareableLink,
+            @RequestParam(value = "includeTasks", defaultValue = "true") boolean includeTasks,
             Authentication authentication
     ) {
         String email = authentication.getName();
-        PlanDetailResponse response = planService.joinPlan(shareableLink, email);
+        PlanDetailResponse response = planService.joinPlan(shareableLink, email, includeTasks);
         return ResponseEntity.ok(response);
     }
 
@@ -65,10 +67,12 @@ public class PlanController {
     @PreAuthorize("isAuthenticated()") // Vẫn yêu cầu đăng nhập để xem
     public ResponseEntity<?> getPlanDetails(
             @PathVariable String shareableLink,
+            // includeTasks=false: chỉ trả header + members, task lấy qua /tasks/range
+            @RequestParam(value = "includeTasks", defaultValue = "true") boolean includeTasks,
             Authentication authentication
     ) {
         String email = authentication.getName();
-        Object response = planService.getPlanDetails(shareableLink, email);
+        Object response = planService.getPlanDetails(shareableLink, email, includeTasks);
         
         // Trả về DTO tương ứng (Public hoặc Detail)
         if (response instanceof PlanDetailResponse) {
@@ -108,16 +112,43 @@ public class PlanController {
     }
     // === KẾT THÚC PHẦN SỬA LỖI ===
 
+    // Lấy task theo cửa sổ ngày (kèm số comment/attachment), dùng cùng với getPlanDetails?includeTasks=false
+    @GetMapping("/{shareableLink}/tasks/range")
+    @PreAuthorize("@planSecurity.isMember(#shareableLink, authentication.name)")
+    public ResponseEntity<List<TaskResponse>> getTasksInRange(
+            @PathVariable String shareableLink,
+            @RequestParam("from") LocalDate from,
+            @RequestParam("to") LocalDate to,
+            Authentication authentication
+    ) {
+        String email = authentication.getName();
+        List<TaskResponse> tasks = planService.getTasksInRange(shareableLink, from, to, email);
+        return ResponseEntity.ok(tasks);
+    }
+
+    // Client kết nối lại WebSocket: lấy các sự kiện bỏ lỡ sau lastSeenVersion (reset = true -> tải lại plan);
+    // nhiều node: gọi 1 lần cho mỗi epoch (origin) client đã thấy
+    @GetMapping("/{shareableLink}/events")
+    @PreAuthorize("@planSecurity.isMember(#shareableLink, authentication.name)")
+    public ResponseEntity<PlanEventsResponse> getPlanEvents(
+            @PathVariable String shareableLink,
+            @RequestParam(value = "epoch", required = false) String epoch,
+            @RequestParam(value = "lastSeenVersion", defaultValue = "0") long lastSeenVersion
+    ) {
+        return ResponseEntity.ok(planService.getPlanEventsSince(shareableLink, epoch, lastSeenVersion));
+    }
+
     @PatchMapping("/{shareableLink}/details")
     // SỬA DÒNG DƯỚI ĐÂY: "isPlanOwner" -> "isOwner"
     @PreAuthorize("@planSecurity.isOwner(#shareableLink, authentication.name)")
     public ResponseEntity<PlanDetailResponse> updatePlanDetails(
             @PathVariable String shareableLink,
             @Valid @RequestBody UpdatePlanDetailsRequest request,
+            @RequestParam(value = "includeTasks", defaultValue = "true") boolean includeTasks,
             Authentication authentication
     ) {
         String email = authentication.getName();
-        PlanDetailResponse response = planService.updatePlanDetails(shareableLink, request, email);
+        PlanDetailResponse response = planService.updatePlanDetails(shareableLink, request, email, includeTasks);
         return ResponseEntity.ok(response);
     }
 
@@ -164,10 +195,11 @@ public class PlanController {
     @PreAuthorize("@planSecurity.isOwner(#shareableLink, authentication.name)")
     public ResponseEntity<PlanDetailResponse> archivePlan(
             @PathVariable String shareableLink,
+            @RequestParam(value = "includeTasks", defaultValue = "true") boolean includeTasks,
             Authentication authentication
     ) {
         String email = authentication.getName();
-        PlanDetailResponse response = planService.archivePlan(shareableLink, email);
+        PlanDetailResponse response = planService.archivePlan(shareableLink, email, includeTasks);
         return ResponseEntity.ok(response);
     }
 
@@ -176,10 +208,11 @@ public class PlanController {
     @PreAuthorize("@planSecurity.isOwnerRegardlessOfStatus(#shareableLink, authentication.name)")
     public ResponseEntity<PlanDetailResponse> unarchivePlan(
             @PathVariable String shareableLink,
+            @RequestParam(value = "includeTasks", defaultValue = "true") boolean includeTasks,
             Authentication authentication
     ) {
         String email = authentication.getName();
-        PlanDetailResponse response = planService.unarchivePlan(shareableLink, email);
+        PlanDetailResponse response = planService.unarchivePlan(shareableLink, email, includeTasks);
         return ResponseEntity.ok(response);
     }
 
@@ -0,0 +1,14 @@
+package com.example.demo.plan.dto.projection;
+
+import com.example.demo.plan.entity.MemberRole;
+
+/**
+ * Một dòng (plan, thành viên, vai trò) dùng để dựng PlanMembershipIndex.
+ * userId/role là null khi plan chưa có thành viên nào (LEFT JOIN).
+ */
+public interface PlanMembershipRow {
+    Integer getPlanId();
+    String getShareableLink();
+    Integer getUserId();
+    MemberRole getRole();
+}
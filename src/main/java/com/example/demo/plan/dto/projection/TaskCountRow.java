@@ -0,0 +1,9 @@
+package com.example.demo.plan.dto.projection;
+
+/**
+ * Số lượng (comment / attachment) của một task, dùng cho các truy vấn đếm theo lô (GROUP BY task).
+ */
+public interface TaskCountRow {
+    Long getTaskId();
+    Long getCount();
+}
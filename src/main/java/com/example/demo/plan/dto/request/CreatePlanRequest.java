@@ -5,9 +5,11 @@ import java.time.LocalTime;
 import java.util.List;
 import java.util.ArrayList;
 
+import com.example.demo.plan.service.TaskOccurrenceResolver;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -30,6 +32,7 @@ public class CreatePlanRequest {
 
     @NotNull(message = "Thời lượng không được để trống")
     @Min(value = 1, message = "Thời lượng phải ít nhất là 1 ngày")
+    @Max(value = TaskOccurrenceResolver.DAY_FACTOR - 1, message = "Thời lượng tối đa là " + (TaskOccurrenceResolver.DAY_FACTOR - 1) + " ngày")
     private Integer durationInDays;
 
     @NotNull(message = "Ngày bắt đầu không được để trống")
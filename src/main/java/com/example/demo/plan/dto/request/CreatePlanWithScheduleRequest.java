@@ -1,7 +1,9 @@
 package com.example.demo.plan.dto.request;
 
+import com.example.demo.plan.service.TaskOccurrenceResolver;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.FutureOrPresent;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -20,6 +22,7 @@ public class CreatePlanWithScheduleRequest {
     private String title;
     private String description;
     @Min(1)
+    @Max(TaskOccurrenceResolver.DAY_FACTOR - 1)
     private int durationInDays;
     private String dailyGoal;
     @NotNull @FutureOrPresent
@@ -1,6 +1,8 @@
 package com.example.demo.plan.dto.request;
 
+import com.example.demo.plan.service.TaskOccurrenceResolver;
 import jakarta.validation.Valid; // Thêm import
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size; // Thêm import
@@ -21,6 +23,7 @@ public class UpdatePlanRequest {
     private String description;
 
     @Min(value = 1, message = "Thời lượng phải ít nhất là 1 ngày")
+    @Max(value = TaskOccurrenceResolver.DAY_FACTOR - 1, message = "Thời lượng tối đa là " + (TaskOccurrenceResolver.DAY_FACTOR - 1) + " ngày")
     private Integer durationInDays;
 
     private String dailyGoal;
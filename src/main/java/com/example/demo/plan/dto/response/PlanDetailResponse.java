@@ -33,6 +33,10 @@ public class PlanDetailResponse {
     @Builder.Default
     private List<TaskResponse> dailyTasks = new ArrayList<>();
 
+    // Task lặp lại hằng ngày (không nằm trong dailyTasks)
+    @Builder.Default
+    private List<TaskTemplateResponse> taskTemplates = new ArrayList<>();
+
     @Getter
     @Setter
     @Builder
@@ -25,6 +25,10 @@ public class TaskResponse {
     private LocalDate taskDate;
     // --- KẾT THÚC THÊM ---
 
+    // Chỉ có giá trị ở chế độ lấy task theo khoảng ngày (comments/attachments khi đó để trống)
+    private Integer commentCount;
+    private Integer attachmentCount;
+
     @Builder.Default
     private List<TaskCommentResponse> comments = new ArrayList<>();
 
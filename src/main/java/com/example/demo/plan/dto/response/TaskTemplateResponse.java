@@ -0,0 +1,24 @@
+package com.example.demo.plan.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalTime;
+
+/**
+ * Task lặp lại mỗi ngày của plan. Task của một ngày cụ thể lấy qua
+ * GET /plans/{link}/tasks?date= hoặc /tasks/range (đã ghép template + task cụ thể).
+ */
+@Getter
+@Setter
+@Builder
+public class TaskTemplateResponse {
+    private Long id;
+    private String description;
+    private Integer order;
+
+    @JsonFormat(pattern = "HH:mm")
+    private LocalTime deadlineTime;
+}
@@ -22,7 +22,8 @@ import java.util.UUID;
 public class Plan {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plans_seq")
+    @SequenceGenerator(name = "plans_seq", sequenceName = "plans_seq", allocationSize = 50)
     private Integer id;
 
     @Column(nullable = false)
@@ -71,6 +72,11 @@ public class Plan {
     @Builder.Default
     private List<Task> dailyTasks = new ArrayList<>();
 
+    @OneToMany(mappedBy = "plan", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    @OrderBy("order ASC")
+    @Builder.Default
+    private List<TaskTemplate> taskTemplates = new ArrayList<>();
+
     @PrePersist
     protected void onCreate() {
         if (this.shareableLink == null) {
@@ -87,4 +93,9 @@ public class Plan {
         dailyTasks.remove(task);
         task.setPlan(null);
     }
+
+    public void addTaskTemplate(TaskTemplate template) {
+        taskTemplates.add(template);
+        template.setPlan(this);
+    }
 }
\ No newline at end of file
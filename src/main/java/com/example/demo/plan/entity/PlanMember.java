@@ -18,7 +18,8 @@ import java.util.List;
 public class PlanMember {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plan_members_seq")
+    @SequenceGenerator(name = "plan_members_seq", sequenceName = "plan_members_seq", allocationSize = 50)
     private Integer id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -18,7 +18,8 @@ import java.util.List;
 public class Task {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plan_tasks_seq")
+    @SequenceGenerator(name = "plan_tasks_seq", sequenceName = "plan_tasks_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -39,6 +40,10 @@ public class Task {
     private LocalDate taskDate;
     // --- KẾT THÚC THÊM ---
 
+    // Template sinh ra task này (null nếu task được thêm thủ công)
+    @Column(name = "template_id")
+    private Long templateId;
+
     @OneToMany(mappedBy = "task", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @OrderBy("createdAt ASC")
     @Builder.Default
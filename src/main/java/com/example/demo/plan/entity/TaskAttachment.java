@@ -25,7 +25,8 @@ public class TaskAttachment {
     @Column(name = "original_filename", nullable = false)
     private String originalFilename;
 
-    @Column(name = "stored_filename", nullable = false, unique = true)
+    // Không unique: file lưu theo nội dung, upload trùng dùng chung 1 storedFilename
+    @Column(name = "stored_filename", nullable = false)
     private String storedFilename;
 
     @Column(name = "file_path", nullable = false, columnDefinition = "TEXT")
@@ -0,0 +1,39 @@
+package com.example.demo.plan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalTime;
+
+/**
+ * Task lặp lại mỗi ngày của Plan (khi tạo plan với repeatTasks = true).
+ * Chỉ lưu 1 dòng cho mỗi task; các Task cụ thể của một ngày chỉ được tạo ra
+ * khi ngày đó bị chỉnh sửa, bình luận hoặc check-in (xem TaskOccurrenceResolver).
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "plan_task_templates")
+public class TaskTemplate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "plan_task_templates_seq")
+    @SequenceGenerator(name = "plan_task_templates_seq", sequenceName = "plan_task_templates_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "plan_id", nullable = false)
+    private Plan plan;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String description;
+
+    @Column(name = "task_order")
+    private Integer order;
+
+    @Column(name = "deadline_time")
+    private LocalTime deadlineTime;
+}
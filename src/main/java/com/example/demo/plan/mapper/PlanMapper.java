@@ -4,21 +4,26 @@ import com.example.demo.plan.dto.response.PlanDetailResponse;
 import com.example.demo.plan.dto.response.PlanPublicResponse;
 import com.example.demo.plan.dto.response.PlanSummaryResponse;
 import com.example.demo.plan.dto.response.TaskResponse;
+import com.example.demo.plan.dto.response.TaskTemplateResponse;
 import com.example.demo.plan.entity.Plan;
 import com.example.demo.plan.entity.PlanMember;
 import com.example.demo.plan.entity.PlanStatus;
 import com.example.demo.plan.entity.Task;
-import com.example.demo.user.entity.Customer;
-import com.example.demo.user.entity.Employee;
+import com.example.demo.plan.entity.TaskTemplate;
 import com.example.demo.user.entity.User;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.user.service.UserDisplayNameResolver.UserDisplay;
 
 import lombok.RequiredArgsConstructor;
 
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Component
@@ -26,8 +31,21 @@ import java.util.stream.Collectors;
 public class PlanMapper {
 
 	private final TaskMapper taskMapper;
+    private final UserDisplayNameResolver userDisplayNameResolver;
 	
     public PlanDetailResponse toPlanDetailResponse(Plan plan) {
+        return toPlanDetailResponse(plan, true);
+    }
+
+    /**
+     * Chỉ header + members, KHÔNG đụng tới plan.getDailyTasks().
+     * Task được lấy riêng theo khoảng ngày qua GET /plans/{link}/tasks/range.
+     */
+    public PlanDetailResponse toPlanHeaderResponse(Plan plan) {
+        return toPlanDetailResponse(plan, false);
+    }
+
+    private PlanDetailResponse toPlanDetailResponse(Plan plan, boolean includeTasks) {
         if (plan == null) return null;
 
         LocalDate startDate = plan.getStartDate();
@@ -50,13 +68,15 @@ public class PlanMapper {
                 .endDate(endDate)
                 .createdAt(plan.getCreatedAt())
                 .members(plan.getMembers() == null ? Collections.emptyList() :
-                         plan.getMembers().stream()
-                            .map(this::toPlanMemberResponse)
-                            .collect(Collectors.toList()))
-                .dailyTasks(plan.getDailyTasks() == null ? Collections.emptyList() :
+                         toPlanMemberResponses(plan.getMembers()))
+                .dailyTasks(!includeTasks || plan.getDailyTasks() == null ? Collections.emptyList() :
                             plan.getDailyTasks().stream()
                                 .map(this::toTaskResponse)
                                 .collect(Collectors.toList()))
+                .taskTemplates(!includeTasks || plan.getTaskTemplates() == null ? Collections.emptyList() :
+                            plan.getTaskTemplates().stream()
+                                .map(this::toTaskTemplateResponse)
+                                .collect(Collectors.toList()))
                 .build();
     }
 
@@ -98,22 +118,52 @@ public class PlanMapper {
                 .title(plan.getTitle())
                 .description(plan.getDescription())
                 .durationInDays(plan.getDurationInDays())
-                .creatorFullName(getUserFullName(plan.getCreator()))
+                .creatorFullName(plan.getCreator() != null ? userDisplayNameResolver.displayName(plan.getCreator()) : "N/A")
                 .memberCount(plan.getMembers() == null ? 0 : plan.getMembers().size())
                 .build();
     }
 
     public PlanDetailResponse.PlanMemberResponse toPlanMemberResponse(PlanMember member) {
         if (member == null) return null;
-        User user = member.getUser();
+        return toPlanMemberResponse(member, userDisplayNameResolver.get(member.getUser()));
+    }
+
+    /**
+     * Map danh sách thành viên: tên/email của mọi thành viên lấy bằng 1 query.
+     */
+    public List<PlanDetailResponse.PlanMemberResponse> toPlanMemberResponses(Collection<PlanMember> members) {
+        Map<Integer, UserDisplay> users = userDisplayNameResolver.getAll(members.stream()
+                .map(PlanMember::getUser)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toList()));
+        return members.stream()
+                .map(member -> {
+                    User user = member.getUser();
+                    UserDisplay display = user == null ? null : users.get(user.getId());
+                    return toPlanMemberResponse(member, display != null ? display : userDisplayNameResolver.get(user));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private PlanDetailResponse.PlanMemberResponse toPlanMemberResponse(PlanMember member, UserDisplay user) {
         return PlanDetailResponse.PlanMemberResponse.builder()
-                .userId(user != null ? user.getId() : null)
-                .userEmail(user != null ? user.getEmail() : "N/A")
-                .userFullName(getUserFullName(user))
+                .userId(user != null ? user.userId() : null)
+                .userEmail(user != null ? user.email() : "N/A")
+                .userFullName(user != null ? user.displayName() : "N/A")
                 .role(member.getRole() != null ? member.getRole().name() : "N/A")
                 .build();
     }
 
+    private TaskTemplateResponse toTaskTemplateResponse(TaskTemplate template) {
+        return TaskTemplateResponse.builder()
+                .id(template.getId())
+                .description(template.getDescription())
+                .order(template.getOrder())
+                .deadlineTime(template.getDeadlineTime())
+                .build();
+    }
+
     private TaskResponse toTaskResponse(Task task) {
         if (task == null) return null;
         return TaskResponse.builder()
@@ -122,24 +172,11 @@ public class PlanMapper {
                 .order(task.getOrder())
                 .deadlineTime(task.getDeadlineTime())
                 .comments(task.getComments() == null ? Collections.emptyList() :
-                          task.getComments().stream()
-                              .map(taskMapper::toTaskCommentResponse)
-                              .collect(Collectors.toList()))
+                          taskMapper.toTaskCommentResponses(task.getComments()))
                 .attachments(task.getAttachments() == null ? Collections.emptyList() :
                              task.getAttachments().stream()
                                  .map(taskMapper::toTaskAttachmentResponse)
                                  .collect(Collectors.toList()))
                 .build();
     }
-
-    private String getUserFullName(User user) {
-        if (user == null) return "N/A";
-        if (user.getCustomer() != null && user.getCustomer().getFullname() != null) {
-            return user.getCustomer().getFullname();
-        }
-        if (user.getEmployee() != null && user.getEmployee().getFullname() != null) {
-            return user.getEmployee().getFullname();
-        }
-        return user.getEmail();
-    }
-}
\ No newline at end of file
+}
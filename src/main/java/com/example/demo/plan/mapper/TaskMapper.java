@@ -7,14 +7,24 @@ import com.example.demo.plan.entity.Task;
 import com.example.demo.plan.entity.TaskAttachment;
 import com.example.demo.plan.entity.TaskComment;
 import com.example.demo.user.entity.User;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.user.service.UserDisplayNameResolver.UserDisplay;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Component // Đánh dấu là Spring Bean
+@RequiredArgsConstructor
 public class TaskMapper {
 
+    private final UserDisplayNameResolver userDisplayNameResolver;
+
     /**
      * Chuyển đổi Task entity sang TaskResponse DTO.
      * Bao gồm cả việc map danh sách comments và attachments.
@@ -30,9 +40,7 @@ public class TaskMapper {
                 .order(task.getOrder())
                 .deadlineTime(task.getDeadlineTime())
                 .comments(task.getComments() == null ? Collections.emptyList() :
-                          task.getComments().stream()
-                              .map(this::toTaskCommentResponse) // Sử dụng hàm map comment
-                              .collect(Collectors.toList()))
+                          toTaskCommentResponses(task.getComments()))
                 .attachments(task.getAttachments() == null ? Collections.emptyList() :
                              task.getAttachments().stream()
                                  .map(this::toTaskAttachmentResponse) // Sử dụng hàm map attachment
@@ -40,6 +48,26 @@ public class TaskMapper {
                 .build();
     }
 
+    /**
+     * Chuyển đổi Task sang TaskResponse gọn: KHÔNG truy cập comments/attachments (lazy),
+     * chỉ gắn số lượng đã được đếm sẵn theo lô.
+     */
+    public TaskResponse toTaskSummaryResponse(Task task, int commentCount, int attachmentCount) {
+        if (task == null) {
+            return null;
+        }
+
+        return TaskResponse.builder()
+                .id(task.getId())
+                .description(task.getDescription())
+                .order(task.getOrder())
+                .deadlineTime(task.getDeadlineTime())
+                .taskDate(task.getTaskDate())
+                .commentCount(commentCount)
+                .attachmentCount(attachmentCount)
+                .build();
+    }
+
     /**
      * Chuyển đổi TaskComment entity sang TaskCommentResponse DTO.
      */
@@ -47,16 +75,38 @@ public class TaskMapper {
         if (comment == null) {
             return null;
         }
-        User author = comment.getAuthor();
+        return toTaskCommentResponse(comment, userDisplayNameResolver.get(comment.getAuthor()));
+    }
+
+    /**
+     * Map cả luồng bình luận: thông tin tác giả của mọi bình luận lấy bằng 1 query.
+     */
+    public List<TaskCommentResponse> toTaskCommentResponses(Collection<TaskComment> comments) {
+        Map<Integer, UserDisplay> authors = userDisplayNameResolver.getAll(comments.stream()
+                .map(TaskComment::getAuthor)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toList()));
+        return comments.stream()
+                .map(comment -> {
+                    User author = comment.getAuthor();
+                    UserDisplay display = author == null ? null : authors.get(author.getId());
+                    // Tác giả không có trong kết quả (user chưa lưu / đã xóa) -> hiển thị bằng email
+                    return toTaskCommentResponse(comment, display != null ? display : userDisplayNameResolver.get(author));
+                })
+                .collect(Collectors.toList());
+    }
+
+    private TaskCommentResponse toTaskCommentResponse(TaskComment comment, UserDisplay author) {
         return TaskCommentResponse.builder()
                 .id(comment.getId())
                 .content(comment.getContent())
-                .authorEmail(author != null ? author.getEmail() : "N/A")
-                .authorFullName(author != null ? getUserFullName(author) : "Người dùng ẩn danh")
+                .authorEmail(author != null ? author.email() : "N/A")
+                .authorFullName(author != null ? author.displayName() : "Người dùng ẩn danh")
                 .createdAt(comment.getCreatedAt())
                 .updatedAt(comment.getUpdatedAt()) // Thêm mapping updatedAt
                 .taskId(comment.getTask() != null ? comment.getTask().getId() : null)
-                .authorId(author != null ? author.getId() : null)
+                .authorId(author != null ? author.userId() : null)
                 .build();
     }
 
@@ -78,17 +128,4 @@ public class TaskMapper {
                 .taskId(attachment.getTask() != null ? attachment.getTask().getId() : null) // Lấy ID của Task
                 .build();
     }
-
-    // --- HELPER LẤY TÊN ĐẦY ĐỦ (Giống trong các Mapper khác) ---
-    public String getUserFullName(User user) {
-        if (user == null) return "N/A";
-        if (user.getEmployee() != null && user.getEmployee().getFullname() != null && !user.getEmployee().getFullname().isBlank()) {
-            return user.getEmployee().getFullname();
-        }
-        if (user.getCustomer() != null && user.getCustomer().getFullname() != null && !user.getCustomer().getFullname().isBlank()) {
-            return user.getCustomer().getFullname();
-        }
-        return user.getEmail();
-    }
-    // --- KẾT THÚC HELPER ---
 }
\ No newline at end of file
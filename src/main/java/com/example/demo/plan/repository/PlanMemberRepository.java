@@ -1,5 +1,6 @@
 package com.example.demo.plan.repository;
 
+import com.example.demo.plan.dto.projection.PlanMembershipRow;
 import com.example.demo.plan.entity.PlanMember;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -41,4 +42,16 @@ public interface PlanMemberRepository extends JpaRepository<PlanMember, Integer>
      */
     @Query("SELECT COUNT(pm) > 0 FROM PlanMember pm JOIN pm.plan p WHERE p.shareableLink = :shareableLink AND pm.user.id = :userId")
     boolean existsByPlanShareableLinkAndUserId(@Param("shareableLink") String shareableLink, @Param("userId") Integer userId);
-}
\ No newline at end of file
+
+    /**
+     * Toàn bộ (userId, role) của một plan trong 1 query, không load entity.
+     * Dùng để dựng PlanMembershipIndex.
+     */
+    @Query("SELECT p.id AS planId, p.shareableLink AS shareableLink, pm.user.id AS userId, pm.role AS role " +
+           "FROM Plan p LEFT JOIN p.members pm WHERE p.shareableLink = :shareableLink")
+    List<PlanMembershipRow> findMembershipRowsByShareableLink(@Param("shareableLink") String shareableLink);
+
+    @Query("SELECT p.id AS planId, p.shareableLink AS shareableLink, pm.user.id AS userId, pm.role AS role " +
+           "FROM Plan p LEFT JOIN p.members pm WHERE p.id = :planId")
+    List<PlanMembershipRow> findMembershipRowsByPlanId(@Param("planId") Integer planId);
+}
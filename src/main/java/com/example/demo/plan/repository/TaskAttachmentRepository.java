@@ -1,13 +1,23 @@
 package com.example.demo.plan.repository;
 
 import com.example.demo.plan.entity.TaskAttachment;
+import com.example.demo.plan.dto.projection.TaskCountRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List; // Thêm import
 
 @Repository
 public interface TaskAttachmentRepository extends JpaRepository<TaskAttachment, Long> {
     List<TaskAttachment> findByTaskIdOrderByUploadedAtAsc(Long taskId); // Tìm attachment theo Task ID
     // Optional<TaskAttachment> findByStoredFilename(String storedFilename); // Tìm theo tên file lưu trữ nếu cần
-}
\ No newline at end of file
+
+    /**
+     * Đếm attachment của nhiều task trong 1 query (task không có attachment sẽ không có dòng nào).
+     */
+    @Query("SELECT a.task.id AS taskId, COUNT(a) AS count FROM TaskAttachment a WHERE a.task.id IN :taskIds GROUP BY a.task.id")
+    List<TaskCountRow> countByTaskIds(@Param("taskIds") Collection<Long> taskIds);
+}
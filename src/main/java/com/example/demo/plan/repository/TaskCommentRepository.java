@@ -1,12 +1,22 @@
 package com.example.demo.plan.repository;
 
 import com.example.demo.plan.entity.TaskComment;
+import com.example.demo.plan.dto.projection.TaskCountRow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List; // Thêm import
 
 @Repository
 public interface TaskCommentRepository extends JpaRepository<TaskComment, Long> {
     List<TaskComment> findByTaskIdOrderByCreatedAtAsc(Long taskId); // Tìm comment theo Task ID
+
+    /**
+     * Đếm comment của nhiều task trong 1 query (task không có comment sẽ không có dòng nào).
+     */
+    @Query("SELECT c.task.id AS taskId, COUNT(c) AS count FROM TaskComment c WHERE c.task.id IN :taskIds GROUP BY c.task.id")
+    List<TaskCountRow> countByTaskIds(@Param("taskIds") Collection<Long> taskIds);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.example.demo.plan.repository;
 
 import com.example.demo.plan.entity.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query; // --- THÊM IMPORT ---
 import org.springframework.data.repository.query.Param; // --- THÊM IMPORT ---
 import org.springframework.stereotype.Repository;
@@ -33,4 +34,40 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     Optional<Integer> findMaxOrderByPlanIdAndTaskDate(@Param("planId") Long planId, @Param("taskDate") LocalDate taskDate);
     
     // --- KẾT THÚC THÊM ---
-}
\ No newline at end of file
+
+    /**
+     * Lấy các task của Plan trong khoảng ngày [from, to], sắp xếp theo ngày rồi thứ tự.
+     * Dùng cho endpoint lấy task theo cửa sổ ngày (thay vì trả toàn bộ task của plan).
+     */
+    @Query("SELECT t FROM Task t WHERE t.plan.id = :planId AND t.taskDate BETWEEN :from AND :to " +
+           "ORDER BY t.taskDate ASC, t.order ASC")
+    List<Task> findAllByPlanIdAndTaskDateBetween(@Param("planId") Integer planId,
+                                                 @Param("from") LocalDate from,
+                                                 @Param("to") LocalDate to);
+
+    /**
+     * Task cụ thể đã được sinh từ template cho một ngày (dùng để tra id thật từ id ảo).
+     */
+    Optional<Task> findByTemplateIdAndTaskDate(Long templateId, LocalDate taskDate);
+
+    /**
+     * Gán lại thứ tự cho các task của ngày theo vị trí trong mảng :ids (hạng = vị trí * :step)
+     * bằng một câu UPDATE. Task không thuộc (plan, ngày) không bị đụng tới.
+     * @return số task được cập nhật
+     */
+    @Modifying
+    @Query(value = "UPDATE plan_tasks SET task_order = (array_position(CAST(:ids AS BIGINT[]), id) - 1) * :step " +
+                   "WHERE plan_id = :planId AND task_date = :taskDate AND id = ANY(CAST(:ids AS BIGINT[]))",
+           nativeQuery = true)
+    int applyOrder(@Param("planId") Integer planId,
+                   @Param("taskDate") LocalDate taskDate,
+                   @Param("ids") String idsArrayLiteral,
+                   @Param("step") int step);
+
+    /**
+     * Khóa advisory theo (plan, ngày) đến hết transaction: các thao tác add / move / reorder
+     * trên cùng một ngày không tính MAX(order) hay gán hạng chồng lên nhau.
+     */
+    @Query(value = "SELECT 1 FROM (SELECT pg_advisory_xact_lock(:planId, :dayKey)) AS day_lock", nativeQuery = true)
+    Integer lockPlanDay(@Param("planId") Integer planId, @Param("dayKey") int dayKey);
+}
@@ -0,0 +1,36 @@
+package com.example.demo.plan.repository;
+
+import com.example.demo.plan.entity.TaskTemplate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface TaskTemplateRepository extends JpaRepository<TaskTemplate, Long> {
+
+    List<TaskTemplate> findAllByPlanIdOrderByOrderAsc(Integer planId);
+
+    /**
+     * Đánh dấu ngày :date của plan đã được tạo task cụ thể từ template.
+     * @return 1 nếu lần này đánh dấu, 0 nếu ngày đã được đánh dấu trước đó (kể cả bởi request song song).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO plan_task_days (plan_id, task_date) VALUES (:planId, :date) ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int markDayMaterialized(@Param("planId") Integer planId, @Param("date") LocalDate date);
+
+    /**
+     * Các ngày trong [from, to] đã có task cụ thể sinh từ template, trả về dạng số ngày tính từ :from
+     * (tránh phụ thuộc kiểu Java mà driver trả về cho cột DATE trong native query).
+     */
+    @Query(value = "SELECT (task_date - :from) FROM plan_task_days WHERE plan_id = :planId AND task_date BETWEEN :from AND :to",
+           nativeQuery = true)
+    List<Integer> findMaterializedDayOffsets(@Param("planId") Integer planId,
+                                         @Param("from") LocalDate from,
+                                         @Param("to") LocalDate to);
+}
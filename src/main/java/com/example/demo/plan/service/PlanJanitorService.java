@@ -1,5 +1,6 @@
 package com.example.demo.plan.service;
 
+import com.example.demo.feed.service.FeedInbox;
 import com.example.demo.notification.service.NotificationService;
 import com.example.demo.plan.entity.MemberRole;
 import com.example.demo.plan.entity.Plan;
@@ -8,10 +9,11 @@ import com.example.demo.plan.entity.PlanStatus;
 import com.example.demo.plan.repository.PlanMemberRepository;
 import com.example.demo.plan.repository.PlanRepository;
 import com.example.demo.progress.repository.CheckInEventRepository;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
 import com.example.demo.user.entity.User;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,7 +34,9 @@ public class PlanJanitorService {
     private final PlanMemberRepository planMemberRepository;
     private final CheckInEventRepository checkInEventRepository;
     private final NotificationService notificationService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PlanEventSequencer planEventSequencer;
+    private final PlanMembershipIndex planMembershipIndex;
+    private final FeedInbox feedInbox;
 
     /**
      * Scheduled Job: Chạy vào 3:00 AM mỗi ngày.
@@ -77,6 +81,8 @@ public class PlanJanitorService {
                     // 3. Thực hiện xóa khỏi DB
                     plan.getMembers().remove(member); // Cập nhật phía Plan để đồng bộ JPA
                     planMemberRepository.delete(member);
+                    planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
+                    feedInbox.reset(userToRemove.getId());
                     removedCount++;
                 }
             }
@@ -96,11 +102,10 @@ public class PlanJanitorService {
     }
 
     private void notifyPlanUpdate(String shareableLink, Integer removedUserId) {
-        String destination = "/topic/plan/" + shareableLink + "/details";
         Map<String, Object> payload = Map.of(
                 "type", "MEMBER_REMOVED",
                 "userId", removedUserId
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
     }
 }
\ No newline at end of file
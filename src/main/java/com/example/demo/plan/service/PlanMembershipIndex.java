@@ -0,0 +1,225 @@
+package com.example.demo.plan.service;
+
+import com.example.demo.plan.dto.projection.PlanMembershipRow;
+import com.example.demo.plan.entity.MemberRole;
+import com.example.demo.plan.repository.PlanMemberRepository;
+import com.example.demo.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Index (plan, userId) -> MemberRole dùng cho PlanSecurity và các kiểm tra quyền trong service.
+ * Mỗi plan được nạp bằng 1 query projection (không load Plan/PlanMember/User entity), sau đó
+ * mọi kiểm tra isMember/isOwner là tra cứu O(1) trong bộ nhớ.
+ *
+ * Write-through: mọi thao tác làm thay đổi thành viên / vai trò (join, leave, remove,
+ * transfer ownership, janitor, xóa plan) phải gọi {@link #invalidate(Integer, String)}; entry bị xóa sau khi
+ * transaction commit. Index là cục bộ trên mỗi node nên entry còn hết hạn sau {@code ttl-ms}: thay đổi trên
+ * node khác có hiệu lực ở node này chậm nhất sau khoảng đó.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlanMembershipIndex {
+
+    private final PlanMemberRepository planMemberRepository;
+    private final UserRepository userRepository;
+
+    @Value("${app.plan.membership-index.max-size:10000}")
+    private int maxSize = 10_000;
+
+    @Value("${app.plan.membership-index.ttl-ms:30000}")
+    private long ttlMs = 30_000;
+
+    private final Map<String, PlanMembers> byShareableLink = new ConcurrentHashMap<>();
+    private final Map<Integer, PlanMembers> byPlanId = new ConcurrentHashMap<>();
+    // Email -> userId không đổi trong vòng đời tài khoản
+    private final Map<String, Integer> userIdByEmail = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate; kết quả nạp song song với một lần invalidate sẽ không được cache
+    private final AtomicLong generation = new AtomicLong();
+
+    public Optional<MemberRole> findRole(String shareableLink, Integer userId) {
+        if (shareableLink == null || userId == null) {
+            return Optional.empty();
+        }
+        PlanMembers members = fresh(byShareableLink.get(shareableLink));
+        if (members == null) {
+            members = load(() -> planMemberRepository.findMembershipRowsByShareableLink(shareableLink));
+        }
+        return members == null ? Optional.empty() : Optional.ofNullable(members.roles().get(userId));
+    }
+
+    public Optional<MemberRole> findRole(Integer planId, Integer userId) {
+        if (planId == null || userId == null) {
+            return Optional.empty();
+        }
+        PlanMembers members = fresh(byPlanId.get(planId));
+        if (members == null) {
+            members = load(() -> planMemberRepository.findMembershipRowsByPlanId(planId));
+        }
+        return members == null ? Optional.empty() : Optional.ofNullable(members.roles().get(userId));
+    }
+
+    /**
+     * userId của tất cả thành viên plan (rỗng nếu plan không tồn tại).
+     */
+    public Set<Integer> memberUserIds(Integer planId) {
+        if (planId == null) {
+            return Set.of();
+        }
+        PlanMembers members = fresh(byPlanId.get(planId));
+        if (members == null) {
+            members = load(() -> planMemberRepository.findMembershipRowsByPlanId(planId));
+        }
+        return members == null ? Set.of() : members.roles().keySet();
+    }
+
+    /**
+     * @return true nếu tồn tại plan với link này (dù user có là thành viên hay không).
+     */
+    public boolean planExists(String shareableLink) {
+        if (shareableLink == null) {
+            return false;
+        }
+        return fresh(byShareableLink.get(shareableLink)) != null
+                || load(() -> planMemberRepository.findMembershipRowsByShareableLink(shareableLink)) != null;
+    }
+
+    public boolean isMember(String shareableLink, Integer userId) {
+        return findRole(shareableLink, userId).isPresent();
+    }
+
+    public boolean isMember(Integer planId, Integer userId) {
+        return findRole(planId, userId).isPresent();
+    }
+
+    public boolean isOwner(String shareableLink, Integer userId) {
+        return findRole(shareableLink, userId).filter(role -> role == MemberRole.OWNER).isPresent();
+    }
+
+    public boolean isOwner(Integer planId, Integer userId) {
+        return findRole(planId, userId).filter(role -> role == MemberRole.OWNER).isPresent();
+    }
+
+    /**
+     * Tra cứu userId theo email (có cache). Trả về null nếu không tồn tại user.
+     */
+    public Integer resolveUserId(String email) {
+        if (email == null) {
+            return null;
+        }
+        Integer cached = userIdByEmail.get(email);
+        if (cached != null) {
+            return cached;
+        }
+        Integer userId = userRepository.findIdByEmail(email).orElse(null);
+        if (userId != null) {
+            if (userIdByEmail.size() >= maxSize) {
+                userIdByEmail.clear();
+            }
+            userIdByEmail.put(email, userId);
+        }
+        return userId;
+    }
+
+    /**
+     * Xóa plan khỏi index sau khi transaction hiện tại commit (ngay lập tức nếu không có transaction):
+     * xóa sớm hơn thì một request song song có thể nạp lại dữ liệu chưa commit vào index.
+     */
+    public void invalidate(Integer planId, String shareableLink) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(planId, shareableLink);
+                }
+            });
+        } else {
+            evict(planId, shareableLink);
+        }
+    }
+
+    private void evict(Integer planId, String shareableLink) {
+        generation.incrementAndGet();
+        if (planId != null) {
+            PlanMembers removed = byPlanId.remove(planId);
+            if (removed != null) {
+                byShareableLink.remove(removed.shareableLink());
+            }
+        }
+        if (shareableLink != null) {
+            PlanMembers removed = byShareableLink.remove(shareableLink);
+            if (removed != null) {
+                byPlanId.remove(removed.planId());
+            }
+        }
+        log.debug("[PlanMembershipIndex] Invalidated plan id={} link={}", planId, shareableLink);
+    }
+
+    private PlanMembers load(Supplier<List<PlanMembershipRow>> query) {
+        long generationBefore = generation.get();
+        List<PlanMembershipRow> rows = query.get();
+        if (rows.isEmpty()) {
+            return null; // Không có plan -> không cache kết quả rỗng
+        }
+
+        PlanMembershipRow first = rows.get(0);
+        Map<Integer, MemberRole> roles = new HashMap<>();
+        for (PlanMembershipRow row : rows) {
+            if (row.getUserId() != null) {
+                roles.put(row.getUserId(), row.getRole());
+            }
+        }
+        PlanMembers members = new PlanMembers(first.getPlanId(), first.getShareableLink(), Map.copyOf(roles),
+                System.currentTimeMillis() + ttlMs);
+
+        if (generation.get() == generationBefore) {
+            if (byPlanId.size() >= maxSize) {
+                evictSome();
+            }
+            byPlanId.put(members.planId(), members);
+            byShareableLink.put(members.shareableLink(), members);
+        }
+        return members;
+    }
+
+    /**
+     * @return entry nếu còn hạn; entry hết hạn bị bỏ khỏi index (sẽ được nạp lại)
+     */
+    private PlanMembers fresh(PlanMembers members) {
+        if (members == null || members.expiresAt() > System.currentTimeMillis()) {
+            return members;
+        }
+        byPlanId.remove(members.planId(), members);
+        byShareableLink.remove(members.shareableLink(), members);
+        return null;
+    }
+
+    private void evictSome() {
+        // Index đầy: bỏ bớt các entry bất kỳ, chúng sẽ được nạp lại khi cần
+        Iterator<PlanMembers> it = byPlanId.values().iterator();
+        int toRemove = Math.max(1, maxSize / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            PlanMembers members = it.next();
+            it.remove();
+            byShareableLink.remove(members.shareableLink());
+        }
+    }
+
+    private record PlanMembers(Integer planId, String shareableLink, Map<Integer, MemberRole> roles, long expiresAt) {
+    }
+}
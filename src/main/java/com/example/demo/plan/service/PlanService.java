@@ -10,6 +10,7 @@ import com.example.demo.plan.dto.request.UpdatePlanRequest;
 import com.example.demo.plan.dto.response.PlanDetailResponse;
 import com.example.demo.plan.dto.response.PlanSummaryResponse;
 import com.example.demo.plan.dto.response.TaskResponse;
+import com.example.demo.shared.dto.response.PlanEventsResponse;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -18,13 +19,33 @@ public interface PlanService {
 
     PlanDetailResponse createPlan(CreatePlanRequest request, String creatorEmail);
 
-    PlanDetailResponse joinPlan(String shareableLink, String userEmail);
+    default PlanDetailResponse joinPlan(String shareableLink, String userEmail) {
+        return joinPlan(shareableLink, userEmail, true);
+    }
 
-    Object getPlanDetails(String shareableLink, String userEmail);
+    /**
+     * @param includeTasks false -> response chỉ có header + members (dailyTasks rỗng); mặc định trả đầy đủ như trước.
+     *                     Tương tự cho updatePlanDetails / archivePlan / unarchivePlan.
+     */
+    PlanDetailResponse joinPlan(String shareableLink, String userEmail, boolean includeTasks);
+
+    default Object getPlanDetails(String shareableLink, String userEmail) {
+        return getPlanDetails(shareableLink, userEmail, true);
+    }
+
+    /**
+     * @param includeTasks false -> chỉ trả header + members (không serialize task của cả plan),
+     *                     client lấy task qua {@link #getTasksInRange}.
+     */
+    Object getPlanDetails(String shareableLink, String userEmail, boolean includeTasks);
 
     PlanDetailResponse updatePlan(String shareableLink, UpdatePlanRequest request, String userEmail);
 
-    PlanDetailResponse updatePlanDetails(String shareableLink, UpdatePlanDetailsRequest request, String userEmail);
+    default PlanDetailResponse updatePlanDetails(String shareableLink, UpdatePlanDetailsRequest request, String userEmail) {
+        return updatePlanDetails(shareableLink, request, userEmail, true);
+    }
+
+    PlanDetailResponse updatePlanDetails(String shareableLink, UpdatePlanDetailsRequest request, String userEmail, boolean includeTasks);
 
     void leavePlan(String shareableLink, String userEmail);
 
@@ -42,13 +63,32 @@ public interface PlanService {
 
     List<TaskResponse> getTasksByDate(String shareableLink, LocalDate date, String userEmail);
 
+    /**
+     * Lấy task trong khoảng ngày [from, to] (giới hạn trong thời gian của plan),
+     * kèm số comment/attachment được đếm theo lô thay vì danh sách đầy đủ.
+     */
+    List<TaskResponse> getTasksInRange(String shareableLink, LocalDate from, LocalDate to, String userEmail);
+
+    /**
+     * Sự kiện WebSocket của plan có version > lastSeenVersion (client gọi khi kết nối lại).
+     */
+    PlanEventsResponse getPlanEventsSince(String shareableLink, String epoch, long lastSeenVersion);
+
     void removeMemberFromPlan(String shareableLink, Integer memberUserId, String ownerEmail);
 
     void transferOwnership(String shareableLink, TransferOwnershipRequest request, String currentOwnerEmail);
 
-    PlanDetailResponse archivePlan(String shareableLink, String ownerEmail);
+    default PlanDetailResponse archivePlan(String shareableLink, String ownerEmail) {
+        return archivePlan(shareableLink, ownerEmail, true);
+    }
+
+    PlanDetailResponse archivePlan(String shareableLink, String ownerEmail, boolean includeTasks);
+
+    default PlanDetailResponse unarchivePlan(String shareableLink, String ownerEmail) {
+        return unarchivePlan(shareableLink, ownerEmail, true);
+    }
 
-    PlanDetailResponse unarchivePlan(String shareableLink, String ownerEmail);
+    PlanDetailResponse unarchivePlan(String shareableLink, String ownerEmail, boolean includeTasks);
 
     // --- THÊM PHƯƠNG THỨC MỚI ---
     /**
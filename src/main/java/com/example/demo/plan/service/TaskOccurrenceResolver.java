@@ -0,0 +1,210 @@
+package com.example.demo.plan.service;
+
+import com.example.demo.plan.entity.Plan;
+import com.example.demo.plan.entity.Task;
+import com.example.demo.plan.entity.TaskTemplate;
+import com.example.demo.plan.repository.TaskRepository;
+import com.example.demo.plan.repository.TaskTemplateRepository;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Ghép task của một ngày từ template lặp lại (plan_task_templates) và các task cụ thể (plan_tasks).
+ *
+ * Ngày chưa được "materialize": task từ template được trả về dưới dạng Task tạm (không lưu DB)
+ * với id ảo âm = -(templateId * DAY_FACTOR + chỉ số ngày). Khi một ngày bị sửa, bình luận hoặc
+ * check-in, {@link #materializeDay(Plan, LocalDate)} tạo các dòng plan_tasks thật cho ngày đó
+ * (một lần duy nhất, đánh dấu trong plan_task_days). Id ảo vẫn tra được sang id thật sau đó.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TaskOccurrenceResolver {
+
+    // Số ngày tối đa của một plan có thể mã hóa trong id ảo (CreatePlanRequest giới hạn durationInDays theo số này)
+    public static final long DAY_FACTOR = 100_000L;
+
+    private final TaskRepository taskRepository;
+    private final TaskTemplateRepository taskTemplateRepository;
+    private final PlanEventSequencer planEventSequencer;
+
+    public static boolean isVirtualId(Long taskId) {
+        return taskId != null && taskId < 0;
+    }
+
+    public static long virtualId(Long templateId, long dayIndex) {
+        return -(templateId * DAY_FACTOR + dayIndex);
+    }
+
+    /**
+     * Task của plan trong ngày :date (template + task cụ thể), sắp xếp theo thứ tự.
+     */
+    public List<Task> resolveDay(Plan plan, LocalDate date) {
+        return resolveRange(plan, date, date);
+    }
+
+    /**
+     * Task của plan trong khoảng [from, to] (đã nằm trong thời gian plan), sắp theo ngày rồi thứ tự.
+     * Ngày chưa materialize: task template đứng trước, task thêm thủ công đứng sau.
+     */
+    public List<Task> resolveRange(Plan plan, LocalDate from, LocalDate to) {
+        List<Task> concrete = taskRepository.findAllByPlanIdAndTaskDateBetween(plan.getId(), from, to);
+        List<TaskTemplate> templates = taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(plan.getId());
+        if (templates.isEmpty()) {
+            return concrete;
+        }
+
+        Set<LocalDate> materializedDays = taskTemplateRepository.findMaterializedDayOffsets(plan.getId(), from, to).stream()
+                .map(from::plusDays)
+                .collect(Collectors.toSet());
+        Map<LocalDate, List<Task>> concreteByDate = concrete.stream()
+                .collect(Collectors.groupingBy(Task::getTaskDate, TreeMap::new, Collectors.toList()));
+
+        List<Task> result = new ArrayList<>();
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<Task> concreteOfDay = concreteByDate.getOrDefault(date, Collections.emptyList());
+            if (materializedDays.contains(date)) {
+                result.addAll(concreteOfDay);
+                continue;
+            }
+            long dayIndex = ChronoUnit.DAYS.between(plan.getStartDate(), date);
+            for (int i = 0; i < templates.size(); i++) {
+                result.add(toVirtualTask(plan, templates.get(i), date, dayIndex, i));
+            }
+            result.addAll(concreteOfDay);
+        }
+        return result;
+    }
+
+    /**
+     * Tạo các Task thật từ template cho ngày :date nếu ngày đó chưa được tạo.
+     * Task thêm thủ công có sẵn trong ngày được dời xuống sau các task template.
+     * Gửi WebSocket TASKS_MATERIALIZED (id ảo -> id thật) để client cập nhật danh sách đang hiển thị.
+     */
+    public void materializeDay(Plan plan, LocalDate date) {
+        List<TaskTemplate> templates = taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(plan.getId());
+        if (templates.isEmpty() || taskTemplateRepository.markDayMaterialized(plan.getId(), date) == 0) {
+            return;
+        }
+
+        List<Task> existing = taskRepository.findAllByPlanIdAndTaskDateOrderByOrderAsc(plan.getId().longValue(), date);
+        for (int i = 0; i < existing.size(); i++) {
+            existing.get(i).setOrder(TaskOrdering.rankAt(templates.size() + i));
+        }
+
+        long dayIndex = ChronoUnit.DAYS.between(plan.getStartDate(), date);
+        List<Task> created = new ArrayList<>();
+        for (int i = 0; i < templates.size(); i++) {
+            TaskTemplate template = templates.get(i);
+            created.add(Task.builder()
+                    .plan(plan)
+                    .templateId(template.getId())
+                    .description(template.getDescription())
+                    .deadlineTime(template.getDeadlineTime())
+                    .order(TaskOrdering.rankAt(i))
+                    .taskDate(date)
+                    .build());
+        }
+        List<Task> toSave = new ArrayList<>(created);
+        toSave.addAll(existing);
+        taskRepository.saveAll(toSave);
+
+        Map<String, Long> idMapping = new LinkedHashMap<>();
+        for (Task task : created) {
+            idMapping.put(String.valueOf(virtualId(task.getTemplateId(), dayIndex)), task.getId());
+        }
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.TASKS, Map.of(
+                "type", "TASKS_MATERIALIZED",
+                "taskDate", date.toString(),
+                "taskIdMapping", idMapping
+        ));
+        log.info("Materialized {} template tasks for plan {} on {}", created.size(), plan.getShareableLink(), date);
+    }
+
+    /**
+     * Plan chứa task :taskId (id ảo: plan của template), chỉ đọc. Dùng để kiểm tra quyền trước khi
+     * gọi {@link #materialize(Plan, Long)} (việc materialize ghi DB).
+     */
+    public Optional<Plan> findPlanOf(Long taskId) {
+        if (taskId == null) {
+            return Optional.empty();
+        }
+        if (!isVirtualId(taskId)) {
+            return taskRepository.findById(taskId).map(Task::getPlan);
+        }
+        return taskTemplateRepository.findById(-taskId / DAY_FACTOR).map(TaskTemplate::getPlan);
+    }
+
+    /**
+     * Tìm Task thật theo id trong plan :plan (người gọi đã được kiểm tra quyền trên plan); id ảo sẽ
+     * materialize ngày tương ứng trước.
+     * @return empty nếu không tồn tại (hoặc occurrence đã bị xóa).
+     * @throws AccessDeniedException nếu task / template thuộc plan khác
+     */
+    public Optional<Task> materialize(Plan plan, Long taskId) {
+        if (!isVirtualId(taskId)) {
+            Optional<Task> task = taskId == null ? Optional.empty() : taskRepository.findById(taskId);
+            task.ifPresent(t -> ensureInPlan(plan, t.getPlan(), taskId));
+            return task;
+        }
+        long encoded = -taskId;
+        Long templateId = encoded / DAY_FACTOR;
+        long dayIndex = encoded % DAY_FACTOR;
+
+        Optional<TaskTemplate> template = taskTemplateRepository.findById(templateId);
+        if (template.isEmpty()) {
+            return Optional.empty();
+        }
+        ensureInPlan(plan, template.get().getPlan(), taskId);
+        if (dayIndex >= plan.getDurationInDays()) {
+            return Optional.empty();
+        }
+        LocalDate date = plan.getStartDate().plusDays(dayIndex);
+        materializeDay(plan, date);
+        return taskRepository.findByTemplateIdAndTaskDate(templateId, date);
+    }
+
+    /**
+     * Đổi danh sách id (có thể chứa id ảo) của plan :plan sang id thật, giữ nguyên thứ tự, bỏ id ảo không tồn tại.
+     * Id thật được trả nguyên (người gọi lọc theo plan khi nạp task).
+     * @throws AccessDeniedException nếu có id ảo của template thuộc plan khác
+     */
+    public List<Long> materializeIds(Plan plan, Collection<Long> taskIds) {
+        List<Long> result = new ArrayList<>(taskIds.size());
+        for (Long taskId : taskIds) {
+            if (!isVirtualId(taskId)) {
+                result.add(taskId);
+            } else {
+                materialize(plan, taskId).map(Task::getId).ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+
+    private static void ensureInPlan(Plan plan, Plan owner, Long taskId) {
+        if (!owner.getId().equals(plan.getId())) {
+            throw new AccessDeniedException("Công việc ID " + taskId + " không thuộc kế hoạch " + plan.getShareableLink());
+        }
+    }
+
+    private Task toVirtualTask(Plan plan, TaskTemplate template, LocalDate date, long dayIndex, int order) {
+        return Task.builder()
+                .id(virtualId(template.getId(), dayIndex))
+                .plan(plan)
+                .templateId(template.getId())
+                .description(template.getDescription())
+                .deadlineTime(template.getDeadlineTime())
+                .order(TaskOrdering.rankAt(order))
+                .taskDate(date)
+                .build();
+    }
+}
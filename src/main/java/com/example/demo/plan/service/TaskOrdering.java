@@ -0,0 +1,40 @@
+package com.example.demo.plan.service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thứ tự task trong một ngày dùng hạng thưa (0, 1024, 2048, ...):
+ * - Thêm / chuyển task đến ngày khác: đặt sau task cuối cùng (MAX + STEP), không đụng task khác.
+ * - Xóa / chuyển task đi: để lại khoảng trống, không đánh số lại cả ngày.
+ * - Sắp xếp lại: một câu UPDATE duy nhất gán lại hạng theo vị trí trong danh sách.
+ * Client chỉ cần sắp xếp theo order (tăng dần), không dựa vào order là chỉ số liên tiếp.
+ */
+public final class TaskOrdering {
+
+    public static final int STEP = 1024;
+
+    private TaskOrdering() {
+    }
+
+    /** Hạng của phần tử thứ index trong một danh sách đã sắp xếp. */
+    public static int rankAt(int index) {
+        return index * STEP;
+    }
+
+    /** Hạng đứng sau task cuối cùng của ngày (maxOrder = null nếu ngày chưa có task). */
+    public static int after(Integer maxOrder) {
+        return maxOrder == null ? 0 : maxOrder + STEP;
+    }
+
+    /** Khóa advisory cho (plan, ngày) để add / move / reorder trong cùng một ngày chạy tuần tự. */
+    public static int dayKey(LocalDate taskDate) {
+        return (int) taskDate.toEpochDay();
+    }
+
+    /** Literal mảng PostgreSQL ("{1,2,3}") cho câu UPDATE sắp xếp lại. */
+    public static String toArrayLiteral(List<Long> ids) {
+        return ids.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+    }
+}
@@ -1,7 +1,9 @@
 package com.example.demo.plan.service.impl;
 
 import com.example.demo.feed.entity.FeedEventType;
+import com.example.demo.feed.service.FeedInbox;
 import com.example.demo.feed.service.FeedService;
+import com.example.demo.plan.dto.projection.TaskCountRow;
 import com.example.demo.plan.dto.request.CreatePlanRequest;
 import com.example.demo.plan.dto.request.CreatePlanWithScheduleRequest;
 import com.example.demo.plan.dto.request.ManageTaskRequest;
@@ -19,24 +21,34 @@ import com.example.demo.plan.entity.Plan;
 import com.example.demo.plan.entity.PlanMember;
 import com.example.demo.plan.entity.PlanStatus;
 import com.example.demo.plan.entity.Task;
+import com.example.demo.plan.entity.TaskTemplate;
 import com.example.demo.plan.mapper.PlanMapper;
 import com.example.demo.plan.mapper.TaskMapper;
 import com.example.demo.plan.repository.PlanMemberRepository;
 import com.example.demo.plan.repository.PlanRepository;
+import com.example.demo.plan.repository.TaskAttachmentRepository;
+import com.example.demo.plan.repository.TaskCommentRepository;
 import com.example.demo.plan.repository.TaskRepository;
+import com.example.demo.plan.service.PlanMembershipIndex;
 import com.example.demo.plan.service.PlanService;
+import com.example.demo.plan.service.TaskOccurrenceResolver;
+import com.example.demo.plan.service.TaskOrdering;
 import com.example.demo.shared.exception.BadRequestException;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.shared.dto.response.PlanEventsResponse;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import com.example.demo.progress.repository.CheckInEventRepository;
 import com.example.demo.progress.repository.CheckInTaskRepository;
+import com.example.demo.progress.service.TimelineSnapshotStore;
 import com.example.demo.feed.repository.FeedEventRepository; // <-- THÊM IMPORT NÀY
 import com.example.demo.community.repository.ProgressCommentRepository; // <-- THÊM IMPORT NÀY
 import com.example.demo.community.repository.ProgressReactionRepository;
@@ -44,6 +56,7 @@ import com.example.demo.progress.repository.DailyProgressRepository; // <-- THÊ
 import com.example.demo.progress.entity.DailyProgress; // <-- THÊM IMPORT NÀY
 import com.example.demo.progress.entity.checkin.CheckInEvent;
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -62,14 +75,24 @@ public class PlanServiceImpl implements PlanService {
     private final PlanMemberRepository planMemberRepository;
     private final TaskRepository taskRepository;
     private final TaskMapper taskMapper;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PlanEventSequencer planEventSequencer;
     private final FeedService feedService;
+    private final FeedInbox feedInbox;
     private final CheckInEventRepository checkInEventRepository;
     private final CheckInTaskRepository checkInTaskRepository;
     private final FeedEventRepository feedEventRepository; // <-- THÊM REPO NÀY
     private final ProgressCommentRepository progressCommentRepository;
     private final DailyProgressRepository dailyProgressRepository;
     private final ProgressReactionRepository progressReactionRepository;
+    private final PlanMembershipIndex planMembershipIndex;
+    private final TaskCommentRepository taskCommentRepository;
+    private final TaskAttachmentRepository taskAttachmentRepository;
+    private final TaskOccurrenceResolver taskOccurrenceResolver;
+    private final TimelineSnapshotStore timelineSnapshotStore;
+    private final UserDisplayNameResolver userDisplayNameResolver;
+
+    // Số ngày tối đa cho một lần gọi getTasksInRange
+    private static final int MAX_TASK_RANGE_DAYS = 62;
     
     @Override
     public PlanDetailResponse createPlan(CreatePlanRequest request, String creatorEmail) {
@@ -101,24 +124,20 @@ public class PlanServiceImpl implements PlanService {
 
             if (request.isRepeatTasks()) {
                 // LUỒNG 1: Lặp lại task cho mọi ngày (Template Flow)
-                log.info("Repeating {} tasks for {} days...", taskReqs.size(), newPlan.getDurationInDays());
-
-                for (int day = 0; day < newPlan.getDurationInDays(); day++) {
-                    LocalDate currentDate = newPlan.getStartDate().plusDays(day);
-
-                    IntStream.range(0, taskReqs.size())
-                        .mapToObj(i -> {
-                            CreatePlanRequest.TaskRequest taskReq = taskReqs.get(i);
-                            return Task.builder()
-                                    .description(taskReq.getDescription())
-                                    .deadlineTime(taskReq.getDeadlineTime()) // Lấy từ request
-                                    .order(i)
-                                    .plan(newPlan)
-                                    .taskDate(currentDate) // <-- Gán cho ngày hiện tại trong vòng lặp
-                                    .build();
-                        })
-                        .forEach(newPlan::addTask);
-                }
+                // Chỉ lưu template (O(tasks)); task cụ thể của từng ngày được tạo khi cần (TaskOccurrenceResolver)
+                log.info("Repeating {} tasks for {} days via templates...", taskReqs.size(), newPlan.getDurationInDays());
+
+                IntStream.range(0, taskReqs.size())
+                    .mapToObj(i -> {
+                        CreatePlanRequest.TaskRequest taskReq = taskReqs.get(i);
+                        return TaskTemplate.builder()
+                                .description(taskReq.getDescription())
+                                .deadlineTime(taskReq.getDeadlineTime()) // Lấy từ request
+                                .order(i)
+                                .plan(newPlan)
+                                .build();
+                    })
+                    .forEach(newPlan::addTaskTemplate);
 
             } else {
                 // LUỒNG 2: Chỉ thêm task cho Ngày 1 (Logic cũ của bạn)
@@ -130,7 +149,7 @@ public class PlanServiceImpl implements PlanService {
                         return Task.builder()
                                 .description(taskReq.getDescription())
                                 .deadlineTime(taskReq.getDeadlineTime()) // Lấy từ request
-                                .order(i)
+                                .order(TaskOrdering.rankAt(i))
                                 .plan(newPlan)
                                 .taskDate(newPlan.getStartDate()) // <-- Chỉ gán cho ngày bắt đầu
                                 .build();
@@ -190,7 +209,7 @@ public class PlanServiceImpl implements PlanService {
                         .description(taskReq.getDescription())
                         .deadlineTime(taskReq.getDeadlineTime())
                         .taskDate(taskDate)
-                        .order(order)
+                        .order(TaskOrdering.rankAt(order))
                         .plan(newPlan)
                         .build();
 
@@ -237,7 +256,7 @@ public class PlanServiceImpl implements PlanService {
         // Bạn cần điều chỉnh tên hàm dưới đây cho khớp với NotificationService của bạn
         String title = "🔔 Lời nhắc từ đồng đội";
         String message = String.format("%s vừa thúc giục bạn trong kế hoạch '%s'. Cố lên nào!",
-                getUserFullName(nudger), plan.getTitle());
+                userDisplayNameResolver.displayName(nudger), plan.getTitle());
         String link = "/plan/" + shareableLink; // Link để user click vào xem plan
 
         // VÍ DỤ GỌI HAM - HÃY SỬA LẠI CHO ĐÚNG VỚI SERVICE CỦA BẠN
@@ -246,7 +265,7 @@ public class PlanServiceImpl implements PlanService {
     }
 
     @Override
-    public PlanDetailResponse joinPlan(String shareableLink, String userEmail) {
+    public PlanDetailResponse joinPlan(String shareableLink, String userEmail, boolean includeTasks) {
         // SỬA: Dùng findPlanByShareableLink (an toàn, user không thể join plan đã ARCHIVED)
         Plan plan = findPlanByShareableLink(shareableLink); 
         User user = findUserByEmail(userEmail);
@@ -271,12 +290,14 @@ public class PlanServiceImpl implements PlanService {
 
         // Lưu lại Plan (cascade lưu cả member mới)
         Plan updatedPlan = planRepository.save(plan);
+        planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
+        feedInbox.reset(user.getId()); // Nạp lại hộp feed để có cả sự kiện cũ của plan này
 
         // Gửi Feed Event JOIN_PLAN
         feedService.createAndPublishFeedEvent(FeedEventType.JOIN_PLAN, user, plan, null);
 
         // Gửi WebSocket thông báo có thành viên mới
-        String destination = "/topic/plan/" + shareableLink + "/details";
+        String destination = PlanChannel.DETAILS.destination(shareableLink);
         // Lấy lại member vừa lưu để có ID (nếu cần)
         PlanMember savedNewMember = updatedPlan.getMembers().stream()
                                             .filter(m -> m.getUser().getId().equals(user.getId()))
@@ -286,16 +307,16 @@ public class PlanServiceImpl implements PlanService {
             "type", "MEMBER_JOINED",
             "member", memberResponse // Gửi thông tin thành viên mới
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
         log.info("User {} joined plan {}. Sent WebSocket update to {}", userEmail, shareableLink, destination);
 
         // Trả về chi tiết Plan đã cập nhật
-        return planMapper.toPlanDetailResponse(updatedPlan);
+        return toPlanResponse(updatedPlan, includeTasks);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public Object getPlanDetails(String shareableLink, String userEmail) {
+    public Object getPlanDetails(String shareableLink, String userEmail, boolean includeTasks) {
         // (SỬA) Dùng hàm helper mới để có thể tìm thấy plan đã ARCHIVED
         Plan plan = findPlanRegardlessOfStatus(shareableLink);
         User user = findUserByEmail(userEmail);
@@ -304,7 +325,7 @@ public class PlanServiceImpl implements PlanService {
         if (isUserMemberOfPlan(plan, user.getId())) {
             // (SỬA) Kể cả khi là thành viên, nếu plan đã lưu trữ,
             // User vẫn có thể xem (nhưng UI sẽ hiển thị là "Đã lưu trữ")
-            return planMapper.toPlanDetailResponse(plan);
+            return includeTasks ? planMapper.toPlanDetailResponse(plan) : planMapper.toPlanHeaderResponse(plan);
         } else {
             // (SỬA) Nếu không phải thành viên VÀ plan đã lưu trữ, ném lỗi 403/404
             if (plan.getStatus() == PlanStatus.ARCHIVED) {
@@ -340,7 +361,8 @@ public class PlanServiceImpl implements PlanService {
         // startDate không cho phép cập nhật trong logic này
 
         // Xử lý cập nhật danh sách task ban đầu (chỉ ảnh hưởng ngày startDate)
-        // -> Xóa các task cũ của ngày startDate
+        // -> Xóa các task cũ của ngày startDate (tạo task từ template trước để xóa cả chúng)
+        taskOccurrenceResolver.materializeDay(plan, plan.getStartDate());
         List<Task> oldTasksOnStartDate = taskRepository.findAllByPlanIdAndTaskDate(plan.getId().longValue(), plan.getStartDate());
         if (!oldTasksOnStartDate.isEmpty()) {
             taskRepository.deleteAll(oldTasksOnStartDate); // Xóa khỏi DB
@@ -356,7 +378,7 @@ public class PlanServiceImpl implements PlanService {
                      return Task.builder()
                              .description(taskReq.getDescription())
                              .deadlineTime(taskReq.getDeadlineTime())
-                             .order(i)
+                             .order(TaskOrdering.rankAt(i))
                              .plan(plan)
                              .taskDate(plan.getStartDate()) // Luôn gán cho ngày bắt đầu
                              .build();
@@ -370,7 +392,7 @@ public class PlanServiceImpl implements PlanService {
 
         // Gửi WebSocket nếu thông tin cơ bản thay đổi
         if (infoChanged) {
-            String destination = "/topic/plan/" + shareableLink + "/details";
+            String destination = PlanChannel.DETAILS.destination(shareableLink);
              Map<String, Object> payload = Map.of(
                 "type", "PLAN_INFO_UPDATED",
                 "title", updatedPlan.getTitle(),
@@ -380,7 +402,7 @@ public class PlanServiceImpl implements PlanService {
                 "startDate", updatedPlan.getStartDate().toString(), // Gửi cả ngày bắt đầu/kết thúc mới
                 "endDate", updatedPlan.getStartDate().plusDays(updatedPlan.getDurationInDays() - 1).toString()
             );
-            messagingTemplate.convertAndSend(destination, payload);
+            planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
              log.info("Plan {} info updated. Sent WebSocket update to {}", shareableLink, destination);
         }
 
@@ -404,7 +426,7 @@ public class PlanServiceImpl implements PlanService {
     // --- THÊM PHƯƠNG THỨC MỚI ---
     @Override
     @Transactional
-    public PlanDetailResponse updatePlanDetails(String shareableLink, UpdatePlanDetailsRequest request, String userEmail) {
+    public PlanDetailResponse updatePlanDetails(String shareableLink, UpdatePlanDetailsRequest request, String userEmail, boolean includeTasks) {
         Plan plan = findPlanRegardlessOfStatus(shareableLink); // Owner có thể sửa plan (trừ plan archived)
         User user = findUserByEmail(userEmail);
         ensureUserIsOwner(plan, user.getId());
@@ -418,10 +440,9 @@ public class PlanServiceImpl implements PlanService {
         plan.setDailyGoal(request.getDailyGoal());
 
         Plan savedPlan = planRepository.save(plan);
-        PlanDetailResponse response = planMapper.toPlanDetailResponse(savedPlan);
+        PlanDetailResponse response = toPlanResponse(savedPlan, includeTasks);
 
         // Gửi WebSocket thông báo
-        String destination = "/topic/plan/" + shareableLink + "/details";
          Map<String, Object> payload = Map.of(
             "type", "PLAN_INFO_UPDATED",
             "title", response.getTitle(),
@@ -429,7 +450,7 @@ public class PlanServiceImpl implements PlanService {
             "dailyGoal", response.getDailyGoal()
             // Không gửi các trường không thay đổi
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
         log.info("User {} updated plan details for {}. Sent WebSocket update.", userEmail, shareableLink);
 
         return response;
@@ -457,15 +478,16 @@ public class PlanServiceImpl implements PlanService {
         // Xóa thành viên
         plan.getMembers().remove(member); // Xóa khỏi collection của Plan
         planMemberRepository.delete(member); // Xóa khỏi DB
+        planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
+        feedInbox.reset(user.getId()); // Hộp feed không còn được giữ sự kiện của plan này
          log.info("User {} left plan {}", userEmail, shareableLink);
          
         // Gửi WebSocket cho các thành viên còn lại
-        String destination = "/topic/plan/" + shareableLink + "/details";
         Map<String, Object> payload = Map.of(
             "type", "MEMBER_LEFT",
             "userId", user.getId()
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
     }
 
     // --- XÓA PHƯƠNG THỨC NÀY ---
@@ -526,9 +548,10 @@ public class PlanServiceImpl implements PlanService {
              throw new BadRequestException("Ngày của công việc phải nằm trong thời gian của kế hoạch ("
                 + plan.getStartDate() + " đến " + planEndDate + ").");
         }
-        int nextOrder = taskRepository.findMaxOrderByPlanIdAndTaskDate(plan.getId().longValue(), request.getTaskDate())
-                           .map(maxOrder -> maxOrder + 1) 
-                           .orElse(0); 
+        taskRepository.lockPlanDay(plan.getId(), TaskOrdering.dayKey(request.getTaskDate()));
+        taskOccurrenceResolver.materializeDay(plan, request.getTaskDate());
+        int nextOrder = TaskOrdering.after(
+                taskRepository.findMaxOrderByPlanIdAndTaskDate(plan.getId().longValue(), request.getTaskDate()).orElse(null));
         Task newTask = Task.builder()
                 .description(request.getDescription())
                 .deadlineTime(request.getDeadlineTime())
@@ -538,13 +561,13 @@ public class PlanServiceImpl implements PlanService {
                 .build();
         Task savedTask = taskRepository.save(newTask);
         TaskResponse taskResponse = taskMapper.toTaskResponse(savedTask);
-        String destination = "/topic/plan/" + shareableLink + "/tasks";
+        String destination = PlanChannel.TASKS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "NEW_TASK",
             "taskDate", savedTask.getTaskDate().toString(), 
             "task", taskResponse 
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.TASKS, payload);
         log.info("Added task {} (date: {}) to plan {}. Sent WebSocket update to {}", savedTask.getId(), savedTask.getTaskDate(), shareableLink, destination);
         return taskResponse;
     }
@@ -557,7 +580,7 @@ public class PlanServiceImpl implements PlanService {
         
         ensurePlanIsNotArchived(plan); // THÊM
 
-        Task task = taskRepository.findById(taskId)
+        Task task = taskOccurrenceResolver.materialize(plan, taskId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy công việc với ID: " + taskId));
         if (!task.getPlan().getId().equals(plan.getId())) {
              throw new AccessDeniedException("Công việc ID " + taskId + " không thuộc kế hoạch " + shareableLink);
@@ -573,17 +596,21 @@ public class PlanServiceImpl implements PlanService {
              if (request.getTaskDate().isBefore(plan.getStartDate()) || request.getTaskDate().isAfter(planEndDate)) {
                  throw new BadRequestException("Ngày chuyển đến ("+ request.getTaskDate() +") phải nằm trong thời gian của kế hoạch.");
              }
-            int nextOrderInNewDate = taskRepository.findMaxOrderByPlanIdAndTaskDate(plan.getId().longValue(), request.getTaskDate())
-                           .map(maxOrder -> maxOrder + 1)
-                           .orElse(0);
+            taskRepository.lockPlanDay(plan.getId(), TaskOrdering.dayKey(request.getTaskDate()));
+            taskOccurrenceResolver.materializeDay(plan, request.getTaskDate());
+            // Ngày cũ giữ nguyên khoảng trống, không cần đánh số lại
+            int nextOrderInNewDate = TaskOrdering.after(
+                    taskRepository.findMaxOrderByPlanIdAndTaskDate(plan.getId().longValue(), request.getTaskDate()).orElse(null));
             task.setTaskDate(request.getTaskDate());
             task.setOrder(nextOrderInNewDate);
+            task.setTemplateId(null); // Không còn là occurrence của template ở ngày mới
             dateChanged = true;
             log.info("Task {} moved from {} to {} with new order {}", taskId, originalDate, task.getTaskDate(), task.getOrder());
         }
         Task updatedTask = taskRepository.save(task);
+        timelineSnapshotStore.invalidatePlan(plan.getId()); // Check-in đang cache giữ mô tả task cũ
         TaskResponse taskResponse = taskMapper.toTaskResponse(updatedTask);
-        String destination = "/topic/plan/" + shareableLink + "/tasks";
+        String destination = PlanChannel.TASKS.destination(shareableLink);
         Map<String, Object> payload = new HashMap<>(); 
         payload.put("type", dateChanged ? "MOVE_TASK" : "UPDATE_TASK");
         payload.put("taskDate", updatedTask.getTaskDate().toString()); 
@@ -591,11 +618,8 @@ public class PlanServiceImpl implements PlanService {
         if (dateChanged) {
              payload.put("originalTaskDate", originalDate.toString()); 
         }
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.TASKS, payload);
         log.info("Updated task {} in plan {}. Sent WebSocket update ({}) to {}", taskId, shareableLink, payload.get("type"), destination);
-         if (dateChanged) {
-             reorderTasksAfterRemoval(plan.getId().longValue(), originalDate, task.getOrder());
-         }
         return taskResponse;
     }
 
@@ -607,7 +631,7 @@ public class PlanServiceImpl implements PlanService {
         
         ensurePlanIsNotArchived(plan); // THÊM
 
-        Task taskToRemove = taskRepository.findById(taskId)
+        Task taskToRemove = taskOccurrenceResolver.materialize(plan, taskId)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy công việc với ID: " + taskId));
         if (!taskToRemove.getPlan().getId().equals(plan.getId())) {
              throw new AccessDeniedException("Công việc ID " + taskId + " không thuộc kế hoạch " + shareableLink);
@@ -617,16 +641,16 @@ public class PlanServiceImpl implements PlanService {
         LocalDate taskDate = taskToRemove.getTaskDate(); 
         Integer removedOrder = taskToRemove.getOrder(); 
         taskRepository.delete(taskToRemove);
+        timelineSnapshotStore.invalidatePlan(plan.getId());
         log.info("Deleted task {} (date: {}, order: {}) from plan {}", taskId, taskDate, removedOrder, shareableLink);
-        String destination = "/topic/plan/" + shareableLink + "/tasks";
+        String destination = PlanChannel.TASKS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "DELETE_TASK",
             "taskDate", taskDate != null ? taskDate.toString() : "null", 
             "taskId", taskId
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.TASKS, payload);
         log.info("Sent WebSocket update ({}) to {} for deleted task {}", payload.get("type"), destination, taskId);
-        reorderTasksAfterRemoval(plan.getId().longValue(), taskDate, removedOrder);
     }
 
      @Override
@@ -642,10 +666,13 @@ public class PlanServiceImpl implements PlanService {
          if (taskDate == null) {
             throw new BadRequestException("Ngày của công việc (taskDate) là bắt buộc để sắp xếp.");
          }
-         List<Long> orderedTaskIds = request.getOrderedTaskIds();
-         if (orderedTaskIds == null || orderedTaskIds.isEmpty()) {
+         if (request.getOrderedTaskIds() == null || request.getOrderedTaskIds().isEmpty()) {
               return Collections.emptyList();
          }
+         taskRepository.lockPlanDay(plan.getId(), TaskOrdering.dayKey(taskDate));
+         // Sắp xếp là một thao tác sửa: tạo task thật cho ngày này, đổi id ảo (nếu có) sang id thật
+         taskOccurrenceResolver.materializeDay(plan, taskDate);
+         List<Long> orderedTaskIds = taskOccurrenceResolver.materializeIds(plan, request.getOrderedTaskIds());
          List<Task> currentTasks = taskRepository.findAllByPlanIdAndTaskDateOrderByOrderAsc(plan.getId().longValue(), taskDate);
          if (orderedTaskIds.size() != currentTasks.size()) {
              throw new BadRequestException("Số lượng công việc không khớp. Yêu cầu: " + orderedTaskIds.size() + ", Hiện có cho ngày " + taskDate + ": " + currentTasks.size());
@@ -657,38 +684,29 @@ public class PlanServiceImpl implements PlanService {
          if (new HashSet<>(orderedTaskIds).size() != orderedTaskIds.size()) { 
               throw new BadRequestException("Danh sách ID công việc chứa ID trùng lặp.");
          }
+         // Gán lại hạng cho cả ngày bằng một câu UPDATE (thay vì save từng task)
+         int updated = taskRepository.applyOrder(plan.getId(), taskDate,
+                 TaskOrdering.toArrayLiteral(orderedTaskIds), TaskOrdering.STEP);
+         log.info("Reordered {} tasks for plan {} on date {}", updated, shareableLink, taskDate);
+
          Map<Long, Task> taskMap = currentTasks.stream()
                                               .collect(Collectors.toMap(Task::getId, Function.identity()));
-         List<Task> updatedTasksInOrder = new ArrayList<>(); 
-         List<Task> tasksToSave = new ArrayList<>(); 
-         boolean orderChanged = false;
+         List<TaskResponse> updatedTasksInOrder = new ArrayList<>();
          for (int i = 0; i < orderedTaskIds.size(); i++) {
-             Long taskId = orderedTaskIds.get(i);
-             Task task = taskMap.get(taskId);
-             if (task.getOrder() == null || task.getOrder() != i) {
-                 task.setOrder(i); 
-                 tasksToSave.add(task);
-                 orderChanged = true;
-             }
-             updatedTasksInOrder.add(task); 
+             // Entity trong session vẫn giữ order cũ (UPDATE chạy trực tiếp trên DB), chỉ sửa trên response
+             TaskResponse taskResponse = taskMapper.toTaskResponse(taskMap.get(orderedTaskIds.get(i)));
+             taskResponse.setOrder(TaskOrdering.rankAt(i));
+             updatedTasksInOrder.add(taskResponse);
          }
-         if (orderChanged) {
-             taskRepository.saveAll(tasksToSave);
-             log.info("Reordered {} tasks for plan {} on date {}", tasksToSave.size(), shareableLink, taskDate);
-         } else {
-              log.info("No order changes detected for tasks in plan {} on date {}", shareableLink, taskDate);
-         }
-         String destination = "/topic/plan/" + shareableLink + "/tasks";
+         String destination = PlanChannel.TASKS.destination(shareableLink);
          Map<String, Object> payload = Map.of(
              "type", "REORDER_TASKS",
              "taskDate", taskDate.toString(), 
              "orderedTaskIds", orderedTaskIds 
          );
-         messagingTemplate.convertAndSend(destination, payload);
+         planEventSequencer.publish(shareableLink, PlanChannel.TASKS, payload);
          log.debug("Sent WebSocket update ({}) to {} for task reorder on {}", payload.get("type"), destination, taskDate);
-         return updatedTasksInOrder.stream()
-                    .map(taskMapper::toTaskResponse)
-                    .collect(Collectors.toList());
+         return updatedTasksInOrder;
      }
 
     // --- Phương thức mới: Lấy Task theo ngày ---
@@ -710,14 +728,72 @@ public class PlanServiceImpl implements PlanService {
                 userEmail, date, shareableLink, plan.getStartDate(), planEndDate);
              return Collections.emptyList();
         }
-        List<Task> tasks = taskRepository.findAllByPlanIdAndTaskDateOrderByOrderAsc(plan.getId().longValue(), date);
+        List<Task> tasks = taskOccurrenceResolver.resolveDay(plan, date);
         return tasks.stream()
                 .map(taskMapper::toTaskResponse)
                 .collect(Collectors.toList());
     }
 
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<TaskResponse> getTasksInRange(String shareableLink, LocalDate from, LocalDate to, String userEmail) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new BadRequestException("Khoảng ngày không hợp lệ.");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_TASK_RANGE_DAYS) {
+            throw new BadRequestException("Chỉ có thể lấy task trong tối đa " + MAX_TASK_RANGE_DAYS + " ngày mỗi lần.");
+        }
+
+        Plan plan = findPlanRegardlessOfStatus(shareableLink);
+        User user = findUserByEmail(userEmail);
+        if (!isUserMemberOfPlan(plan, user.getId())) {
+             throw new AccessDeniedException("Bạn không phải là thành viên của kế hoạch này.");
+        }
+
+        // Giới hạn trong thời gian của plan
+        LocalDate planEndDate = plan.getStartDate().plusDays(plan.getDurationInDays() - 1);
+        LocalDate effectiveFrom = from.isBefore(plan.getStartDate()) ? plan.getStartDate() : from;
+        LocalDate effectiveTo = to.isAfter(planEndDate) ? planEndDate : to;
+        if (effectiveTo.isBefore(effectiveFrom)) {
+            return Collections.emptyList();
+        }
+
+        List<Task> tasks = taskOccurrenceResolver.resolveRange(plan, effectiveFrom, effectiveTo);
+        if (tasks.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Đếm comment/attachment theo lô (2 query) thay vì load 2 collection lazy cho từng task
+        // Task ảo (chưa materialize từ template) chưa thể có comment/attachment
+        List<Long> taskIds = tasks.stream()
+                .map(Task::getId)
+                .filter(id -> !TaskOccurrenceResolver.isVirtualId(id))
+                .collect(Collectors.toList());
+        if (taskIds.isEmpty()) {
+            return tasks.stream()
+                    .map(task -> taskMapper.toTaskSummaryResponse(task, 0, 0))
+                    .collect(Collectors.toList());
+        }
+        Map<Long, Long> commentCounts = taskCommentRepository.countByTaskIds(taskIds).stream()
+                .collect(Collectors.toMap(TaskCountRow::getTaskId, TaskCountRow::getCount));
+        Map<Long, Long> attachmentCounts = taskAttachmentRepository.countByTaskIds(taskIds).stream()
+                .collect(Collectors.toMap(TaskCountRow::getTaskId, TaskCountRow::getCount));
+
+        return tasks.stream()
+                .map(task -> taskMapper.toTaskSummaryResponse(task,
+                        commentCounts.getOrDefault(task.getId(), 0L).intValue(),
+                        attachmentCounts.getOrDefault(task.getId(), 0L).intValue()))
+                .collect(Collectors.toList());
+    }
+
+
     // --- Member & Status Management Methods (SỬA DÙNG HELPER MỚI) ---
+    @Override
+    public PlanEventsResponse getPlanEventsSince(String shareableLink, String epoch, long lastSeenVersion) {
+        return planEventSequencer.eventsSince(shareableLink, epoch, lastSeenVersion);
+    }
+
     @Override
     public void removeMemberFromPlan(String shareableLink, Integer memberUserId, String ownerEmail) {
         Plan plan = findPlanRegardlessOfStatus(shareableLink); // SỬA
@@ -733,13 +809,15 @@ public class PlanServiceImpl implements PlanService {
         }
         plan.getMembers().remove(memberToRemove); 
         planMemberRepository.delete(memberToRemove); 
+        planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
+        feedInbox.reset(memberUserId);
 
-        String destination = "/topic/plan/" + shareableLink + "/details";
+        String destination = PlanChannel.DETAILS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "MEMBER_REMOVED",
             "userId", memberUserId 
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
         log.info("Removed user {} from plan {}. Sent WebSocket update to {}", memberUserId, shareableLink, destination);
     }
 
@@ -764,20 +842,21 @@ public class PlanServiceImpl implements PlanService {
         newOwnerMember.setRole(MemberRole.OWNER);   
 
         planMemberRepository.saveAll(Arrays.asList(currentOwnerMember, newOwnerMember));
+        planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
         log.info("Ownership of plan {} transferred from user {} to user {}", shareableLink, currentOwnerUser.getId(), newOwnerUserId);
 
-        String destination = "/topic/plan/" + shareableLink + "/details";
+        String destination = PlanChannel.DETAILS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "OWNERSHIP_TRANSFERRED",
             "oldOwnerUserId", currentOwnerUser.getId(),
             "newOwnerUserId", newOwnerUserId
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
         log.debug("Sent WebSocket update ({}) to {} for ownership transfer", payload.get("type"), destination);
     }
 
     @Override
-    public PlanDetailResponse archivePlan(String shareableLink, String ownerEmail) {
+    public PlanDetailResponse archivePlan(String shareableLink, String ownerEmail, boolean includeTasks) {
         // SỬA: Dùng helper mới để có thể tìm thấy plan bất kể trạng thái
         Plan plan = findPlanRegardlessOfStatus(shareableLink);
         User owner = findUserByEmail(ownerEmail);
@@ -788,21 +867,21 @@ public class PlanServiceImpl implements PlanService {
         }
         plan.setStatus(PlanStatus.ARCHIVED);
         Plan updatedPlan = planRepository.save(plan);
-        PlanDetailResponse response = planMapper.toPlanDetailResponse(updatedPlan); 
+        PlanDetailResponse response = toPlanResponse(updatedPlan, includeTasks); 
 
-        String destination = "/topic/plan/" + shareableLink + "/details";
+        String destination = PlanChannel.DETAILS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "STATUS_CHANGED",
             "status", PlanStatus.ARCHIVED.name(), 
             "displayStatus", response.getDisplayStatus() 
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
         log.info("Archived plan {}. Sent WebSocket update to {}", shareableLink, destination);
         return response;
     }
 
     @Override
-    public PlanDetailResponse unarchivePlan(String shareableLink, String ownerEmail) {
+    public PlanDetailResponse unarchivePlan(String shareableLink, String ownerEmail, boolean includeTasks) {
         // SỬA: Dùng helper mới để tìm plan đã bị "soft delete"
         Plan plan = findPlanRegardlessOfStatus(shareableLink); 
         User owner = findUserByEmail(ownerEmail);
@@ -819,15 +898,15 @@ public class PlanServiceImpl implements PlanService {
         
         plan.setStatus(newStatus); 
         Plan updatedPlan = planRepository.save(plan);
-         PlanDetailResponse response = planMapper.toPlanDetailResponse(updatedPlan);
+         PlanDetailResponse response = toPlanResponse(updatedPlan, includeTasks);
 
-        String destination = "/topic/plan/" + shareableLink + "/details";
+        String destination = PlanChannel.DETAILS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "STATUS_CHANGED",
             "status", newStatus.name(), // SỬA: Gửi trạng thái mới
             "displayStatus", response.getDisplayStatus()
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.DETAILS, payload);
          log.info("Unarchived plan {}. New status: {}. Sent WebSocket update to {}", shareableLink, newStatus, destination);
         return response;
     }
@@ -884,12 +963,19 @@ public class PlanServiceImpl implements PlanService {
         // 5. Xóa ProgressComment, ProgressReaction (nếu DailyProgress có cascade)
 
         planRepository.delete(plan);
+        planMembershipIndex.invalidate(plan.getId(), plan.getShareableLink());
+        timelineSnapshotStore.invalidatePlan(plan.getId());
 
         log.info("User {} permanently deleted plan {} (ID: {})", ownerEmail, shareableLink, plan.getId());
     }
     // --- KẾT THÚC THÊM MỚI ---
 
     // --- Helper Methods ---
+    // includeTasks=false: bỏ dailyTasks (client lấy task theo khoảng ngày qua getTasksInRange)
+    private PlanDetailResponse toPlanResponse(Plan plan, boolean includeTasks) {
+        return includeTasks ? planMapper.toPlanDetailResponse(plan) : planMapper.toPlanHeaderResponse(plan);
+    }
+
     private User findUserByEmail(String email) {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng với email: " + email));
@@ -927,46 +1013,22 @@ public class PlanServiceImpl implements PlanService {
 
     // Helper kiểm tra user có phải là thành viên không
     private boolean isUserMemberOfPlan(Plan plan, Integer userId) {
-        // Kiểm tra null an toàn
-        return plan != null && plan.getMembers() != null && userId != null &&
-               plan.getMembers().stream()
-                   .anyMatch(m -> m != null && m.getUser() != null && userId.equals(m.getUser().getId()));
+        // Tra cứu O(1) trên PlanMembershipIndex, không duyệt plan.getMembers()
+        return plan != null && userId != null && planMembershipIndex.isMember(plan.getId(), userId);
     }
 
     // Helper kiểm tra user có phải là chủ sở hữu không
     private void ensureUserIsOwner(Plan plan, Integer userId) {
-         if (plan == null || plan.getMembers() == null || userId == null) {
+         if (plan == null || userId == null) {
              throw new AccessDeniedException("Không thể xác thực quyền sở hữu.");
         }
-        boolean isOwner = plan.getMembers().stream()
-                .anyMatch(m -> m != null && m.getUser() != null && userId.equals(m.getUser().getId()) && m.getRole() == MemberRole.OWNER);
-        if (!isOwner) {
+        if (!planMembershipIndex.isOwner(plan.getId(), userId)) {
             throw new AccessDeniedException("Chỉ chủ sở hữu mới có quyền thực hiện hành động này.");
         }
     }
 
-    // Helper cập nhật lại thứ tự các task sau khi một task bị xóa hoặc chuyển đi
-    private void reorderTasksAfterRemoval(Long planId, LocalDate taskDate, Integer removedOrder) {
-         if (planId == null || taskDate == null || removedOrder == null || removedOrder < 0) {
-             return;
-         }
-        List<Task> tasksToReorder = taskRepository.findAllByPlanIdAndTaskDate(planId, taskDate)
-            .stream()
-            .filter(t -> t.getOrder() != null && t.getOrder() > removedOrder)
-            .peek(t -> t.setOrder(t.getOrder() - 1)) // Giảm order đi 1
-            .collect(Collectors.toList());
-        if (!tasksToReorder.isEmpty()) {
-            taskRepository.saveAll(tasksToReorder);
-            log.info("Reordered {} tasks on date {} after removal/move.", tasksToReorder.size(), taskDate);
-        }
-    }
-
      // Helper map PlanMember sang DTO (dùng cho WebSocket, logs, etc.)
      private PlanDetailResponse.PlanMemberResponse toPlanMemberResponse(PlanMember member) {
         return planMapper.toPlanMemberResponse(member);
      }
-     // Helper lấy tên đầy đủ của User (dùng cho WebSocket, logs, etc.)
-     private String getUserFullName(User user) {
-        return taskMapper.getUserFullName(user); 
-     }
 }
\ No newline at end of file
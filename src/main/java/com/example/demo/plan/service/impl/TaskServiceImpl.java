@@ -2,6 +2,7 @@ package com.example.demo.plan.service.impl;
 
 import com.example.demo.feed.entity.FeedEventType;
 import com.example.demo.feed.service.FeedService;
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
 import com.example.demo.notification.service.NotificationService;
 import com.example.demo.plan.dto.request.TaskCommentRequest;
 import com.example.demo.plan.dto.request.UpdateTaskCommentRequest;
@@ -14,28 +15,34 @@ import com.example.demo.plan.repository.TaskAttachmentRepository;
 import com.example.demo.plan.repository.TaskCommentRepository;
 import com.example.demo.plan.repository.TaskRepository;
 import com.example.demo.plan.service.TaskService;
+import com.example.demo.plan.service.TaskOccurrenceResolver;
 import com.example.demo.shared.dto.response.FileUploadResponse;
 import com.example.demo.shared.exception.ResourceNotFoundException;
+import com.example.demo.shared.service.AttachmentBlobReferences;
+import com.example.demo.shared.service.UploadOwnership;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -44,14 +51,18 @@ import java.util.regex.Pattern;
 public class TaskServiceImpl implements TaskService {
 
 	private final TaskRepository taskRepository;
+	private final TaskOccurrenceResolver taskOccurrenceResolver;
     private final TaskCommentRepository taskCommentRepository;
     private final TaskAttachmentRepository taskAttachmentRepository;
     private final UserRepository userRepository;
     private final PlanMemberRepository planMemberRepository;
     private final TaskMapper taskMapper;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PlanEventSequencer planEventSequencer;
     private final NotificationService notificationService;
     private final FeedService feedService; // *** INJECT FeedService ***
+    private final UserDisplayNameResolver userDisplayNameResolver;
+    private final AttachmentBlobReferences attachmentBlobReferences;
+    private final UploadOwnership uploadOwnership;
 
     @Value("${file.upload-dir}")
     private String uploadDir;
@@ -59,10 +70,10 @@ public class TaskServiceImpl implements TaskService {
     private static final Pattern MENTION_PATTERN = Pattern.compile("@\\[[^\\]]+?\\]\\((\\d+?)\\)");
 
     @Override
-    public TaskCommentResponse addTaskComment(Long taskId, TaskCommentRequest request, String userEmail) {
-        Task task = findTaskByIdWithPlan(taskId);
+    public TaskCommentResponse addTaskComment(Long requestedTaskId, TaskCommentRequest request, String userEmail) {
         User author = findUserByEmail(userEmail);
-        ensureUserIsMemberOfPlan(author, task.getPlan());
+        Task task = findTaskForMember(requestedTaskId, author);
+        Long taskId = task.getId();
         Plan plan = task.getPlan();
 
         TaskComment comment = TaskComment.builder()
@@ -75,20 +86,19 @@ public class TaskServiceImpl implements TaskService {
         log.info("User {} added comment {} to task {}", userEmail, savedComment.getId(), taskId);
 
         // --- XỬ LÝ NOTIFICATION CHO MENTION ---
-        String authorName = getUserFullName(author);
+        String authorName = userDisplayNameResolver.displayName(author);
         Set<Integer> mentionedUserIds = extractMentionedUserIds(savedComment.getContent());
+        Set<Integer> memberUserIds = memberUserIdsOf(plan);
+        String taskDescShort = task.getDescription().length() > 50 ? task.getDescription().substring(0, 47) + "..." : task.getDescription();
+        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận về công việc '%s'.", authorName, taskDescShort);
+        String mentionLink = String.format("/plan/%s?taskId=%d#task-comment-%d", plan.getShareableLink(), taskId, savedComment.getId());
+        List<CreateNotificationRequest> mentionNotifications = new ArrayList<>();
         for (Integer mentionedUserId : mentionedUserIds) {
-            if (!mentionedUserId.equals(author.getId())) {
-                userRepository.findById(mentionedUserId).ifPresent(mentionedUser -> {
-                    if (isUserMemberOfPlan(mentionedUser, plan)) {
-                        String taskDescShort = task.getDescription().length() > 50 ? task.getDescription().substring(0, 47) + "..." : task.getDescription();
-                        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận về công việc '%s'.", authorName, taskDescShort);
-                        String mentionLink = String.format("/plan/%s?taskId=%d#task-comment-%d", plan.getShareableLink(), taskId, savedComment.getId());
-                        notificationService.createNotification(mentionedUser, mentionMessage, mentionLink);
-                    }
-                });
+            if (!mentionedUserId.equals(author.getId()) && memberUserIds.contains(mentionedUserId)) {
+                mentionNotifications.add(new CreateNotificationRequest(mentionedUserId, mentionMessage, mentionLink));
             }
         }
+        notificationService.createNotifications(mentionNotifications);
 
         // *** GỬI FEED EVENT TASK_COMMENT_ADDED ***
         Map<String, Object> details = new HashMap<>();
@@ -99,13 +109,13 @@ public class TaskServiceImpl implements TaskService {
         
         // --- GỬI WEBSOCKET ---
         TaskCommentResponse commentResponse = taskMapper.toTaskCommentResponse(savedComment);
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/tasks";
+        String destination = PlanChannel.TASKS.destination(plan.getShareableLink());
         Map<String, Object> payload = Map.of(
             "type", "NEW_TASK_COMMENT",
             "taskId", taskId,
             "comment", commentResponse
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.TASKS, payload);
         log.debug("Sent WebSocket update for new task comment to {}", destination);
 
         return commentResponse;
@@ -128,31 +138,31 @@ public class TaskServiceImpl implements TaskService {
         // --- XỬ LÝ NOTIFICATION CHO MENTION KHI UPDATE ---
         Task task = comment.getTask();
         Plan plan = task.getPlan();
-        String authorName = getUserFullName(user);
+        String authorName = userDisplayNameResolver.displayName(user);
         Set<Integer> oldMentionedIds = extractMentionedUserIds(oldContent);
         Set<Integer> newMentionedIds = extractMentionedUserIds(updatedComment.getContent());
+        Set<Integer> memberUserIds = memberUserIdsOf(plan);
+        String taskDescShort = task.getDescription().length() > 50 ? task.getDescription().substring(0, 47) + "..." : task.getDescription();
+        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận đã sửa về công việc '%s'.", authorName, taskDescShort);
+        String mentionLink = String.format("/plan/%s?taskId=%d#task-comment-%d", plan.getShareableLink(), task.getId(), updatedComment.getId());
+        List<CreateNotificationRequest> mentionNotifications = new ArrayList<>();
         for (Integer mentionedUserId : newMentionedIds) {
-            if (!oldMentionedIds.contains(mentionedUserId) && !mentionedUserId.equals(user.getId())) {
-                userRepository.findById(mentionedUserId).ifPresent(mentionedUser -> {
-                     if (isUserMemberOfPlan(mentionedUser, plan)) {
-                        String taskDescShort = task.getDescription().length() > 50 ? task.getDescription().substring(0, 47) + "..." : task.getDescription();
-                        String mentionMessage = String.format("%s đã nhắc đến bạn trong bình luận đã sửa về công việc '%s'.", authorName, taskDescShort);
-                        String mentionLink = String.format("/plan/%s?taskId=%d#task-comment-%d", plan.getShareableLink(), task.getId(), updatedComment.getId());
-                        notificationService.createNotification(mentionedUser, mentionMessage, mentionLink);
-                     }
-                });
+            if (!oldMentionedIds.contains(mentionedUserId) && !mentionedUserId.equals(user.getId())
+                    && memberUserIds.contains(mentionedUserId)) {
+                mentionNotifications.add(new CreateNotificationRequest(mentionedUserId, mentionMessage, mentionLink));
             }
         }
+        notificationService.createNotifications(mentionNotifications);
 
         // --- GỬI WEBSOCKET ---
         TaskCommentResponse commentResponse = taskMapper.toTaskCommentResponse(updatedComment);
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/tasks";
+        String destination = PlanChannel.TASKS.destination(plan.getShareableLink());
         Map<String, Object> payload = Map.of(
             "type", "UPDATE_TASK_COMMENT",
             "taskId", task.getId(),
             "comment", commentResponse
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.TASKS, payload);
         log.debug("Sent WebSocket update for updated task comment to {}", destination);
 
         return commentResponse;
@@ -177,21 +187,23 @@ public class TaskServiceImpl implements TaskService {
         log.info("User {} deleted comment {}", userEmail, commentId);
 
         // --- GỬI WEBSOCKET ---
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/tasks";
+        String destination = PlanChannel.TASKS.destination(plan.getShareableLink());
         Map<String, Object> payload = Map.of(
             "type", "DELETE_TASK_COMMENT",
             "taskId", taskId,
             "commentId", commentId
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.TASKS, payload);
         log.debug("Sent WebSocket update for deleted task comment to {}", destination);
     }
 
     @Override
-    public TaskAttachmentResponse addTaskAttachment(Long taskId, FileUploadResponse fileInfo, String userEmail) {
-        Task task = findTaskByIdWithPlan(taskId);
+    public TaskAttachmentResponse addTaskAttachment(Long requestedTaskId, FileUploadResponse fileInfo, String userEmail) {
         User uploader = findUserByEmail(userEmail);
-        ensureUserIsMemberOfPlan(uploader, task.getPlan());
+        Task task = findTaskForMember(requestedTaskId, uploader);
+        Long taskId = task.getId();
+        // storedFilename do client gửi: chỉ nhận file chính user này đã upload
+        uploadOwnership.requireUploadedBy(uploader.getId(), Collections.singletonList(fileInfo.getStoredFilename()));
 
         TaskAttachment attachment = TaskAttachment.builder()
                 .task(task)
@@ -208,13 +220,13 @@ public class TaskServiceImpl implements TaskService {
         
         // --- GỬI WEBSOCKET ---
         TaskAttachmentResponse attachmentResponse = taskMapper.toTaskAttachmentResponse(savedAttachment);
-        String destination = "/topic/plan/" + task.getPlan().getShareableLink() + "/tasks";
+        String destination = PlanChannel.TASKS.destination(task.getPlan().getShareableLink());
         Map<String, Object> payload = Map.of(
             "type", "NEW_TASK_ATTACHMENT",
             "taskId", taskId,
             "attachment", attachmentResponse
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(task.getPlan().getShareableLink(), PlanChannel.TASKS, payload);
         log.debug("Sent WebSocket update for new task attachment to {}", destination);
 
         return attachmentResponse;
@@ -233,25 +245,19 @@ public class TaskServiceImpl implements TaskService {
             throw new AccessDeniedException("Chỉ chủ sở hữu kế hoạch mới có quyền xóa file đính kèm.");
         }
 
-        try {
-            Path filePath = Paths.get(uploadDir).resolve(storedFilename).normalize();
-            Files.deleteIfExists(filePath);
-            log.info("Deleted physical file: {}", filePath);
-        } catch (IOException e) {
-            log.error("Failed to delete physical file: {}", storedFilename, e);
-        }
-
         taskAttachmentRepository.delete(attachment);
         log.info("User {} deleted task attachment {}", userEmail, attachmentId);
+        // File có thể còn được attachment khác dùng chung: chỉ xóa khi hết tham chiếu (sau commit)
+        attachmentBlobReferences.releaseAfterCommit(List.of(storedFilename));
 
         // --- GỬI WEBSOCKET ---
-        String destination = "/topic/plan/" + plan.getShareableLink() + "/tasks";
+        String destination = PlanChannel.TASKS.destination(plan.getShareableLink());
         Map<String, Object> payload = Map.of(
             "type", "DELETE_TASK_ATTACHMENT",
             "taskId", taskId,
             "attachmentId", attachmentId
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(plan.getShareableLink(), PlanChannel.TASKS, payload);
         log.debug("Sent WebSocket update for deleted task attachment to {}", destination);
     }
 
@@ -275,32 +281,24 @@ public class TaskServiceImpl implements TaskService {
         return userIds;
     }
 
-    // *** THÊM HELPER isUserMemberOfPlan NHẬN Plan entity ***
-    private boolean isUserMemberOfPlan(User user, Plan plan) {
-        if (plan == null || plan.getMembers() == null || user == null) {
-             return false;
+    // ID người dùng của các thành viên plan (Members đã được load sẵn cùng Plan)
+    private Set<Integer> memberUserIdsOf(Plan plan) {
+        if (plan == null || plan.getMembers() == null) {
+            return Set.of();
         }
-        // Tối ưu: Dùng PlanMemberRepository nếu Plan không load sẵn Members
-        // return planMemberRepository.findByPlanIdAndUserId(plan.getId(), user.getId()).isPresent();
-        // Hoặc dùng stream nếu Members đã được load (như trong trường hợp này)
         return plan.getMembers().stream()
-                   .anyMatch(member -> member.getUser() != null && member.getUser().getId().equals(user.getId()));
+                .filter(member -> member.getUser() != null)
+                .map(member -> member.getUser().getId())
+                .collect(Collectors.toSet());
     }
 
-    // *** THÊM HELPER LẤY TÊN ĐẦY ĐỦ (giống các service/mapper khác) ***
-     private String getUserFullName(User user) {
-        if (user == null) return "N/A";
-        if (user.getCustomer() != null && user.getCustomer().getFullname() != null && !user.getCustomer().getFullname().isBlank()) {
-            return user.getCustomer().getFullname();
-        }
-        if (user.getEmployee() != null && user.getEmployee().getFullname() != null && !user.getEmployee().getFullname().isBlank()) {
-            return user.getEmployee().getFullname();
-        }
-        return user.getEmail();
-    }
-
-    private Task findTaskByIdWithPlan(Long taskId) {
-        return taskRepository.findById(taskId)
+    private Task findTaskForMember(Long taskId, User user) {
+        Plan plan = taskOccurrenceResolver.findPlanOf(taskId)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy công việc với ID: " + taskId));
+        ensureUserIsMemberOfPlan(user, plan);
+        // Id ảo (task lặp lại chưa materialize) -> tạo task thật cho ngày đó trước khi bình luận/đính kèm,
+        // chỉ sau khi đã kiểm tra quyền (materialize ghi DB)
+        return taskOccurrenceResolver.materialize(plan, taskId)
                 .map(task -> {
                     task.getPlan().getTitle(); // Trigger load Plan
                     return task;
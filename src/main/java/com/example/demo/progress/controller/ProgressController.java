@@ -25,6 +25,7 @@ import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import com.example.demo.community.dto.request.PostCommentRequest;
 import com.example.demo.community.dto.request.UpdateCommentRequest;
 import com.example.demo.community.dto.request.AddReactionRequest;
+import com.example.demo.community.dto.response.CommentPageResponse;
 import com.example.demo.community.dto.response.CommentResponse;
 // --- KẾT THÚC IMPORT MỚI ---
 
@@ -91,6 +92,20 @@ public class ProgressController {
     
     // === THÊM CÁC API MỚI CHO COMMENT VÀ REACTION ===
 
+    /**
+     * Phân trang bình luận của một CheckInEvent (mới nhất trước); truyền nextCursor để lấy trang cũ hơn
+     */
+    @GetMapping("/check-in/{checkInEventId}/comments")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<CommentPageResponse> getCheckInComments(
+            @PathVariable String shareableLink,
+            @PathVariable Long checkInEventId,
+            @RequestParam(required = false) Long cursor,
+            Authentication authentication) {
+        String userEmail = authentication.getName();
+        return ResponseEntity.ok(progressService.getCheckInComments(shareableLink, checkInEventId, cursor, userEmail));
+    }
+
     /**
      * API mới: Thêm bình luận vào một CheckInEvent
      */
@@ -75,6 +75,7 @@ public class TimelineResponse extends java.util.ArrayList<TimelineResponse.Membe
     @Builder
     public static class AttachmentResponse {
         private String fileUrl;
+        private String thumbnailUrl; // Ảnh thu nhỏ để hiển thị trên timeline; null thì dùng fileUrl
         private String originalFilename;
         private String contentType;
         private Long fileSize;
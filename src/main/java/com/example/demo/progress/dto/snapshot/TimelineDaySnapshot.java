@@ -0,0 +1,28 @@
+package com.example.demo.progress.dto.snapshot;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dạng lưu gọn của timeline một ngày (plan, date): chỉ phần không phụ thuộc người xem
+ * và không đổi sau khi hết hạn sửa check-in (nội dung check-in, file, task, link).
+ * Thông tin thành viên, bình luận và reaction được ghép vào lúc đọc.
+ */
+public record TimelineDaySnapshot(Map<Integer, List<CheckInEntry>> checkInsByMemberId) {
+
+    public record CheckInEntry(Long id,
+                               LocalDateTime checkInTimestamp,
+                               String notes,
+                               List<AttachmentEntry> attachments,
+                               List<TaskEntry> completedTasks,
+                               List<String> links) {
+    }
+
+    public record AttachmentEntry(String fileUrl, String originalFilename, String contentType, Long fileSize,
+                                  String thumbnailUrl) {
+    }
+
+    public record TaskEntry(Long taskId, String description) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.progress.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/**
+ * Timeline đã "đóng băng" của một ngày (sau khi hết thời gian cho phép sửa check-in),
+ * lưu dạng JSON gọn (TimelineDaySnapshot) để không phải dựng lại từ các bảng check-in.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "plan_timeline_snapshots",
+       uniqueConstraints = @UniqueConstraint(name = "uk_timeline_snapshot_plan_date", columnNames = {"plan_id", "snapshot_date"}))
+public class TimelineSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "plan_id", nullable = false)
+    private Integer planId;
+
+    @Column(name = "snapshot_date", nullable = false)
+    private LocalDate snapshotDate;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+
+    @Builder.Default
+    @Column(name = "created_at", nullable = false, updatable = false,
+            columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+}
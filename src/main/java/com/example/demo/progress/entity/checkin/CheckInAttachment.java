@@ -29,4 +29,8 @@ public class CheckInAttachment {
     private String originalFilename;
     private String contentType;
     private Long fileSize;
+
+    // Ảnh thu nhỏ (JPEG) do AttachmentThumbnails tạo ở nền; null nếu chưa có / không phải ảnh
+    @Column(name = "thumbnail_url", columnDefinition = "TEXT")
+    private String thumbnailUrl;
 }
\ No newline at end of file
@@ -22,7 +22,8 @@ import java.util.Set;
 public class CheckInEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "check_in_events_seq")
+    @SequenceGenerator(name = "check_in_events_seq", sequenceName = "check_in_events_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
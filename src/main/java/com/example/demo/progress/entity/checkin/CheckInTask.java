@@ -17,7 +17,8 @@ import lombok.*;
 public class CheckInTask {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "check_in_tasks_seq")
+    @SequenceGenerator(name = "check_in_tasks_seq", sequenceName = "check_in_tasks_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
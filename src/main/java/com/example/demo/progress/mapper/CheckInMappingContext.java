@@ -0,0 +1,49 @@
+package com.example.demo.progress.mapper;
+
+import com.example.demo.community.dto.response.CommentResponse;
+import com.example.demo.progress.dto.response.TimelineResponse;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dữ liệu dùng chung khi map nhiều CheckInEvent trong cùng một request:
+ * người xem (resolve 1 lần), tổng hợp reaction, số bình luận và trang bình luận đầu tiên
+ * của từng check-in (nạp theo lô bởi {@link ProgressMapper#createContext}).
+ */
+@Getter
+public class CheckInMappingContext {
+
+    private final Integer viewerId;
+    private final Map<Long, List<TimelineResponse.ReactionResponse>> reactionsByEventId;
+    private final Map<Long, Integer> commentCountByEventId;
+    private final Map<Long, List<CommentResponse>> commentsByEventId;
+
+    CheckInMappingContext(Integer viewerId,
+                          Map<Long, List<TimelineResponse.ReactionResponse>> reactionsByEventId,
+                          Map<Long, Integer> commentCountByEventId,
+                          Map<Long, List<CommentResponse>> commentsByEventId) {
+        this.viewerId = viewerId;
+        this.reactionsByEventId = reactionsByEventId;
+        this.commentCountByEventId = commentCountByEventId;
+        this.commentsByEventId = commentsByEventId;
+    }
+
+    public List<TimelineResponse.ReactionResponse> reactionsOf(Long eventId) {
+        return reactionsByEventId.getOrDefault(eventId, Collections.emptyList());
+    }
+
+    public int reactionCountOf(Long eventId) {
+        return reactionsOf(eventId).stream().mapToInt(TimelineResponse.ReactionResponse::getCount).sum();
+    }
+
+    public int commentCountOf(Long eventId) {
+        return commentCountByEventId.getOrDefault(eventId, 0);
+    }
+
+    public List<CommentResponse> commentsOf(Long eventId) {
+        return commentsByEventId.getOrDefault(eventId, Collections.emptyList());
+    }
+}
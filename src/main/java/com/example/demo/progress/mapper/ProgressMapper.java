@@ -4,25 +4,33 @@ import com.example.demo.plan.entity.PlanMember;
 import com.example.demo.plan.entity.Task;
 import com.example.demo.plan.mapper.TaskMapper;
 import com.example.demo.progress.dto.response.TimelineResponse;
+import com.example.demo.progress.dto.snapshot.TimelineDaySnapshot;
 import com.example.demo.progress.entity.checkin.CheckInAttachment;
 import com.example.demo.progress.entity.checkin.CheckInEvent;
 import com.example.demo.progress.entity.checkin.CheckInTask;
 import com.example.demo.user.entity.User;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import com.example.demo.user.service.UserDisplayNameResolver.UserDisplay;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 import java.util.Map;
 
 // === THÊM CÁC IMPORT ĐỂ MAP COMMENT/REACTION ===
-import com.example.demo.community.entity.ProgressReaction;
-import com.example.demo.community.entity.ReactionType;
+import com.example.demo.community.dto.projection.CheckInCommentCountRow;
+import com.example.demo.community.dto.projection.ReactionAggregateRow;
+import com.example.demo.community.entity.ProgressComment;
 import com.example.demo.community.mapper.CommentMapper; // Import mapper viết tay
 import com.example.demo.community.dto.response.CommentResponse;
-import com.example.demo.user.repository.UserRepository;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import com.example.demo.community.repository.ProgressCommentRepository;
+import com.example.demo.community.repository.ProgressReactionRepository;
+import org.springframework.beans.factory.annotation.Value;
 import lombok.extern.slf4j.Slf4j; // THÊM IMPORT CHO LOGGING
 // === KẾT THÚC THÊM IMPORT ===
 
@@ -32,20 +40,83 @@ import lombok.extern.slf4j.Slf4j; // THÊM IMPORT CHO LOGGING
 public class ProgressMapper {
 
     private final TaskMapper taskMapper;
+    private final UserDisplayNameResolver userDisplayNameResolver;
 
     // === THÊM 2 DEPENDENCIES MỚI ===
     private final CommentMapper commentMapper; // Mapper viết tay
-    private final UserRepository userRepository; // Để lấy user hiện tại
+    private final ProgressReactionRepository progressReactionRepository;
+    private final ProgressCommentRepository progressCommentRepository;
     // === KẾT THÚC THÊM ===
 
-    public TimelineResponse.CheckInEventResponse toCheckInEventResponse(CheckInEvent event) {
+    // Số bình luận mới nhất trả kèm mỗi check-in trong timeline
+    @Value("${app.timeline.comment-page-size:20}")
+    private int commentPageSize = 20;
+
+    /**
+     * Nạp theo lô dữ liệu comment/reaction cho tất cả check-in cần map trong request:
+     * 1 query tổng hợp reaction (kèm "người xem đã react"), 1 query đếm bình luận,
+     * 2 query cho trang bình luận mới nhất của mỗi check-in. Không load collection lazy.
+     * @param viewerId id người đang xem (đã resolve 1 lần ở service), null nếu không xác định
+     */
+    public CheckInMappingContext createContext(Collection<CheckInEvent> events, Integer viewerId) {
+        return createContextForIds(events.stream().map(CheckInEvent::getId).collect(Collectors.toList()), viewerId);
+    }
+
+    /**
+     * Như {@link #createContext(Collection, Integer)} nhưng theo id check-in (VD: lấy từ snapshot timeline).
+     */
+    public CheckInMappingContext createContextForIds(Collection<Long> checkInEventIds, Integer viewerId) {
+        List<Long> eventIds = checkInEventIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (eventIds.isEmpty()) {
+            return new CheckInMappingContext(viewerId, Map.of(), Map.of(), Map.of());
+        }
+
+        Map<Long, List<TimelineResponse.ReactionResponse>> reactionsByEventId = new HashMap<>();
+        for (ReactionAggregateRow row : progressReactionRepository.aggregateByCheckInEventIds(eventIds, viewerId)) {
+            reactionsByEventId.computeIfAbsent(row.getCheckInEventId(), id -> new ArrayList<>())
+                    .add(TimelineResponse.ReactionResponse.builder()
+                            .type(row.getType())
+                            .count(row.getCount().intValue())
+                            .hasCurrentUserReacted(row.getViewerCount() != null && row.getViewerCount() > 0)
+                            .build());
+        }
+
+        Map<Long, Integer> commentCountByEventId = progressCommentRepository.countByCheckInEventIds(eventIds).stream()
+                .collect(Collectors.toMap(CheckInCommentCountRow::getCheckInEventId, row -> row.getCount().intValue()));
+
+        Map<Long, List<CommentResponse>> commentsByEventId = new HashMap<>();
+        if (!commentCountByEventId.isEmpty()) {
+            List<Long> commentIds = progressCommentRepository.findLatestIdsPerCheckInEvent(eventIds, commentPageSize);
+            if (!commentIds.isEmpty()) {
+                List<ProgressComment> comments = progressCommentRepository.findAllWithAuthorByIdIn(commentIds);
+                List<CommentResponse> responses = commentMapper.toCommentResponses(comments);
+                for (int i = 0; i < comments.size(); i++) {
+                    commentsByEventId.computeIfAbsent(comments.get(i).getCheckInEvent().getId(), id -> new ArrayList<>())
+                            .add(responses.get(i));
+                }
+            }
+        }
+
+        return new CheckInMappingContext(viewerId, reactionsByEventId, commentCountByEventId, commentsByEventId);
+    }
+
+    /**
+     * Map một check-in đơn lẻ (VD: vừa tạo/cập nhật) - tự nạp context cho riêng check-in này.
+     */
+    public TimelineResponse.CheckInEventResponse toCheckInEventResponse(CheckInEvent event, Integer viewerId) {
         if (event == null) {
             return null;
         }
+        return toCheckInEventResponse(event, createContext(List.of(event), viewerId));
+    }
 
-        // === Lấy User ID hiện tại để tính hasCurrentUserReacted ===
-        Integer currentUserId = getCurrentUserId();
-        // === KẾT THÚC LẤY USER ID ===
+    public TimelineResponse.CheckInEventResponse toCheckInEventResponse(CheckInEvent event, CheckInMappingContext context) {
+        if (event == null) {
+            return null;
+        }
 
         TimelineResponse.MemberInfo memberInfo = toMemberInfo(event.getPlanMember());
 
@@ -61,30 +132,20 @@ public class ProgressMapper {
                     .map(this::toCompletedTaskInfo)
                     .collect(Collectors.toList());
 
-        // === THÊM LOGIC MAP MỚI CHO COMMENT/REACTION ===
-
-        // 1. Map danh sách Comments
-        List<CommentResponse> comments = event.getComments() == null ? Collections.emptyList() :
-                event.getComments().stream()
-                        .map(commentMapper::toCommentResponse) // Dùng mapper viết tay
-                        .collect(Collectors.toList());
-
-        // 2. Map danh sách Reactions
-        List<TimelineResponse.ReactionResponse> reactions = mapReactions(event, currentUserId);
-
-        // 3. Lấy danh sách ID Task
+        // Lấy danh sách ID Task
         List<Long> completedTaskIds = event.getCompletedTasks() == null ? Collections.emptyList() :
                 event.getCompletedTasks().stream()
                         .map(CheckInTask::getTask) // Lấy Task object
                         .filter(java.util.Objects::nonNull) // Lọc ra các Task không bị null
                         .map(Task::getId) // Chỉ bây giờ mới gọi getId()
                         .collect(Collectors.toList());
-        // === KẾT THÚC LOGIC MAP MỚI ===
 
+        // Comment/reaction lấy từ context đã nạp theo lô
+        Long eventId = event.getId();
 
         // Sử dụng Builder để xây dựng response
         TimelineResponse.CheckInEventResponse.CheckInEventResponseBuilder builder = TimelineResponse.CheckInEventResponse.builder()
-                .id(event.getId())
+                .id(eventId)
                 .checkInTimestamp(event.getCheckInTimestamp())
                 .notes(event.getNotes())
                 .member(memberInfo)
@@ -92,80 +153,113 @@ public class ProgressMapper {
                 .completedTasks(tasks)
                 // CẬP NHẬT BUILDER
                 .links(event.getLinks() != null ? event.getLinks() : Collections.emptyList())
-                .commentCount(comments.size()) // Đếm từ list đã map
-                .reactionCount(event.getReactions() != null ? event.getReactions().size() : 0) // Vẫn dùng size() cho tổng số
-                .comments(comments) // TRƯỜNG MỚI
-                .reactions(reactions) // TRƯỜNG MỚI
+                .commentCount(context.commentCountOf(eventId)) // Tổng số, comments chỉ chứa trang mới nhất
+                .reactionCount(context.reactionCountOf(eventId))
+                .comments(context.commentsOf(eventId))
+                .reactions(context.reactionsOf(eventId))
                 .completedTaskIds(completedTaskIds); // Cập nhật trường này
 
         return builder.build();
     }
 
     /**
-     * Helper: Map Reaction Entities thành DTOs, nhóm theo type và tính toán
+     * Phần không phụ thuộc người xem của check-in, lưu trong snapshot timeline theo ngày.
      */
-    private List<TimelineResponse.ReactionResponse> mapReactions(CheckInEvent event, Integer currentUserId) {
-        if (event.getReactions() == null || event.getReactions().isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        // 1. Nhóm các reaction theo Type
-        Map<ReactionType, List<ProgressReaction>> groupedReactions = event.getReactions().stream()
-                .collect(Collectors.groupingBy(ProgressReaction::getType));
-
-        // 2. Chuyển đổi Map thành List DTO
-        return groupedReactions.entrySet().stream()
-                .map(entry -> {
-                    ReactionType type = entry.getKey();
-                    List<ProgressReaction> reactionsOfType = entry.getValue();
-
-                    // 3. Kiểm tra xem user hiện tại có react type này không
-                    boolean hasCurrentUserReacted = reactionsOfType.stream()
-                            .anyMatch(reaction -> reaction.getUser().getId().equals(currentUserId));
-
-                    return TimelineResponse.ReactionResponse.builder()
-                            .type(type)
-                            .count(reactionsOfType.size())
-                            .hasCurrentUserReacted(hasCurrentUserReacted)
-                            .build();
-                })
-                .collect(Collectors.toList());
+    public TimelineDaySnapshot.CheckInEntry toSnapshotEntry(CheckInEvent event) {
+        List<TimelineDaySnapshot.AttachmentEntry> attachments = event.getAttachments() == null ? Collections.emptyList() :
+                event.getAttachments().stream()
+                        .map(att -> new TimelineDaySnapshot.AttachmentEntry(
+                                att.getFileUrl(), att.getOriginalFilename(), att.getContentType(), att.getFileSize(),
+                                att.getThumbnailUrl()))
+                        .collect(Collectors.toList());
+        List<TimelineDaySnapshot.TaskEntry> tasks = event.getCompletedTasks() == null ? Collections.emptyList() :
+                event.getCompletedTasks().stream()
+                        .map(CheckInTask::getTask)
+                        .filter(Objects::nonNull)
+                        .map(task -> new TimelineDaySnapshot.TaskEntry(task.getId(), task.getDescription()))
+                        .collect(Collectors.toList());
+        List<String> links = event.getLinks() != null ? List.copyOf(event.getLinks()) : Collections.emptyList();
+        return new TimelineDaySnapshot.CheckInEntry(event.getId(), event.getCheckInTimestamp(), event.getNotes(),
+                attachments, tasks, links);
     }
 
     /**
-     * Helper: Lấy ID của user đang đăng nhập (nếu có)
+     * Ghép check-in trong snapshot với thông tin thành viên (hiện tại) và comment/reaction của người xem.
      */
-    private Integer getCurrentUserId() {
-        try {
-            Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-            if (principal instanceof UserDetails) {
-                String email = ((UserDetails) principal).getUsername();
-                // Chúng ta cần ID, không phải email
-                return userRepository.findByEmail(email)
-                        .map(User::getId)
-                        .orElse(null);
-            }
-        } catch (Exception e) {
-            log.warn("Không thể lấy thông tin user hiện tại: {}", e.getMessage());
-        }
-        return null; // Trả về null nếu không xác định được
+    public TimelineResponse.CheckInEventResponse toCheckInEventResponse(TimelineDaySnapshot.CheckInEntry entry,
+                                                                        TimelineResponse.MemberInfo memberInfo,
+                                                                        CheckInMappingContext context) {
+        Long eventId = entry.id();
+        return TimelineResponse.CheckInEventResponse.builder()
+                .id(eventId)
+                .checkInTimestamp(entry.checkInTimestamp())
+                .notes(entry.notes())
+                .member(memberInfo)
+                .attachments(entry.attachments().stream()
+                        .map(att -> TimelineResponse.AttachmentResponse.builder()
+                                .fileUrl(att.fileUrl())
+                                .thumbnailUrl(att.thumbnailUrl())
+                                .originalFilename(att.originalFilename())
+                                .contentType(att.contentType())
+                                .fileSize(att.fileSize())
+                                .build())
+                        .collect(Collectors.toList()))
+                .completedTasks(entry.completedTasks().stream()
+                        .map(task -> TimelineResponse.CompletedTaskInfo.builder()
+                                .taskId(task.taskId())
+                                .description(task.description())
+                                .build())
+                        .collect(Collectors.toList()))
+                .links(entry.links())
+                .commentCount(context.commentCountOf(eventId))
+                .reactionCount(context.reactionCountOf(eventId))
+                .comments(context.commentsOf(eventId))
+                .reactions(context.reactionsOf(eventId))
+                .completedTaskIds(entry.completedTasks().stream()
+                        .map(TimelineDaySnapshot.TaskEntry::taskId)
+                        .collect(Collectors.toList()))
+                .build();
     }
 
     // --- CÁC HÀM MAP CŨ (toMemberInfo, toAttachmentResponse, toCompletedTaskInfo) (Giữ nguyên) ---
 
     public TimelineResponse.MemberInfo toMemberInfo(PlanMember member) {
         if (member == null || member.getUser() == null) {
+            return toMemberInfo((UserDisplay) null);
+        }
+        return toMemberInfo(userDisplayNameResolver.get(member.getUser()));
+    }
+
+    /**
+     * MemberInfo cho cả danh sách thành viên (key: PlanMember.id), tên/email lấy bằng 1 query.
+     */
+    public Map<Integer, TimelineResponse.MemberInfo> toMemberInfos(Collection<PlanMember> members) {
+        Map<Integer, UserDisplay> users = userDisplayNameResolver.getAll(members.stream()
+                .map(PlanMember::getUser)
+                .filter(Objects::nonNull)
+                .map(User::getId)
+                .collect(Collectors.toList()));
+        Map<Integer, TimelineResponse.MemberInfo> result = new HashMap<>();
+        for (PlanMember member : members) {
+            User user = member.getUser();
+            UserDisplay display = user == null ? null : users.get(user.getId());
+            result.put(member.getId(), display != null ? toMemberInfo(display) : toMemberInfo(member));
+        }
+        return result;
+    }
+
+    private TimelineResponse.MemberInfo toMemberInfo(UserDisplay user) {
+        if (user == null) {
             return TimelineResponse.MemberInfo.builder()
                     .userId(null)
                     .userEmail("N/A")
                     .userFullName("Người dùng ẩn danh")
                     .build();
         }
-        User user = member.getUser();
         return TimelineResponse.MemberInfo.builder()
-                .userId(user.getId())
-                .userEmail(user.getEmail())
-                .userFullName(taskMapper.getUserFullName(user))
+                .userId(user.userId())
+                .userEmail(user.email())
+                .userFullName(user.displayName())
                 .build();
     }
 
@@ -175,6 +269,7 @@ public class ProgressMapper {
         }
         return TimelineResponse.AttachmentResponse.builder()
                 .fileUrl(attachment.getFileUrl())
+                .thumbnailUrl(attachment.getThumbnailUrl())
                 .originalFilename(attachment.getOriginalFilename())
                 .contentType(attachment.getContentType())
                 .fileSize(attachment.getFileSize())
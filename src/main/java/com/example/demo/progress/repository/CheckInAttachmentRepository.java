@@ -2,8 +2,19 @@ package com.example.demo.progress.repository;
 
 import com.example.demo.progress.entity.checkin.CheckInAttachment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface CheckInAttachmentRepository extends JpaRepository<CheckInAttachment, Long> {
+
+    /**
+     * Attachment của file chưa có ảnh thu nhỏ, kèm check-in -> thành viên -> plan (để làm mới timeline của plan).
+     */
+    @Query("SELECT a FROM CheckInAttachment a JOIN FETCH a.checkInEvent e JOIN FETCH e.planMember m JOIN FETCH m.plan " +
+           "WHERE a.storedFilename = :storedFilename AND a.thumbnailUrl IS NULL")
+    List<CheckInAttachment> findWithoutThumbnailByStoredFilename(@Param("storedFilename") String storedFilename);
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set; 
@@ -16,23 +17,27 @@ import java.util.Set;
 public interface CheckInEventRepository extends JpaRepository<CheckInEvent, Long> {
 
     /**
-     * Lấy tất cả các sự kiện check-in cho một plan trong một khoảng thời gian,
-     * fetch kèm theo thông tin thành viên, task, attachment VÀ LINKS để tránh N+1 query.
+     * Check-in của plan trong khoảng thời gian, chỉ kèm thành viên (không JOIN FETCH collection
+     * để tránh tích Descartes attachments x tasks x links). Các collection nạp riêng bằng 3 query bên dưới.
      */
-    @Query("SELECT DISTINCT cie FROM CheckInEvent cie " +
-           "LEFT JOIN FETCH cie.planMember pm " +
-           "LEFT JOIN FETCH pm.user " + 
-           "LEFT JOIN FETCH cie.attachments att " + 
-           "LEFT JOIN FETCH cie.completedTasks ct " + 
-           "LEFT JOIN FETCH ct.task " +
-           "LEFT JOIN FETCH cie.links " + // <-- THÊM MỚI DÒNG NÀY ĐỂ SỬA LỖI "no Session"
+    @Query("SELECT cie FROM CheckInEvent cie " +
+           "JOIN FETCH cie.planMember pm " +
            "WHERE pm.plan.id = :planId AND cie.checkInTimestamp BETWEEN :start AND :end " +
-           "ORDER BY cie.checkInTimestamp ASC") 
-    List<CheckInEvent> findByPlanIdAndTimestampBetweenWithDetails(
-            @Param("planId") Long planId,
+           "ORDER BY cie.checkInTimestamp ASC")
+    List<CheckInEvent> findByPlanIdAndTimestampBetween(
+            @Param("planId") Integer planId,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
+    @Query("SELECT DISTINCT cie FROM CheckInEvent cie LEFT JOIN FETCH cie.attachments WHERE cie.id IN :ids")
+    List<CheckInEvent> fetchAttachmentsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT cie FROM CheckInEvent cie LEFT JOIN FETCH cie.completedTasks ct LEFT JOIN FETCH ct.task WHERE cie.id IN :ids")
+    List<CheckInEvent> fetchCompletedTasksByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT DISTINCT cie FROM CheckInEvent cie LEFT JOIN FETCH cie.links WHERE cie.id IN :ids")
+    List<CheckInEvent> fetchLinksByIdIn(@Param("ids") Collection<Long> ids);
+
  // Thêm phương thức này
     List<CheckInEvent> findAllByPlanMemberIdIn(List<Integer> memberIds);
     
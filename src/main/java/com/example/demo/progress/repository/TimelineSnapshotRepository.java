@@ -0,0 +1,25 @@
+package com.example.demo.progress.repository;
+
+import com.example.demo.progress.entity.TimelineSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+@Repository
+public interface TimelineSnapshotRepository extends JpaRepository<TimelineSnapshot, Long> {
+
+    Optional<TimelineSnapshot> findByPlanIdAndSnapshotDate(Integer planId, LocalDate snapshotDate);
+
+    @Modifying
+    @Query("DELETE FROM TimelineSnapshot s WHERE s.planId = :planId")
+    int deleteByPlanId(@Param("planId") Integer planId);
+
+    @Modifying
+    @Query("DELETE FROM TimelineSnapshot s WHERE s.planId = :planId AND s.snapshotDate = :snapshotDate")
+    int deleteByPlanIdAndSnapshotDate(@Param("planId") Integer planId, @Param("snapshotDate") LocalDate snapshotDate);
+}
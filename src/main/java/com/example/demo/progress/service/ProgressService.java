@@ -13,6 +13,7 @@ import com.example.demo.user.entity.User;
 import com.example.demo.community.dto.request.AddReactionRequest;
 import com.example.demo.community.dto.request.PostCommentRequest;
 import com.example.demo.community.dto.request.UpdateCommentRequest;
+import com.example.demo.community.dto.response.CommentPageResponse;
 import com.example.demo.community.dto.response.CommentResponse;
 // --- KẾT THÚC IMPORT MỚI ---
 
@@ -50,6 +51,12 @@ public interface ProgressService {
      */
     void deleteCheckInComment(Long commentId, String userEmail);
     
+    /**
+     * Một trang bình luận của CheckInEvent, bắt đầu từ mới nhất; cursor = nextCursor của trang trước.
+     * Timeline chỉ trả kèm trang đầu nên client dùng API này để xem các bình luận cũ hơn.
+     */
+    CommentPageResponse getCheckInComments(String shareableLink, Long checkInEventId, Long cursor, String userEmail);
+    
     /**
      * Thêm/xóa (toggle) một reaction trên một CheckInEvent.
      */
@@ -0,0 +1,257 @@
+package com.example.demo.progress.service;
+
+import com.example.demo.progress.dto.snapshot.TimelineDaySnapshot;
+import com.example.demo.progress.entity.TimelineSnapshot;
+import com.example.demo.progress.repository.TimelineSnapshotRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Timeline theo ngày (plan, date) ở dạng {@link TimelineDaySnapshot}, dựng 1 lần rồi dùng chung cho mọi người xem.
+ *
+ * - Ngày đã đóng (hết {@code EDIT_GRACE_PERIOD_HOURS} cho check-in cuối cùng của ngày, tức từ ngày D+2):
+ *   nội dung không còn thay đổi -> "đóng băng", lưu vào plan_timeline_snapshots và cache trong bộ nhớ.
+ * - Ngày còn mở (hôm nay / hôm qua): chỉ cache trong bộ nhớ, được cập nhật tăng dần bởi
+ *   {@link #applyCheckIn} / {@link #removeCheckIn} sau khi transaction tạo/sửa/xóa check-in commit.
+ */
+@Slf4j
+@Component
+public class TimelineSnapshotStore {
+
+    private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    // Check-in lúc 23:59 ngày D còn sửa được tới 23:59 ngày D+1
+    private static final long DAYS_UNTIL_FROZEN = 1;
+
+    private final TimelineSnapshotRepository timelineSnapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate writeTransaction;
+    // Tham gia transaction của caller nếu có (xóa snapshot cùng lúc với thay đổi dữ liệu)
+    private final TransactionTemplate joinTransaction;
+
+    @Value("${app.timeline.snapshot-cache.max-size:5000}")
+    private int maxSize = 5_000;
+
+    private final Map<Key, TimelineDaySnapshot> cache = new ConcurrentHashMap<>();
+    // Theo từng plan, tăng mỗi lần ghi vào plan đó; snapshot dựng song song với một lần ghi
+    // cùng plan sẽ không được cache (ghi ở plan khác không ảnh hưởng)
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public TimelineSnapshotStore(TimelineSnapshotRepository timelineSnapshotRepository,
+                                 ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager) {
+        this.timelineSnapshotRepository = timelineSnapshotRepository;
+        this.objectMapper = objectMapper;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.joinTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public boolean isFrozen(LocalDate date) {
+        return LocalDate.now(VIETNAM_ZONE).isAfter(date.plusDays(DAYS_UNTIL_FROZEN));
+    }
+
+    /**
+     * Lấy snapshot của (plan, date): cache -> bảng plan_timeline_snapshots (ngày đã đóng) -> dựng mới bằng :builder.
+     */
+    public TimelineDaySnapshot getOrBuild(Integer planId, LocalDate date, Supplier<TimelineDaySnapshot> builder) {
+        Key key = new Key(planId, date);
+        TimelineDaySnapshot cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (isFrozen(date)) {
+            Optional<TimelineDaySnapshot> stored = readStored(planId, date);
+            if (stored.isPresent()) {
+                put(key, stored.get());
+                return stored.get();
+            }
+        }
+
+        AtomicLong generation = generationOf(planId);
+        long generationBefore = generation.get();
+        TimelineDaySnapshot snapshot = builder.get();
+        // Dựng song song với một lần ghi/invalidate thì có thể đã đọc dữ liệu cũ -> không cache, không đóng băng
+        if (generation.get() == generationBefore) {
+            if (isFrozen(date)) {
+                store(planId, date, snapshot);
+            }
+            put(key, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Thêm hoặc thay thế check-in :entry trong snapshot ngày :date đang cache (sau khi transaction commit).
+     * Ngày chưa được cache thì bỏ qua - lần đọc kế tiếp sẽ dựng từ DB.
+     */
+    public void applyCheckIn(Integer planId, LocalDate date, Integer memberId, TimelineDaySnapshot.CheckInEntry entry) {
+        afterCommit(planId, () -> cache.computeIfPresent(new Key(planId, date), (key, snapshot) -> {
+            Map<Integer, List<TimelineDaySnapshot.CheckInEntry>> byMember = withoutCheckIn(snapshot, entry.id());
+            List<TimelineDaySnapshot.CheckInEntry> entries = new ArrayList<>(byMember.getOrDefault(memberId, List.of()));
+            entries.add(entry);
+            entries.sort(Comparator.comparing(TimelineDaySnapshot.CheckInEntry::checkInTimestamp));
+            byMember.put(memberId, List.copyOf(entries));
+            return new TimelineDaySnapshot(Map.copyOf(byMember));
+        }));
+    }
+
+    public void removeCheckIn(Integer planId, LocalDate date, Long checkInEventId) {
+        afterCommit(planId, () -> cache.computeIfPresent(new Key(planId, date),
+                (key, snapshot) -> new TimelineDaySnapshot(Map.copyOf(withoutCheckIn(snapshot, checkInEventId)))));
+    }
+
+    /**
+     * Bỏ mọi snapshot của plan (xóa plan, sửa/xóa task mà check-in tham chiếu...),
+     * kể cả snapshot ngày đã đóng trong plan_timeline_snapshots - lần đọc sau sẽ dựng lại từ DB.
+     * Snapshot lưu trong DB bị xóa trong transaction của caller và xóa lại sau commit, để bản
+     * được đóng băng từ dữ liệu cũ trong lúc transaction chưa commit cũng bị bỏ.
+     */
+    public void invalidatePlan(Integer planId) {
+        evictPlan(planId);
+        joinTransaction.executeWithoutResult(status -> timelineSnapshotRepository.deleteByPlanId(planId));
+        afterCommit(planId, () -> {
+            evictPlan(planId);
+            deleteStored(planId);
+        });
+    }
+
+    /**
+     * Như {@link #invalidatePlan} nhưng chỉ cho ngày :date (ví dụ ảnh thu nhỏ tạo muộn cho check-in của ngày đó).
+     */
+    public void invalidateDay(Integer planId, LocalDate date) {
+        Key key = new Key(planId, date);
+        evict(key);
+        joinTransaction.executeWithoutResult(status -> timelineSnapshotRepository.deleteByPlanIdAndSnapshotDate(planId, date));
+        afterCommit(planId, () -> {
+            evict(key);
+            deleteStored(planId, date);
+        });
+    }
+
+    private void deleteStored(Integer planId, LocalDate date) {
+        try {
+            writeTransaction.executeWithoutResult(status -> timelineSnapshotRepository.deleteByPlanIdAndSnapshotDate(planId, date));
+        } catch (RuntimeException e) {
+            log.warn("[TimelineSnapshotStore] Cannot delete stored snapshot plan={} date={}", planId, date, e);
+        }
+    }
+
+    private void evict(Key key) {
+        generationOf(key.planId()).incrementAndGet();
+        cache.remove(key);
+    }
+
+    private void deleteStored(Integer planId) {
+        try {
+            writeTransaction.executeWithoutResult(status -> timelineSnapshotRepository.deleteByPlanId(planId));
+        } catch (RuntimeException e) {
+            log.warn("[TimelineSnapshotStore] Cannot delete stored snapshots plan={}", planId, e);
+        }
+    }
+
+    private void evictPlan(Integer planId) {
+        generationOf(planId).incrementAndGet();
+        cache.keySet().removeIf(key -> key.planId().equals(planId));
+    }
+
+    private AtomicLong generationOf(Integer planId) {
+        return generations.computeIfAbsent(planId, id -> new AtomicLong());
+    }
+
+    private void afterCommit(Integer planId, Runnable action) {
+        AtomicLong generation = generationOf(planId);
+        generation.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generation.incrementAndGet();
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private Map<Integer, List<TimelineDaySnapshot.CheckInEntry>> withoutCheckIn(TimelineDaySnapshot snapshot, Long checkInEventId) {
+        Map<Integer, List<TimelineDaySnapshot.CheckInEntry>> byMember = new HashMap<>();
+        snapshot.checkInsByMemberId().forEach((memberId, entries) -> {
+            List<TimelineDaySnapshot.CheckInEntry> kept = entries.stream()
+                    .filter(entry -> !entry.id().equals(checkInEventId))
+                    .toList();
+            if (!kept.isEmpty()) {
+                byMember.put(memberId, kept);
+            }
+        });
+        return byMember;
+    }
+
+    private Optional<TimelineDaySnapshot> readStored(Integer planId, LocalDate date) {
+        return timelineSnapshotRepository.findByPlanIdAndSnapshotDate(planId, date).flatMap(stored -> {
+            try {
+                return Optional.of(objectMapper.readValue(stored.getPayload(), TimelineDaySnapshot.class));
+            } catch (JsonProcessingException e) {
+                log.warn("[TimelineSnapshotStore] Unreadable snapshot plan={} date={}, rebuilding", planId, date, e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    private void store(Integer planId, LocalDate date, TimelineDaySnapshot snapshot) {
+        try {
+            String payload = objectMapper.writeValueAsString(snapshot);
+            writeTransaction.executeWithoutResult(status -> {
+                TimelineSnapshot entity = timelineSnapshotRepository.findByPlanIdAndSnapshotDate(planId, date)
+                        .orElseGet(() -> TimelineSnapshot.builder().planId(planId).snapshotDate(date).build());
+                entity.setPayload(payload);
+                timelineSnapshotRepository.save(entity);
+            });
+            log.debug("[TimelineSnapshotStore] Froze timeline plan={} date={}", planId, date);
+        } catch (JsonProcessingException e) {
+            log.warn("[TimelineSnapshotStore] Cannot serialize snapshot plan={} date={}", planId, date, e);
+        } catch (DataIntegrityViolationException e) {
+            // Request song song đã lưu snapshot cùng ngày
+            log.debug("[TimelineSnapshotStore] Snapshot plan={} date={} already stored", planId, date);
+        }
+    }
+
+    private void put(Key key, TimelineDaySnapshot snapshot) {
+        if (cache.size() >= maxSize) {
+            // Cache đầy: bỏ bớt các entry bất kỳ, chúng sẽ được nạp lại khi cần
+            Iterator<Key> it = cache.keySet().iterator();
+            int toRemove = Math.max(1, maxSize / 10);
+            while (toRemove-- > 0 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(key, snapshot);
+    }
+
+    private record Key(Integer planId, LocalDate date) {
+    }
+}
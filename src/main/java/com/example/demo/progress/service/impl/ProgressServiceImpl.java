@@ -8,23 +8,33 @@ import com.example.demo.plan.entity.Task;
 import com.example.demo.plan.repository.PlanMemberRepository;
 import com.example.demo.plan.repository.PlanRepository;
 import com.example.demo.plan.repository.TaskRepository;
+import com.example.demo.plan.service.TaskOccurrenceResolver;
 import com.example.demo.progress.dto.request.CheckInRequest;
 import com.example.demo.progress.dto.response.TimelineResponse;
+import com.example.demo.progress.dto.snapshot.TimelineDaySnapshot;
+import com.example.demo.progress.service.TimelineSnapshotStore;
 import com.example.demo.progress.dto.response.ProgressChartDataResponse;
 import com.example.demo.progress.entity.checkin.CheckInAttachment;
 import com.example.demo.progress.entity.checkin.CheckInEvent;
 import com.example.demo.progress.entity.checkin.CheckInTask;
+import com.example.demo.progress.mapper.CheckInMappingContext;
 import com.example.demo.progress.mapper.ProgressMapper;
 import com.example.demo.progress.repository.CheckInEventRepository;
 import com.example.demo.progress.service.ProgressService;
 import com.example.demo.shared.exception.BadRequestException;
 import com.example.demo.shared.exception.ResourceNotFoundException;
+import com.example.demo.shared.service.AttachmentBlobReferences;
+import com.example.demo.shared.service.AttachmentThumbnails;
+import com.example.demo.shared.service.UploadOwnership;
 import com.example.demo.user.dto.response.UserStatsResponse;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -38,6 +48,7 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -47,6 +58,7 @@ import java.util.stream.Collectors;
 import com.example.demo.community.dto.request.AddReactionRequest;
 import com.example.demo.community.dto.request.PostCommentRequest;
 import com.example.demo.community.dto.request.UpdateCommentRequest;
+import com.example.demo.community.dto.response.CommentPageResponse;
 import com.example.demo.community.dto.response.CommentResponse;
 import com.example.demo.community.entity.ProgressComment;
 import com.example.demo.community.entity.ProgressReaction;
@@ -69,11 +81,16 @@ public class ProgressServiceImpl implements ProgressService {
     private final UserRepository userRepository;
     private final PlanMemberRepository planMemberRepository;
     private final TaskRepository taskRepository;
+    private final TaskOccurrenceResolver taskOccurrenceResolver;
     private final ProgressMapper progressMapper;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final PlanEventSequencer planEventSequencer;
     private final FeedService feedService;
     private final CheckInEventRepository checkInEventRepository;
     private final CheckInTaskRepository checkInTaskRepository;
+    private final TimelineSnapshotStore timelineSnapshotStore;
+    private final AttachmentBlobReferences attachmentBlobReferences;
+    private final AttachmentThumbnails attachmentThumbnails;
+    private final UploadOwnership uploadOwnership;
 
     // --- THÊM CÁC DEPENDENCIES TỪ PACKAGE 'community' ---
     private final ProgressCommentRepository progressCommentRepository;
@@ -83,6 +100,10 @@ public class ProgressServiceImpl implements ProgressService {
     private static final ZoneId VIETNAM_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
     private static final long EDIT_GRACE_PERIOD_HOURS = 24;
 
+    // Cùng cỡ trang với phần bình luận trả kèm timeline
+    @Value("${app.timeline.comment-page-size:20}")
+    private int commentPageSize = 20;
+
 
     // --- HÀM createCheckIn (Giữ nguyên) ---
     @Override
@@ -127,6 +148,10 @@ public class ProgressServiceImpl implements ProgressService {
         // (Logic xử lý Attachments, Tasks, Links giữ nguyên...)
         // 1. Xử lý Attachments
         if (request.getAttachments() != null) {
+            // storedFilename do client gửi: chỉ nhận file chính user này đã upload
+            uploadOwnership.requireUploadedBy(user.getId(), request.getAttachments().stream()
+                    .map(CheckInRequest.AttachmentRequest::getStoredFilename)
+                    .toList());
             for (CheckInRequest.AttachmentRequest attReq : request.getAttachments()) {
                 CheckInAttachment attachment = CheckInAttachment.builder()
                         .fileUrl(attReq.getFileUrl())
@@ -135,18 +160,20 @@ public class ProgressServiceImpl implements ProgressService {
                         .contentType(attReq.getContentType())
                         .fileSize(attReq.getFileSize())
                         .build();
+                attachmentThumbnails.attach(attachment);
                 checkInEvent.addAttachment(attachment);
             }
         }
 
         // 2. Xử lý Task đã hoàn thành
         if (request.getCompletedTaskIds() != null && !request.getCompletedTaskIds().isEmpty()) {
-            Set<Long> taskIds = request.getCompletedTaskIds();
+            // Check-in task lặp lại (id ảo) sẽ tạo task thật cho ngày đó trước
+            List<Long> taskIds = taskOccurrenceResolver.materializeIds(plan, request.getCompletedTaskIds());
             List<Task> validTasks = taskRepository.findAllById(taskIds).stream()
                     .filter(task -> task.getPlan().getId().equals(plan.getId()))
                     .collect(Collectors.toList());
 
-            if (validTasks.size() != taskIds.size()) {
+            if (validTasks.size() != request.getCompletedTaskIds().size()) {
                 log.warn("User {} tried to check in tasks not belonging to plan {}", userEmail, shareableLink);
             }
             
@@ -169,15 +196,17 @@ public class ProgressServiceImpl implements ProgressService {
         CheckInEvent savedEvent = checkInEventRepository.save(checkInEvent);
         log.info("User {} created CheckInEvent ID {} for plan {}", userEmail, savedEvent.getId(), shareableLink);
 
-        TimelineResponse.CheckInEventResponse response = progressMapper.toCheckInEventResponse(savedEvent);
+        timelineSnapshotStore.applyCheckIn(plan.getId(), now.toLocalDate(), member.getId(), progressMapper.toSnapshotEntry(savedEvent));
+
+        TimelineResponse.CheckInEventResponse response = progressMapper.toCheckInEventResponse(savedEvent, user.getId());
         
         // Gửi WebSocket
-        String destination = "/topic/plan/" + shareableLink + "/progress";
+        String destination = PlanChannel.PROGRESS.destination(shareableLink);
         Map<String, Object> payload = Map.of(
             "type", "NEW_CHECK_IN",
             "checkInEvent", response
         );
-        messagingTemplate.convertAndSend(destination, payload);
+        planEventSequencer.publish(shareableLink, PlanChannel.PROGRESS, payload);
         log.info("Sent WebSocket update to {} for new CheckInEvent ID {}", destination, savedEvent.getId());
         
         return response;
@@ -213,21 +242,24 @@ public class ProgressServiceImpl implements ProgressService {
         User user = findUserByEmail(userEmail);
         findMemberByUserAndPlan(user, plan); 
 
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
-        
-        List<CheckInEvent> events = checkInEventRepository.findByPlanIdAndTimestampBetweenWithDetails(plan.getId().longValue(), startOfDay, endOfDay);
-        
-        Map<Integer, List<CheckInEvent>> eventsByMemberId = events.stream()
-                .collect(Collectors.groupingBy(event -> event.getPlanMember().getId()));
+        // Phần check-in dùng chung cho mọi người xem (đóng băng khi ngày đã qua hạn sửa)
+        TimelineDaySnapshot snapshot = timelineSnapshotStore.getOrBuild(plan.getId(), date, () -> buildTimelineSnapshot(plan, date));
+        List<Long> eventIds = snapshot.checkInsByMemberId().values().stream()
+                .flatMap(List::stream)
+                .map(TimelineDaySnapshot.CheckInEntry::id)
+                .collect(Collectors.toList());
+        // Người xem resolve 1 lần; comment/reaction của cả timeline nạp theo lô
+        CheckInMappingContext mappingContext = progressMapper.createContextForIds(eventIds, user.getId());
         
         TimelineResponse timelineResponse = new TimelineResponse();
+        // Tên/email của mọi thành viên: 1 query
+        Map<Integer, TimelineResponse.MemberInfo> memberInfos = progressMapper.toMemberInfos(plan.getMembers());
         
         for (PlanMember member : plan.getMembers()) {
-            List<CheckInEvent> memberEvents = eventsByMemberId.getOrDefault(member.getId(), Collections.emptyList());
-            TimelineResponse.MemberInfo memberInfo = progressMapper.toMemberInfo(member);
-            List<TimelineResponse.CheckInEventResponse> checkInResponses = memberEvents.stream()
-                    .map(progressMapper::toCheckInEventResponse)
+            List<TimelineDaySnapshot.CheckInEntry> memberEntries = snapshot.checkInsByMemberId().getOrDefault(member.getId(), Collections.emptyList());
+            TimelineResponse.MemberInfo memberInfo = memberInfos.get(member.getId());
+            List<TimelineResponse.CheckInEventResponse> checkInResponses = memberEntries.stream()
+                    .map(entry -> progressMapper.toCheckInEventResponse(entry, memberInfo, mappingContext))
                     .collect(Collectors.toList());
             
             TimelineResponse.MemberTimeline memberTimeline = TimelineResponse.MemberTimeline.builder()
@@ -241,6 +273,22 @@ public class ProgressServiceImpl implements ProgressService {
         return timelineResponse;
     }
     
+    private TimelineDaySnapshot buildTimelineSnapshot(Plan plan, LocalDate date) {
+        List<CheckInEvent> events = checkInEventRepository.findByPlanIdAndTimestampBetween(
+                plan.getId(), date.atStartOfDay(), date.atTime(LocalTime.MAX));
+        if (!events.isEmpty()) {
+            // Mỗi collection một query, Hibernate gắn vào các event đã nạp ở trên
+            List<Long> ids = events.stream().map(CheckInEvent::getId).collect(Collectors.toList());
+            checkInEventRepository.fetchAttachmentsByIdIn(ids);
+            checkInEventRepository.fetchCompletedTasksByIdIn(ids);
+            checkInEventRepository.fetchLinksByIdIn(ids);
+        }
+        Map<Integer, List<TimelineDaySnapshot.CheckInEntry>> entriesByMemberId = events.stream()
+                .collect(Collectors.groupingBy(event -> event.getPlanMember().getId(),
+                        Collectors.mapping(progressMapper::toSnapshotEntry, Collectors.toList())));
+        return new TimelineDaySnapshot(entriesByMemberId);
+    }
+
     // --- HÀM updateCheckIn (Giữ nguyên) ---
     @Override
     @Transactional
@@ -261,7 +309,8 @@ public class ProgressServiceImpl implements ProgressService {
         checkInTaskRepository.deleteAll(event.getCompletedTasks());
         event.getCompletedTasks().clear(); 
         if (request.getCompletedTaskIds() != null && !request.getCompletedTaskIds().isEmpty()) {
-            Set<Long> taskIds = request.getCompletedTaskIds().stream().collect(Collectors.toSet());
+            Set<Long> taskIds = new HashSet<>(taskOccurrenceResolver.materializeIds(
+                    event.getPlanMember().getPlan(), request.getCompletedTaskIds()));
             List<Task> validTasks = taskRepository.findAllById(taskIds).stream()
                     .filter(task -> task.getPlan().getId().equals(event.getPlanMember().getPlan().getId()))
                     .collect(Collectors.toList());
@@ -273,11 +322,11 @@ public class ProgressServiceImpl implements ProgressService {
             }
         }
         CheckInEvent updatedEvent = checkInEventRepository.save(event);
-        TimelineResponse.CheckInEventResponse response = progressMapper.toCheckInEventResponse(updatedEvent);
-        String topic = "/topic/plan/" + event.getPlanMember().getPlan().getShareableLink() + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-             Map.of("type", "UPDATE_CHECK_IN", "checkInEvent", response)
-        );
+        timelineSnapshotStore.applyCheckIn(event.getPlanMember().getPlan().getId(), event.getCheckInTimestamp().toLocalDate(),
+                event.getPlanMember().getId(), progressMapper.toSnapshotEntry(updatedEvent));
+        TimelineResponse.CheckInEventResponse response = progressMapper.toCheckInEventResponse(updatedEvent, currentUser.getId());
+        planEventSequencer.publish(event.getPlanMember().getPlan().getShareableLink(), PlanChannel.PROGRESS,
+                Map.of("type", "UPDATE_CHECK_IN", "checkInEvent", response));
         log.info("User {} updated CheckInEvent ID {}", userEmail, updatedEvent.getId());
         return response;
     }
@@ -292,11 +341,14 @@ public class ProgressServiceImpl implements ProgressService {
                 .orElseThrow(() -> new ResourceNotFoundException("CheckInEvent not found with id: " + checkInEventId));
         validateCheckInModification(event, currentUser);
         String shareableLink = event.getPlanMember().getPlan().getShareableLink();
+        List<String> storedFilenames = event.getAttachments().stream()
+                .map(CheckInAttachment::getStoredFilename)
+                .toList();
         checkInEventRepository.delete(event); 
-        String topic = "/topic/plan/" + shareableLink + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-            Map.of("type", "DELETE_CHECK_IN", "checkInEventId", checkInEventId)
-        );
+        attachmentBlobReferences.releaseAfterCommit(storedFilenames);
+        timelineSnapshotStore.removeCheckIn(event.getPlanMember().getPlan().getId(), event.getCheckInTimestamp().toLocalDate(), checkInEventId);
+        planEventSequencer.publish(shareableLink, PlanChannel.PROGRESS,
+                Map.of("type", "DELETE_CHECK_IN", "checkInEventId", checkInEventId));
         log.info("User {} deleted CheckInEvent ID {}", userEmail, checkInEventId);
     }
     
@@ -335,10 +387,8 @@ public class ProgressServiceImpl implements ProgressService {
         log.info("User {} đã thêm bình luận {} vào CheckInEvent {}", userEmail, savedComment.getId(), checkInEventId);
         
         // Gửi WebSocket
-        String topic = "/topic/plan/" + event.getPlanMember().getPlan().getShareableLink() + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-             Map.of("type", "NEW_CHECKIN_COMMENT", "checkInEventId", checkInEventId)
-        );
+        planEventSequencer.publish(event.getPlanMember().getPlan().getShareableLink(), PlanChannel.PROGRESS,
+                Map.of("type", "NEW_CHECKIN_COMMENT", "checkInEventId", checkInEventId));
 
         return commentMapper.toCommentResponse(savedComment);
     }
@@ -360,10 +410,8 @@ public class ProgressServiceImpl implements ProgressService {
         log.info("User {} đã cập nhật bình luận {}", userEmail, commentId);
 
         // Gửi WebSocket
-        String topic = "/topic/plan/" + comment.getCheckInEvent().getPlanMember().getPlan().getShareableLink() + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-             Map.of("type", "UPDATE_CHECKIN_COMMENT", "checkInEventId", comment.getCheckInEvent().getId())
-        );
+        planEventSequencer.publish(comment.getCheckInEvent().getPlanMember().getPlan().getShareableLink(), PlanChannel.PROGRESS,
+                Map.of("type", "UPDATE_CHECKIN_COMMENT", "checkInEventId", comment.getCheckInEvent().getId()));
 
         return commentMapper.toCommentResponse(updatedComment);
     }
@@ -389,10 +437,39 @@ public class ProgressServiceImpl implements ProgressService {
         log.info("User {} đã xóa bình luận {}", userEmail, commentId);
         
         // Gửi WebSocket
-        String topic = "/topic/plan/" + event.getPlanMember().getPlan().getShareableLink() + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-             Map.of("type", "DELETE_CHECKIN_COMMENT", "checkInEventId", event.getId())
-        );
+        planEventSequencer.publish(event.getPlanMember().getPlan().getShareableLink(), PlanChannel.PROGRESS,
+                Map.of("type", "DELETE_CHECKIN_COMMENT", "checkInEventId", event.getId()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CommentPageResponse getCheckInComments(String shareableLink, Long checkInEventId, Long cursor, String userEmail) {
+        User user = findUserByEmail(userEmail);
+        CheckInEvent event = checkInEventRepository.findById(checkInEventId)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy CheckInEvent: " + checkInEventId));
+        Plan plan = event.getPlanMember().getPlan();
+        if (!plan.getShareableLink().equals(shareableLink)) {
+            throw new ResourceNotFoundException("Không tìm thấy CheckInEvent: " + checkInEventId);
+        }
+        findMemberByUserAndPlan(user, plan);
+
+        // Lấy dư 1 bản ghi để biết còn trang cũ hơn hay không
+        PageRequest page = PageRequest.of(0, commentPageSize + 1);
+        List<Long> ids = cursor == null
+                ? progressCommentRepository.findPageIds(checkInEventId, page)
+                : progressCommentRepository.findPageIdsBefore(checkInEventId, cursor, page);
+        boolean hasMore = ids.size() > commentPageSize;
+        if (hasMore) {
+            ids = ids.subList(0, commentPageSize);
+        }
+        // Trang trả về cũ -> mới giống timeline; cursor tiếp theo là bình luận cũ nhất của trang
+        List<CommentResponse> comments = ids.isEmpty()
+                ? Collections.emptyList()
+                : commentMapper.toCommentResponses(progressCommentRepository.findAllWithAuthorByIdIn(ids));
+        return CommentPageResponse.builder()
+                .comments(comments)
+                .nextCursor(hasMore ? ids.get(ids.size() - 1) : null)
+                .build();
     }
 
     @Override
@@ -436,10 +513,8 @@ public class ProgressServiceImpl implements ProgressService {
         }
         
         // Gửi WebSocket (Giữ nguyên)
-        String topic = "/topic/plan/" + event.getPlanMember().getPlan().getShareableLink() + "/progress";
-        messagingTemplate.convertAndSend(topic, 
-             Map.of("type", "UPDATE_CHECKIN_REACTION", "checkInEventId", checkInEventId)
-        );
+        planEventSequencer.publish(event.getPlanMember().getPlan().getShareableLink(), PlanChannel.PROGRESS,
+                Map.of("type", "UPDATE_CHECKIN_REACTION", "checkInEventId", checkInEventId));
     }
 
 
@@ -1,12 +1,21 @@
 package com.example.demo.shared.controller;
 
+import com.example.demo.config.async.AsyncWorkload;
 import com.example.demo.shared.dto.response.FileUploadResponse;
+import com.example.demo.shared.exception.BadRequestException;
+import com.example.demo.shared.service.AttachmentThumbnails;
 import com.example.demo.shared.service.FileUploadService;
-import lombok.RequiredArgsConstructor;
+import com.example.demo.shared.service.StoredFile;
+import com.example.demo.shared.service.UploadOwnership;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -14,25 +23,41 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
-import java.util.ArrayList; // Thêm import
-import java.util.List; // Thêm import
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @RestController
 @RequestMapping("/api/v1/files")
-@RequiredArgsConstructor
 public class FileUploadController {
 
     private final FileUploadService fileUploadService;
+    private final AttachmentThumbnails attachmentThumbnails;
+    private final UploadOwnership uploadOwnership;
+    private final Executor uploadExecutor;
+
+    public FileUploadController(FileUploadService fileUploadService,
+                                AttachmentThumbnails attachmentThumbnails,
+                                UploadOwnership uploadOwnership,
+                                @Qualifier(AsyncWorkload.UPLOAD_EXECUTOR) Executor uploadExecutor) {
+        this.fileUploadService = fileUploadService;
+        this.attachmentThumbnails = attachmentThumbnails;
+        this.uploadOwnership = uploadOwnership;
+        this.uploadExecutor = uploadExecutor;
+    }
 
     /**
      * Cập nhật để xử lý nhiều file (List) với key là "files"
-     * Thay đổi chữ ký phương thức và logic bên trong
+     * Các file được ghi song song trên uploadExecutor, kết quả giữ đúng thứ tự gửi lên.
      */
     @PostMapping("/upload")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<FileUploadResponse>> uploadFiles(@RequestParam("files") List<MultipartFile> files) {
-        
+    public ResponseEntity<List<FileUploadResponse>> uploadFiles(@RequestParam("files") List<MultipartFile> files,
+                                                                Authentication authentication) {
+
         if (files == null || files.isEmpty() || files.stream().allMatch(MultipartFile::isEmpty)) {
             log.warn("Upload attempt with empty file list.");
             // Trả về một danh sách rỗng với lỗi bad request
@@ -41,55 +66,88 @@ public class FileUploadController {
             );
         }
 
-        List<FileUploadResponse> responses = new ArrayList<>();
-
-        for (MultipartFile file : files) {
-             if (file.isEmpty()) {
-                 responses.add(FileUploadResponse.builder()
-                                 .message("Một file bị rỗng.")
-                                 .originalFilename("N/A")
-                                 .build());
-                 continue; // Bỏ qua file rỗng
-             }
-            
-            try {
-                String storedFilename = fileUploadService.storeFile(file);
+        // URL gốc lấy trên luồng request (ServletUriComponentsBuilder cần request hiện tại)
+        String baseUri = ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+        Integer uploaderId = uploadOwnership.uploaderId(authentication.getName());
+        List<CompletableFuture<FileUploadResponse>> pending = files.stream()
+                .map(file -> CompletableFuture.supplyAsync(() -> uploadOne(file, uploaderId, baseUri), uploadExecutor))
+                .toList();
 
-                String fileDownloadUri = ServletUriComponentsBuilder.fromCurrentContextPath()
-                        .path("/uploads/") // Đảm bảo khớp với WebConfig
-                        .path(storedFilename)
-                        .toUriString();
-
-                log.info("Upload thành công file: {}, Original: {}, URL: {}",
-                         storedFilename, file.getOriginalFilename(), fileDownloadUri);
+        // Trả về danh sách các response
+        return ResponseEntity.ok(pending.stream().map(CompletableFuture::join).toList());
+    }
 
-                FileUploadResponse response = FileUploadResponse.builder()
-                        .storedFilename(storedFilename)
-                        .fileUrl(fileDownloadUri)
-                        .message("Upload file thành công!")
-                        .size(file.getSize()) // Sửa lỗi: dùng getSize()
-                        .contentType(file.getContentType())
-                        .originalFilename(file.getOriginalFilename())
-                        .build();
-                
-                responses.add(response);
+    /**
+     * Upload 1 file bằng cách stream thẳng body của request (không qua multipart, không file tạm):
+     * nội dung được ghi tới backend lưu trữ và băm SHA-256 trong cùng một lượt đọc.
+     * Tên file gốc gửi trong header X-File-Name (URL-encoded), kiểu file trong Content-Type.
+     */
+    @PostMapping("/stream")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<FileUploadResponse> uploadStream(
+            @RequestHeader("X-File-Name") String encodedFilename,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            HttpServletRequest request,
+            Authentication authentication) throws IOException {
+        String originalFilename = URLDecoder.decode(encodedFilename, StandardCharsets.UTF_8);
+        Integer uploaderId = uploadOwnership.uploaderId(authentication.getName());
+        StoredFile stored = fileUploadService.store(request.getInputStream(), originalFilename, contentType,
+                request.getContentLengthLong());
+        uploadOwnership.recordUpload(uploaderId, stored.storedFilename());
+        String baseUri = ServletUriComponentsBuilder.fromCurrentContextPath().toUriString();
+        log.info("Upload (stream) thành công file: {}, Original: {}", stored.storedFilename(), originalFilename);
+        return ResponseEntity.ok(toResponse(stored, originalFilename, baseUri));
+    }
 
-            } catch (IOException ex) {
-                log.error("Lỗi I/O khi upload file: {}", file.getOriginalFilename(), ex);
-                 responses.add(FileUploadResponse.builder()
-                                 .message("Lưu file thất bại.")
-                                 .originalFilename(file.getOriginalFilename())
-                                 .build());
-            } catch (Exception ex) {
-                 log.error("Lỗi không xác định khi upload file: {}", file.getOriginalFilename(), ex);
-                 responses.add(FileUploadResponse.builder()
-                                 .message("Lỗi server khi upload file.")
-                                 .originalFilename(file.getOriginalFilename())
-                                 .build());
-            }
+    private FileUploadResponse uploadOne(MultipartFile file, Integer uploaderId, String baseUri) {
+        if (file.isEmpty()) {
+            return FileUploadResponse.builder()
+                    .message("Một file bị rỗng.")
+                    .originalFilename("N/A")
+                    .build();
         }
-        
-        // Trả về danh sách các response
-        return ResponseEntity.ok(responses);
+        try {
+            StoredFile stored = fileUploadService.store(file);
+            // Attachment sau này chỉ được trỏ tới file do chính người gửi upload
+            uploadOwnership.recordUpload(uploaderId, stored.storedFilename());
+            FileUploadResponse response = toResponse(stored, file.getOriginalFilename(), baseUri);
+            log.info("Upload thành công file: {}, Original: {}, URL: {}",
+                     stored.storedFilename(), file.getOriginalFilename(), response.getFileUrl());
+            return response;
+        } catch (BadRequestException ex) {
+            log.warn("File upload bị từ chối: {} - {}", file.getOriginalFilename(), ex.getMessage());
+            return FileUploadResponse.builder()
+                    .message(ex.getMessage())
+                    .originalFilename(file.getOriginalFilename())
+                    .build();
+        } catch (IOException ex) {
+            log.error("Lỗi I/O khi upload file: {}", file.getOriginalFilename(), ex);
+            return FileUploadResponse.builder()
+                    .message("Lưu file thất bại.")
+                    .originalFilename(file.getOriginalFilename())
+                    .build();
+        } catch (Exception ex) {
+            log.error("Lỗi không xác định khi upload file: {}", file.getOriginalFilename(), ex);
+            return FileUploadResponse.builder()
+                    .message("Lỗi server khi upload file.")
+                    .originalFilename(file.getOriginalFilename())
+                    .build();
+        }
+    }
+
+    private FileUploadResponse toResponse(StoredFile stored, String originalFilename, String baseUri) {
+        // Ảnh: tạo ảnh thu nhỏ ở nền, thường xong trước khi client gửi check-in
+        attachmentThumbnails.generateAsync(stored.storedFilename(), stored.contentType());
+        String fileDownloadUri = fileUploadService.publicUrl(stored.storedFilename())
+                .orElseGet(() -> baseUri + "/uploads/" + stored.storedFilename()); // Đảm bảo khớp với WebConfig
+        return FileUploadResponse.builder()
+                .storedFilename(stored.storedFilename())
+                .fileUrl(fileDownloadUri)
+                .message("Upload file thành công!")
+                .size(stored.size())
+                .contentType(stored.contentType())
+                .originalFilename(originalFilename)
+                .sha256(stored.sha256())
+                .build();
     }
-}
\ No newline at end of file
+}
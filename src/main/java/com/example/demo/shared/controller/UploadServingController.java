@@ -0,0 +1,187 @@
+package com.example.demo.shared.controller;
+
+import com.example.demo.shared.service.impl.UploadFileIndex;
+import com.example.demo.shared.service.impl.UploadFileIndex.UploadFile;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+
+/**
+ * Phục vụ file upload của backend local tại /uploads/{tên file} (thay cho ResourceHttpRequestHandler).
+ *
+ * - ETag mạnh: hash nội dung với file lưu theo nội dung; If-None-Match khớp -> 304, không đọc file.
+ * - File lưu theo nội dung được cache vĩnh viễn ở trình duyệt/CDN (Cache-Control: immutable).
+ * - Range một đoạn (bytes=a-b, a-, -n) cho video; If-Range không khớp thì trả cả file.
+ * - Thân response không đi qua heap: giao cho Tomcat gửi bằng sendfile khi connector hỗ trợ,
+ *   nếu không thì FileChannel.transferTo thẳng vào output stream của response.
+ */
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class UploadServingController {
+
+    // Request attribute của Tomcat (xem DefaultServlet): connector tự gửi file bằng sendfile sau khi servlet trả về
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    // Giống ngưỡng sendfileSize mặc định của Tomcat: file nhỏ ghi thẳng còn rẻ hơn
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_MUTABLE = "public, max-age=86400";
+
+    private final UploadFileIndex uploadFileIndex;
+
+    @RequestMapping(value = "/uploads/{filename:.+}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void serve(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<UploadFile> found = uploadFileIndex.lookup(filename);
+        if (found.isEmpty()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        UploadFile file = found.get();
+        response.setHeader(HttpHeaders.ETAG, file.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, file.immutable() ? CACHE_IMMUTABLE : CACHE_MUTABLE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), file.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        ByteRange range = ByteRange.FULL;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), file.etag())) {
+            range = ByteRange.parse(rangeHeader, file.size());
+            if (range == ByteRange.UNSATISFIABLE) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + file.size());
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+        long start = range == ByteRange.FULL ? 0 : range.start();
+        long end = range == ByteRange.FULL ? file.size() - 1 : range.end();
+        long length = end - start + 1;
+        if (range != ByteRange.FULL) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + file.size());
+        }
+        response.setContentType(file.contentType().toString());
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setContentLengthLong(length);
+
+        if (RequestMethod.HEAD.name().equals(request.getMethod()) || length == 0) {
+            return;
+        }
+        if (length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.path().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1); // Tomcat: end không bao gồm
+            return;
+        }
+        transfer(filename, file, start, length, response);
+    }
+
+    private void transfer(String filename, UploadFile file, long start, long length, HttpServletResponse response) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break; // File bị cắt ngắn trong lúc gửi
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        } catch (NoSuchFileException e) {
+            // File vừa bị xóa sau khi metadata đã được cache
+            uploadFileIndex.evict(filename);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        }
+    }
+
+    static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match so sánh yếu: bỏ tiền tố W/
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String etag) {
+        // If-Range dạng ngày (không phải ETag) không được hỗ trợ: coi như không khớp, trả cả file
+        return ifRange == null || ifRange.trim().equals(etag);
+    }
+
+    /**
+     * Một đoạn byte [start, end] (bao gồm cả hai đầu).
+     */
+    record ByteRange(long start, long end) {
+
+        static final ByteRange FULL = new ByteRange(0, -1);
+        static final ByteRange UNSATISFIABLE = new ByteRange(-1, -1);
+
+        /**
+         * Chỉ hỗ trợ một đoạn; header sai cú pháp hoặc nhiều đoạn thì bỏ qua (FULL), như RFC 9110 cho phép.
+         */
+        static ByteRange parse(String header, long size) {
+            if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+                return FULL;
+            }
+            String spec = header.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return FULL;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // bytes=-n: n byte cuối
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0 || size == 0) {
+                        return UNSATISFIABLE;
+                    }
+                    return new ByteRange(Math.max(0, size - suffix), size - 1);
+                }
+                long start = Long.parseLong(first);
+                if (start >= size) {
+                    return UNSATISFIABLE;
+                }
+                long end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+                if (end < start) {
+                    return FULL;
+                }
+                return new ByteRange(start, Math.min(end, size - 1));
+            } catch (NumberFormatException e) {
+                return FULL;
+            }
+        }
+    }
+}
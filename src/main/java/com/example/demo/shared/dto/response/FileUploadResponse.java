@@ -17,4 +17,6 @@ public class FileUploadResponse {
     // --- THÊM TRƯỜNG NÀY ---
     private String originalFilename; // Tên file gốc mà người dùng upload
     // --- KẾT THÚC THÊM ---
+
+    private String sha256; // Băm nội dung (hex), tính trong lúc ghi file
 }
\ No newline at end of file
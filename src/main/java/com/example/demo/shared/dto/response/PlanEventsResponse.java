@@ -0,0 +1,22 @@
+package com.example.demo.shared.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Các sự kiện WebSocket của plan mà client bỏ lỡ khi mất kết nối.
+ * reset = true: không thể bù (phiên sự kiện khác hoặc đã ra khỏi bộ đệm) -> client tải lại toàn bộ plan.
+ * origin/epoch: node đã phát và dãy version tương ứng (mỗi node một dãy).
+ */
+@Getter
+@Builder
+public class PlanEventsResponse {
+    private String origin;
+    private String epoch;
+    private long currentVersion;
+    private boolean reset;
+    private List<Map<String, Object>> events;
+}
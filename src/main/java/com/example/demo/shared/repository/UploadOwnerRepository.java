@@ -0,0 +1,37 @@
+package com.example.demo.shared.repository;
+
+import com.example.demo.progress.entity.checkin.CheckInAttachment;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Bảng upload_owners (xem changeset 020): user nào đã upload file nào.
+ * Chỉ thao tác bằng native query trên (storedFilename, userId), không có entity riêng.
+ */
+public interface UploadOwnerRepository extends org.springframework.data.repository.Repository<CheckInAttachment, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO upload_owners (stored_filename, user_id, uploaded_at) VALUES (:storedFilename, :userId, now()) " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insert(@Param("storedFilename") String storedFilename, @Param("userId") Integer userId);
+
+    @Query(value = "SELECT o.stored_filename FROM upload_owners o " +
+                   "WHERE o.user_id = :userId AND o.stored_filename IN (:storedFilenames)",
+           nativeQuery = true)
+    List<String> findUploadedBy(@Param("userId") Integer userId,
+                                @Param("storedFilenames") Collection<String> storedFilenames);
+
+    /**
+     * Chỉ xóa các lần upload trước mốc cutoff: lần upload lại cùng nội dung sau khi file bị xóa vẫn được giữ.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM upload_owners WHERE stored_filename = :storedFilename AND uploaded_at < :cutoff",
+           nativeQuery = true)
+    int deleteUploadedBefore(@Param("storedFilename") String storedFilename, @Param("cutoff") OffsetDateTime cutoff);
+}
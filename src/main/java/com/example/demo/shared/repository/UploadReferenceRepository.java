@@ -0,0 +1,52 @@
+package com.example.demo.shared.repository;
+
+import com.example.demo.progress.entity.checkin.CheckInAttachment;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Mọi chỗ trong DB có thể tham chiếu tới file trong thư mục upload, dùng cho lượt dọn file mồ côi
+ * (UploadGarbageCollector). Attachment lưu tên file; ảnh đại diện và ảnh thu nhỏ đã gắn lưu URL (lấy đoạn cuối làm tên file).
+ */
+public interface UploadReferenceRepository extends org.springframework.data.repository.Repository<CheckInAttachment, Long> {
+
+    @Query(value = "SELECT (SELECT COUNT(*) FROM check_in_attachments) " +
+                   "     + (SELECT COUNT(*) FROM check_in_attachments WHERE thumbnail_url IS NOT NULL) " +
+                   "     + (SELECT COUNT(*) FROM task_attachments) " +
+                   "     + (SELECT COUNT(*) FROM evidence_attachments) " +
+                   "     + (SELECT COUNT(*) FROM customers WHERE photo IS NOT NULL)",
+           nativeQuery = true)
+    long countReferences();
+
+    /**
+     * Số tham chiếu tới một file: cột stored_filename của các bảng attachment, và ảnh đại diện có URL
+     * kết thúc bằng tên file (có thể kèm ?query / #fragment).
+     */
+    @Query(value = "SELECT (SELECT COUNT(*) FROM check_in_attachments WHERE stored_filename = :name) " +
+                   "     + (SELECT COUNT(*) FROM task_attachments WHERE stored_filename = :name) " +
+                   "     + (SELECT COUNT(*) FROM evidence_attachments WHERE stored_filename = :name) " +
+                   "     + (SELECT COUNT(*) FROM customers WHERE photo = :name " +
+                   "            OR photo LIKE CONCAT('%/', :name) " +
+                   "            OR photo LIKE CONCAT('%/', :name, '?%') " +
+                   "            OR photo LIKE CONCAT('%/', :name, '#%'))",
+           nativeQuery = true)
+    long countReferencesTo(@Param("name") String storedFilename);
+
+    /**
+     * Đọc dạng stream (cần transaction), không nạp cả danh sách vào bộ nhớ.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = "SELECT stored_filename FROM check_in_attachments " +
+                   "UNION ALL SELECT thumbnail_url FROM check_in_attachments WHERE thumbnail_url IS NOT NULL " +
+                   "UNION ALL SELECT stored_filename FROM task_attachments " +
+                   "UNION ALL SELECT stored_filename FROM evidence_attachments " +
+                   "UNION ALL SELECT photo FROM customers WHERE photo IS NOT NULL",
+           nativeQuery = true)
+    Stream<String> streamReferences();
+}
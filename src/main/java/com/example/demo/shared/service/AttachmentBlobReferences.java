@@ -0,0 +1,81 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.shared.repository.UploadReferenceRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Đếm tham chiếu tới file trong kho lưu theo nội dung: một file (SHA-256 + phần mở rộng) có thể được
+ * nhiều attachment (task, check-in, evidence) và ảnh đại diện dùng chung, nên chỉ được xóa khi không còn tham chiếu nào.
+ *
+ * Việc đếm và xóa chạy sau khi transaction xóa attachment commit: hai transaction cùng xóa hai tham chiếu
+ * cuối sẽ đều thấy 0 và đều xóa (idempotent), thay vì cùng thấy 1 rồi bỏ sót file.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AttachmentBlobReferences {
+
+    private final UploadReferenceRepository uploadReferenceRepository;
+    private final FileUploadService fileUploadService;
+    private final UploadOwnership uploadOwnership;
+
+    @Value("${app.upload.release-grace:PT1H}")
+    private Duration releaseGrace = Duration.ofHours(1);
+
+    public long countReferences(String storedFilename) {
+        return uploadReferenceRepository.countReferencesTo(storedFilename);
+    }
+
+    /**
+     * Gọi sau khi đã xóa các attachment trỏ tới những file này (trong transaction hiện tại):
+     * sau commit, file nào không còn tham chiếu sẽ bị xóa khỏi kho.
+     */
+    public void releaseAfterCommit(Collection<String> storedFilenames) {
+        Set<String> released = new LinkedHashSet<>(storedFilenames);
+        released.remove(null);
+        if (released.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    released.forEach(AttachmentBlobReferences.this::deleteIfUnreferenced);
+                }
+            });
+        } else {
+            released.forEach(this::deleteIfUnreferenced);
+        }
+    }
+
+    private void deleteIfUnreferenced(String storedFilename) {
+        try {
+            long references = countReferences(storedFilename);
+            if (references > 0) {
+                log.debug("File {} vẫn còn {} tham chiếu, giữ lại", storedFilename, references);
+                return;
+            }
+            if (fileUploadService.deleteIfIdle(storedFilename, releaseGrace)) {
+                log.info("Deleted physical file: {}", storedFilename);
+                uploadOwnership.forget(storedFilename, Instant.now().minus(releaseGrace));
+                // Ảnh thu nhỏ đi theo file gốc
+                fileUploadService.delete(AttachmentThumbnails.thumbnailName(storedFilename));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Attachment đã xóa xong (đã commit): lỗi xóa file chỉ để lại file thừa trên kho
+            log.error("Failed to delete physical file: {}", storedFilename, e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.config.async.AsyncWorkload;
+import com.example.demo.progress.entity.checkin.CheckInAttachment;
+import com.example.demo.progress.repository.CheckInAttachmentRepository;
+import com.example.demo.progress.service.TimelineSnapshotStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Ảnh thu nhỏ cho ảnh check-in: timeline hiển thị bản JPEG cạnh dài {@code app.upload.thumbnail.size}px
+ * thay vì ảnh gốc vài MB.
+ *
+ * - Tạo ở nền trên thumbnailExecutor (ít luồng, đầy thì bỏ qua) ngay sau khi upload, bằng ImageIO thuần Java.
+ *   Ảnh lớn được giải mã thưa (subsampling) nên không bao giờ phải giữ cả ảnh gốc trong heap.
+ * - Tên cố định theo tên file gốc: "{sha256}-{đuôi}-thumb.jpg". File gốc lưu theo nội dung nên ảnh thu nhỏ cũng
+ *   bất biến và được dùng chung giữa các attachment cùng file; hai file cùng nội dung khác đuôi có ảnh thu nhỏ riêng,
+ *   nên xóa file này không làm mất ảnh thu nhỏ của file kia.
+ * - URL được ghi vào check_in_attachments.thumbnail_url: lúc tạo check-in nếu ảnh thu nhỏ đã có, hoặc khi job
+ *   chạy xong (cho các attachment đã tạo trước đó), rồi làm mới snapshot timeline của plan liên quan.
+ */
+@Slf4j
+@Component
+public class AttachmentThumbnails {
+
+    static final String THUMBNAIL_SUFFIX = "-thumb.jpg";
+    private static final String THUMBNAIL_CONTENT_TYPE = "image/jpeg";
+
+    private final FileUploadService fileUploadService;
+    private final CheckInAttachmentRepository checkInAttachmentRepository;
+    private final TimelineSnapshotStore timelineSnapshotStore;
+    private final Executor thumbnailExecutor;
+    private final TransactionTemplate writeTransaction;
+
+    @Value("${app.upload.thumbnail.size:320}")
+    private int size = 320;
+
+    @Value("${app.upload.thumbnail.quality:0.8}")
+    private float quality = 0.8f;
+
+    // Chặn ảnh "bom giải nén" (kích thước khai báo khổng lồ trong file nhỏ)
+    @Value("${app.upload.thumbnail.max-source-pixels:40000000}")
+    private long maxSourcePixels = 40_000_000L;
+
+    public AttachmentThumbnails(FileUploadService fileUploadService,
+                                CheckInAttachmentRepository checkInAttachmentRepository,
+                                TimelineSnapshotStore timelineSnapshotStore,
+                                @Qualifier(AsyncWorkload.THUMBNAIL_EXECUTOR) Executor thumbnailExecutor,
+                                PlatformTransactionManager transactionManager) {
+        this.fileUploadService = fileUploadService;
+        this.checkInAttachmentRepository = checkInAttachmentRepository;
+        this.timelineSnapshotStore = timelineSnapshotStore;
+        this.thumbnailExecutor = thumbnailExecutor;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Tên ảnh thu nhỏ của một file đã lưu: giữ cả phần mở rộng của file gốc ("." đổi thành "-").
+     */
+    public static String thumbnailName(String storedFilename) {
+        return storedFilename.replace('.', '-') + THUMBNAIL_SUFFIX;
+    }
+
+    public static boolean isThumbnail(String storedFilename) {
+        return storedFilename.endsWith(THUMBNAIL_SUFFIX);
+    }
+
+    /**
+     * Gọi sau khi lưu file upload: tạo ảnh thu nhỏ ở nền (file không phải ảnh bị bỏ qua).
+     */
+    public void generateAsync(String storedFilename, String contentType) {
+        if (!mayBeImage(contentType) || isThumbnail(storedFilename)) {
+            return;
+        }
+        thumbnailExecutor.execute(() -> generate(storedFilename));
+    }
+
+    /**
+     * Gắn ảnh thu nhỏ cho attachment sắp lưu. Chưa có (job chưa chạy xong / bị bỏ qua khi hàng đợi đầy)
+     * thì sau khi transaction commit sẽ yêu cầu tạo lại; job sẽ tự ghi URL vào attachment.
+     */
+    public void attach(CheckInAttachment attachment) {
+        String storedFilename = attachment.getStoredFilename();
+        if (storedFilename == null || !mayBeImage(attachment.getContentType())) {
+            return;
+        }
+        String thumbnail = thumbnailName(storedFilename);
+        try {
+            if (fileUploadService.exists(thumbnail)) {
+                attachment.setThumbnailUrl(thumbnailUrl(attachment.getFileUrl(), storedFilename, thumbnail));
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Không kiểm tra được ảnh thu nhỏ {}", thumbnail, e);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    generateAsync(storedFilename, attachment.getContentType());
+                }
+            });
+        } else {
+            generateAsync(storedFilename, attachment.getContentType());
+        }
+    }
+
+    void generate(String storedFilename) {
+        String thumbnail = thumbnailName(storedFilename);
+        try {
+            if (!fileUploadService.exists(thumbnail)) {
+                byte[] jpeg;
+                try (InputStream source = fileUploadService.open(storedFilename)) {
+                    jpeg = render(source);
+                }
+                if (jpeg == null) {
+                    return;
+                }
+                fileUploadService.storeDerivative(thumbnail, jpeg, THUMBNAIL_CONTENT_TYPE);
+                log.info("Đã tạo ảnh thu nhỏ {} ({} bytes)", thumbnail, jpeg.length);
+            }
+            linkAttachments(storedFilename, thumbnail);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Tạo ảnh thu nhỏ cho {} thất bại", storedFilename, e);
+        }
+    }
+
+    private void linkAttachments(String storedFilename, String thumbnail) {
+        writeTransaction.executeWithoutResult(status -> {
+            List<CheckInAttachment> attachments = checkInAttachmentRepository.findWithoutThumbnailByStoredFilename(storedFilename);
+            for (CheckInAttachment attachment : attachments) {
+                attachment.setThumbnailUrl(thumbnailUrl(attachment.getFileUrl(), storedFilename, thumbnail));
+            }
+            // Chỉ bỏ snapshot của những ngày có check-in dùng file này
+            attachments.stream()
+                    .map(CheckInAttachment::getCheckInEvent)
+                    .map(event -> Map.entry(event.getPlanMember().getPlan().getId(), event.getCheckInTimestamp().toLocalDate()))
+                    .distinct()
+                    .forEach(day -> timelineSnapshotStore.invalidateDay(day.getKey(), day.getValue()));
+        });
+    }
+
+    /**
+     * URL ảnh thu nhỏ cùng gốc với URL file (thay tên file ở cuối); nếu không được thì hỏi backend lưu trữ.
+     */
+    private String thumbnailUrl(String fileUrl, String storedFilename, String thumbnail) {
+        if (fileUrl != null && fileUrl.endsWith("/" + storedFilename)) {
+            return fileUrl.substring(0, fileUrl.length() - storedFilename.length()) + thumbnail;
+        }
+        return fileUploadService.publicUrl(thumbnail).orElse(null);
+    }
+
+    private static boolean mayBeImage(String contentType) {
+        // Không có content type thì để ImageIO tự nhận dạng
+        return contentType == null || contentType.startsWith("image/");
+    }
+
+    /**
+     * Giải mã ảnh (đọc thưa nếu ảnh lớn), thu nhỏ giữ tỉ lệ và nén JPEG.
+     * @return null nếu không phải ảnh ImageIO đọc được hoặc ảnh quá lớn
+     */
+    byte[] render(InputStream source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            BufferedImage image;
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    log.warn("Bỏ qua ảnh {}x{}: vượt giới hạn {} điểm ảnh", width, height, maxSourcePixels);
+                    return null;
+                }
+                // Chỉ cần khoảng gấp đôi kích thước đích để thu nhỏ đẹp: bỏ bớt điểm ảnh ngay lúc giải mã
+                int step = Math.max(1, Math.max(width, height) / (size * 2));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                image = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+            return encodeJpeg(scale(image));
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        double ratio = Math.min(1.0, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        // JPEG không có kênh alpha: vẽ lên nền trắng
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,16 +1,76 @@
 package com.example.demo.shared.service;
 
 import org.springframework.web.multipart.MultipartFile;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Optional;
 
+/**
+ * SPI lưu trữ file upload. Backend được chọn bằng app.storage.type:
+ * - local (mặc định): thư mục file.upload-dir, phục vụ qua /uploads/**
+ * - s3: bucket S3 hoặc dịch vụ tương thích S3 (MinIO, R2, ...)
+ *
+ * Mọi backend đọc nội dung đúng 1 lần và tính SHA-256 trong cùng lượt đọc. Kho lưu theo nội dung
+ * (tên = SHA-256 + phần mở rộng): upload trùng nội dung dùng lại file sẵn có, nên một file có thể được
+ * nhiều attachment tham chiếu; chỉ xóa khi không còn tham chiếu nào (xem AttachmentBlobReferences).
+ */
 public interface FileUploadService {
+
+    /**
+     * Lưu nội dung đọc từ stream (không đóng stream).
+     * @param originalFilename tên file gốc, dùng để lấy phần mở rộng
+     * @param contentLength    số byte nếu biết trước, -1 nếu không biết (VD: chunked request)
+     * @throws com.example.demo.shared.exception.BadRequestException tên file không hợp lệ / rỗng / vượt giới hạn
+     */
+    StoredFile store(InputStream content, String originalFilename, String contentType, long contentLength) throws IOException;
+
+    /**
+     * Mở nội dung file đã lưu để đọc (caller đóng stream).
+     * @throws java.nio.file.NoSuchFileException nếu file không tồn tại
+     */
+    InputStream open(String storedFilename) throws IOException;
+
+    boolean exists(String storedFilename) throws IOException;
+
+    /**
+     * Ghi file phái sinh của một file đã lưu (VD: ảnh thu nhỏ) dưới tên cho trước, ghi đè nếu đã có.
+     */
+    void storeDerivative(String derivedFilename, byte[] content, String contentType) throws IOException;
+
+    /**
+     * Xóa file đã lưu. @return false nếu file không tồn tại.
+     */
+    boolean delete(String storedFilename) throws IOException;
+
+    /**
+     * Xóa file không còn được tham chiếu, trừ khi nó vừa được upload (lại) trong khoảng minIdle:
+     * upload trùng nội dung có thể đã trả tên file này cho client nhưng chưa kịp gắn vào attachment.
+     * @return true nếu đã xóa
+     */
+    default boolean deleteIfIdle(String storedFilename, Duration minIdle) throws IOException {
+        return delete(storedFilename);
+    }
+
+    /**
+     * URL công khai do backend cung cấp; rỗng nếu file được phục vụ qua /uploads/** của ứng dụng.
+     */
+    default Optional<String> publicUrl(String storedFilename) {
+        return Optional.empty();
+    }
+
     /**
-     * Lưu file upload và trả về đường dẫn hoặc thông tin cần thiết.
-     * @param file Đối tượng MultipartFile từ request.
-     * @return Thông tin về file đã lưu (ví dụ: đường dẫn tương đối, tên file lưu trữ).
-     * @throws IOException Nếu có lỗi khi lưu file.
+     * Lưu file upload multipart.
+     * @return tên file đã lưu (storedFilename)
      */
-    String storeFile(MultipartFile file) throws IOException; // Trả về storedFilename
+    default String storeFile(MultipartFile file) throws IOException {
+        return store(file).storedFilename();
+    }
 
-    // Có thể thêm các phương thức khác như deleteFile, loadFileAsResource,...
-}
\ No newline at end of file
+    default StoredFile store(MultipartFile file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(inputStream, file.getOriginalFilename(), file.getContentType(), file.getSize());
+        }
+    }
+}
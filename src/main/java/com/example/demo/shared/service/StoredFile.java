@@ -0,0 +1,13 @@
+package com.example.demo.shared.service;
+
+/**
+ * Kết quả lưu một file qua {@link FileUploadService}.
+ *
+ * @param storedFilename tên file trong kho lưu trữ (SHA-256 + phần mở rộng, dùng để truy cập / xóa)
+ * @param size           số byte đã nhận
+ * @param sha256         SHA-256 (hex) của nội dung, tính ngay trong lúc ghi
+ * @param contentType    content type client gửi lên (có thể null)
+ * @param deduplicated   true nếu kho đã có sẵn nội dung này: không ghi thêm bản sao nào
+ */
+public record StoredFile(String storedFilename, long size, String sha256, String contentType, boolean deduplicated) {
+}
@@ -0,0 +1,68 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.shared.exception.ResourceNotFoundException;
+import com.example.demo.shared.repository.UploadOwnerRepository;
+import com.example.demo.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Ghi lại ai đã upload file nào, để attachment chỉ được trỏ tới file do chính người gửi upload
+ * (stored filename gửi từ client, không thì ai đoán/biết được tên file của người khác cũng gắn được).
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadOwnership {
+
+    private final UploadOwnerRepository uploadOwnerRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Lấy trên luồng request (upload chạy trên uploadExecutor, không có SecurityContext).
+     */
+    public Integer uploaderId(String userEmail) {
+        return userRepository.findIdByEmail(userEmail)
+                .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy người dùng: " + userEmail));
+    }
+
+    @Transactional
+    public void recordUpload(Integer userId, String storedFilename) {
+        uploadOwnerRepository.insert(storedFilename, userId);
+    }
+
+    /**
+     * @throws AccessDeniedException nếu có file không do user này upload
+     */
+    @Transactional(readOnly = true)
+    public void requireUploadedBy(Integer userId, Collection<String> storedFilenames) {
+        Set<String> missing = new LinkedHashSet<>(storedFilenames);
+        if (missing.isEmpty()) {
+            return;
+        }
+        if (missing.contains(null)) {
+            throw new AccessDeniedException("Attachment thiếu storedFilename.");
+        }
+        List<String> uploaded = uploadOwnerRepository.findUploadedBy(userId, missing);
+        uploaded.forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            throw new AccessDeniedException("Bạn không upload các file này: " + missing);
+        }
+    }
+
+    /**
+     * Gọi sau khi file đã bị xóa khỏi kho; lần upload sau cutoff (có thể đã ghi lại file) được giữ.
+     */
+    @Transactional
+    public void forget(String storedFilename, Instant cutoff) {
+        uploadOwnerRepository.deleteUploadedBefore(storedFilename, cutoff.atOffset(ZoneOffset.UTC));
+    }
+}
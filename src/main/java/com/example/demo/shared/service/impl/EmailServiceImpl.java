@@ -1,5 +1,6 @@
 package com.example.demo.shared.service.impl;
 
+import com.example.demo.config.async.AsyncWorkload;
 import com.example.demo.shared.service.EmailService;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
@@ -22,7 +23,7 @@ public class EmailServiceImpl implements EmailService {
     private String fromEmail;
 
     @Override
-    @Async("taskExecutor") // Chạy phương thức này trên một thread riêng biệt
+    @Async(AsyncWorkload.EMAIL_EXECUTOR) // Chạy trên pool riêng: SMTP chậm không ảnh hưởng tác vụ khác
     public void sendEmail(String to, String subject, String body) {
         try {
             log.info("Bắt đầu gửi email tới: {}", to);
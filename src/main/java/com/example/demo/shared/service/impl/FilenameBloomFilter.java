@@ -0,0 +1,67 @@
+package com.example.demo.shared.service.impl;
+
+/**
+ * Bloom filter cho tên file: vài bit mỗi tên thay vì giữ cả tập String trong bộ nhớ.
+ * Không bao giờ báo sai "không có" (false negative); báo nhầm "có" với xác suất ~falsePositiveRate,
+ * tức chỉ khiến một file mồ côi được giữ lại thêm một lượt, không bao giờ xóa nhầm file đang dùng.
+ */
+final class FilenameBloomFilter {
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    FilenameBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        // m = -n ln(p) / (ln 2)^2, k = m/n ln 2
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bitCount = Math.max(64, m);
+        bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (bitCount + 63) / 64)];
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(String value) {
+        long hash = fnv1a64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = fnv1a64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    long sizeInBytes() {
+        return bits.length * 8L;
+    }
+
+    private long index(int combined) {
+        // Kirsch-Mitzenmacher: k hàm băm từ 2 nửa của một hash 64-bit
+        return (combined & 0x7fffffffL) % Math.min(bitCount, bits.length * 64L);
+    }
+
+    private static long fnv1a64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // Trộn thêm để hai nửa 32-bit ít tương quan
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
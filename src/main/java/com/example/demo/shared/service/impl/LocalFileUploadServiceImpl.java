@@ -2,36 +2,66 @@ package com.example.demo.shared.service.impl;
 
 import com.example.demo.shared.exception.BadRequestException;
 import com.example.demo.shared.service.FileUploadService;
+import com.example.demo.shared.service.StoredFile;
 import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.unit.DataSize;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.UUID;
 
+/**
+ * Backend lưu file trên đĩa (file.upload-dir).
+ *
+ * Nội dung được ghi thẳng vào file tạm ".upload-*.part" trong chính thư mục upload (qua direct
+ * buffer, băm SHA-256 cùng lúc), xong mới rename nguyên tử sang tên theo nội dung (SHA-256 + phần
+ * mở rộng): người đọc không bao giờ thấy file ghi dở, và file tạm bị bỏ lại khi crash dễ nhận ra.
+ * Nếu tên đó đã tồn tại thì file tạm bị bỏ đi và file sẵn có được "chạm" (cập nhật mtime) để
+ * {@link #deleteIfIdle} không xóa nó trong lúc client còn chưa kịp gắn vào attachment.
+ */
 @Slf4j
 @Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
 public class LocalFileUploadServiceImpl implements FileUploadService {
 
+    static final String TEMP_PREFIX = ".upload-";
+    static final String TEMP_SUFFIX = ".part";
+
+    private final UploadFileIndex uploadFileIndex;
+
     @Value("${file.upload-dir}")
     private String uploadDir;
 
+    @Value("${app.upload.max-file-size:10MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(10);
+
     private Path rootLocation;
 
     @PostConstruct // Chạy sau khi Service được khởi tạo
     public void init() {
         try {
-            rootLocation = Paths.get(uploadDir);
+            rootLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
             Files.createDirectories(rootLocation); // Tạo thư mục nếu chưa tồn tại
-            log.info("Thư mục lưu trữ file: {}", rootLocation.toAbsolutePath());
+            log.info("Thư mục lưu trữ file: {}", rootLocation);
         } catch (IOException e) {
             log.error("Không thể khởi tạo thư mục lưu trữ file", e);
             throw new RuntimeException("Không thể khởi tạo thư mục lưu trữ file", e);
@@ -39,40 +69,116 @@ public class LocalFileUploadServiceImpl implements FileUploadService {
     }
 
     @Override
-    public String storeFile(MultipartFile file) throws IOException {
-        String originalFilename = StringUtils.cleanPath(file.getOriginalFilename());
+    public StoredFile store(InputStream content, String originalFilename, String contentType, long contentLength) throws IOException {
         log.info("Nhận file upload: {}", originalFilename);
+        long maxBytes = maxFileSize.toBytes();
+        if (contentLength >= 0) {
+            UploadStreams.checkDeclaredSize(contentLength, maxBytes);
+        }
+        String extension = UploadStreams.safeExtension(originalFilename);
 
-        if (file.isEmpty()) {
-            throw new BadRequestException("File upload không được rỗng.");
+        Path tempFile = rootLocation.resolve(TEMP_PREFIX + UUID.randomUUID() + TEMP_SUFFIX);
+        MessageDigest digest = UploadStreams.sha256();
+        long size;
+        String sha256;
+        String storedFilename;
+        try {
+            try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                size = UploadStreams.copyAndHash(Channels.newChannel(content), out, digest, maxBytes);
+            }
+            sha256 = UploadStreams.hex(digest.digest());
+            storedFilename = UploadStreams.contentAddressedName(sha256, extension);
+            Path destinationFile = resolve(storedFilename);
+            if (touchIfExists(destinationFile)) {
+                Files.delete(tempFile);
+                log.info("File trùng nội dung, dùng lại: {} ({} bytes)", storedFilename, size);
+                return new StoredFile(storedFilename, size, sha256, contentType, true);
+            }
+            // Hai upload cùng nội dung chạy song song: rename sau ghi đè file giống hệt, vô hại
+            moveIntoPlace(tempFile, destinationFile);
+        } catch (BadRequestException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            log.error("Lưu file thất bại: {}", originalFilename, e);
+            throw new IOException("Lưu file thất bại: " + originalFilename, e);
         }
-        if (originalFilename.contains("..")) {
-            // Security check
-            throw new BadRequestException("Tên file chứa ký tự không hợp lệ: " + originalFilename);
+
+        log.info("Đã lưu file thành công: {} ({} bytes)", storedFilename, size);
+        return new StoredFile(storedFilename, size, sha256, contentType, false);
+    }
+
+    @Override
+    public InputStream open(String storedFilename) throws IOException {
+        return Files.newInputStream(resolve(storedFilename));
+    }
+
+    @Override
+    public boolean exists(String storedFilename) {
+        return Files.isRegularFile(resolve(storedFilename));
+    }
+
+    @Override
+    public void storeDerivative(String derivedFilename, byte[] content, String contentType) throws IOException {
+        Path destinationFile = resolve(derivedFilename);
+        Path tempFile = rootLocation.resolve(TEMP_PREFIX + UUID.randomUUID() + TEMP_SUFFIX);
+        try {
+            Files.write(tempFile, content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            moveIntoPlace(tempFile, destinationFile);
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
+        uploadFileIndex.evict(derivedFilename);
+    }
 
-        // Tạo tên file duy nhất để tránh trùng lặp
-        String fileExtension = "";
-        int lastDotIndex = originalFilename.lastIndexOf(".");
-        if (lastDotIndex > 0) {
-            fileExtension = originalFilename.substring(lastDotIndex);
+    @Override
+    public boolean delete(String storedFilename) throws IOException {
+        boolean deleted = Files.deleteIfExists(resolve(storedFilename));
+        uploadFileIndex.evict(storedFilename);
+        return deleted;
+    }
+
+    @Override
+    public boolean deleteIfIdle(String storedFilename, Duration minIdle) throws IOException {
+        Path file = resolve(storedFilename);
+        try {
+            Instant lastStored = Files.getLastModifiedTime(file).toInstant();
+            if (lastStored.isAfter(Instant.now().minus(minIdle))) {
+                log.info("Giữ lại file {}: vừa được upload lại lúc {}", storedFilename, lastStored);
+                return false;
+            }
+        } catch (NoSuchFileException e) {
+            return false;
         }
-        String storedFilename = UUID.randomUUID().toString() + fileExtension;
+        boolean deleted = Files.deleteIfExists(file);
+        uploadFileIndex.evict(storedFilename);
+        return deleted;
+    }
 
-        Path destinationFile = this.rootLocation.resolve(storedFilename).normalize().toAbsolutePath();
+    private Path resolve(String storedFilename) {
+        Path file = rootLocation.resolve(storedFilename).normalize();
+        // Kiểm tra xem file có nằm trong thư mục upload không (quan trọng cho bảo mật)
+        if (!rootLocation.equals(file.getParent())) {
+            throw new BadRequestException("Không thể truy cập file ngoài thư mục quy định.");
+        }
+        return file;
+    }
 
-        // Kiểm tra xem destination có nằm trong thư mục upload không (quan trọng cho bảo mật)
-        if (!destinationFile.getParent().equals(this.rootLocation.toAbsolutePath())) {
-            throw new BadRequestException("Không thể lưu file ra ngoài thư mục quy định.");
+    private static boolean touchIfExists(Path file) throws IOException {
+        try {
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
         }
+    }
 
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, destinationFile, StandardCopyOption.REPLACE_EXISTING);
-            log.info("Đã lưu file thành công: {}", destinationFile);
-            return storedFilename; // Trả về tên file đã lưu
-        } catch (IOException e) {
-            log.error("Lưu file thất bại: {}", originalFilename, e);
-            throw new IOException("Lưu file thất bại: " + originalFilename, e);
+    private static void moveIntoPlace(Path tempFile, Path destinationFile) throws IOException {
+        try {
+            Files.move(tempFile, destinationFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, destinationFile, StandardCopyOption.REPLACE_EXISTING);
         }
     }
-}
\ No newline at end of file
+}
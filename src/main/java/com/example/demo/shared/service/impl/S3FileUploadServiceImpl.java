@@ -0,0 +1,272 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.exception.BadRequestException;
+import com.example.demo.shared.service.FileUploadService;
+import com.example.demo.shared.service.StoredFile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.util.UriUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+
+/**
+ * Backend lưu file trên S3 hoặc dịch vụ tương thích S3 (MinIO, Cloudflare R2, ...).
+ *
+ * Không dùng SDK: request HEAD/PUT/DELETE được ký AWS Signature V4 với payload UNSIGNED-PAYLOAD và
+ * gửi bằng java.net.http.HttpClient. Key của object là SHA-256 của nội dung, nên nội dung được đệm
+ * ra file tạm (băm trong lúc ghi) trước khi gửi: nếu bucket đã có object cùng key (HEAD 200) thì bỏ
+ * qua PUT, upload trùng không tốn băng thông tới bucket.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+public class S3FileUploadServiceImpl implements FileUploadService {
+
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final String SIGNED_HEADERS = "host;x-amz-content-sha256;x-amz-date";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter AMZ_DAY = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    // VD: https://s3.ap-southeast-1.amazonaws.com hoặc http://localhost:9000 (MinIO)
+    @Value("${app.storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${app.storage.s3.bucket:}")
+    private String bucket;
+
+    @Value("${app.storage.s3.region:us-east-1}")
+    private String region = "us-east-1";
+
+    @Value("${app.storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${app.storage.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${app.storage.s3.key-prefix:uploads/}")
+    private String keyPrefix = "uploads/";
+
+    // URL công khai (CDN) trỏ tới bucket; để trống thì dùng endpoint/bucket
+    @Value("${app.storage.s3.public-base-url:}")
+    private String publicBaseUrl;
+
+    @Value("${app.upload.max-file-size:10MB}")
+    private DataSize maxFileSize = DataSize.ofMegabytes(10);
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        if (!StringUtils.hasText(endpoint) || !StringUtils.hasText(bucket)) {
+            throw new IllegalStateException("app.storage.type=s3 cần cấu hình app.storage.s3.endpoint và app.storage.s3.bucket");
+        }
+        endpoint = endpoint.replaceAll("/+$", "");
+        httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        log.info("Lưu trữ file trên S3: {}/{}", endpoint, bucket);
+    }
+
+    @Override
+    public StoredFile store(InputStream content, String originalFilename, String contentType, long contentLength) throws IOException {
+        long maxBytes = maxFileSize.toBytes();
+        if (contentLength >= 0) {
+            UploadStreams.checkDeclaredSize(contentLength, maxBytes);
+        }
+        String extension = UploadStreams.safeExtension(originalFilename);
+
+        Path spool = Files.createTempFile("s3-upload-", ".part");
+        try {
+            MessageDigest digest = UploadStreams.sha256();
+            long size;
+            try (FileChannel out = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+                size = UploadStreams.copyAndHash(Channels.newChannel(content), out, digest, maxBytes);
+            }
+            String sha256 = UploadStreams.hex(digest.digest());
+            String storedFilename = UploadStreams.contentAddressedName(sha256, extension);
+            if (exists(storedFilename)) {
+                log.info("File trùng nội dung, dùng lại object S3: {} ({} bytes)", storedFilename, size);
+                return new StoredFile(storedFilename, size, sha256, contentType, true);
+            }
+            put(storedFilename, contentType, HttpRequest.BodyPublishers.ofFile(spool));
+            log.info("Đã lưu file lên S3: {} ({} bytes)", storedFilename, size);
+            return new StoredFile(storedFilename, size, sha256, contentType, false);
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    @Override
+    public boolean delete(String storedFilename) throws IOException {
+        HttpResponse<String> response = send(signed("DELETE", objectUri(storedFilename))
+                .DELETE()
+                .build());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        ensureSuccess(response, "DELETE", storedFilename);
+        return true;
+    }
+
+    @Override
+    public Optional<String> publicUrl(String storedFilename) {
+        String base = StringUtils.hasText(publicBaseUrl) ? publicBaseUrl.replaceAll("/+$", "") : endpoint + "/" + bucket;
+        return Optional.of(base + "/" + encodePath(objectKey(storedFilename)));
+    }
+
+    @Override
+    public InputStream open(String storedFilename) throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(signed("GET", objectUri(storedFilename)).GET().build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bị ngắt khi gọi S3", e);
+        }
+        if (response.statusCode() / 100 == 2) {
+            return response.body();
+        }
+        try (InputStream body = response.body()) {
+            if (response.statusCode() == 404) {
+                throw new NoSuchFileException(storedFilename);
+            }
+            throw new IOException("S3 GET " + storedFilename + " thất bại: HTTP " + response.statusCode()
+                    + " " + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Override
+    public void storeDerivative(String derivedFilename, byte[] content, String contentType) throws IOException {
+        put(derivedFilename, contentType, HttpRequest.BodyPublishers.ofByteArray(content));
+    }
+
+    @Override
+    public boolean exists(String storedFilename) throws IOException {
+        HttpResponse<String> response = send(signed("HEAD", objectUri(storedFilename))
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        ensureSuccess(response, "HEAD", storedFilename);
+        return true;
+    }
+
+    private void put(String storedFilename, String contentType, HttpRequest.BodyPublisher body) throws IOException {
+        HttpRequest.Builder request = signed("PUT", objectUri(storedFilename)).PUT(body);
+        if (StringUtils.hasText(contentType)) {
+            request.header("Content-Type", contentType);
+        }
+        ensureSuccess(send(request.build()), "PUT", storedFilename);
+    }
+
+    private HttpResponse<String> send(HttpRequest request) throws IOException {
+        try {
+            try {
+                return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                // Kết nối giữ trong pool có thể đã bị phía S3 đóng. HEAD/PUT/DELETE đều idempotent và body
+                // (file đệm / mảng byte) gửi lại được, nên thử lại 1 lần
+                log.debug("S3 {} {} lỗi kết nối, thử lại: {}", request.method(), request.uri(), e.getMessage());
+                return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bị ngắt khi gọi S3", e);
+        }
+    }
+
+    private static void ensureSuccess(HttpResponse<String> response, String method, String storedFilename) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("S3 " + method + " " + storedFilename + " thất bại: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+
+    private String objectKey(String storedFilename) {
+        if (storedFilename.contains("/") || storedFilename.contains("..")) {
+            throw new BadRequestException("Tên file không hợp lệ: " + storedFilename);
+        }
+        return keyPrefix + storedFilename;
+    }
+
+    private URI objectUri(String storedFilename) {
+        return URI.create(endpoint + "/" + bucket + "/" + encodePath(objectKey(storedFilename)));
+    }
+
+    // --- AWS Signature V4 ---
+
+    private HttpRequest.Builder signed(String method, URI uri) {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String day = AMZ_DAY.format(now);
+        String host = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+
+        String canonicalRequest = method + "\n"
+                + uri.getRawPath() + "\n"
+                + "\n" // không có query string
+                + "host:" + host + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + SIGNED_HEADERS + "\n"
+                + UNSIGNED_PAYLOAD;
+        String scope = day + "/" + region + "/s3/aws4_request";
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                + UploadStreams.hex(UploadStreams.sha256().digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), day);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = UploadStreams.hex(hmac(signingKey, stringToSign));
+
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMinutes(5))
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("Authorization", "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                        + ", SignedHeaders=" + SIGNED_HEADERS + ", Signature=" + signature);
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không ký được request S3", e);
+        }
+    }
+
+    private static String encodePath(String key) {
+        // Mã hóa từng đoạn theo RFC 3986, giữ nguyên dấu "/"
+        return UriUtils.encodePath(key, StandardCharsets.UTF_8);
+    }
+}
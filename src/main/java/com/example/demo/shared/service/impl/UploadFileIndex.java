@@ -0,0 +1,115 @@
+package com.example.demo.shared.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Metadata của các file đang được phục vụ qua /uploads/** (đường dẫn, kích thước, ETag, content type),
+ * cache trong bộ nhớ để mỗi lần xem ảnh không phải stat file trên đĩa.
+ *
+ * File lưu theo nội dung (SHA-256 + phần mở rộng) và ảnh thu nhỏ của nó ("-{đuôi}-thumb.jpg") không bao giờ đổi
+ * nội dung: ETag chính là hash và có thể cache vĩnh viễn. File cũ đặt tên UUID dùng ETag từ kích thước + thời điểm sửa.
+ * Xóa file phải gọi {@link #evict(String)} (LocalFileUploadServiceImpl đã làm).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class UploadFileIndex {
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("([0-9a-f]{64}(?:-[a-z0-9]{1,10})?(?:-thumb)?)(\\.[a-z0-9]{1,10})?");
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${app.upload.serve-cache.max-size:10000}")
+    private int maxSize = 10_000;
+
+    private final Map<String, UploadFile> byFilename = new ConcurrentHashMap<>();
+    private Path rootLocation;
+
+    /**
+     * @param immutable true nếu tên file là hash nội dung (nội dung không bao giờ đổi)
+     */
+    public record UploadFile(Path path, long size, String etag, boolean immutable, MediaType contentType) {
+    }
+
+    @PostConstruct
+    public void init() {
+        rootLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Tìm file được phép phục vụ: chỉ file thường nằm ngay trong thư mục upload, không phải file ẩn /
+     * file tạm ".upload-*.part". File không tồn tại không được cache.
+     */
+    public Optional<UploadFile> lookup(String filename) {
+        UploadFile cached = byFilename.get(filename);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (filename.isEmpty() || filename.startsWith(".") || filename.contains("/") || filename.contains("\\")) {
+            return Optional.empty();
+        }
+        Path path = rootLocation.resolve(filename).normalize();
+        if (!rootLocation.equals(path.getParent())) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn("Không đọc được thông tin file upload {}", path, e);
+            return Optional.empty();
+        }
+        if (!attributes.isRegularFile()) {
+            return Optional.empty();
+        }
+
+        Matcher contentAddressed = CONTENT_ADDRESSED.matcher(filename);
+        boolean immutable = contentAddressed.matches();
+        String etag = immutable
+                ? "\"" + contentAddressed.group(1) + "\""
+                : "\"" + Long.toHexString(attributes.size()) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+        UploadFile file = new UploadFile(path, attributes.size(), etag, immutable,
+                MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM));
+        if (byFilename.size() >= maxSize) {
+            evictSome();
+        }
+        byFilename.put(filename, file);
+        return Optional.of(file);
+    }
+
+    public void evict(String filename) {
+        byFilename.remove(filename);
+    }
+
+    private void evictSome() {
+        // Cache đầy: bỏ bớt các entry bất kỳ, chúng sẽ được nạp lại khi cần
+        Iterator<String> it = byFilename.keySet().iterator();
+        int toRemove = Math.max(1, maxSize / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.repository.UploadReferenceRepository;
+import com.example.demo.shared.service.AttachmentBlobReferences;
+import com.example.demo.shared.service.AttachmentThumbnails;
+import com.example.demo.shared.service.UploadOwnership;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Dọn file mồ côi trong file.upload-dir: file đã upload nhưng không attachment / ảnh đại diện nào tham chiếu
+ * (upload rồi bỏ, check-in / plan bị xóa, xóa file lỗi...), và file tạm ".upload-*.part" bị bỏ lại khi crash.
+ *
+ * Mỗi lượt:
+ * 1. Nạp mọi tên file được tham chiếu (stream từ DB) vào một bloom filter, không giữ cả tập tên trong bộ nhớ.
+ * 2. Duyệt thư mục bằng DirectoryStream theo lô {@code batch-size} file, nghỉ {@code batch-pause-ms} giữa các lô
+ *    để không chiếm I/O của request.
+ * 3. Chỉ xóa file sửa lần cuối trước (bắt đầu lượt - grace): upload đang dở / vừa upload chưa kịp gắn vào
+ *    attachment / upload trùng nội dung (được "chạm" mtime) luôn được giữ. File ngoài bloom filter được kiểm tra
+ *    chính xác lại với DB trước khi xóa (attachment tạo sau lúc nạp).
+ *
+ * Số liệu mỗi lượt (số file quét, số file / byte thu hồi) xuất qua JMX ({@link UploadGarbageCollectorMXBean}).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
+public class UploadGarbageCollector implements UploadGarbageCollectorMXBean {
+
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+
+    private final UploadReferenceRepository uploadReferenceRepository;
+    private final AttachmentBlobReferences attachmentBlobReferences;
+    private final UploadOwnership uploadOwnership;
+    private final UploadFileIndex uploadFileIndex;
+    private final TransactionTemplate readTransaction;
+
+    @Value("${file.upload-dir}")
+    private String uploadDir;
+
+    @Value("${app.upload.gc.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.upload.gc.grace:PT24H}")
+    private Duration grace = Duration.ofHours(24);
+
+    @Value("${app.upload.gc.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${app.upload.gc.batch-pause-ms:50}")
+    private long batchPauseMillis = 50;
+
+    private Path rootLocation;
+    private ObjectName objectName;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalReclaimedFiles = new AtomicLong();
+    private final AtomicLong totalReclaimedBytes = new AtomicLong();
+    private final AtomicLong totalFailedDeletes = new AtomicLong();
+    private volatile Instant lastRunStartedAt;
+    private volatile RunStats lastRun = new RunStats();
+
+    public UploadGarbageCollector(UploadReferenceRepository uploadReferenceRepository,
+                                  AttachmentBlobReferences attachmentBlobReferences,
+                                  UploadOwnership uploadOwnership,
+                                  UploadFileIndex uploadFileIndex,
+                                  PlatformTransactionManager transactionManager) {
+        this.uploadReferenceRepository = uploadReferenceRepository;
+        this.attachmentBlobReferences = attachmentBlobReferences;
+        this.uploadOwnership = uploadOwnership;
+        this.uploadFileIndex = uploadFileIndex;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        rootLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
+        registerMBean();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        unregisterMBean();
+    }
+
+    @Scheduled(cron = "${app.upload.gc.cron:0 30 4 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void collect() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            runOnce();
+        } catch (IOException | RuntimeException e) {
+            log.error("[UploadGC] Lượt dọn file upload thất bại", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    void runOnce() throws IOException {
+        Instant startedAt = Instant.now();
+        // Mốc lấy TRƯỚC khi nạp tham chiếu: file được ghi / chạm sau mốc này luôn được giữ
+        Instant cutoff = startedAt.minus(grace);
+        RunStats stats = new RunStats();
+        FilenameBloomFilter references = loadReferences(stats);
+
+        List<Path> batch = new ArrayList<>(batchSize);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(rootLocation)) {
+            for (Path file : files) {
+                batch.add(file);
+                if (batch.size() >= batchSize) {
+                    sweep(batch, references, cutoff, stats);
+                    batch.clear();
+                    if (!pauseBetweenBatches()) {
+                        break;
+                    }
+                }
+            }
+        }
+        sweep(batch, references, cutoff, stats);
+
+        stats.durationMillis = Duration.between(startedAt, Instant.now()).toMillis();
+        lastRunStartedAt = startedAt;
+        lastRun = stats;
+        runCount.incrementAndGet();
+        totalReclaimedFiles.addAndGet(stats.reclaimedFiles);
+        totalReclaimedBytes.addAndGet(stats.reclaimedBytes);
+        log.info("[UploadGC] Quét {} file ({} tham chiếu, bloom filter {} bytes), thu hồi {} file / {} bytes trong {} ms",
+                stats.scannedFiles, stats.references, references.sizeInBytes(),
+                stats.reclaimedFiles, stats.reclaimedBytes, stats.durationMillis);
+    }
+
+    private FilenameBloomFilter loadReferences(RunStats stats) {
+        return readTransaction.execute(status -> {
+            // Mỗi tham chiếu thêm cả tên ảnh thu nhỏ của nó
+            FilenameBloomFilter filter = new FilenameBloomFilter(uploadReferenceRepository.countReferences() * 2, FALSE_POSITIVE_RATE);
+            try (Stream<String> references = uploadReferenceRepository.streamReferences()) {
+                references.map(UploadGarbageCollector::filenameOf)
+                        .filter(Objects::nonNull)
+                        .forEach(filename -> {
+                            filter.put(filename);
+                            filter.put(AttachmentThumbnails.thumbnailName(filename));
+                            stats.references++;
+                        });
+            }
+            return filter;
+        });
+    }
+
+    private void sweep(List<Path> batch, FilenameBloomFilter references, Instant cutoff, RunStats stats) {
+        for (Path file : batch) {
+            stats.scannedFiles++;
+            String filename = file.getFileName().toString();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (NoSuchFileException e) {
+                continue;
+            } catch (IOException e) {
+                log.warn("[UploadGC] Không đọc được {}: {}", file, e.getMessage());
+                continue;
+            }
+            if (!attributes.isRegularFile() || attributes.lastModifiedTime().toInstant().isAfter(cutoff)) {
+                continue;
+            }
+            boolean tempFile = filename.startsWith(LocalFileUploadServiceImpl.TEMP_PREFIX)
+                    && filename.endsWith(LocalFileUploadServiceImpl.TEMP_SUFFIX);
+            if (!tempFile && (filename.startsWith(".") || isReferenced(filename, references))) {
+                continue; // File ẩn khác không phải do ứng dụng tạo
+            }
+            try {
+                if (Files.deleteIfExists(file)) {
+                    uploadFileIndex.evict(filename);
+                    if (!tempFile && !AttachmentThumbnails.isThumbnail(filename)) {
+                        uploadOwnership.forget(filename, cutoff);
+                    }
+                    stats.reclaimedFiles++;
+                    stats.reclaimedBytes += attributes.size();
+                    log.debug("[UploadGC] Đã xóa {} ({} bytes)", filename, attributes.size());
+                }
+            } catch (IOException e) {
+                totalFailedDeletes.incrementAndGet();
+                log.warn("[UploadGC] Không xóa được {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private boolean isReferenced(String filename, FilenameBloomFilter references) {
+        if (references.mightContain(filename)) {
+            return true;
+        }
+        // Bloom filter chụp lúc bắt đầu lượt: kiểm tra lại attachment tạo sau đó (ảnh thu nhỏ thì tạo lại được)
+        return !AttachmentThumbnails.isThumbnail(filename) && attachmentBlobReferences.countReferences(filename) > 0;
+    }
+
+    private boolean pauseBetweenBatches() {
+        if (batchPauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(batchPauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("[UploadGC] Bị ngắt, dừng lượt dọn");
+            return false;
+        }
+    }
+
+    /**
+     * Attachment lưu tên file; ảnh đại diện lưu URL ".../uploads/{tên file}[?query]".
+     */
+    static String filenameOf(String reference) {
+        if (reference == null || reference.isBlank()) {
+            return null;
+        }
+        int end = reference.length();
+        int query = reference.indexOf('?');
+        int fragment = reference.indexOf('#');
+        if (query >= 0) {
+            end = query;
+        }
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        String filename = reference.substring(reference.lastIndexOf('/', end - 1) + 1, end).trim();
+        return filename.isEmpty() ? null : filename;
+    }
+
+    // --- JMX ---
+
+    @Override
+    public long getRunCount() {
+        return runCount.get();
+    }
+
+    @Override
+    public String getLastRunStartedAt() {
+        Instant startedAt = lastRunStartedAt;
+        return startedAt != null ? startedAt.toString() : null;
+    }
+
+    @Override
+    public long getLastRunDurationMillis() {
+        return lastRun.durationMillis;
+    }
+
+    @Override
+    public long getLastRunReferenceCount() {
+        return lastRun.references;
+    }
+
+    @Override
+    public long getLastRunScannedFiles() {
+        return lastRun.scannedFiles;
+    }
+
+    @Override
+    public long getLastRunReclaimedFiles() {
+        return lastRun.reclaimedFiles;
+    }
+
+    @Override
+    public long getLastRunReclaimedBytes() {
+        return lastRun.reclaimedBytes;
+    }
+
+    @Override
+    public long getTotalReclaimedFiles() {
+        return totalReclaimedFiles.get();
+    }
+
+    @Override
+    public long getTotalReclaimedBytes() {
+        return totalReclaimedBytes.get();
+    }
+
+    @Override
+    public long getTotalFailedDeletes() {
+        return totalFailedDeletes.get();
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.example.demo:type=UploadGarbageCollector");
+            // Nhiều context (test) dùng chung MBeanServer: thay bản cũ
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            log.warn("Could not export metrics for upload GC: {}", e.getMessage());
+        }
+    }
+
+    private void unregisterMBean() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            log.debug("Could not unregister metrics for upload GC: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Số liệu của một lượt; chỉ luồng đang chạy lượt đó ghi, công bố qua field volatile khi xong.
+     */
+    private static final class RunStats {
+        long references;
+        long scannedFiles;
+        long reclaimedFiles;
+        long reclaimedBytes;
+        long durationMillis;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.shared.service.impl;
+
+/**
+ * Số liệu dọn file upload mồ côi, xuất qua JMX tại com.example.demo:type=UploadGarbageCollector.
+ */
+public interface UploadGarbageCollectorMXBean {
+
+    long getRunCount();
+
+    /** Thời điểm bắt đầu lượt gần nhất (ISO-8601), null nếu chưa chạy. */
+    String getLastRunStartedAt();
+
+    long getLastRunDurationMillis();
+
+    long getLastRunReferenceCount();
+
+    long getLastRunScannedFiles();
+
+    long getLastRunReclaimedFiles();
+
+    long getLastRunReclaimedBytes();
+
+    long getTotalReclaimedFiles();
+
+    long getTotalReclaimedBytes();
+
+    /** Số file lỗi khi xóa (quyền, đang bị khóa...) từ lúc khởi động. */
+    long getTotalFailedDeletes();
+}
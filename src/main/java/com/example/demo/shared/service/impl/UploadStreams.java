@@ -0,0 +1,132 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.exception.BadRequestException;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Phần dùng chung của các backend FileUploadService: đặt tên file theo nội dung và pipeline
+ * đọc -> băm SHA-256 -> ghi qua một direct buffer lấy từ pool nhỏ có giới hạn.
+ */
+final class UploadStreams {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("[A-Za-z0-9]{1,10}");
+
+    // Direct buffer chỉ được giải phóng khi GC: cấp tối đa POOL_SIZE buffer dùng chung cho mọi luồng
+    // (tổng 1 MB); pool đang cho mượn hết thì dùng heap buffer tạm
+    private static final int POOL_SIZE = 16;
+    private static final BlockingQueue<ByteBuffer> BUFFER_POOL = new ArrayBlockingQueue<>(POOL_SIZE);
+    private static final AtomicInteger directAllocated = new AtomicInteger();
+
+    private UploadStreams() {
+    }
+
+    /**
+     * Kiểm tra tên file gốc và lấy phần mở rộng an toàn (chữ/số, viết thường, kèm dấu chấm; có thể rỗng).
+     */
+    static String safeExtension(String originalFilename) {
+        String cleaned = StringUtils.cleanPath(originalFilename == null ? "" : originalFilename);
+        if (cleaned.contains("..")) {
+            // Security check
+            throw new BadRequestException("Tên file chứa ký tự không hợp lệ: " + cleaned);
+        }
+        // Chỉ giữ phần mở rộng chữ/số: tên lưu trữ luôn an toàn trong path/URL/key S3
+        int lastDotIndex = cleaned.lastIndexOf(".");
+        if (lastDotIndex > 0 && SAFE_EXTENSION.matcher(cleaned.substring(lastDotIndex + 1)).matches()) {
+            return cleaned.substring(lastDotIndex).toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    /**
+     * Tên lưu trữ theo nội dung: cùng nội dung (và phần mở rộng) luôn ra cùng một tên.
+     */
+    static String contentAddressedName(String sha256, String extension) {
+        return sha256 + extension;
+    }
+
+    static void checkDeclaredSize(long contentLength, long maxBytes) {
+        if (contentLength == 0) {
+            throw new BadRequestException("File upload không được rỗng.");
+        }
+        if (contentLength > maxBytes) {
+            throw new BadRequestException("File vượt quá dung lượng cho phép (" + maxBytes + " bytes).");
+        }
+    }
+
+    /**
+     * Chép toàn bộ in -> out, cập nhật digest trong cùng lượt đọc.
+     * @return số byte đã chép
+     * @throws BadRequestException nếu rỗng hoặc vượt maxBytes (phần đã ghi do caller dọn)
+     */
+    static long copyAndHash(ReadableByteChannel in, WritableByteChannel out, MessageDigest digest, long maxBytes) throws IOException {
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            long total = 0;
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                total += buffer.remaining();
+                if (total > maxBytes) {
+                    throw new BadRequestException("File vượt quá dung lượng cho phép (" + maxBytes + " bytes).");
+                }
+                buffer.mark();
+                digest.update(buffer);
+                buffer.reset();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                buffer.clear();
+            }
+            if (total == 0) {
+                throw new BadRequestException("File upload không được rỗng.");
+            }
+            return total;
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    static ByteBuffer acquireBuffer() {
+        ByteBuffer pooled = BUFFER_POOL.poll();
+        if (pooled != null) {
+            return pooled;
+        }
+        if (directAllocated.incrementAndGet() <= POOL_SIZE) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        directAllocated.decrementAndGet();
+        return ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    static void releaseBuffer(ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            BUFFER_POOL.offer(buffer);
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM không hỗ trợ SHA-256", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+}
@@ -5,12 +5,16 @@ import java.util.stream.Collectors;
 
 import javax.crypto.SecretKey;
 
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.example.demo.user.entity.User;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -31,12 +35,18 @@ public class JwtUtil {
     @Value("${app.jwt.refresh-token-expiration-ms}")
     private long refreshTokenExpirationMs;
 
-//    private SecretKey getSigningKey() {
-//        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
-//    }
-    
+    // Key HMAC và parser (thread-safe) dựng 1 lần khi khởi tạo bean, không tạo lại ở mỗi request
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    public void init() {
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
     SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        return signingKey;
     }
 
     /**
@@ -71,33 +81,48 @@ public class JwtUtil {
     }
 
     /**
-     * Lấy email từ token.
+     * Parse và xác thực chữ ký token một lần, trả về toàn bộ claims (subject, roles, iat...).
+     * Ném JwtException nếu token hết hạn / sai chữ ký / sai định dạng.
      */
-    public String getEmailFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+    public Claims getClaimsFromToken(String token) {
+        return parser
                 .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+                .getBody();
     }
 
     /**
-     * Xác thực token.
+     * Xác thực token và trả về claims trong cùng một lần verify chữ ký.
+     * Dùng cho JwtAuthenticationFilter và WebSocketAuthInterceptor.
+     * @return null nếu token không hợp lệ (hết hạn, sai chữ ký, sai định dạng, rỗng).
      */
-    public boolean validateToken(String token) {
+    public Claims validateAndGetClaims(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
-            return true;
+            return getClaimsFromToken(token);
+        } catch (ExpiredJwtException e) {
+            log.debug("JWT token is expired: {}", e.getMessage());
         } catch (MalformedJwtException e) {
             log.error("Invalid JWT token: {}", e.getMessage());
-        } catch (ExpiredJwtException e) {
-            log.error("JWT token is expired: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
             log.error("JWT token is unsupported: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.error("JWT signature is invalid: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
             log.error("JWT claims string is empty: {}", e.getMessage());
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Lấy email từ token.
+     */
+    public String getEmailFromToken(String token) {
+        return getClaimsFromToken(token).getSubject();
+    }
+
+    /**
+     * Xác thực token.
+     */
+    public boolean validateToken(String token) {
+        return validateAndGetClaims(token) != null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,25 @@
+package com.example.demo.shared.websocket;
+
+/**
+ * Các kênh WebSocket của một plan: /topic/plan/{link}/{path}.
+ */
+public enum PlanChannel {
+    DETAILS("details"),
+    TASKS("tasks"),
+    PROGRESS("progress"),
+    COMMUNITY("community");
+
+    private final String path;
+
+    PlanChannel(String path) {
+        this.path = path;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String destination(String shareableLink) {
+        return "/topic/plan/" + shareableLink + "/" + path;
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.demo.shared.websocket;
+
+import com.example.demo.config.websocket.BrokerEnvelope;
+import com.example.demo.config.websocket.ClusterBrokerBridge;
+import com.example.demo.shared.dto.response.PlanEventsResponse;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Điểm gửi duy nhất cho các sự kiện WebSocket của plan (/topic/plan/{link}/details|tasks|progress|community).
+ *
+ * - Mỗi plan có một dãy version tăng dần (kèm "epoch" ngẫu nhiên của dãy); mỗi sự kiện mang "version".
+ * - Sự kiện cùng kênh phát trong khoảng app.websocket.coalesce-window-ms được gộp thành 1 frame
+ *   {type: BATCH, fromVersion, toVersion, events: [...]}; nếu chỉ có 1 sự kiện thì gửi nguyên sự kiện.
+ * - Giữ app.websocket.replay-buffer-size sự kiện gần nhất của mỗi plan để client kết nối lại
+ *   lấy phần bỏ lỡ qua {@link #eventsSince(String, String, long)}.
+ *
+ * Trạng thái nằm trong bộ nhớ của node; khi dãy bị tạo lại (restart, bị đẩy khỏi cache) epoch đổi
+ * và client nhận reset = true.
+ *
+ * Nhiều node (broker mode "bus"): mỗi node đánh version riêng, frame mang "origin" (node phát) và "epoch"
+ * của dãy trên node đó. Client giữ version theo từng origin/epoch; epoch lạ từ origin khác là một dãy mới
+ * chứ không phải reset. Frame nhận từ node khác được ghi vào bộ đệm của dãy tương ứng nên client kết nối lại
+ * vào bất kỳ node nào cũng bù được theo epoch của từng dãy.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlanEventSequencer {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    // Chỉ có ở chế độ "bus" (xem BrokerBusConfig)
+    private final ObjectProvider<ClusterBrokerBridge> clusterBrokerBridge;
+
+    @Value("${app.websocket.coalesce-window-ms:100}")
+    private long coalesceWindowMs = 100;
+
+    @Value("${app.websocket.replay-buffer-size:256}")
+    private int replayBufferSize = 256;
+
+    @Value("${app.websocket.max-plan-streams:10000}")
+    private int maxStreams = 10_000;
+
+    // Số dãy của node khác giữ lại cho mỗi plan (node restart sẽ sinh dãy mới)
+    @Value("${app.websocket.max-remote-streams-per-plan:16}")
+    private int maxRemoteStreamsPerPlan = 16;
+
+    @Value("${app.websocket.node-id:}")
+    private String configuredNodeId = "";
+    private final String randomNodeId = UUID.randomUUID().toString();
+
+    private static final String PLAN_TOPIC_PREFIX = "/topic/plan/";
+    private static final TypeReference<Map<String, Object>> FRAME_TYPE = new TypeReference<>() {};
+
+    private final Map<String, PlanStream> streams = new ConcurrentHashMap<>();
+    // link -> (epoch -> dãy của node khác)
+    private final Map<String, Map<String, PlanStream>> remoteStreams = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "plan-event-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        if (clusterBrokerBridge != null) {
+            clusterBrokerBridge.ifAvailable(bridge -> bridge.onRemoteMessage(this::recordRemote));
+        }
+    }
+
+    public String getNodeId() {
+        return StringUtils.hasText(configuredNodeId) ? configuredNodeId : randomNodeId;
+    }
+
+    /**
+     * Gán version cho sự kiện và đưa vào hàng đợi gửi của kênh.
+     * Gọi trong transaction thì chỉ làm sau khi commit: thay đổi bị rollback không tiêu version, không để lại
+     * sự kiện ma trong bộ đệm, và client nhận sự kiện rồi tải lại luôn thấy dữ liệu đã commit.
+     */
+    public void publish(String shareableLink, PlanChannel channel, Map<String, Object> payload) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<String, Object> event = new LinkedHashMap<>(payload);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(shareableLink, channel, event);
+                }
+            });
+        } else {
+            enqueue(shareableLink, channel, payload);
+        }
+    }
+
+    private void enqueue(String shareableLink, PlanChannel channel, Map<String, Object> payload) {
+        PlanStream stream = streamOf(shareableLink);
+        long version;
+        boolean firstPending;
+        synchronized (stream) {
+            version = ++stream.version;
+            Map<String, Object> event = new LinkedHashMap<>(payload);
+            event.put("version", version);
+
+            Map<String, Object> replayed = new LinkedHashMap<>(event);
+            replayed.put("channel", channel.getPath());
+            stream.ring.addLast(replayed);
+            while (stream.ring.size() > replayBufferSize) {
+                stream.ring.removeFirst();
+            }
+
+            List<Map<String, Object>> pending = stream.pending.computeIfAbsent(channel, c -> new ArrayList<>());
+            pending.add(event);
+            firstPending = pending.size() == 1;
+        }
+
+        if (coalesceWindowMs <= 0) {
+            flush(shareableLink, channel);
+        } else if (firstPending) {
+            flusher.schedule(() -> flush(shareableLink, channel), coalesceWindowMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sự kiện có version > lastSeenVersion còn trong bộ đệm.
+     * @param epoch epoch client đã thấy (null nếu chưa nhận sự kiện nào)
+     */
+    public PlanEventsResponse eventsSince(String shareableLink, String epoch, long lastSeenVersion) {
+        PlanStream stream = findStream(shareableLink, epoch);
+        if (stream == null) {
+            return PlanEventsResponse.builder()
+                    .currentVersion(0)
+                    .reset(epoch != null)
+                    .events(List.of())
+                    .build();
+        }
+        synchronized (stream) {
+            long oldest = stream.ring.isEmpty() ? stream.version + 1 : (Long) stream.ring.peekFirst().get("version");
+            long since = epoch == null ? 0 : lastSeenVersion;
+            boolean reset = (epoch != null && !epoch.equals(stream.epoch))
+                    || since > stream.version
+                    || since < oldest - 1;
+            List<Map<String, Object>> missed = reset ? List.of() : stream.ring.stream()
+                    .filter(event -> (Long) event.get("version") > since)
+                    .toList();
+            return PlanEventsResponse.builder()
+                    .origin(stream.origin)
+                    .epoch(stream.epoch)
+                    .currentVersion(stream.version)
+                    .reset(reset)
+                    .events(missed)
+                    .build();
+        }
+    }
+
+    /**
+     * Dãy có epoch :epoch (của node này hoặc node khác); không thấy thì trả dãy của node này.
+     */
+    private PlanStream findStream(String shareableLink, String epoch) {
+        if (epoch != null) {
+            Map<String, PlanStream> remote = remoteStreams.get(shareableLink);
+            if (remote != null) {
+                synchronized (remote) {
+                    PlanStream stream = remote.get(epoch);
+                    if (stream != null) {
+                        return stream;
+                    }
+                }
+            }
+        }
+        return streams.get(shareableLink);
+    }
+
+    /**
+     * Ghi lại frame sự kiện plan mà node khác đã phát (đến qua BrokerBus) vào bộ đệm của dãy tương ứng.
+     */
+    void recordRemote(BrokerEnvelope envelope) {
+        String destination = envelope.destination();
+        if (destination == null || !destination.startsWith(PLAN_TOPIC_PREFIX)) {
+            return;
+        }
+        String rest = destination.substring(PLAN_TOPIC_PREFIX.length());
+        int slash = rest.lastIndexOf('/');
+        if (slash <= 0) {
+            return;
+        }
+        String shareableLink = rest.substring(0, slash);
+        String channelPath = rest.substring(slash + 1);
+
+        Map<String, Object> frame;
+        try {
+            frame = objectMapper.readValue(envelope.payload(), FRAME_TYPE);
+        } catch (IOException e) {
+            log.warn("Unreadable plan event frame from node {} to {}: {}", envelope.originNodeId(), destination, e.getMessage());
+            return;
+        }
+        if (!(frame.get("epoch") instanceof String epoch) || !(frame.get("origin") instanceof String origin)) {
+            return;
+        }
+        List<?> events = "BATCH".equals(frame.get("type")) && frame.get("events") instanceof List<?> batched
+                ? batched
+                : List.of(frame);
+
+        PlanStream stream = remoteStreamOf(shareableLink, origin, epoch);
+        synchronized (stream) {
+            for (Object item : events) {
+                if (!(item instanceof Map<?, ?> raw) || !(raw.get("version") instanceof Number number)) {
+                    continue;
+                }
+                long version = number.longValue();
+                if (version <= stream.version) {
+                    continue;
+                }
+                if (version > stream.version + 1) {
+                    // Thiếu frame (VD: quá lớn để đi qua bus): client cũ hơn đoạn này phải reset
+                    stream.ring.clear();
+                }
+                Map<String, Object> replayed = new LinkedHashMap<>();
+                raw.forEach((key, value) -> replayed.put(String.valueOf(key), value));
+                replayed.remove("epoch");
+                replayed.remove("origin");
+                replayed.put("version", version);
+                replayed.put("channel", channelPath);
+                stream.ring.addLast(replayed);
+                while (stream.ring.size() > replayBufferSize) {
+                    stream.ring.removeFirst();
+                }
+                stream.version = version;
+            }
+        }
+    }
+
+    private PlanStream remoteStreamOf(String shareableLink, String origin, String epoch) {
+        if (remoteStreams.size() >= maxStreams && !remoteStreams.containsKey(shareableLink)) {
+            Iterator<String> it = remoteStreams.keySet().iterator();
+            int toRemove = Math.max(1, maxStreams / 10);
+            while (toRemove-- > 0 && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        Map<String, PlanStream> remote = remoteStreams.computeIfAbsent(shareableLink, link -> new LinkedHashMap<>());
+        synchronized (remote) {
+            PlanStream stream = remote.computeIfAbsent(epoch, e -> new PlanStream(origin, e));
+            Iterator<String> it = remote.keySet().iterator();
+            while (remote.size() > maxRemoteStreamsPerPlan && it.hasNext()) {
+                if (it.next().equals(epoch)) {
+                    continue;
+                }
+                it.remove();
+            }
+            return stream;
+        }
+    }
+
+    void flush(String shareableLink, PlanChannel channel) {
+        PlanStream stream = streams.get(shareableLink);
+        if (stream == null) {
+            return;
+        }
+        // Gửi trong khóa để frame của cùng plan đi ra theo đúng thứ tự version
+        synchronized (stream) {
+            List<Map<String, Object>> events = stream.pending.remove(channel);
+            if (events == null || events.isEmpty()) {
+                return;
+            }
+            Object frame;
+            if (events.size() == 1) {
+                Map<String, Object> single = events.get(0);
+                single.put("origin", stream.origin);
+                single.put("epoch", stream.epoch);
+                frame = single;
+            } else {
+                Map<String, Object> batch = new LinkedHashMap<>();
+                batch.put("type", "BATCH");
+                batch.put("origin", stream.origin);
+                batch.put("epoch", stream.epoch);
+                batch.put("fromVersion", events.get(0).get("version"));
+                batch.put("toVersion", events.get(events.size() - 1).get("version"));
+                batch.put("events", events);
+                frame = batch;
+            }
+            try {
+                messagingTemplate.convertAndSend(channel.destination(shareableLink), frame);
+            } catch (Exception e) {
+                log.error("Error sending {} plan event(s) to {}: {}", events.size(), channel.destination(shareableLink), e.getMessage());
+            }
+        }
+    }
+
+    private PlanStream streamOf(String shareableLink) {
+        PlanStream stream = streams.get(shareableLink);
+        if (stream != null) {
+            return stream;
+        }
+        if (streams.size() >= maxStreams) {
+            evictSome();
+        }
+        return streams.computeIfAbsent(shareableLink, link -> new PlanStream(getNodeId(), UUID.randomUUID().toString()));
+    }
+
+    private void evictSome() {
+        // Bỏ bớt các plan không còn sự kiện chờ gửi; client của chúng sẽ nhận reset khi kết nối lại
+        Iterator<PlanStream> it = streams.values().iterator();
+        int toRemove = Math.max(1, maxStreams / 10);
+        while (toRemove > 0 && it.hasNext()) {
+            PlanStream stream = it.next();
+            synchronized (stream) {
+                if (stream.pending.isEmpty()) {
+                    it.remove();
+                    toRemove--;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+    }
+
+    private static final class PlanStream {
+        private final String origin;
+        private final String epoch;
+        private long version;
+        private final Deque<Map<String, Object>> ring = new ArrayDeque<>();
+        private final Map<PlanChannel, List<Map<String, Object>>> pending = new EnumMap<>(PlanChannel.class);
+
+        private PlanStream(String origin, String epoch) {
+            this.origin = origin;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.user.dto.projection;
+
+/**
+ * Thông tin hiển thị của một user (LEFT JOIN customer/employee).
+ * customerName/employeeName/avatarUrl là null khi user không có hồ sơ tương ứng.
+ */
+public interface UserDisplayRow {
+    Integer getUserId();
+    String getEmail();
+    String getCustomerName();
+    String getEmployeeName();
+    String getAvatarUrl();
+}
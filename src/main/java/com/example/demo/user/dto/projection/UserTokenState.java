@@ -0,0 +1,14 @@
+package com.example.demo.user.dto.projection;
+
+import com.example.demo.user.entity.UserStatus;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Trạng thái tài khoản cần để chấp nhận một access token (không load entity User).
+ * tokensValidAfter là null khi quyền của user chưa từng bị thu hồi.
+ */
+public interface UserTokenState {
+    UserStatus getStatus();
+    OffsetDateTime getTokensValidAfter();
+}
@@ -44,6 +44,10 @@ public class User {
             columnDefinition = "TIMESTAMP WITH TIME ZONE")
     private OffsetDateTime createdAt = OffsetDateTime.now();
 
+    // Access token cấp trước thời điểm này không còn được chấp nhận (xem AuthenticatedPrincipalCache)
+    @Column(name = "tokens_valid_after", columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime tokensValidAfter;
+
     // --- Relationships ---
 
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
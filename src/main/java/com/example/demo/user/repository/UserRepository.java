@@ -1,10 +1,16 @@
 package com.example.demo.user.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.example.demo.user.dto.projection.UserDisplayRow;
+import com.example.demo.user.dto.projection.UserTokenState;
 import com.example.demo.user.entity.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -25,4 +31,25 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      * @return true nếu email đã tồn tại, false nếu chưa.
      */
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    /**
+     * Chỉ lấy ID của user theo email (không load entity và các quan hệ).
+     */
+    @Query("SELECT u.id FROM User u WHERE u.email = :email")
+    Optional<Integer> findIdByEmail(@Param("email") String email);
+
+    /**
+     * Trạng thái và mốc thu hồi token của user (AuthenticatedPrincipalCache nạp khi cache miss).
+     */
+    @Query("SELECT u.status AS status, u.tokensValidAfter AS tokensValidAfter FROM User u WHERE u.email = :email")
+    Optional<UserTokenState> findTokenStateByEmail(@Param("email") String email);
+
+    /**
+     * Tên / email / avatar của nhiều user trong 1 query (không load entity Customer/Employee).
+     */
+    @Query("SELECT u.id AS userId, u.email AS email, c.fullname AS customerName, " +
+           "e.fullname AS employeeName, c.photo AS avatarUrl " +
+           "FROM User u LEFT JOIN u.customer c LEFT JOIN u.employee e " +
+           "WHERE u.id IN :ids")
+    List<UserDisplayRow> findDisplayRowsByIdIn(@Param("ids") Collection<Integer> ids);
+}
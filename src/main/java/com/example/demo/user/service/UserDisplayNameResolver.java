@@ -0,0 +1,149 @@
+package com.example.demo.user.service;
+
+import com.example.demo.user.dto.projection.UserDisplayRow;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Nguồn duy nhất cho tên hiển thị / email / avatar của user, dùng chung cho mọi mapper và service.
+ *
+ * Tên lấy theo thứ tự: Employee.fullname -> Customer.fullname -> email (bỏ qua tên rỗng), giống
+ * các query SQL đã có (nhắc nhở, cột actor_display_name của feed). Dữ liệu nạp bằng 1 query
+ * projection cho cả danh sách user, không đụng tới quan hệ one-to-one lazy User.customer/employee.
+ *
+ * Write-through: mọi chỗ sửa fullname/photo của Customer/Employee phải gọi {@link #invalidate(Integer)}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserDisplayNameResolver {
+
+    private final UserRepository userRepository;
+
+    @Value("${app.user.display-cache.max-size:50000}")
+    private int maxSize = 50_000;
+
+    private final Map<Integer, UserDisplay> byUserId = new ConcurrentHashMap<>();
+    // Tăng mỗi lần invalidate; kết quả nạp song song với một lần invalidate sẽ không được cache
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Thông tin hiển thị của một user (null nếu user null). User chưa lưu / không còn trong DB
+     * được hiển thị bằng email.
+     */
+    public UserDisplay get(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserDisplay display = user.getId() == null ? null : getAll(List.of(user.getId())).get(user.getId());
+        return display != null ? display : new UserDisplay(user.getId(), user.getEmail(), user.getEmail(), null);
+    }
+
+    public String displayName(User user) {
+        UserDisplay display = get(user);
+        return display != null ? display.displayName() : null;
+    }
+
+    /**
+     * Thông tin hiển thị của nhiều user: các id chưa có trong cache được nạp bằng 1 query.
+     * Id không tồn tại sẽ không có trong Map kết quả.
+     */
+    public Map<Integer, UserDisplay> getAll(Collection<Integer> userIds) {
+        Map<Integer, UserDisplay> result = new HashMap<>();
+        List<Integer> missing = userIds.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(userId -> {
+                    UserDisplay cached = byUserId.get(userId);
+                    if (cached != null) {
+                        result.put(userId, cached);
+                        return false;
+                    }
+                    return true;
+                })
+                .toList();
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        long generationBefore = generation.get();
+        List<UserDisplayRow> rows = userRepository.findDisplayRowsByIdIn(missing);
+        boolean cacheable = generation.get() == generationBefore;
+        for (UserDisplayRow row : rows) {
+            UserDisplay display = toDisplay(row);
+            result.put(display.userId(), display);
+            if (cacheable) {
+                if (byUserId.size() >= maxSize) {
+                    evictSome();
+                }
+                byUserId.put(display.userId(), display);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Xóa user khỏi cache ngay lập tức và một lần nữa sau khi transaction hiện tại kết thúc
+     * (tránh một request song song nạp lại tên cũ trước khi commit).
+     */
+    public void invalidate(Integer userId) {
+        if (userId == null) {
+            return;
+        }
+        evict(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId);
+                }
+            });
+        }
+    }
+
+    private void evict(Integer userId) {
+        generation.incrementAndGet();
+        byUserId.remove(userId);
+        log.debug("[UserDisplayNameResolver] Invalidated user {}", userId);
+    }
+
+    private void evictSome() {
+        // Cache đầy: bỏ bớt các entry bất kỳ, chúng sẽ được nạp lại khi cần
+        Iterator<Integer> it = byUserId.keySet().iterator();
+        int toRemove = Math.max(1, maxSize / 10);
+        while (toRemove-- > 0 && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private static UserDisplay toDisplay(UserDisplayRow row) {
+        String name = firstNonBlank(row.getEmployeeName(), row.getCustomerName());
+        return new UserDisplay(row.getUserId(), row.getEmail(), name != null ? name : row.getEmail(), row.getAvatarUrl());
+    }
+
+    private static String firstNonBlank(String first, String second) {
+        if (first != null && !first.isBlank()) {
+            return first;
+        }
+        return second != null && !second.isBlank() ? second : null;
+    }
+
+    public record UserDisplay(Integer userId, String email, String displayName, String avatarUrl) {
+    }
+}
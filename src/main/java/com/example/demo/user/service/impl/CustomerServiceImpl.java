@@ -5,6 +5,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.config.security.AuthenticatedPrincipalCache;
 import com.example.demo.shared.exception.BadRequestException;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.dto.request.UpdateCustomerRequest;
@@ -16,6 +17,7 @@ import com.example.demo.user.mapper.CustomerMapper;
 import com.example.demo.user.repository.CustomerRepository;
 import com.example.demo.user.repository.UserRepository;
 import com.example.demo.user.service.CustomerService;
+import com.example.demo.user.service.UserDisplayNameResolver;
 
 import lombok.RequiredArgsConstructor;
 
@@ -27,6 +29,8 @@ public class CustomerServiceImpl implements CustomerService {
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
     private final UserRepository userRepository; // <-- THÊM DEPENDENCY NÀY
+    private final AuthenticatedPrincipalCache principalCache;
+    private final UserDisplayNameResolver userDisplayNameResolver;
 
     @Override
     public CustomerResponse getCustomerById(Integer id) {
@@ -63,6 +67,7 @@ public class CustomerServiceImpl implements CustomerService {
         }
 
         Customer updatedCustomer = customerRepository.save(customer);
+        userDisplayNameResolver.invalidate(customer.getUser().getId());
         return customerMapper.toCustomerResponse(updatedCustomer);
     }
 
@@ -78,6 +83,8 @@ public class CustomerServiceImpl implements CustomerService {
         if (user != null) {
             user.setStatus(UserStatus.SUSPENDED); // Đổi trạng thái thành bị khóa
             userRepository.save(user);
+            principalCache.invalidate(user.getEmail()); // Access token hiện có không còn dùng được
+            userDisplayNameResolver.invalidate(user.getId()); // Không còn tên Customer -> hiển thị bằng email
         }
 
         // 3. Xóa Customer (nhưng không xóa User)
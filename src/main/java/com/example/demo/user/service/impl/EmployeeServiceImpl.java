@@ -9,6 +9,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.config.security.AuthenticatedPrincipalCache;
 import com.example.demo.shared.exception.BadRequestException;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.dto.request.AssignRolesToEmployeeRequest;
@@ -24,6 +25,7 @@ import com.example.demo.user.repository.EmployeeRepository;
 import com.example.demo.user.repository.RoleRepository;
 import com.example.demo.user.repository.UserRepository;
 import com.example.demo.user.service.EmployeeService;
+import com.example.demo.user.service.UserDisplayNameResolver;
 
 import lombok.RequiredArgsConstructor;
 
@@ -37,6 +39,8 @@ public class EmployeeServiceImpl implements EmployeeService {
     private final RoleRepository roleRepository;
     private final EmployeeMapper employeeMapper;
     private final PasswordEncoder passwordEncoder;
+    private final AuthenticatedPrincipalCache principalCache;
+    private final UserDisplayNameResolver userDisplayNameResolver;
 
  // Version đã sửa lỗi
     @Override
@@ -104,6 +108,7 @@ public class EmployeeServiceImpl implements EmployeeService {
         }
         
         Employee updatedEmployee = employeeRepository.save(employee);
+        userDisplayNameResolver.invalidate(employee.getUser().getId());
         return employeeMapper.toEmployeeResponse(updatedEmployee);
     }
 
@@ -113,6 +118,7 @@ public class EmployeeServiceImpl implements EmployeeService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy nhân viên với ID: " + id));
         employee.setActive(isActive);
         employeeRepository.save(employee);
+        principalCache.invalidate(employee.getUser().getEmail());
     }
     
     @Override
@@ -132,6 +138,8 @@ public class EmployeeServiceImpl implements EmployeeService {
 
         // 4. Lưu lại thông tin nhân viên đã được cập nhật
         Employee updatedEmployee = employeeRepository.save(employee);
+        // Token cũ mang claim "roles" đã lỗi thời -> buộc client lấy token mới
+        principalCache.invalidate(employee.getUser().getEmail());
 
         // 5. Trả về thông tin nhân viên dưới dạng DTO
         return employeeMapper.toEmployeeResponse(updatedEmployee);
@@ -11,6 +11,7 @@ import org.springframework.scheduling.annotation.Async; // Dùng để ghi log b
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.config.async.AsyncWorkload;
 import com.example.demo.user.dto.response.UserActivityLogResponse;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.entity.UserActivityLog;
@@ -34,7 +35,7 @@ public class UserActivityLogServiceImpl implements UserActivityLogService {
     private final ObjectMapper objectMapper; // Spring Boot tự động cung cấp bean này
 
     @Override
-    @Async // Chạy trên một thread khác để không làm chậm luồng chính
+    @Async(AsyncWorkload.ACTIVITY_LOG_EXECUTOR) // Chạy trên một thread khác để không làm chậm luồng chính
     @Transactional
     public void logActivity(String action, Object details, User user) {
         try {
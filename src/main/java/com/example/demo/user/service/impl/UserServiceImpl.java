@@ -9,6 +9,7 @@ import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.CustomerRepository; // Cần import
 import com.example.demo.user.repository.EmployeeRepository; // Cần import
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
 import com.example.demo.user.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -22,6 +23,7 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final CustomerRepository customerRepository; // Inject CustomerRepository
     private final EmployeeRepository employeeRepository; // Inject EmployeeRepository
+    private final UserDisplayNameResolver userDisplayNameResolver;
 
     @Override
     @Transactional(readOnly = true) // Tối ưu cho đọc
@@ -53,6 +55,8 @@ public class UserServiceImpl implements UserService {
         } else {
              throw new IllegalStateException("User không có thông tin Customer hoặc Employee.");
         }
+        // Tên/avatar hiển thị ở các mapper khác đã thay đổi
+        userDisplayNameResolver.invalidate(user.getId());
 
         // *** FIX QUAN TRỌNG NHẤT LÀ Ở ĐÂY ***
         // Vứt bỏ đối tượng 'user' cũ đang bị cache
@@ -0,0 +1,27 @@
+package com.example.demo.config;
+
+import com.example.demo.config.async.InstrumentedTaskExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncConfigTest {
+
+    private final AsyncConfig config = new AsyncConfig();
+
+    @Test
+    void uploadExecutor_PolicyThatLosesOrParksTasks_FailsAtStartup() {
+        for (String policy : new String[] {"SPILL", "DISCARD", "DISCARD_OLDEST"}) {
+            MockEnvironment env = new MockEnvironment().withProperty("app.async.upload.rejection-policy", policy);
+            assertThrows(IllegalStateException.class, () -> config.uploadExecutor(env), policy);
+        }
+    }
+
+    @Test
+    void uploadExecutor_DefaultPolicy_IsCallerRuns() {
+        InstrumentedTaskExecutor executor = config.uploadExecutor(new MockEnvironment());
+
+        assertEquals("CALLER_RUNS", executor.getRejectionPolicy());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.demo.config.async;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedTaskExecutorTest {
+
+    private InstrumentedTaskExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    private InstrumentedTaskExecutor saturated(RejectionPolicy policy) throws InterruptedException {
+        executor = new InstrumentedTaskExecutor(AsyncWorkload.EMAIL, AsyncWorkload.ExecutorMode.PLATFORM, 1, 1, 1, policy);
+        executor.initialize();
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { }); // Lấp đầy hàng đợi (sức chứa 1)
+        return executor;
+    }
+
+    @Test
+    void discardPolicy_CountsRejectionWithoutThrowing() throws Exception {
+        saturated(RejectionPolicy.DISCARD).execute(() -> fail("Tác vụ tràn phải bị bỏ"));
+
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getActiveCount());
+        assertEquals(3, executor.getSubmittedCount());
+    }
+
+    @Test
+    void callerRunsPolicy_SpillsOntoCallingThread() throws Exception {
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        saturated(RejectionPolicy.CALLER_RUNS).execute(() -> ranOn.set(Thread.currentThread()));
+
+        assertSame(Thread.currentThread(), ranOn.get());
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    void spillPolicy_ParksOverflowOffTheCallingThreadAndRunsItOnThePool() throws Exception {
+        AtomicReference<Thread> ranOn = new AtomicReference<>();
+        CountDownLatch ran = new CountDownLatch(1);
+        saturated(RejectionPolicy.SPILL).execute(() -> {
+            ranOn.set(Thread.currentThread());
+            ran.countDown();
+        });
+
+        assertNull(ranOn.get(), "Tác vụ tràn không được chạy trên luồng gọi");
+        assertEquals(1, executor.getSpillDepth());
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), ranOn.get());
+        assertEquals(0, executor.getSpillDepth());
+        assertEquals(0, executor.getDroppedCount());
+    }
+
+    @Test
+    void spillPolicy_RejectsWhenSpillIsFull() throws Exception {
+        executor = new InstrumentedTaskExecutor(AsyncWorkload.NOTIFICATION, AsyncWorkload.ExecutorMode.PLATFORM, 1, 1, 1,
+                RejectionPolicy.SPILL, 1);
+        executor.initialize();
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute(() -> { }); // hàng đợi chính
+        executor.execute(() -> { }); // hàng đợi phụ
+        assertThrows(TaskRejectedException.class, () -> executor.execute(() -> fail("Hàng đợi phụ đầy: tác vụ phải bị từ chối")));
+
+        assertEquals(2, executor.getRejectedCount());
+        assertEquals(1, executor.getSpillDepth());
+        assertEquals(0, executor.getDroppedCount());
+    }
+
+    @Test
+    void abortPolicy_KeepsPreviousBehaviour() throws Exception {
+        assertThrows(TaskRejectedException.class, () -> saturated(RejectionPolicy.ABORT).execute(() -> { }));
+        assertEquals(1, executor.getRejectedCount());
+    }
+
+    @Test
+    void queuedTask_RecordsWaitTimeAndIsExportedOverJmx() throws Exception {
+        saturated(RejectionPolicy.ABORT);
+        Thread.sleep(30);
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+
+        assertTrue(executor.getMaxWaitMillis() >= 25, "Tác vụ thứ 2 phải chờ tác vụ đầu chạy xong");
+        assertTrue(executor.getAverageWaitMillis() > 0);
+        assertEquals(2, executor.getCompletedCount());
+        Object queueDepth = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName("com.example.demo:type=AsyncExecutor,name=email"), "QueueDepth");
+        assertEquals(0, queueDepth);
+    }
+
+    @Test
+    void virtualMode_FallsBackToPlatformThreadsWhenUnsupported() {
+        executor = new InstrumentedTaskExecutor(AsyncWorkload.EMAIL, AsyncWorkload.ExecutorMode.VIRTUAL, 1, 4, 10, RejectionPolicy.ABORT);
+
+        boolean supported = Runtime.version().feature() >= 21;
+        assertEquals(supported ? "VIRTUAL" : "PLATFORM", executor.getMode());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
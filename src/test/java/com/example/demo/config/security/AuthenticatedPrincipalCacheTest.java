@@ -0,0 +1,131 @@
+package com.example.demo.config.security;
+
+import com.example.demo.user.dto.projection.UserTokenState;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.entity.UserStatus;
+import com.example.demo.user.repository.UserRepository;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.OffsetDateTime;
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuthenticatedPrincipalCacheTest {
+
+    @Mock private UserRepository userRepository;
+
+    private AuthenticatedPrincipalCache principalCache;
+
+    @BeforeEach
+    void setUp() {
+        principalCache = new AuthenticatedPrincipalCache(userRepository);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Claims claims(String email, String roles, Date issuedAt) {
+        Claims claims = Jwts.claims().setSubject(email).setIssuedAt(issuedAt);
+        claims.put("roles", roles);
+        return claims;
+    }
+
+    private static UserTokenState state(UserStatus status, OffsetDateTime tokensValidAfter) {
+        return new UserTokenState() {
+            @Override
+            public UserStatus getStatus() {
+                return status;
+            }
+
+            @Override
+            public OffsetDateTime getTokensValidAfter() {
+                return tokensValidAfter;
+            }
+        };
+    }
+
+    @Test
+    void resolve_BuildsAuthoritiesFromRolesClaim() {
+        when(userRepository.findTokenStateByEmail("admin@example.com")).thenReturn(Optional.of(state(UserStatus.ACTIVE, null)));
+
+        UserDetails principal = principalCache.resolve(claims("admin@example.com", "ROLE_ADMIN,ROLE_STAFF", new Date()));
+
+        assertNotNull(principal);
+        assertEquals("admin@example.com", principal.getUsername());
+        Set<String> authorities = principal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("ROLE_ADMIN", "ROLE_STAFF"), authorities);
+    }
+
+    @Test
+    void resolve_SameSubjectAndRoles_ReturnsCachedInstanceWithOneLookup() {
+        when(userRepository.findTokenStateByEmail("user@example.com")).thenReturn(Optional.of(state(UserStatus.ACTIVE, null)));
+
+        UserDetails first = principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER", new Date()));
+        UserDetails second = principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER", new Date()));
+
+        assertSame(first, second);
+        verify(userRepository, times(1)).findTokenStateByEmail("user@example.com");
+    }
+
+    @Test
+    void resolve_DeletedSuspendedOrPersistedRevocation_IsRejectedOnCacheMiss() {
+        when(userRepository.findTokenStateByEmail("gone@example.com")).thenReturn(Optional.empty());
+        when(userRepository.findTokenStateByEmail("locked@example.com")).thenReturn(Optional.of(state(UserStatus.SUSPENDED, null)));
+        // Mốc thu hồi do node khác ghi (hoặc trước khi restart)
+        OffsetDateTime revokedAt = OffsetDateTime.now();
+        when(userRepository.findTokenStateByEmail("user@example.com")).thenReturn(Optional.of(state(UserStatus.ACTIVE, revokedAt)));
+
+        assertNull(principalCache.resolve(claims("gone@example.com", "ROLE_CUSTOMER", new Date())));
+        assertNull(principalCache.resolve(claims("locked@example.com", "ROLE_CUSTOMER", new Date())));
+        assertNull(principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER",
+                Date.from(revokedAt.minusMinutes(1).toInstant()))));
+        assertNotNull(principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER",
+                Date.from(revokedAt.plusSeconds(1).toInstant()))));
+    }
+
+    @Test
+    void invalidate_PersistsCutoffAndEvictsOnlyAfterCommit() {
+        when(userRepository.findTokenStateByEmail("user@example.com")).thenReturn(Optional.of(state(UserStatus.ACTIVE, null)));
+        User user = User.builder().email("user@example.com").build();
+        when(userRepository.findByEmail("user@example.com")).thenReturn(Optional.of(user));
+        Date oldIssuedAt = new Date(System.currentTimeMillis() - 60_000);
+        assertNotNull(principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER", oldIssuedAt)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        principalCache.invalidate("user@example.com");
+
+        assertNotNull(user.getTokensValidAfter());
+        // Chưa commit: thay đổi quyền chưa có hiệu lực
+        assertNotNull(principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER", oldIssuedAt)));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+        assertNull(principalCache.resolve(claims("user@example.com", "ROLE_CUSTOMER", oldIssuedAt)));
+        // Token mới cấp sau khi thay đổi quyền vẫn hợp lệ
+        Date newIssuedAt = new Date(System.currentTimeMillis() + 1_000);
+        assertNotNull(principalCache.resolve(claims("user@example.com", "ROLE_ADMIN", newIssuedAt)));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.demo.config.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Hai "node" trong cùng JVM, mỗi node một simple broker, nối với nhau qua LoopbackBrokerBus.
+ */
+class ClusterBrokerBridgeTest {
+
+    private final LoopbackBrokerBus bus = new LoopbackBrokerBus();
+    private Node nodeA;
+    private Node nodeB;
+
+    @BeforeEach
+    void setUp() {
+        nodeA = new Node("node-a", bus);
+        nodeB = new Node("node-b", bus);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.broker.stop();
+        nodeB.broker.stop();
+    }
+
+    @Test
+    void messageSentOnOneNode_ReachesSubscribersOnEveryNodeOnce() {
+        nodeA.subscribe("s1", "/topic/plan/abc/progress");
+        nodeB.subscribe("s2", "/topic/plan/abc/progress");
+
+        nodeA.template.convertAndSend("/topic/plan/abc/progress", Map.of("type", "NEW_CHECK_IN"));
+
+        assertEquals(1, nodeA.delivered.size());
+        assertEquals(1, nodeB.delivered.size());
+        String body = new String((byte[]) nodeB.delivered.get(0).getPayload(), StandardCharsets.UTF_8);
+        assertTrue(body.contains("NEW_CHECK_IN"));
+    }
+
+    @Test
+    void messageFromBus_IsNotPublishedBackToBus() {
+        List<BrokerEnvelope> published = new CopyOnWriteArrayList<>();
+        bus.subscribe(published::add);
+        nodeB.subscribe("s2", "/topic/plan/abc/tasks");
+
+        nodeA.template.convertAndSend("/topic/plan/abc/tasks", Map.of("type", "NEW_TASK"));
+
+        assertEquals(1, published.size());
+        assertEquals("node-a", published.get(0).originNodeId());
+        assertEquals(1, nodeB.delivered.size());
+    }
+
+    private static final class Node {
+        final ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel();
+        final ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        final SimpleBrokerMessageHandler broker;
+        final SimpMessagingTemplate template;
+        final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+
+        Node(String nodeId, BrokerBus bus) {
+            broker = new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"));
+            broker.start();
+            brokerChannel.addInterceptor(new ClusterBrokerBridge(bus, nodeId, () -> brokerChannel));
+            outbound.subscribe(message -> {
+                if (message.getHeaders().get(SimpMessageHeaderAccessor.MESSAGE_TYPE_HEADER) == SimpMessageType.MESSAGE) {
+                    delivered.add(message);
+                }
+            });
+            template = new SimpMessagingTemplate(brokerChannel);
+            template.setMessageConverter(new MappingJackson2MessageConverter());
+        }
+
+        void subscribe(String sessionId, String destination) {
+            SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+            connect.setSessionId(sessionId);
+            inbound.send(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+            accessor.setSessionId(sessionId);
+            accessor.setSubscriptionId("sub-" + sessionId);
+            accessor.setDestination(destination);
+            inbound.send(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+        }
+    }
+}
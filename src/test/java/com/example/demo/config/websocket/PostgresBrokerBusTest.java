@@ -0,0 +1,149 @@
+package com.example.demo.config.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import org.mockito.ArgumentCaptor;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class PostgresBrokerBusTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final PostgresBrokerBus bus = new PostgresBrokerBus(dataSource, "broker_bus", 10);
+
+    @AfterEach
+    void tearDown() {
+        bus.close();
+    }
+
+    @Test
+    void encodeDecode_RoundTripsEnvelope() {
+        BrokerEnvelope envelope = new BrokerEnvelope("node-a", "/topic/plan/abc/progress", "application/json",
+                "{\"type\":\"NEW_CHECK_IN\",\"note\":\"xin chào\\n\"}".getBytes(StandardCharsets.UTF_8));
+
+        BrokerEnvelope decoded = PostgresBrokerBus.decode(PostgresBrokerBus.encode(envelope));
+
+        assertEquals("node-a", decoded.originNodeId());
+        assertEquals("/topic/plan/abc/progress", decoded.destination());
+        assertEquals("application/json", decoded.contentType());
+        assertArrayEquals(envelope.payload(), decoded.payload());
+        assertNull(PostgresBrokerBus.decode(PostgresBrokerBus.encode(
+                new BrokerEnvelope("n", "/topic/x", null, new byte[0]))).contentType());
+    }
+
+    @Test
+    void publish_SendsQueuedMessagesFromPublisherThreadInOneTransaction() throws Exception {
+        Connection connection = mock(Connection.class);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement("SELECT pg_notify(?, w) FROM unnest(?) AS w")).thenReturn(statement);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // Lô đầu bị giữ lại: các message gửi trong lúc đó được gom thành lô sau
+        when(connection.createArrayOf(eq("text"), any())).thenAnswer(inv -> {
+            sending.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            return mock(Array.class);
+        });
+
+        bus.publish(new BrokerEnvelope("node-a", "/topic/a", null, new byte[]{1}));
+        assertTrue(sending.await(2, TimeUnit.SECONDS));
+        // Luồng gửi không bị chặn dù publisher đang kẹt ở DB
+        bus.publish(new BrokerEnvelope("node-a", "/topic/b", null, new byte[]{2}));
+        bus.publish(new BrokerEnvelope("node-a", "/topic/c", null, new byte[]{3}));
+        release.countDown();
+
+        ArgumentCaptor<Object[]> wire = ArgumentCaptor.forClass(Object[].class);
+        verify(connection, timeout(2000).times(2)).commit();
+        verify(connection, times(2)).createArrayOf(eq("text"), wire.capture());
+        assertEquals(1, wire.getAllValues().get(0).length);
+        assertEquals(2, wire.getAllValues().get(1).length);
+        assertEquals("/topic/c", PostgresBrokerBus.fromWire(connection, (String) wire.getAllValues().get(1)[1]).destination());
+        verify(dataSource, times(1)).getConnection();
+        verify(connection).setAutoCommit(false);
+    }
+
+    @Test
+    void publish_FullOutboxIsCountedWithoutBlocking() {
+        PostgresBrokerBus small = new PostgresBrokerBus(dataSource, "broker_bus", 10, 1);
+        try {
+            // DataSource mock trả null: publisher lỗi ở lô đầu, các message sau vẫn không chặn luồng gửi
+            for (int i = 0; i < 1000; i++) {
+                small.publish(new BrokerEnvelope("node-a", "/topic/a", null, new byte[]{1}));
+            }
+            assertTrue(small.getDroppedQueueFull() > 0);
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    void toInlineWire_CompressesLargeCompressiblePayload() throws Exception {
+        byte[] json = ("{\"type\":\"BATCH\",\"events\":[" + "{\"type\":\"NEW_CHECK_IN\",\"id\":1},".repeat(1000) + "]}")
+                .getBytes(StandardCharsets.UTF_8);
+        BrokerEnvelope envelope = new BrokerEnvelope("node-a", "/topic/a", "application/json", json);
+
+        String wire = PostgresBrokerBus.toInlineWire(envelope);
+
+        assertNotNull(wire);
+        assertEquals('Z', wire.charAt(0));
+        assertTrue(wire.getBytes(StandardCharsets.UTF_8).length <= PostgresBrokerBus.MAX_NOTIFY_BYTES);
+        assertArrayEquals(json, PostgresBrokerBus.fromWire(null, wire).payload());
+    }
+
+    @Test
+    void publish_IncompressibleOversizedPayloadIsStoredAndNotifiedById() throws Exception {
+        byte[] random = new byte[PostgresBrokerBus.MAX_NOTIFY_BYTES * 2];
+        new Random(1).nextBytes(random);
+        BrokerEnvelope envelope = new BrokerEnvelope("node-a", "/topic/a", null, random);
+        assertNull(PostgresBrokerBus.toInlineWire(envelope));
+
+        Connection connection = mock(Connection.class);
+        PreparedStatement insert = mock(PreparedStatement.class);
+        PreparedStatement notify = mock(PreparedStatement.class);
+        ResultSet generated = mock(ResultSet.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(startsWith("INSERT INTO broker_bus_payloads"))).thenReturn(insert);
+        when(insert.executeQuery()).thenReturn(generated);
+        when(generated.next()).thenReturn(true);
+        when(generated.getLong(1)).thenReturn(42L);
+        when(connection.prepareStatement("SELECT pg_notify(?, w) FROM unnest(?) AS w")).thenReturn(notify);
+
+        bus.publish(envelope);
+
+        ArgumentCaptor<Object[]> wire = ArgumentCaptor.forClass(Object[].class);
+        verify(connection, timeout(2000)).commit();
+        verify(connection).createArrayOf(eq("text"), wire.capture());
+        assertArrayEquals(new Object[]{"R42"}, wire.getValue());
+        verify(insert).setString(1, PostgresBrokerBus.encode(envelope));
+        assertEquals(1, bus.getStoredPayloads());
+
+        // Node nhận đọc lại payload theo id
+        PreparedStatement select = mock(PreparedStatement.class);
+        ResultSet stored = mock(ResultSet.class);
+        when(connection.prepareStatement("SELECT payload FROM broker_bus_payloads WHERE id = ?")).thenReturn(select);
+        when(select.executeQuery()).thenReturn(stored);
+        when(stored.next()).thenReturn(true);
+        when(stored.getString(1)).thenReturn(PostgresBrokerBus.encode(envelope));
+        assertArrayEquals(random, PostgresBrokerBus.fromWire(connection, "R42").payload());
+        verify(select).setLong(1, 42L);
+    }
+
+    @Test
+    void constructor_RejectsUnsafeChannelName() {
+        assertThrows(IllegalArgumentException.class, () -> new PostgresBrokerBus(dataSource, "bus; DROP TABLE users", 10));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.feed.controller;
+
+import com.example.demo.feed.dto.FeedCursor;
+import com.example.demo.feed.dto.FeedPageDto;
+import com.example.demo.feed.service.FeedService;
+import com.example.demo.shared.exception.BadRequestException;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class FeedControllerTest {
+
+    private static final String EMAIL = "user@example.com";
+
+    @Mock private FeedService feedService;
+
+    private MockMvc mockMvc;
+    private final UsernamePasswordAuthenticationToken principal = new UsernamePasswordAuthenticationToken(EMAIL, null, List.of());
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new FeedController(feedService)).build();
+    }
+
+    @Test
+    void nextCursor_RoundTripsThroughUnencodedQueryString() throws Exception {
+        // Offset "+07:00" và phần micro giây: dạng ISO cũ bị hỏng khi '+' thành dấu cách
+        FeedCursor last = new FeedCursor(OffsetDateTime.of(2025, 3, 1, 8, 30, 15, 123_456_000, ZoneOffset.ofHours(7)), 42L);
+        when(feedService.getFeedForUserBefore(eq(EMAIL), isNull(), eq(20)))
+                .thenReturn(FeedPageDto.builder().items(List.of()).nextCursor(last.format()).build());
+        when(feedService.getFeedForUserBefore(eq(EMAIL), notNull(), eq(20)))
+                .thenReturn(FeedPageDto.builder().items(List.of()).build());
+
+        String body = mockMvc.perform(get("/api/v1/feed/scroll").principal(principal))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String nextCursor = JsonPath.read(body, "$.nextCursor");
+        assertTrue(nextCursor.matches("[A-Za-z0-9_-]+"), nextCursor);
+
+        mockMvc.perform(get("/api/v1/feed/scroll?before=" + nextCursor + "&size=20").principal(principal))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<String> before = ArgumentCaptor.forClass(String.class);
+        verify(feedService, times(2)).getFeedForUserBefore(eq(EMAIL), before.capture(), eq(20));
+        assertNull(before.getAllValues().get(0));
+        FeedCursor parsed = FeedCursor.parse(before.getAllValues().get(1));
+        assertEquals(last.timestamp().toInstant(), parsed.timestamp().toInstant());
+        assertEquals(42L, parsed.id());
+    }
+
+    @Test
+    void parse_RejectsLegacyFormatAndGarbage() {
+        assertThrows(BadRequestException.class, () -> FeedCursor.parse("2025-03-01T08:30:15.123456+07:00,42"));
+        assertThrows(BadRequestException.class, () -> FeedCursor.parse("không-phải-cursor!"));
+        assertThrows(BadRequestException.class, () -> FeedCursor.parse("MTIz")); // "123", thiếu id
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.demo.feed.repository;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chạy thật changeset 016 (thêm cột + backfill) trên H2 chế độ PostgreSQL, với các bảng nguồn
+ * dựng tối giản theo đúng tên cột của entity.
+ */
+class FeedEventsDisplayColumnsMigrationTest {
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE users (id INT PRIMARY KEY, email VARCHAR(255))");
+        jdbc.execute("CREATE TABLE employees (id INT PRIMARY KEY, user_id INT UNIQUE, fullname VARCHAR(100))");
+        jdbc.execute("CREATE TABLE customers (id INT PRIMARY KEY, user_id INT UNIQUE, full_name VARCHAR(100))");
+        jdbc.execute("CREATE TABLE plans (id INT PRIMARY KEY, title VARCHAR(255))");
+        jdbc.execute("CREATE TABLE feed_events (id BIGINT PRIMARY KEY, user_id INT, plan_id INT)");
+    }
+
+    private void migrate() throws Exception {
+        SpringLiquibase liquibase = new SpringLiquibase();
+        liquibase.setDataSource(dataSource);
+        liquibase.setResourceLoader(new DefaultResourceLoader());
+        liquibase.setChangeLog("classpath:db/changelog/changes/016-add-feed-events-display-columns.xml");
+        liquibase.afterPropertiesSet();
+    }
+
+    @Test
+    void backfill_UsesEmployeeThenCustomerNameThenEmail() throws Exception {
+        jdbc.update("INSERT INTO users VALUES (1, 'staff@x.vn'), (2, 'customer@x.vn'), (3, 'blank@x.vn')");
+        jdbc.update("INSERT INTO employees VALUES (1, 1, 'Nhân Viên')");
+        jdbc.update("INSERT INTO customers VALUES (1, 2, '  Khách Hàng '), (2, 3, ' ')");
+        jdbc.update("INSERT INTO plans VALUES (7, 'Chạy bộ')");
+        jdbc.update("INSERT INTO feed_events VALUES (1, 1, 7), (2, 2, NULL), (3, 3, 7), (4, NULL, 7)");
+
+        migrate();
+
+        List<Map<String, Object>> rows = jdbc.queryForList(
+                "SELECT actor_display_name, plan_title FROM feed_events ORDER BY id");
+        assertEquals("Nhân Viên", rows.get(0).get("actor_display_name"));
+        assertEquals("Khách Hàng", rows.get(1).get("actor_display_name"));
+        assertEquals("blank@x.vn", rows.get(2).get("actor_display_name"));
+        assertNull(rows.get(3).get("actor_display_name"));
+        assertEquals("Chạy bộ", rows.get(0).get("plan_title"));
+        assertNull(rows.get(1).get("plan_title"));
+        assertEquals("Chạy bộ", rows.get(3).get("plan_title"));
+    }
+}
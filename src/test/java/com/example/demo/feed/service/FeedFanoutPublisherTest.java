@@ -0,0 +1,63 @@
+package com.example.demo.feed.service;
+
+import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.feed.entity.FeedEventType;
+import com.example.demo.plan.service.PlanMembershipIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedFanoutPublisherTest {
+
+    @Mock private SimpMessagingTemplate messagingTemplate;
+    @Spy private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @Mock private PlanMembershipIndex planMembershipIndex;
+
+    @InjectMocks
+    private FeedFanoutPublisher publisher;
+
+    private FeedEventDto dto() {
+        return FeedEventDto.builder().id(42L).eventType(FeedEventType.JOIN_PLAN).actorId(1).planId(7).build();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publish_SerializesOnceAndSharesPayloadAcrossDestinations() throws Exception {
+        when(planMembershipIndex.memberUserIds(7)).thenReturn(Set.of(1, 2, 3));
+
+        publisher.publish(dto(), 7, "abc");
+
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+        ArgumentCaptor<String> destinations = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Message<?>> messages = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate, times(4)).send(destinations.capture(), messages.capture());
+        assertTrue(destinations.getAllValues().containsAll(List.of(
+                "/topic/plan/abc/feed", "/topic/user/1/feed", "/topic/user/2/feed", "/topic/user/3/feed")));
+        Object payload = messages.getAllValues().get(0).getPayload();
+        assertTrue(messages.getAllValues().stream().allMatch(message -> message.getPayload() == payload));
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void publish_WithoutPlan_SendsOnlyToActor() {
+        publisher.publish(dto(), null, null);
+
+        verify(messagingTemplate).send(eq("/topic/user/1/feed"), any());
+        verifyNoInteractions(planMembershipIndex);
+    }
+}
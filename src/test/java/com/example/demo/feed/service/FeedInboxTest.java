@@ -0,0 +1,82 @@
+package com.example.demo.feed.service;
+
+import com.example.demo.feed.dto.FeedCursor;
+import com.example.demo.feed.entity.FeedEvent;
+import com.example.demo.feed.repository.FeedInboxRepository;
+import com.example.demo.plan.entity.Plan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedInboxTest {
+
+    @Mock private FeedInboxRepository feedInboxRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private FeedInbox inbox;
+    private final FeedCursor cursor = new FeedCursor(OffsetDateTime.now(), Long.MAX_VALUE);
+
+    @BeforeEach
+    void setUp() {
+        inbox = new FeedInbox(feedInboxRepository, transactionManager);
+        ReflectionTestUtils.setField(inbox, "capacity", 3);
+    }
+
+    @Test
+    void coldInbox_IsActivatedAndCallerFallsBack() {
+        when(feedInboxRepository.findTruncatedByUserId(1)).thenReturn(Optional.empty());
+        when(feedInboxRepository.insertOwner(1)).thenReturn(1);
+        when(feedInboxRepository.backfill(1, 3)).thenReturn(3);
+
+        assertTrue(inbox.findEventIdsBefore(1, cursor, 21).isEmpty());
+
+        InOrder order = inOrder(feedInboxRepository);
+        order.verify(feedInboxRepository).lockInbox(1);
+        order.verify(feedInboxRepository).insertOwner(1);
+        order.verify(feedInboxRepository).backfill(1, 3);
+        verify(feedInboxRepository).markTruncated(1);
+        verify(feedInboxRepository, never()).findEventIdsBefore(anyInt(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void fanOut_LocksMemberInboxesBeforeInserting() {
+        OffsetDateTime at = OffsetDateTime.now();
+        FeedEvent event = FeedEvent.builder().id(9L).plan(Plan.builder().id(4).build()).timestamp(at).build();
+
+        inbox.fanOut(event);
+
+        InOrder order = inOrder(feedInboxRepository);
+        order.verify(feedInboxRepository).lockInboxesOfPlan(4);
+        order.verify(feedInboxRepository).fanOut(4, 9L, at);
+    }
+
+    @Test
+    void completeInbox_AnswersShortPage() {
+        when(feedInboxRepository.findTruncatedByUserId(1)).thenReturn(Optional.of(false));
+        when(feedInboxRepository.findEventIdsBefore(1, cursor.timestamp(), cursor.id(), 21)).thenReturn(List.of(5L, 4L));
+
+        assertEquals(Optional.of(List.of(5L, 4L)), inbox.findEventIdsBefore(1, cursor, 21));
+    }
+
+    @Test
+    void truncatedInbox_ShortPage_FallsBackToMergedQuery() {
+        when(feedInboxRepository.findTruncatedByUserId(1)).thenReturn(Optional.of(true));
+        when(feedInboxRepository.findEventIdsBefore(1, cursor.timestamp(), cursor.id(), 21)).thenReturn(List.of(5L));
+
+        assertTrue(inbox.findEventIdsBefore(1, cursor, 21).isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.demo.feed.service.impl;
+
+import com.example.demo.feed.dto.FeedCursor;
+import com.example.demo.feed.dto.FeedEventDto;
+import com.example.demo.feed.dto.FeedPageDto;
+import com.example.demo.feed.entity.FeedEvent;
+import com.example.demo.feed.entity.FeedEventType;
+import com.example.demo.feed.mapper.FeedMapper;
+import com.example.demo.feed.repository.FeedEventRepository;
+import com.example.demo.feed.service.FeedInbox;
+import com.example.demo.plan.service.PlanMembershipIndex;
+import com.example.demo.shared.exception.BadRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FeedServiceImplTest {
+
+    @Mock private FeedEventRepository feedEventRepository;
+    @Mock private PlanMembershipIndex planMembershipIndex;
+    @Mock private FeedInbox feedInbox; // Mặc định trả Optional.empty(): hộp chưa có
+    @Spy private ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    @Spy private FeedMapper feedMapper = new FeedMapper();
+
+    @InjectMocks
+    private FeedServiceImpl feedService;
+
+    private final OffsetDateTime t0 = OffsetDateTime.of(2025, 10, 1, 8, 0, 0, 0, ZoneOffset.ofHours(7));
+
+    private FeedEvent event(long id, OffsetDateTime at) {
+        return FeedEvent.builder().id(id).eventType(FeedEventType.JOIN_PLAN).timestamp(at).build();
+    }
+
+    @Test
+    void getFeedForUserBefore_FetchesOneExtraRowAndReturnsCursorOfLastItem() {
+        when(planMembershipIndex.resolveUserId("a@x.com")).thenReturn(1);
+        when(feedEventRepository.findFeedIdsForUserBefore(eq(1), any(), eq(Long.MAX_VALUE), eq(3))).thenReturn(List.of(9L, 8L, 7L));
+        when(feedEventRepository.findAllByIdIn(List.of(9L, 8L)))
+                .thenReturn(List.of(event(9L, t0), event(8L, t0.minusMinutes(1))));
+
+        FeedPageDto page = feedService.getFeedForUserBefore("a@x.com", null, 2);
+
+        assertEquals(List.of(9L, 8L), page.getItems().stream().map(dto -> dto.getId()).toList());
+        FeedCursor next = FeedCursor.parse(page.getNextCursor());
+        assertEquals(t0.minusMinutes(1).toInstant(), next.timestamp().toInstant());
+        assertEquals(8L, next.id());
+        verify(feedEventRepository, never()).findFeedForUserPlans(anyInt(), any());
+    }
+
+    @Test
+    void getFeedForUserBefore_LastPage_HasNoCursorAndParsesBefore() {
+        when(planMembershipIndex.resolveUserId("a@x.com")).thenReturn(1);
+        when(feedEventRepository.findFeedIdsForUserBefore(1, t0.withOffsetSameInstant(ZoneOffset.UTC), 8L, 21)).thenReturn(List.of(5L));
+        when(feedEventRepository.findAllByIdIn(List.of(5L))).thenReturn(List.of(event(5L, t0.minusHours(1))));
+
+        FeedPageDto page = feedService.getFeedForUserBefore("a@x.com", new FeedCursor(t0, 8L).format(), 20);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getFeedForUserBefore_InvalidCursor_ThrowsBadRequest() {
+        when(planMembershipIndex.resolveUserId("a@x.com")).thenReturn(1);
+
+        assertThrows(BadRequestException.class, () -> feedService.getFeedForUserBefore("a@x.com", "hôm-qua", 20));
+        verifyNoInteractions(feedEventRepository);
+    }
+
+    @Test
+    void getFeedForUserBefore_HotInbox_SkipsMergedQuery() {
+        when(planMembershipIndex.resolveUserId("a@x.com")).thenReturn(1);
+        when(feedInbox.findEventIdsBefore(eq(1), any(), eq(3))).thenReturn(Optional.of(List.of(9L)));
+        when(feedEventRepository.findAllByIdIn(List.of(9L))).thenReturn(List.of(event(9L, t0)));
+
+        FeedPageDto page = feedService.getFeedForUserBefore("a@x.com", null, 2);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+        verify(feedEventRepository, never()).findFeedIdsForUserBefore(anyInt(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void getFeedForUserBefore_UsesStoredDisplayFieldsAndRawDetails() {
+        FeedEvent stored = FeedEvent.builder().id(9L).eventType(FeedEventType.TASK_COMMENT_ADDED).timestamp(t0)
+                .actorId(1).actorDisplayName("Minh").planId(7).planTitle("Đọc sách")
+                .details("{\"taskTitle\":\"Chương 1\"}").build();
+        when(planMembershipIndex.resolveUserId("a@x.com")).thenReturn(1);
+        when(feedInbox.findEventIdsBefore(eq(1), any(), eq(21))).thenReturn(Optional.of(List.of(9L)));
+        when(feedEventRepository.findAllByIdIn(List.of(9L))).thenReturn(List.of(stored));
+
+        FeedEventDto dto = feedService.getFeedForUserBefore("a@x.com", null, 20).getItems().get(0);
+
+        assertEquals("Minh", dto.getActorFullName());
+        assertEquals("Đọc sách", dto.getPlanTitle());
+        assertEquals("{\"taskTitle\":\"Chương 1\"}", dto.getDetails());
+        verifyNoInteractions(objectMapper);
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.demo.notification.service;
+
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
+import com.example.demo.notification.entity.Notification;
+import com.example.demo.notification.repository.NotificationRepository;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationBatchWriterTest {
+
+    @Mock private NotificationRepository notificationRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private UnreadNotificationCounter unreadNotificationCounter;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private NotificationBatchWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new NotificationBatchWriter(notificationRepository, userRepository, unreadNotificationCounter, transactionManager);
+        lenient().when(userRepository.getReferenceById(anyInt())).thenAnswer(inv -> {
+            User user = new User();
+            user.setId(inv.getArgument(0));
+            return user;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writer.stop();
+    }
+
+    private CreateNotificationRequest request(int recipientId) {
+        return new CreateNotificationRequest(recipientId, "Tin nhắn", "/plan/abc");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void callsWithinLingerWindow_AreWrittenAsOneBatch() {
+        ReflectionTestUtils.setField(writer, "lingerMs", 200L);
+        writer.start();
+
+        writer.enqueue(List.of(request(1), request(2)));
+        writer.enqueue(List.of(request(1)));
+
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository, timeout(2000)).saveAll(saved.capture());
+        assertEquals(3, saved.getValue().size());
+        verify(unreadNotificationCounter, timeout(2000)).recordCreated(Map.of(1, 2L, 2, 1L));
+        verify(notificationRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void largeFanOut_IsSplitIntoBatchesOfMaxRows() throws InterruptedException {
+        ReflectionTestUtils.setField(writer, "maxRows", 100);
+        ReflectionTestUtils.setField(writer, "lingerMs", 60_000L);
+        writer.start();
+
+        writer.enqueue(IntStream.range(0, 250).mapToObj(this::request).toList());
+        writer.stop();
+
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository, times(3)).saveAll(saved.capture());
+        assertEquals(250, saved.getAllValues().stream().mapToInt(List::size).sum());
+        assertTrue(saved.getAllValues().stream().allMatch(batch -> batch.size() <= 100));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fullQueue_WritesOverflowOnCallerThread() {
+        // Không chạy luồng ghi nền: hàng đợi 1 chỗ giữ nguyên trạng thái đầy
+        ReflectionTestUtils.setField(writer, "queue", new LinkedBlockingQueue<CreateNotificationRequest>(1));
+
+        writer.enqueue(List.of(request(1), request(2), request(3)));
+
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository).saveAll(saved.capture());
+        assertEquals(2, saved.getValue().size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failingRow_IsBisectedOutAndTheRestOfTheBatchIsWritten() {
+        // Người nhận 3 không còn tồn tại: mọi lô chứa người nhận 3 đều lỗi
+        when(notificationRepository.saveAll(anyList())).thenAnswer(inv -> {
+            List<Notification> rows = inv.getArgument(0);
+            if (rows.stream().anyMatch(row -> row.getRecipient().getId() == 3)) {
+                throw new IllegalStateException("FK violation");
+            }
+            return rows;
+        });
+        ReflectionTestUtils.setField(writer, "queue", new LinkedBlockingQueue<CreateNotificationRequest>(1));
+
+        writer.enqueue(List.of(request(0), request(1), request(2), request(3), request(4)));
+
+        ArgumentCaptor<Map<Integer, Long>> created = ArgumentCaptor.forClass(Map.class);
+        verify(unreadNotificationCounter, atLeastOnce()).recordCreated(created.capture());
+        Map<Integer, Long> written = new HashMap<>();
+        created.getAllValues().forEach(written::putAll);
+        // Người nhận 0 nằm trong hàng đợi (1 chỗ), 1..4 ghi trên luồng gọi; chỉ người nhận 3 bị bỏ
+        assertEquals(Map.of(1, 1L, 2, 1L, 4, 1L), written);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void stopDuringLingerWindow_WritesTheBatchAlreadyTakenFromTheQueue() throws InterruptedException {
+        ReflectionTestUtils.setField(writer, "lingerMs", 60_000L);
+        writer.start();
+
+        writer.enqueue(List.of(request(1), request(2), request(3)));
+        // Chờ luồng ghi lấy hết khỏi hàng đợi và đang chờ gom thêm
+        BlockingQueue<CreateNotificationRequest> queue =
+                (BlockingQueue<CreateNotificationRequest>) ReflectionTestUtils.getField(writer, "queue");
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(queue.isEmpty());
+        verify(notificationRepository, after(50).never()).saveAll(any());
+
+        writer.stop();
+
+        ArgumentCaptor<List<Notification>> saved = ArgumentCaptor.forClass(List.class);
+        verify(notificationRepository).saveAll(saved.capture());
+        assertEquals(3, saved.getValue().size());
+        verify(unreadNotificationCounter).recordCreated(Map.of(1, 1L, 2, 1L, 3, 1L));
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.notification.service;
+
+import com.example.demo.notification.dto.projection.UnreadCountRow;
+import com.example.demo.notification.repository.NotificationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UnreadNotificationCounterTest {
+
+    @Mock private NotificationRepository notificationRepository;
+    @Mock private SimpMessagingTemplate messagingTemplate;
+
+    @InjectMocks
+    private UnreadNotificationCounter counter;
+
+    private UnreadCountRow row(Integer recipientId, long count) {
+        UnreadCountRow row = mock(UnreadCountRow.class);
+        lenient().when(row.getRecipientId()).thenReturn(recipientId);
+        lenient().when(row.getUnreadCount()).thenReturn(count);
+        return row;
+    }
+
+    @Test
+    void getUnreadCount_CountsOnceThenTracksDeltas() {
+        when(notificationRepository.countByRecipientIdAndReadFalse(1)).thenReturn(3L);
+
+        assertEquals(3, counter.getUnreadCount(1));
+        counter.recordCreated(Map.of(1, 2L));
+        counter.recordRead(1, 1);
+
+        assertEquals(4, counter.getUnreadCount(1));
+        verify(notificationRepository, times(1)).countByRecipientIdAndReadFalse(1);
+        verify(messagingTemplate).convertAndSend("/topic/user/1/notifications",
+                (Object) Map.of("type", "UNREAD_COUNT", "delta", 2L, "unreadCount", 5L));
+        verify(messagingTemplate).convertAndSend("/topic/user/1/notifications",
+                (Object) Map.of("type", "UNREAD_COUNT", "delta", -1L, "unreadCount", 4L));
+    }
+
+    @Test
+    void recordAllRead_ResetsToZero_AndUncachedUserGetsDeltaOnly() {
+        when(notificationRepository.countByRecipientIdAndReadFalse(1)).thenReturn(7L);
+        counter.getUnreadCount(1);
+
+        counter.recordAllRead(1, 7);
+        counter.recordCreated(Map.of(2, 1L));
+
+        assertEquals(0, counter.getUnreadCount(1));
+        verify(messagingTemplate).convertAndSend("/topic/user/2/notifications",
+                (Object) Map.of("type", "UNREAD_COUNT", "delta", 1L));
+    }
+
+    @Test
+    void reconcile_CorrectsDriftAndPushesDifference() {
+        when(notificationRepository.countByRecipientIdAndReadFalse(anyInt())).thenReturn(2L);
+        counter.getUnreadCount(1);
+        counter.getUnreadCount(2);
+        // User 1 lệch (DB còn 5), user 2 đã đọc hết (không có dòng)
+        List<UnreadCountRow> rows = List.of(row(1, 5));
+        when(notificationRepository.countUnreadByRecipientIds(anyCollection())).thenReturn(rows);
+
+        counter.reconcile();
+
+        assertEquals(5, counter.getUnreadCount(1));
+        assertEquals(0, counter.getUnreadCount(2));
+        verify(messagingTemplate).convertAndSend("/topic/user/1/notifications",
+                (Object) Map.of("type", "UNREAD_COUNT", "delta", 3L, "unreadCount", 5L));
+        verify(messagingTemplate).convertAndSend("/topic/user/2/notifications",
+                (Object) Map.of("type", "UNREAD_COUNT", "delta", -2L, "unreadCount", 0L));
+    }
+}
@@ -5,6 +5,8 @@ import com.example.demo.notification.dto.response.NotificationResponse;
 import com.example.demo.notification.entity.Notification;
 import com.example.demo.notification.mapper.NotificationMapper;
 import com.example.demo.notification.repository.NotificationRepository;
+import com.example.demo.notification.service.NotificationBatchWriter;
+import com.example.demo.notification.service.UnreadNotificationCounter;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
@@ -36,6 +38,8 @@ class NotificationServiceImplTest {
 
     @Mock private NotificationRepository notificationRepository;
     @Mock private UserRepository userRepository;
+    @Mock private NotificationBatchWriter notificationBatchWriter;
+    @Mock private UnreadNotificationCounter unreadNotificationCounter;
     @Spy // Use Spy to test actual mapping logic
     private NotificationMapper notificationMapper = new NotificationMapper();
 
@@ -150,6 +154,7 @@ class NotificationServiceImplTest {
         notificationService.markAllAsReadForUser(user1.getEmail());
 
         verify(notificationRepository).markAllAsReadForRecipient(user1.getId());
+        verify(unreadNotificationCounter).recordAllRead(user1.getId(), 5);
     }
 
      @Test
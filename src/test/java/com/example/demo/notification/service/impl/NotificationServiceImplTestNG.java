@@ -14,6 +14,8 @@ import com.example.demo.notification.dto.response.NotificationResponse;
 import com.example.demo.notification.entity.Notification;
 import com.example.demo.notification.mapper.NotificationMapper;
 import com.example.demo.notification.repository.NotificationRepository;
+import com.example.demo.notification.service.NotificationBatchWriter;
+import com.example.demo.notification.service.UnreadNotificationCounter;
 import com.example.demo.shared.exception.ResourceNotFoundException;
 import com.example.demo.user.entity.User;
 import com.example.demo.user.repository.UserRepository;
@@ -40,6 +42,8 @@ public class NotificationServiceImplTestNG {
 
     @Mock private NotificationRepository notificationRepository;
     @Mock private UserRepository userRepository;
+    @Mock private NotificationBatchWriter notificationBatchWriter;
+    @Mock private UnreadNotificationCounter unreadNotificationCounter;
     @Spy
     private NotificationMapper notificationMapper = new NotificationMapper();
 
@@ -0,0 +1,118 @@
+package com.example.demo.notification.service.impl;
+
+import com.example.demo.notification.dto.projection.CheckinReminderRow;
+import com.example.demo.notification.dto.projection.MemberProgressRow;
+import com.example.demo.notification.dto.projection.PlanMemberRef;
+import com.example.demo.notification.dto.request.CreateNotificationRequest;
+import com.example.demo.notification.repository.ReminderQueryRepository;
+import com.example.demo.notification.service.NotificationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduledNotificationServiceImplTest {
+
+    @Mock private ReminderQueryRepository reminderQueryRepository;
+    @Mock private NotificationService notificationService;
+
+    @InjectMocks
+    private ScheduledNotificationServiceImpl scheduledNotificationService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendCheckinReminders_PagesByKeysetAndSendsOneBatchPerPage() {
+        ReflectionTestUtils.setField(scheduledNotificationService, "pageSize", 2);
+        List<CheckinReminderRow> firstPage = List.of(checkinRow(10, 1), checkinRow(11, 2));
+        List<CheckinReminderRow> secondPage = List.of(checkinRow(12, 3));
+
+        when(reminderQueryRepository.findMembersWithoutCheckIn(any(), any(), any(), eq(0), eq(2))).thenReturn(firstPage);
+        when(reminderQueryRepository.findMembersWithoutCheckIn(any(), any(), any(), eq(11), eq(2))).thenReturn(secondPage);
+
+        scheduledNotificationService.sendCheckinReminders();
+
+        ArgumentCaptor<Collection<CreateNotificationRequest>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(notificationService, times(2)).createNotifications(captor.capture());
+        assertEquals(2, captor.getAllValues().get(0).size());
+        assertEquals(1, captor.getAllValues().get(1).size());
+        assertEquals(3, captor.getAllValues().get(1).iterator().next().getRecipientId());
+        // Trang cuối nhỏ hơn pageSize -> không truy vấn thêm
+        verify(reminderQueryRepository, times(2)).findMembersWithoutCheckIn(any(), any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void sendEncouragementNotifications_NotifiesTeammatesOfMemberFallingBehind() {
+        // Thành viên 20: 10/10 ngày -> đúng tiến độ; thành viên 21: 1/10 ngày -> chậm
+        MemberProgressRow onTrack = progressRow(20, 1, 10, 30, 10L);
+        MemberProgressRow behind = progressRow(21, 2, 10, 30, 1L);
+        when(reminderQueryRepository.findMemberProgress(any(), any(), any(), eq(0), eq(0), anyInt()))
+                .thenReturn(List.of(onTrack, behind));
+        List<PlanMemberRef> teammates = List.of(memberRef(20, 1), memberRef(21, 2));
+        when(reminderQueryRepository.findMemberRefsByPlanIds(anyCollection())).thenReturn(teammates);
+
+        scheduledNotificationService.sendEncouragementNotifications();
+
+        ArgumentCaptor<Collection<CreateNotificationRequest>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(notificationService).createNotifications(captor.capture());
+        List<CreateNotificationRequest> sent = List.copyOf(captor.getValue());
+        assertEquals(1, sent.size());
+        assertEquals(1, sent.get(0).getRecipientId());
+        assertTrue(sent.get(0).getMessage().contains("Member 21"));
+        assertEquals("/plan/link-5", sent.get(0).getLink());
+    }
+
+    @Test
+    void sendEncouragementNotifications_NoRows_SendsNothing() {
+        when(reminderQueryRepository.findMemberProgress(any(), any(), any(), anyInt(), anyInt(), anyInt()))
+                .thenReturn(Collections.emptyList());
+
+        scheduledNotificationService.sendEncouragementNotifications();
+
+        verify(notificationService, never()).createNotifications(any());
+        verify(reminderQueryRepository, never()).findMemberRefsByPlanIds(any());
+    }
+
+    private CheckinReminderRow checkinRow(int memberId, int userId) {
+        CheckinReminderRow row = mock(CheckinReminderRow.class);
+        lenient().when(row.getMemberId()).thenReturn(memberId);
+        lenient().when(row.getUserId()).thenReturn(userId);
+        lenient().when(row.getPlanTitle()).thenReturn("Plan");
+        lenient().when(row.getShareableLink()).thenReturn("link");
+        return row;
+    }
+
+    private MemberProgressRow progressRow(int memberId, int userId, int daysSoFar, int duration, long checkedInDays) {
+        MemberProgressRow row = mock(MemberProgressRow.class);
+        lenient().when(row.getMemberId()).thenReturn(memberId);
+        lenient().when(row.getUserId()).thenReturn(userId);
+        lenient().when(row.getPlanId()).thenReturn(5);
+        lenient().when(row.getPlanTitle()).thenReturn("Plan 5");
+        lenient().when(row.getShareableLink()).thenReturn("link-5");
+        lenient().when(row.getDisplayName()).thenReturn("Member " + memberId);
+        lenient().when(row.getDaysSoFar()).thenReturn(daysSoFar);
+        lenient().when(row.getDurationInDays()).thenReturn(duration);
+        lenient().when(row.getCheckedInDays()).thenReturn(checkedInDays);
+        return row;
+    }
+
+    private PlanMemberRef memberRef(int memberId, int userId) {
+        PlanMemberRef ref = mock(PlanMemberRef.class);
+        lenient().when(ref.getPlanId()).thenReturn(5);
+        lenient().when(ref.getMemberId()).thenReturn(memberId);
+        lenient().when(ref.getUserId()).thenReturn(userId);
+        return ref;
+    }
+}
@@ -117,14 +117,14 @@ class PlanControllerTest {
     @WithMockUser(username = "test@example.com")
     void joinPlan_ValidLink_ReturnsOk() throws Exception {
          String link = "link123";
-        when(planService.joinPlan(eq(link), eq(userEmail))).thenReturn(planDetailResponse);
+        when(planService.joinPlan(eq(link), eq(userEmail), eq(true))).thenReturn(planDetailResponse);
 
         mockMvc.perform(post("/api/v1/plans/{shareableLink}/join", link)
                          .with(csrf()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(planDetailResponse.getId()));
 
-        verify(planService).joinPlan(eq(link), eq(userEmail));
+        verify(planService).joinPlan(eq(link), eq(userEmail), eq(true));
     }
 
     @Test
@@ -132,13 +132,13 @@ class PlanControllerTest {
     void getPlanDetails_ValidLink_ReturnsOk() throws Exception {
          String link = "link123";
          // Service returns Object which could be PlanDetailResponse or PlanPublicResponse
-        when(planService.getPlanDetails(eq(link), eq(userEmail))).thenReturn(planDetailResponse);
+        when(planService.getPlanDetails(eq(link), eq(userEmail), eq(true))).thenReturn(planDetailResponse);
 
         mockMvc.perform(get("/api/v1/plans/{shareableLink}", link))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(planDetailResponse.getId())); // Check field from Detail response
 
-        verify(planService).getPlanDetails(eq(link), eq(userEmail));
+        verify(planService).getPlanDetails(eq(link), eq(userEmail), eq(true));
     }
 
      // Add tests for other PlanController endpoints:
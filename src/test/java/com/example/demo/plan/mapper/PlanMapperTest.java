@@ -9,8 +9,11 @@ import com.example.demo.plan.entity.Plan;
 import com.example.demo.plan.entity.PlanMember;
 import com.example.demo.plan.entity.PlanStatus;
 import com.example.demo.plan.entity.Task;
+import com.example.demo.user.dto.projection.UserDisplayRow;
 import com.example.demo.user.entity.Customer;
 import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,7 +27,10 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -34,8 +40,11 @@ import static org.mockito.Mockito.*;
 class PlanMapperTest {
 
     // If TaskMapper is complex, mock it. If simple or tightly coupled, Spy or instantiate directly.
+    private final UserRepository userRepository = mock(UserRepository.class);
     @Spy
-    private TaskMapper taskMapper = new TaskMapper();
+    private UserDisplayNameResolver userDisplayNameResolver = new UserDisplayNameResolver(userRepository);
+    @Spy
+    private TaskMapper taskMapper = new TaskMapper(userDisplayNameResolver);
 
     @InjectMocks // Inject the spy/mock into PlanMapper
     private PlanMapper planMapper;
@@ -58,6 +67,14 @@ class PlanMapperTest {
         Customer memberCustomer = Customer.builder().id(2).fullname("Member Name").user(memberUser).build();
         memberUser.setCustomer(memberCustomer);
 
+        Map<Integer, UserDisplayRow> displayRows = Map.of(
+                1, displayRow(1, "creator@example.com", "Creator Name"),
+                2, displayRow(2, "member@example.com", "Member Name"));
+        lenient().when(userRepository.findDisplayRowsByIdIn(any())).thenAnswer(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().filter(displayRows::containsKey).map(displayRows::get).toList();
+        });
+
         plan = Plan.builder()
                 .id(1)
                 .title("Test Plan")
@@ -88,6 +105,14 @@ class PlanMapperTest {
 
     }
 
+    private UserDisplayRow displayRow(Integer userId, String email, String customerName) {
+        UserDisplayRow row = mock(UserDisplayRow.class);
+        lenient().when(row.getUserId()).thenReturn(userId);
+        lenient().when(row.getEmail()).thenReturn(email);
+        lenient().when(row.getCustomerName()).thenReturn(customerName);
+        return row;
+    }
+
     @Test
     void toPlanDetailResponse_MapsCorrectly() {
         PlanDetailResponse response = planMapper.toPlanDetailResponse(plan);
@@ -114,6 +139,28 @@ class PlanMapperTest {
          verify(taskMapper, times(2)).toTaskResponse(any(Task.class));
     }
 
+    @Test
+    void toPlanHeaderResponse_MapsHeaderAndMembersWithoutTasks() {
+        PlanDetailResponse response = planMapper.toPlanHeaderResponse(plan);
+
+        assertNotNull(response);
+        assertEquals(plan.getId(), response.getId());
+        assertEquals(2, response.getMembers().size());
+        assertTrue(response.getDailyTasks().isEmpty());
+        verify(taskMapper, never()).toTaskResponse(any(Task.class));
+    }
+
+    @Test
+    void toPlanHeaderResponse_LoadsAllMemberNamesInOneQuery() {
+        PlanDetailResponse response = planMapper.toPlanHeaderResponse(plan);
+        planMapper.toPlanHeaderResponse(plan);
+
+        assertEquals(List.of("Creator Name", "Member Name"),
+                response.getMembers().stream().map(PlanDetailResponse.PlanMemberResponse::getUserFullName).toList());
+        // Lần map thứ 2 lấy từ cache
+        verify(userRepository, times(1)).findDisplayRowsByIdIn(any());
+    }
+
      @Test
     void toPlanDetailResponse_NullPlan_ReturnsNull() {
         assertNull(planMapper.toPlanDetailResponse(null));
@@ -0,0 +1,122 @@
+package com.example.demo.plan.service;
+
+import com.example.demo.plan.dto.projection.PlanMembershipRow;
+import com.example.demo.plan.entity.MemberRole;
+import com.example.demo.plan.repository.PlanMemberRepository;
+import com.example.demo.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlanMembershipIndexTest {
+
+    @Mock private PlanMemberRepository planMemberRepository;
+    @Mock private UserRepository userRepository;
+
+    @InjectMocks
+    private PlanMembershipIndex planMembershipIndex;
+
+    private PlanMembershipRow row(Integer userId, MemberRole role) {
+        PlanMembershipRow row = mock(PlanMembershipRow.class);
+        lenient().when(row.getPlanId()).thenReturn(7);
+        lenient().when(row.getShareableLink()).thenReturn("abc");
+        lenient().when(row.getUserId()).thenReturn(userId);
+        lenient().when(row.getRole()).thenReturn(role);
+        return row;
+    }
+
+    @Test
+    void findRole_LoadsPlanOnceThenServesFromIndex() {
+        List<PlanMembershipRow> rows = List.of(row(1, MemberRole.OWNER), row(2, MemberRole.MEMBER));
+        when(planMemberRepository.findMembershipRowsByShareableLink("abc")).thenReturn(rows);
+
+        assertTrue(planMembershipIndex.isOwner("abc", 1));
+        assertTrue(planMembershipIndex.isMember("abc", 2));
+        assertFalse(planMembershipIndex.isOwner("abc", 2));
+        assertFalse(planMembershipIndex.isMember("abc", 3));
+        // Tra cứu theo planId dùng chung entry đã nạp
+        assertTrue(planMembershipIndex.isOwner(7, 1));
+
+        verify(planMemberRepository, times(1)).findMembershipRowsByShareableLink("abc");
+        verify(planMemberRepository, never()).findMembershipRowsByPlanId(anyInt());
+    }
+
+    @Test
+    void invalidate_ReloadsMembershipOnNextLookup() {
+        List<PlanMembershipRow> before = List.of(row(1, MemberRole.OWNER));
+        List<PlanMembershipRow> after = List.of(row(1, MemberRole.MEMBER), row(2, MemberRole.OWNER));
+        when(planMemberRepository.findMembershipRowsByPlanId(7)).thenReturn(before).thenReturn(after);
+
+        assertTrue(planMembershipIndex.isOwner(7, 1));
+        planMembershipIndex.invalidate(7, "abc");
+
+        assertFalse(planMembershipIndex.isOwner(7, 1));
+        assertTrue(planMembershipIndex.isOwner(7, 2));
+        verify(planMemberRepository, times(2)).findMembershipRowsByPlanId(7);
+    }
+
+    @Test
+    void invalidate_InTransaction_EvictsOnlyAfterCommit() {
+        List<PlanMembershipRow> before = List.of(row(1, MemberRole.OWNER));
+        List<PlanMembershipRow> after = List.of(row(1, MemberRole.MEMBER));
+        when(planMemberRepository.findMembershipRowsByPlanId(7)).thenReturn(before).thenReturn(after);
+        assertTrue(planMembershipIndex.isOwner(7, 1));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            planMembershipIndex.invalidate(7, "abc");
+            // Chưa commit: vẫn phục vụ từ index, không nạp dữ liệu chưa commit
+            assertTrue(planMembershipIndex.isOwner(7, 1));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertFalse(planMembershipIndex.isOwner(7, 1));
+    }
+
+    @Test
+    void findRole_ExpiredEntry_IsReloaded() {
+        ReflectionTestUtils.setField(planMembershipIndex, "ttlMs", 0L);
+        List<PlanMembershipRow> before = List.of(row(1, MemberRole.OWNER));
+        List<PlanMembershipRow> after = List.of(row(1, MemberRole.MEMBER));
+        when(planMemberRepository.findMembershipRowsByPlanId(7)).thenReturn(before).thenReturn(after);
+
+        assertTrue(planMembershipIndex.isOwner(7, 1));
+        // Node khác đã đổi vai trò: entry hết hạn nên lần tra cứu sau đọc lại CSDL
+        assertFalse(planMembershipIndex.isOwner(7, 1));
+        verify(planMemberRepository, times(2)).findMembershipRowsByPlanId(7);
+    }
+
+    @Test
+    void findRole_UnknownPlan_IsNotCached() {
+        when(planMemberRepository.findMembershipRowsByShareableLink("missing")).thenReturn(Collections.emptyList());
+
+        assertEquals(Optional.empty(), planMembershipIndex.findRole("missing", 1));
+        assertFalse(planMembershipIndex.planExists("missing"));
+        verify(planMemberRepository, times(2)).findMembershipRowsByShareableLink("missing");
+    }
+
+    @Test
+    void resolveUserId_CachesEmailLookup() {
+        when(userRepository.findIdByEmail("a@example.com")).thenReturn(Optional.of(5));
+
+        assertEquals(5, planMembershipIndex.resolveUserId("a@example.com"));
+        assertEquals(5, planMembershipIndex.resolveUserId("a@example.com"));
+        verify(userRepository, times(1)).findIdByEmail("a@example.com");
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo.plan.service;
+
+import com.example.demo.plan.entity.Plan;
+import com.example.demo.plan.entity.Task;
+import com.example.demo.plan.entity.TaskTemplate;
+import com.example.demo.plan.repository.TaskRepository;
+import com.example.demo.plan.repository.TaskTemplateRepository;
+import com.example.demo.shared.websocket.PlanChannel;
+import com.example.demo.shared.websocket.PlanEventSequencer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TaskOccurrenceResolverTest {
+
+    @Mock private TaskRepository taskRepository;
+    @Mock private TaskTemplateRepository taskTemplateRepository;
+    @Mock private PlanEventSequencer planEventSequencer;
+
+    @InjectMocks
+    private TaskOccurrenceResolver resolver;
+
+    private Plan plan;
+    private TaskTemplate read;
+    private TaskTemplate run;
+    private final LocalDate start = LocalDate.of(2025, 1, 1);
+
+    @BeforeEach
+    void setUp() {
+        plan = Plan.builder().id(3).shareableLink("abc").startDate(start).durationInDays(30).build();
+        read = TaskTemplate.builder().id(10L).plan(plan).description("Đọc sách").order(0).deadlineTime(LocalTime.of(21, 0)).build();
+        run = TaskTemplate.builder().id(11L).plan(plan).description("Chạy bộ").order(1).build();
+    }
+
+    @Test
+    void resolveRange_UnmaterializedDays_ReturnsVirtualTasksFromTemplates() {
+        LocalDate day2 = start.plusDays(2);
+        Task manual = Task.builder().id(99L).plan(plan).description("Việc thêm").order(0).taskDate(day2).build();
+        when(taskRepository.findAllByPlanIdAndTaskDateBetween(3, start.plusDays(1), day2)).thenReturn(List.of(manual));
+        when(taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(3)).thenReturn(List.of(read, run));
+        when(taskTemplateRepository.findMaterializedDayOffsets(3, start.plusDays(1), day2)).thenReturn(Collections.emptyList());
+
+        List<Task> tasks = resolver.resolveRange(plan, start.plusDays(1), day2);
+
+        assertEquals(5, tasks.size());
+        assertEquals(TaskOccurrenceResolver.virtualId(10L, 1), tasks.get(0).getId());
+        assertEquals(start.plusDays(1), tasks.get(0).getTaskDate());
+        assertEquals("Chạy bộ", tasks.get(1).getDescription());
+        // Task thêm thủ công đứng sau task template của cùng ngày
+        assertEquals(TaskOccurrenceResolver.virtualId(10L, 2), tasks.get(2).getId());
+        assertSame(manual, tasks.get(4));
+        assertTrue(tasks.subList(0, 4).stream().allMatch(t -> TaskOccurrenceResolver.isVirtualId(t.getId())));
+    }
+
+    @Test
+    void resolveDay_MaterializedDay_ReturnsOnlyConcreteTasks() {
+        Task concrete = Task.builder().id(50L).plan(plan).templateId(10L).order(0).taskDate(start).build();
+        when(taskRepository.findAllByPlanIdAndTaskDateBetween(3, start, start)).thenReturn(List.of(concrete));
+        when(taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(3)).thenReturn(List.of(read, run));
+        when(taskTemplateRepository.findMaterializedDayOffsets(3, start, start)).thenReturn(List.of(0));
+
+        assertEquals(List.of(concrete), resolver.resolveDay(plan, start));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void materializeDay_CreatesTasksOnceAndShiftsManualTasks() {
+        LocalDate day = start.plusDays(4);
+        Task manual = Task.builder().id(99L).plan(plan).order(0).taskDate(day).build();
+        when(taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(3)).thenReturn(List.of(read, run));
+        when(taskTemplateRepository.markDayMaterialized(3, day)).thenReturn(1, 0);
+        when(taskRepository.findAllByPlanIdAndTaskDateOrderByOrderAsc(3L, day)).thenReturn(List.of(manual));
+
+        resolver.materializeDay(plan, day);
+        resolver.materializeDay(plan, day);
+
+        ArgumentCaptor<List<Task>> saved = ArgumentCaptor.forClass(List.class);
+        verify(taskRepository, times(1)).saveAll(saved.capture());
+        List<Task> tasks = saved.getValue();
+        assertEquals(3, tasks.size());
+        assertEquals(10L, tasks.get(0).getTemplateId());
+        assertEquals(day, tasks.get(1).getTaskDate());
+        assertEquals(TaskOrdering.rankAt(2), manual.getOrder());
+        verify(planEventSequencer, times(1)).publish(eq("abc"), eq(PlanChannel.TASKS), anyMap());
+    }
+
+    @Test
+    void materialize_VirtualId_MaterializesDayAndReturnsConcreteTask() {
+        LocalDate day = start.plusDays(7);
+        Task concrete = Task.builder().id(500L).plan(plan).templateId(11L).taskDate(day).build();
+        when(taskTemplateRepository.findById(11L)).thenReturn(Optional.of(run));
+        when(taskTemplateRepository.findAllByPlanIdOrderByOrderAsc(3)).thenReturn(List.of(read, run));
+        when(taskTemplateRepository.markDayMaterialized(3, day)).thenReturn(0);
+        when(taskRepository.findByTemplateIdAndTaskDate(11L, day)).thenReturn(Optional.of(concrete));
+
+        assertEquals(List.of(500L, 42L), resolver.materializeIds(plan, List.of(TaskOccurrenceResolver.virtualId(11L, 7), 42L)));
+        verify(taskRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void materialize_VirtualIdOutsidePlan_ReturnsEmpty() {
+        when(taskTemplateRepository.findById(10L)).thenReturn(Optional.of(read));
+
+        assertTrue(resolver.materialize(plan, TaskOccurrenceResolver.virtualId(10L, 30)).isEmpty());
+        verify(taskTemplateRepository, never()).markDayMaterialized(anyInt(), any());
+    }
+
+    @Test
+    void materialize_TemplateOfAnotherPlan_ThrowsAccessDeniedWithoutWriting() {
+        Plan other = Plan.builder().id(4).shareableLink("xyz").startDate(start).durationInDays(30).build();
+        when(taskTemplateRepository.findById(10L)).thenReturn(Optional.of(read));
+
+        assertThrows(AccessDeniedException.class,
+                () -> resolver.materializeIds(other, List.of(TaskOccurrenceResolver.virtualId(10L, 2))));
+        verify(taskTemplateRepository, never()).markDayMaterialized(anyInt(), any());
+        verify(taskRepository, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo.progress.mapper;
+
+import com.example.demo.community.dto.projection.CheckInCommentCountRow;
+import com.example.demo.community.dto.projection.ReactionAggregateRow;
+import com.example.demo.community.entity.ProgressComment;
+import com.example.demo.community.entity.ReactionType;
+import com.example.demo.community.mapper.CommentMapper;
+import com.example.demo.community.repository.ProgressCommentRepository;
+import com.example.demo.community.repository.ProgressReactionRepository;
+import com.example.demo.plan.entity.PlanMember;
+import com.example.demo.plan.mapper.TaskMapper;
+import com.example.demo.progress.dto.response.TimelineResponse;
+import com.example.demo.progress.entity.checkin.CheckInEvent;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProgressMapperTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    @Spy private UserDisplayNameResolver userDisplayNameResolver = new UserDisplayNameResolver(userRepository);
+    @Spy private TaskMapper taskMapper = new TaskMapper(userDisplayNameResolver);
+    @Spy private CommentMapper commentMapper = new CommentMapper(userDisplayNameResolver);
+    @Mock private ProgressReactionRepository progressReactionRepository;
+    @Mock private ProgressCommentRepository progressCommentRepository;
+
+    @InjectMocks
+    private ProgressMapper progressMapper;
+
+    private CheckInEvent event(Long id, User user) {
+        return CheckInEvent.builder()
+                .id(id)
+                .planMember(PlanMember.builder().id(id.intValue()).user(user).build())
+                .checkInTimestamp(LocalDateTime.of(2025, 1, 1, 8, 0))
+                .build();
+    }
+
+    private ReactionAggregateRow reactionRow(Long eventId, ReactionType type, long count, long viewerCount) {
+        ReactionAggregateRow row = mock(ReactionAggregateRow.class);
+        lenient().when(row.getCheckInEventId()).thenReturn(eventId);
+        lenient().when(row.getType()).thenReturn(type);
+        lenient().when(row.getCount()).thenReturn(count);
+        lenient().when(row.getViewerCount()).thenReturn(viewerCount);
+        return row;
+    }
+
+    private CheckInCommentCountRow commentCountRow(Long eventId, long count) {
+        CheckInCommentCountRow row = mock(CheckInCommentCountRow.class);
+        lenient().when(row.getCheckInEventId()).thenReturn(eventId);
+        lenient().when(row.getCount()).thenReturn(count);
+        return row;
+    }
+
+    @Test
+    void timeline_UsesBatchedQueriesForAllEvents() {
+        User author = User.builder().id(5).email("author@example.com").build();
+        CheckInEvent first = event(1L, author);
+        CheckInEvent second = event(2L, author);
+        ProgressComment comment = ProgressComment.builder().id(100L).checkInEvent(first).author(author).content("Hay quá").build();
+
+        List<ReactionAggregateRow> reactionRows = List.of(
+                reactionRow(1L, ReactionType.values()[0], 3, 1),
+                reactionRow(2L, ReactionType.values()[0], 2, 0));
+        List<CheckInCommentCountRow> countRows = List.of(commentCountRow(1L, 25));
+        when(progressReactionRepository.aggregateByCheckInEventIds(List.of(1L, 2L), 9)).thenReturn(reactionRows);
+        when(progressCommentRepository.countByCheckInEventIds(List.of(1L, 2L))).thenReturn(countRows);
+        when(progressCommentRepository.findLatestIdsPerCheckInEvent(eq(List.of(1L, 2L)), anyInt())).thenReturn(List.of(100L));
+        when(progressCommentRepository.findAllWithAuthorByIdIn(List.of(100L))).thenReturn(List.of(comment));
+
+        CheckInMappingContext context = progressMapper.createContext(List.of(first, second), 9);
+        TimelineResponse.CheckInEventResponse firstResponse = progressMapper.toCheckInEventResponse(first, context);
+        TimelineResponse.CheckInEventResponse secondResponse = progressMapper.toCheckInEventResponse(second, context);
+
+        assertEquals(25, firstResponse.getCommentCount());
+        assertEquals(1, firstResponse.getComments().size());
+        assertEquals(3, firstResponse.getReactionCount());
+        assertTrue(firstResponse.getReactions().get(0).isHasCurrentUserReacted());
+        assertEquals(0, secondResponse.getCommentCount());
+        assertTrue(secondResponse.getComments().isEmpty());
+        assertFalse(secondResponse.getReactions().get(0).isHasCurrentUserReacted());
+
+        verify(progressReactionRepository, times(1)).aggregateByCheckInEventIds(anyCollection(), any());
+        verify(progressCommentRepository, times(1)).countByCheckInEventIds(anyCollection());
+    }
+
+    @Test
+    void createContext_NoComments_SkipsCommentPageQueries() {
+        CheckInEvent only = event(3L, User.builder().id(1).email("a@example.com").build());
+        when(progressReactionRepository.aggregateByCheckInEventIds(List.of(3L), null)).thenReturn(List.of());
+        when(progressCommentRepository.countByCheckInEventIds(List.of(3L))).thenReturn(List.of());
+
+        TimelineResponse.CheckInEventResponse response = progressMapper.toCheckInEventResponse(only, (Integer) null);
+
+        assertEquals(0, response.getReactionCount());
+        verify(progressCommentRepository, never()).findLatestIdsPerCheckInEvent(anyCollection(), anyInt());
+    }
+}
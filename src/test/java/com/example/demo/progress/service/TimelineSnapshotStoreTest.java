@@ -0,0 +1,195 @@
+package com.example.demo.progress.service;
+
+import com.example.demo.progress.dto.snapshot.TimelineDaySnapshot;
+import com.example.demo.progress.entity.TimelineSnapshot;
+import com.example.demo.progress.repository.TimelineSnapshotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TimelineSnapshotStoreTest {
+
+    @Mock private TimelineSnapshotRepository timelineSnapshotRepository;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private TimelineSnapshotStore store;
+
+    private final LocalDate today = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
+    private final LocalDate closedDay = today.minusDays(5);
+
+    @BeforeEach
+    void setUp() {
+        store = new TimelineSnapshotStore(timelineSnapshotRepository, objectMapper, transactionManager);
+    }
+
+    private TimelineDaySnapshot.CheckInEntry entry(Long id, LocalDateTime at) {
+        return new TimelineDaySnapshot.CheckInEntry(id, at, "Ghi chú " + id,
+                List.of(new TimelineDaySnapshot.AttachmentEntry("/files/a.png", "a.png", "image/png", 10L, null)),
+                List.of(new TimelineDaySnapshot.TaskEntry(7L, "Đọc sách")),
+                List.of("https://example.com"));
+    }
+
+    private Supplier<TimelineDaySnapshot> counting(AtomicInteger builds, TimelineDaySnapshot snapshot) {
+        return () -> {
+            builds.incrementAndGet();
+            return snapshot;
+        };
+    }
+
+    @Test
+    void getOrBuild_ClosedDay_BuildsOncePersistsAndServesFromCache() {
+        TimelineDaySnapshot snapshot = new TimelineDaySnapshot(Map.of(1, List.of(entry(10L, closedDay.atTime(8, 0)))));
+        AtomicInteger builds = new AtomicInteger();
+        when(timelineSnapshotRepository.findByPlanIdAndSnapshotDate(3, closedDay)).thenReturn(Optional.empty());
+
+        assertSame(snapshot, store.getOrBuild(3, closedDay, counting(builds, snapshot)));
+        assertSame(snapshot, store.getOrBuild(3, closedDay, counting(builds, snapshot)));
+
+        assertEquals(1, builds.get());
+        ArgumentCaptor<TimelineSnapshot> saved = ArgumentCaptor.forClass(TimelineSnapshot.class);
+        verify(timelineSnapshotRepository).save(saved.capture());
+        assertEquals(closedDay, saved.getValue().getSnapshotDate());
+        assertTrue(saved.getValue().getPayload().contains("Đọc sách"));
+    }
+
+    @Test
+    void getOrBuild_StoredClosedDay_DeserializesWithoutRebuilding() throws Exception {
+        TimelineDaySnapshot stored = new TimelineDaySnapshot(Map.of(1, List.of(entry(10L, closedDay.atTime(8, 0)))));
+        when(timelineSnapshotRepository.findByPlanIdAndSnapshotDate(3, closedDay)).thenReturn(Optional.of(
+                TimelineSnapshot.builder().planId(3).snapshotDate(closedDay).payload(objectMapper.writeValueAsString(stored)).build()));
+
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot loaded = store.getOrBuild(3, closedDay, counting(builds, null));
+
+        assertEquals(0, builds.get());
+        assertEquals(stored, loaded);
+        verify(timelineSnapshotRepository, never()).save(any());
+    }
+
+    @Test
+    void openDay_IsNotPersistedAndIsUpdatedIncrementally() {
+        TimelineDaySnapshot.CheckInEntry morning = entry(10L, today.atTime(7, 0));
+        store.getOrBuild(3, today, () -> new TimelineDaySnapshot(Map.of(1, List.of(morning))));
+
+        store.applyCheckIn(3, today, 1, entry(11L, today.atTime(6, 0)));
+        store.applyCheckIn(3, today, 2, entry(12L, today.atTime(9, 0)));
+        store.removeCheckIn(3, today, 10L);
+
+        TimelineDaySnapshot cached = store.getOrBuild(3, today, () -> fail("Snapshot phải được lấy từ cache"));
+        assertEquals(List.of(11L), cached.checkInsByMemberId().get(1).stream().map(TimelineDaySnapshot.CheckInEntry::id).toList());
+        assertEquals(12L, cached.checkInsByMemberId().get(2).get(0).id());
+        verifyNoInteractions(timelineSnapshotRepository);
+    }
+
+    @Test
+    void invalidatePlan_DropsCachedDays() {
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot empty = new TimelineDaySnapshot(Map.of());
+        store.getOrBuild(3, today, counting(builds, empty));
+
+        store.invalidatePlan(3);
+        store.getOrBuild(3, today, counting(builds, empty));
+
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void invalidatePlan_DeletesFrozenDaysSoTheyAreRebuilt() {
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot before = new TimelineDaySnapshot(Map.of(1, List.of(entry(10L, closedDay.atTime(8, 0)))));
+        TimelineDaySnapshot after = new TimelineDaySnapshot(Map.of());
+        when(timelineSnapshotRepository.findByPlanIdAndSnapshotDate(3, closedDay)).thenReturn(Optional.empty());
+        store.getOrBuild(3, closedDay, counting(builds, before));
+
+        store.invalidatePlan(3);
+
+        // Xóa trong transaction của caller và xóa lại sau commit
+        verify(timelineSnapshotRepository, times(2)).deleteByPlanId(3);
+        assertSame(after, store.getOrBuild(3, closedDay, counting(builds, after)));
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    void invalidateDay_DropsOnlyThatDay() {
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot empty = new TimelineDaySnapshot(Map.of());
+        LocalDate yesterday = today.minusDays(1);
+        store.getOrBuild(3, today, counting(builds, empty));
+        store.getOrBuild(3, yesterday, counting(builds, empty));
+
+        store.invalidateDay(3, yesterday);
+        store.getOrBuild(3, today, counting(builds, empty));
+        store.getOrBuild(3, yesterday, counting(builds, empty));
+
+        assertEquals(3, builds.get());
+        verify(timelineSnapshotRepository, times(2)).deleteByPlanIdAndSnapshotDate(3, yesterday);
+        verify(timelineSnapshotRepository, never()).deleteByPlanId(any());
+    }
+
+    @Test
+    void getOrBuild_ClosedDayBuiltDuringInvalidate_IsNotPersisted() {
+        TimelineDaySnapshot stale = new TimelineDaySnapshot(Map.of());
+        when(timelineSnapshotRepository.findByPlanIdAndSnapshotDate(3, closedDay)).thenReturn(Optional.empty());
+
+        store.getOrBuild(3, closedDay, () -> {
+            store.invalidatePlan(3);
+            return stale;
+        });
+
+        verify(timelineSnapshotRepository, never()).save(any());
+    }
+
+    @Test
+    void getOrBuild_WriteToAnotherPlanDuringBuild_StillCaches() {
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot empty = new TimelineDaySnapshot(Map.of());
+
+        store.getOrBuild(4, today, () -> {
+            builds.incrementAndGet();
+            store.applyCheckIn(3, today, 1, entry(10L, today.atTime(7, 0)));
+            store.invalidatePlan(3);
+            return empty;
+        });
+        store.getOrBuild(4, today, counting(builds, empty));
+
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    void getOrBuild_WriteToSamePlanDuringBuild_IsNotCached() {
+        AtomicInteger builds = new AtomicInteger();
+        TimelineDaySnapshot empty = new TimelineDaySnapshot(Map.of());
+
+        store.getOrBuild(3, today, () -> {
+            builds.incrementAndGet();
+            store.applyCheckIn(3, today, 1, entry(10L, today.atTime(7, 0)));
+            return empty;
+        });
+        store.getOrBuild(3, today, counting(builds, empty));
+
+        assertEquals(2, builds.get());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo.progress.service.impl;
+
+import com.example.demo.community.dto.response.CommentPageResponse;
+import com.example.demo.community.dto.response.CommentResponse;
+import com.example.demo.community.entity.ProgressComment;
+import com.example.demo.community.mapper.CommentMapper;
+import com.example.demo.community.repository.ProgressCommentRepository;
+import com.example.demo.plan.entity.Plan;
+import com.example.demo.plan.entity.PlanMember;
+import com.example.demo.plan.repository.PlanMemberRepository;
+import com.example.demo.progress.entity.checkin.CheckInEvent;
+import com.example.demo.progress.repository.CheckInEventRepository;
+import com.example.demo.shared.exception.ResourceNotFoundException;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProgressServiceImplCommentPageTest {
+
+    @Mock private UserRepository userRepository;
+    @Mock private PlanMemberRepository planMemberRepository;
+    @Mock private CheckInEventRepository checkInEventRepository;
+    @Mock private ProgressCommentRepository progressCommentRepository;
+    @Mock private CommentMapper commentMapper;
+
+    @InjectMocks
+    private ProgressServiceImpl progressService;
+
+    private final User viewer = User.builder().id(1).email("viewer@example.com").build();
+    private final Plan plan = Plan.builder().id(7).shareableLink("link123").build();
+    private final CheckInEvent event = CheckInEvent.builder()
+            .id(30L)
+            .planMember(PlanMember.builder().id(3).plan(plan).build())
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(progressService, "commentPageSize", 2);
+        when(userRepository.findByEmail(viewer.getEmail())).thenReturn(Optional.of(viewer));
+        when(checkInEventRepository.findById(30L)).thenReturn(Optional.of(event));
+    }
+
+    private ProgressComment comment(Long id) {
+        return ProgressComment.builder()
+                .id(id)
+                .checkInEvent(event)
+                .content("c" + id)
+                .createdAt(OffsetDateTime.of(2025, 1, 1, 8, id.intValue(), 0, 0, ZoneOffset.ofHours(7)))
+                .build();
+    }
+
+    private void stubMapper() {
+        when(commentMapper.toCommentResponses(anyCollection())).thenAnswer(inv -> {
+            List<ProgressComment> comments = inv.getArgument(0);
+            return comments.stream().map(c -> CommentResponse.builder().id(c.getId()).build()).toList();
+        });
+    }
+
+    @Test
+    void getCheckInComments_FirstPageReturnsNewestAndCursor() {
+        when(planMemberRepository.findByPlanIdAndUserId(7, 1)).thenReturn(Optional.of(new PlanMember()));
+        when(progressCommentRepository.findPageIds(eq(30L), any(Pageable.class))).thenReturn(List.of(5L, 4L, 3L));
+        when(progressCommentRepository.findAllWithAuthorByIdIn(List.of(5L, 4L)))
+                .thenReturn(List.of(comment(4L), comment(5L)));
+
+        stubMapper();
+
+        CommentPageResponse page = progressService.getCheckInComments("link123", 30L, null, viewer.getEmail());
+
+        assertEquals(List.of(4L, 5L), page.getComments().stream().map(c -> c.getId()).toList());
+        assertEquals(4L, page.getNextCursor());
+        verify(progressCommentRepository).findPageIds(30L, Pageable.ofSize(3));
+    }
+
+    @Test
+    void getCheckInComments_LastPageHasNoCursor() {
+        when(planMemberRepository.findByPlanIdAndUserId(7, 1)).thenReturn(Optional.of(new PlanMember()));
+        when(progressCommentRepository.findPageIdsBefore(eq(30L), eq(4L), any(Pageable.class))).thenReturn(List.of(3L));
+        when(progressCommentRepository.findAllWithAuthorByIdIn(List.of(3L))).thenReturn(List.of(comment(3L)));
+
+        stubMapper();
+
+        CommentPageResponse page = progressService.getCheckInComments("link123", 30L, 4L, viewer.getEmail());
+
+        assertEquals(1, page.getComments().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getCheckInComments_RejectsNonMembersAndOtherPlans() {
+        when(planMemberRepository.findByPlanIdAndUserId(7, 1)).thenReturn(Optional.empty());
+
+        assertThrows(AccessDeniedException.class,
+                () -> progressService.getCheckInComments("link123", 30L, null, viewer.getEmail()));
+        assertThrows(ResourceNotFoundException.class,
+                () -> progressService.getCheckInComments("other", 30L, null, viewer.getEmail()));
+        verifyNoInteractions(progressCommentRepository);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.shared.controller;
+
+import com.example.demo.shared.service.impl.UploadFileIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class UploadServingControllerTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir
+    Path uploadDir;
+
+    private MockMvc mockMvc;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) i;
+        }
+        Files.write(uploadDir.resolve(HASH + ".mp4"), content);
+        Files.writeString(uploadDir.resolve("legacy.png"), "png", StandardCharsets.UTF_8);
+        Files.writeString(uploadDir.resolve(".upload-x.part"), "dở", StandardCharsets.UTF_8);
+
+        UploadFileIndex index = new UploadFileIndex();
+        ReflectionTestUtils.setField(index, "uploadDir", uploadDir.toString());
+        index.init();
+        mockMvc = MockMvcBuilders.standaloneSetup(new UploadServingController(index)).build();
+    }
+
+    @Test
+    void serve_ContentAddressedFile_HasHashEtagImmutableCacheAndRevalidatesTo304() throws Exception {
+        mockMvc.perform(get("/uploads/" + HASH + ".mp4"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + HASH + "\""))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=31536000, immutable"))
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "video/mp4"))
+                .andExpect(content().bytes(content));
+
+        mockMvc.perform(get("/uploads/" + HASH + ".mp4").header(HttpHeaders.IF_NONE_MATCH, "\"" + HASH + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        mockMvc.perform(get("/uploads/legacy.png"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "public, max-age=86400"));
+    }
+
+    @Test
+    void serve_Range_ReturnsPartialContentOr416() throws Exception {
+        byte[] body = mockMvc.perform(get("/uploads/" + HASH + ".mp4").header(HttpHeaders.RANGE, "bytes=1000-1999"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 1000-1999/100000"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(Arrays.copyOfRange(content, 1000, 2000), body);
+
+        mockMvc.perform(get("/uploads/" + HASH + ".mp4").header(HttpHeaders.RANGE, "bytes=-10"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 99990-99999/100000"));
+
+        // If-Range không khớp: trả cả file
+        mockMvc.perform(get("/uploads/" + HASH + ".mp4")
+                        .header(HttpHeaders.RANGE, "bytes=0-9")
+                        .header(HttpHeaders.IF_RANGE, "\"khac\""))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/uploads/" + HASH + ".mp4").header(HttpHeaders.RANGE, "bytes=100000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */100000"));
+    }
+
+    @Test
+    void serve_LargeFileWithSendfileSupport_DelegatesBodyToConnector() throws Exception {
+        var result = mockMvc.perform(get("/uploads/" + HASH + ".mp4")
+                        .requestAttr(UploadServingController.SENDFILE_SUPPORT, Boolean.TRUE)
+                        .header(HttpHeaders.RANGE, "bytes=50000-"))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+        assertEquals(uploadDir.resolve(HASH + ".mp4").toString(), result.getRequest().getAttribute(UploadServingController.SENDFILE_FILENAME));
+        assertEquals(50_000L, result.getRequest().getAttribute(UploadServingController.SENDFILE_START));
+        assertEquals(100_000L, result.getRequest().getAttribute(UploadServingController.SENDFILE_END));
+    }
+
+    @Test
+    void serve_TempOrMissingFile_Returns404() throws Exception {
+        mockMvc.perform(get("/uploads/.upload-x.part")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/uploads/khong-co.png")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.shared.repository.UploadReferenceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentBlobReferencesTest {
+
+    @Mock private UploadReferenceRepository uploadReferenceRepository;
+    @Mock private FileUploadService fileUploadService;
+    @Mock private UploadOwnership uploadOwnership;
+
+    @InjectMocks
+    private AttachmentBlobReferences references;
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void releaseAfterCommit_DeletesOnlyFilesWithoutReferences() throws Exception {
+        when(uploadReferenceRepository.countReferencesTo("shared.png")).thenReturn(1L);
+        when(uploadReferenceRepository.countReferencesTo("last.png")).thenReturn(0L);
+        when(fileUploadService.deleteIfIdle(eq("last.png"), any(Duration.class))).thenReturn(true);
+
+        references.releaseAfterCommit(Arrays.asList("shared.png", "last.png", "last.png", null));
+
+        verify(fileUploadService).deleteIfIdle("last.png", Duration.ofHours(1));
+        verify(fileUploadService, never()).deleteIfIdle(eq("shared.png"), any());
+        verify(uploadOwnership).forget(eq("last.png"), any(Instant.class));
+        verify(uploadOwnership, never()).forget(eq("shared.png"), any());
+    }
+
+    @Test
+    void releaseAfterCommit_InTransaction_WaitsForCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+
+        references.releaseAfterCommit(List.of("a.png"));
+        verifyNoInteractions(uploadReferenceRepository, fileUploadService);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(fileUploadService).deleteIfIdle(anyString(), any(Duration.class));
+    }
+}
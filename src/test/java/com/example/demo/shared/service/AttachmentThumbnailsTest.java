@@ -0,0 +1,119 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.plan.entity.Plan;
+import com.example.demo.plan.entity.PlanMember;
+import com.example.demo.progress.entity.checkin.CheckInAttachment;
+import com.example.demo.progress.entity.checkin.CheckInEvent;
+import com.example.demo.progress.repository.CheckInAttachmentRepository;
+import com.example.demo.progress.service.TimelineSnapshotStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AttachmentThumbnailsTest {
+
+    private static final String SOURCE = "ab".repeat(32) + ".png";
+    private static final String THUMBNAIL = "ab".repeat(32) + "-png-thumb.jpg";
+
+    @Mock private FileUploadService fileUploadService;
+    @Mock private CheckInAttachmentRepository checkInAttachmentRepository;
+    @Mock private TimelineSnapshotStore timelineSnapshotStore;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private AttachmentThumbnails thumbnails;
+
+    @BeforeEach
+    void setUp() {
+        // Executor chạy ngay trên luồng test
+        thumbnails = new AttachmentThumbnails(fileUploadService, checkInAttachmentRepository, timelineSnapshotStore,
+                Runnable::run, transactionManager);
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @Test
+    void generateAsync_StoresScaledJpegAndLinksExistingAttachments() throws Exception {
+        when(fileUploadService.exists(THUMBNAIL)).thenReturn(false);
+        when(fileUploadService.open(SOURCE)).thenReturn(new ByteArrayInputStream(png(2000, 1000)));
+        CheckInAttachment attachment = CheckInAttachment.builder()
+                .storedFilename(SOURCE)
+                .fileUrl("http://localhost:8080/uploads/" + SOURCE)
+                .checkInEvent(CheckInEvent.builder()
+                        .planMember(PlanMember.builder().plan(Plan.builder().id(7).build()).build())
+                        .checkInTimestamp(LocalDateTime.of(2025, 3, 4, 8, 0))
+                        .build())
+                .build();
+        when(checkInAttachmentRepository.findWithoutThumbnailByStoredFilename(SOURCE)).thenReturn(List.of(attachment));
+
+        thumbnails.generateAsync(SOURCE, "image/png");
+
+        ArgumentCaptor<byte[]> jpeg = ArgumentCaptor.forClass(byte[].class);
+        verify(fileUploadService).storeDerivative(eq(THUMBNAIL), jpeg.capture(), eq("image/jpeg"));
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(jpeg.getValue()));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+        assertEquals("http://localhost:8080/uploads/" + THUMBNAIL, attachment.getThumbnailUrl());
+        verify(timelineSnapshotStore).invalidateDay(7, LocalDate.of(2025, 3, 4));
+        verify(timelineSnapshotStore, never()).invalidatePlan(any());
+    }
+
+    @Test
+    void generateAsync_NonImageOrUnreadable_StoresNothing() throws Exception {
+        thumbnails.generateAsync("cd".repeat(32) + ".mp4", "video/mp4");
+        verifyNoInteractions(fileUploadService);
+
+        when(fileUploadService.exists(THUMBNAIL)).thenReturn(false);
+        when(fileUploadService.open(SOURCE)).thenReturn(new ByteArrayInputStream("không phải ảnh".getBytes()));
+        thumbnails.generateAsync(SOURCE, null);
+
+        verify(fileUploadService, never()).storeDerivative(anyString(), any(), anyString());
+        verifyNoInteractions(checkInAttachmentRepository);
+    }
+
+    @Test
+    void attach_ExistingThumbnail_SetsUrlWithoutRegenerating() throws Exception {
+        when(fileUploadService.exists(THUMBNAIL)).thenReturn(true);
+        CheckInAttachment attachment = CheckInAttachment.builder()
+                .storedFilename(SOURCE)
+                .contentType("image/png")
+                .fileUrl("https://cdn.example.com/uploads/" + SOURCE)
+                .build();
+
+        thumbnails.attach(attachment);
+
+        assertEquals("https://cdn.example.com/uploads/" + THUMBNAIL, attachment.getThumbnailUrl());
+        verify(fileUploadService, never()).open(anyString());
+    }
+
+    @Test
+    void thumbnailName_KeepsSourceExtension() {
+        // Cùng nội dung, khác đuôi: mỗi file có ảnh thu nhỏ riêng
+        assertEquals(THUMBNAIL, AttachmentThumbnails.thumbnailName(SOURCE));
+        assertNotEquals(AttachmentThumbnails.thumbnailName("ab".repeat(32) + ".jpg"), AttachmentThumbnails.thumbnailName(SOURCE));
+        assertEquals("ab".repeat(32) + "-thumb.jpg", AttachmentThumbnails.thumbnailName("ab".repeat(32)));
+        assertTrue(AttachmentThumbnails.isThumbnail(THUMBNAIL));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.demo.shared.service;
+
+import com.example.demo.shared.repository.UploadOwnerRepository;
+import com.example.demo.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadOwnershipTest {
+
+    @Mock private UploadOwnerRepository uploadOwnerRepository;
+    @Mock private UserRepository userRepository;
+
+    @InjectMocks
+    private UploadOwnership uploadOwnership;
+
+    @Test
+    void requireUploadedBy_AllFilesUploadedByUser_Passes() {
+        when(uploadOwnerRepository.findUploadedBy(7, Set.of("a.jpg", "b.pdf"))).thenReturn(List.of("a.jpg", "b.pdf"));
+
+        assertDoesNotThrow(() -> uploadOwnership.requireUploadedBy(7, List.of("a.jpg", "b.pdf", "a.jpg")));
+    }
+
+    @Test
+    void requireUploadedBy_FileUploadedBySomeoneElse_IsRejected() {
+        when(uploadOwnerRepository.findUploadedBy(7, Set.of("a.jpg", "other.jpg"))).thenReturn(List.of("a.jpg"));
+
+        AccessDeniedException ex = assertThrows(AccessDeniedException.class,
+                () -> uploadOwnership.requireUploadedBy(7, List.of("a.jpg", "other.jpg")));
+        assertTrue(ex.getMessage().contains("other.jpg"));
+    }
+
+    @Test
+    void requireUploadedBy_MissingFilename_IsRejectedWithoutQuery() {
+        assertThrows(AccessDeniedException.class,
+                () -> uploadOwnership.requireUploadedBy(7, Arrays.asList("a.jpg", null)));
+        verifyNoInteractions(uploadOwnerRepository);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.exception.BadRequestException;
+import com.example.demo.shared.service.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileUploadServiceImplTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private LocalFileUploadServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        UploadFileIndex uploadFileIndex = new UploadFileIndex();
+        ReflectionTestUtils.setField(uploadFileIndex, "uploadDir", uploadDir.toString());
+        uploadFileIndex.init();
+        service = new LocalFileUploadServiceImpl(uploadFileIndex);
+        ReflectionTestUtils.setField(service, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(service, "maxFileSize", DataSize.ofBytes(200_000));
+        service.init();
+    }
+
+    @Test
+    void store_WritesContentAndHashesInSamePass() throws Exception {
+        byte[] content = new byte[150_000]; // nhiều hơn 1 buffer 64KB
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+
+        // Không biết trước độ dài (chunked)
+        StoredFile stored = service.store(new ByteArrayInputStream(content), "ảnh chụp.PNG", "image/png", -1);
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertEquals(sha256 + ".png", stored.storedFilename());
+        assertEquals(content.length, stored.size());
+        assertEquals(sha256, stored.sha256());
+        assertFalse(stored.deduplicated());
+        assertArrayEquals(content, Files.readAllBytes(uploadDir.resolve(stored.storedFilename())));
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            assertEquals(1, files.count(), "Không còn file tạm .part");
+        }
+    }
+
+    @Test
+    void store_TooLargeOrEmpty_IsRejectedWithoutLeavingFiles() throws Exception {
+        byte[] tooLarge = new byte[200_001];
+
+        assertThrows(BadRequestException.class,
+                () -> service.store(new ByteArrayInputStream(tooLarge), "a.bin", null, -1));
+        assertThrows(BadRequestException.class,
+                () -> service.store(new ByteArrayInputStream(tooLarge), "a.bin", null, tooLarge.length));
+        assertThrows(BadRequestException.class,
+                () -> service.store(new ByteArrayInputStream(new byte[0]), "a.bin", null, -1));
+        assertThrows(BadRequestException.class,
+                () -> service.store(new ByteArrayInputStream("x".getBytes(StandardCharsets.UTF_8)), "../a.bin", null, 1));
+
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void store_SameContentTwice_ReusesExistingFile() throws Exception {
+        byte[] content = "cùng một ảnh".getBytes(StandardCharsets.UTF_8);
+        StoredFile first = service.store(new ByteArrayInputStream(content), "a.jpg", "image/jpeg", content.length);
+        Path file = uploadDir.resolve(first.storedFilename());
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+
+        StoredFile second = service.store(new ByteArrayInputStream(content), "b.JPG", "image/jpeg", content.length);
+
+        assertEquals(first.storedFilename(), second.storedFilename());
+        assertTrue(second.deduplicated());
+        try (Stream<Path> files = Files.list(uploadDir)) {
+            assertEquals(1, files.count());
+        }
+        // Upload lại "chạm" file: chưa hết thời gian chờ thì không bị xóa
+        assertFalse(service.deleteIfIdle(second.storedFilename(), Duration.ofHours(1)));
+        assertTrue(Files.exists(file));
+        assertTrue(service.deleteIfIdle(second.storedFilename(), Duration.ZERO));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void delete_RemovesStoredFileAndRefusesPathsOutsideUploadDir() throws Exception {
+        StoredFile stored = service.store(new ByteArrayInputStream("abc".getBytes(StandardCharsets.UTF_8)), "a.txt", "text/plain", 3);
+
+        assertTrue(service.delete(stored.storedFilename()));
+        assertFalse(service.delete(stored.storedFilename()));
+        assertThrows(BadRequestException.class, () -> service.delete("../outside.txt"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.service.StoredFile;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chạy S3 backend với một "S3" giả lập trong JVM (com.sun.net.httpserver): nhận HEAD/PUT/DELETE object
+ * theo path-style và ghi lại nội dung + header đã nhận.
+ */
+class S3FileUploadServiceImplTest {
+
+    private HttpServer server;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, String> lastHeaders = new ConcurrentHashMap<>();
+    private final AtomicInteger puts = new AtomicInteger();
+    private S3FileUploadServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getRawPath();
+            exchange.getRequestHeaders().forEach((name, values) -> lastHeaders.put(name.toLowerCase(), values.get(0)));
+            int status;
+            switch (exchange.getRequestMethod()) {
+                case "HEAD" -> status = objects.containsKey(path) ? 200 : 404;
+                case "PUT" -> {
+                    puts.incrementAndGet();
+                    try (InputStream body = exchange.getRequestBody()) {
+                        objects.put(path, body.readAllBytes());
+                    }
+                    status = 200;
+                }
+                case "DELETE" -> status = objects.remove(path) != null ? 204 : 404;
+                default -> status = 405;
+            }
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+        });
+        server.start();
+
+        service = new S3FileUploadServiceImpl();
+        ReflectionTestUtils.setField(service, "endpoint", "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(service, "bucket", "mindrevol");
+        ReflectionTestUtils.setField(service, "accessKey", "AKIDEXAMPLE");
+        ReflectionTestUtils.setField(service, "secretKey", "secret");
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void store_UploadsObjectUnderContentHashWithSignedRequest() throws Exception {
+        byte[] content = "nội dung ảnh".getBytes(StandardCharsets.UTF_8);
+
+        StoredFile stored = service.store(new ByteArrayInputStream(content), "a.jpg", "image/jpeg", content.length);
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        String key = "/mindrevol/uploads/" + sha256 + ".jpg";
+        assertArrayEquals(content, objects.get(key));
+        assertEquals(sha256, stored.sha256());
+        assertEquals("image/jpeg", lastHeaders.get("content-type"));
+        assertEquals("UNSIGNED-PAYLOAD", lastHeaders.get("x-amz-content-sha256"));
+        assertTrue(lastHeaders.get("authorization").startsWith("AWS4-HMAC-SHA256 Credential=AKIDEXAMPLE/"));
+        assertTrue(service.publicUrl(stored.storedFilename()).orElseThrow().endsWith(key));
+    }
+
+    @Test
+    void store_UnknownLength_IsSpooledThenUploaded() throws Exception {
+        byte[] content = new byte[100_000];
+
+        StoredFile stored = service.store(new ByteArrayInputStream(content), "video.mp4", "video/mp4", -1);
+
+        assertEquals(content.length, stored.size());
+        assertEquals(content.length, objects.get("/mindrevol/uploads/" + stored.storedFilename()).length);
+    }
+
+    @Test
+    void store_SameContentTwice_SkipsSecondPut() throws Exception {
+        byte[] content = "cùng một ảnh".getBytes(StandardCharsets.UTF_8);
+
+        StoredFile first = service.store(new ByteArrayInputStream(content), "a.png", "image/png", content.length);
+        StoredFile second = service.store(new ByteArrayInputStream(content), "b.png", "image/png", content.length);
+
+        assertEquals(first.storedFilename(), second.storedFilename());
+        assertFalse(first.deduplicated());
+        assertTrue(second.deduplicated());
+        assertEquals(1, puts.get());
+        assertEquals(1, objects.size());
+    }
+
+    @Test
+    void delete_RemovesObject() throws Exception {
+        StoredFile stored = service.store(new ByteArrayInputStream(new byte[]{1, 2, 3}), "a.bin", null, 3);
+
+        assertTrue(service.delete(stored.storedFilename()));
+        assertFalse(service.delete(stored.storedFilename()));
+        assertTrue(objects.isEmpty());
+    }
+}
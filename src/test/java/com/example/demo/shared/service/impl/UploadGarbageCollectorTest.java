@@ -0,0 +1,175 @@
+package com.example.demo.shared.service.impl;
+
+import com.example.demo.shared.repository.UploadReferenceRepository;
+import com.example.demo.shared.service.AttachmentBlobReferences;
+import com.example.demo.shared.service.UploadOwnership;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UploadGarbageCollectorTest {
+
+    private static final String REFERENCED = "aa".repeat(32) + ".jpg";
+    private static final String AVATAR = "bb".repeat(32) + ".png";
+    private static final String ORPHAN = "cc".repeat(32) + ".jpg";
+
+    @TempDir
+    Path uploadDir;
+
+    @Mock private UploadReferenceRepository uploadReferenceRepository;
+    @Mock private AttachmentBlobReferences attachmentBlobReferences;
+    @Mock private UploadOwnership uploadOwnership;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private UploadGarbageCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        UploadFileIndex uploadFileIndex = new UploadFileIndex();
+        ReflectionTestUtils.setField(uploadFileIndex, "uploadDir", uploadDir.toString());
+        uploadFileIndex.init();
+        collector = new UploadGarbageCollector(uploadReferenceRepository, attachmentBlobReferences,
+                uploadOwnership, uploadFileIndex, transactionManager);
+        ReflectionTestUtils.setField(collector, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(collector, "batchSize", 2); // nhiều lô
+        ReflectionTestUtils.setField(collector, "batchPauseMillis", 0L);
+        collector.init();
+    }
+
+    private void stubReferences() {
+        when(uploadReferenceRepository.countReferences()).thenReturn(2L);
+        when(uploadReferenceRepository.streamReferences()).thenReturn(Stream.of(
+                REFERENCED, "http://localhost:8080/uploads/" + AVATAR + "?v=2"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        collector.destroy();
+    }
+
+    private Path file(String name, int size, Duration age) throws Exception {
+        Path path = Files.write(uploadDir.resolve(name), new byte[size]);
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(age)));
+        return path;
+    }
+
+    @Test
+    void collect_DeletesOldOrphansAndKeepsReferencedFiles() throws Exception {
+        stubReferences();
+        Path referenced = file(REFERENCED, 10, Duration.ofDays(3));
+        Path referencedThumbnail = file("aa".repeat(32) + "-jpg-thumb.jpg", 10, Duration.ofDays(3));
+        Path avatar = file(AVATAR, 10, Duration.ofDays(3));
+        Path orphan = file(ORPHAN, 300, Duration.ofDays(3));
+        Path orphanThumbnail = file("cc".repeat(32) + "-jpg-thumb.jpg", 40, Duration.ofDays(3));
+        when(attachmentBlobReferences.countReferences(anyString())).thenReturn(0L);
+
+        collector.collect();
+
+        assertTrue(Files.exists(referenced));
+        assertTrue(Files.exists(referencedThumbnail));
+        assertTrue(Files.exists(avatar));
+        assertFalse(Files.exists(orphan));
+        assertFalse(Files.exists(orphanThumbnail));
+        verify(uploadOwnership).forget(eq(ORPHAN), any(Instant.class));
+        verifyNoMoreInteractions(uploadOwnership);
+        assertEquals(5, collector.getLastRunScannedFiles());
+        assertEquals(2, collector.getLastRunReferenceCount());
+        assertEquals(2, collector.getLastRunReclaimedFiles());
+        assertEquals(340, collector.getLastRunReclaimedBytes());
+        assertEquals(340, collector.getTotalReclaimedBytes());
+        assertEquals(1, collector.getRunCount());
+    }
+
+    @Test
+    void collect_KeepsRecentFilesHiddenFilesAndNewlyReferencedFiles() throws Exception {
+        stubReferences();
+        Path recent = file(ORPHAN, 10, Duration.ofHours(1)); // trong grace: có thể đang chờ gắn vào attachment
+        Path hidden = file(".keep", 10, Duration.ofDays(3));
+        String attachedLater = "dd".repeat(32) + ".pdf";
+        Path attached = file(attachedLater, 10, Duration.ofDays(3));
+        when(attachmentBlobReferences.countReferences(attachedLater)).thenReturn(1L);
+
+        collector.collect();
+
+        assertTrue(Files.exists(recent));
+        assertTrue(Files.exists(hidden));
+        assertTrue(Files.exists(attached));
+        assertEquals(0, collector.getLastRunReclaimedFiles());
+    }
+
+    @Test
+    void collect_KeepsThumbnailsReferencedByUrlAndDropsThoseOfDeletedSiblings() throws Exception {
+        // Ảnh thu nhỏ tên cũ (chung cho mọi đuôi) vẫn được thumbnail_url trỏ tới
+        String legacyThumbnail = "aa".repeat(32) + "-thumb.jpg";
+        when(uploadReferenceRepository.countReferences()).thenReturn(2L);
+        when(uploadReferenceRepository.streamReferences()).thenReturn(Stream.of(
+                REFERENCED, "http://localhost:8080/uploads/" + legacyThumbnail));
+        Path legacy = file(legacyThumbnail, 10, Duration.ofDays(3));
+        Path referencedThumbnail = file("aa".repeat(32) + "-jpg-thumb.jpg", 10, Duration.ofDays(3));
+        // Cùng nội dung với REFERENCED nhưng đuôi .png, file gốc đã bị xóa
+        Path siblingThumbnail = file("aa".repeat(32) + "-png-thumb.jpg", 10, Duration.ofDays(3));
+
+        collector.collect();
+
+        assertTrue(Files.exists(legacy));
+        assertTrue(Files.exists(referencedThumbnail));
+        assertFalse(Files.exists(siblingThumbnail));
+        assertEquals(1, collector.getLastRunReclaimedFiles());
+    }
+
+    @Test
+    void collect_DeletesStaleTempFilesOnly() throws Exception {
+        stubReferences();
+        Path stale = file(LocalFileUploadServiceImpl.TEMP_PREFIX + "1" + LocalFileUploadServiceImpl.TEMP_SUFFIX, 25, Duration.ofDays(2));
+        Path inFlight = file(LocalFileUploadServiceImpl.TEMP_PREFIX + "2" + LocalFileUploadServiceImpl.TEMP_SUFFIX, 25, Duration.ZERO);
+
+        collector.collect();
+
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(inFlight));
+        assertEquals(25, collector.getLastRunReclaimedBytes());
+        verifyNoInteractions(attachmentBlobReferences, uploadOwnership);
+    }
+
+    @Test
+    void filenameOf_StripsUrlPathAndQuery() {
+        assertEquals(AVATAR, UploadGarbageCollector.filenameOf("https://cdn.example.com/uploads/" + AVATAR + "?v=1#x"));
+        assertEquals(REFERENCED, UploadGarbageCollector.filenameOf(REFERENCED));
+        assertNull(UploadGarbageCollector.filenameOf("https://example.com/"));
+        assertNull(UploadGarbageCollector.filenameOf(" "));
+    }
+
+    @Test
+    void bloomFilter_HasNoFalseNegativesAndFewFalsePositives() {
+        FilenameBloomFilter filter = new FilenameBloomFilter(10_000, 0.001);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("file-" + i + ".jpg");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("file-" + i + ".jpg"));
+            if (filter.mightContain("other-" + i + ".jpg")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 50, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.shared.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UploadStreamsTest {
+
+    @Test
+    void acquireBuffer_DirectBuffersAreBoundedAndReused() {
+        List<ByteBuffer> borrowed = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            borrowed.add(UploadStreams.acquireBuffer());
+        }
+        List<ByteBuffer> direct = borrowed.stream().filter(ByteBuffer::isDirect).toList();
+        borrowed.forEach(UploadStreams::releaseBuffer);
+
+        assertEquals(16, direct.size(), "Pool cấp tối đa 16 direct buffer, phần còn lại là heap buffer");
+        ByteBuffer again = UploadStreams.acquireBuffer();
+        UploadStreams.releaseBuffer(again);
+        assertTrue(direct.stream().anyMatch(buffer -> buffer == again), "Buffer trả về phải được dùng lại");
+    }
+}
@@ -35,6 +35,7 @@ class JwtUtilTest {
         ReflectionTestUtils.setField(jwtUtil, "jwtSecret", testSecret);
         ReflectionTestUtils.setField(jwtUtil, "accessTokenExpirationMs", testAccessExpiration);
         ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpirationMs", testRefreshExpiration);
+        jwtUtil.init();
 
         // Customer User (no employee info)
         customerUser = User.builder().id(1).email("customer@example.com").build();
@@ -125,8 +126,14 @@ class JwtUtilTest {
     void validateToken_InvalidSignature() {
         String token = jwtUtil.generateAccessToken(customerUser);
         // Tamper with the token (e.g., change a character in the signature part)
-        String tamperedToken = token.substring(0, token.length() - 1) + "X";
-        assertFalse(jwtUtil.validateToken(tamperedToken));
+        assertFalse(jwtUtil.validateToken(tamperSignature(token)));
+    }
+
+    // Đổi ký tự đầu tiên của chữ ký (ký tự cuối có thể chỉ chứa bit đệm -> thay nó có thể không đổi chữ ký)
+    private static String tamperSignature(String token) {
+        int signatureStart = token.lastIndexOf('.') + 1;
+        char replacement = token.charAt(signatureStart) == 'A' ? 'B' : 'A';
+        return token.substring(0, signatureStart) + replacement + token.substring(signatureStart + 1);
     }
 
      @Test
@@ -140,4 +147,33 @@ class JwtUtilTest {
          assertFalse(jwtUtil.validateToken(""));
          assertFalse(jwtUtil.validateToken(null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void validateAndGetClaims_Valid_ReturnsClaimsFromSingleParse() {
+        String token = jwtUtil.generateAccessToken(employeeUser);
+        Claims claims = jwtUtil.validateAndGetClaims(token);
+        assertNotNull(claims);
+        assertEquals(employeeUser.getEmail(), claims.getSubject());
+        assertEquals("ROLE_ADMIN", claims.get("roles", String.class));
+    }
+
+    @Test
+    void validateAndGetClaims_Invalid_ReturnsNull() {
+        String token = jwtUtil.generateAccessToken(customerUser);
+        assertNull(jwtUtil.validateAndGetClaims(tamperSignature(token)));
+        assertNull(jwtUtil.validateAndGetClaims("this.is.not.a.valid.jwt"));
+        assertNull(jwtUtil.validateAndGetClaims(null));
+    }
+
+    @Test
+    void getSigningKey_IsBuiltOnceAtInit() {
+        assertSame(jwtUtil.getSigningKey(), jwtUtil.getSigningKey());
+
+        String token = jwtUtil.generateAccessToken(customerUser);
+        JwtUtil rotated = new JwtUtil();
+        ReflectionTestUtils.setField(rotated, "jwtSecret", testSecret + "-rotated-secret-value");
+        rotated.init();
+        // Token ký bằng secret cũ không hợp lệ với instance dùng secret mới
+        assertFalse(rotated.validateToken(token));
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo.shared.websocket;
+
+import com.example.demo.config.websocket.BrokerEnvelope;
+import com.example.demo.shared.dto.response.PlanEventsResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PlanEventSequencerTest {
+
+    @Mock private SimpMessagingTemplate messagingTemplate;
+
+    @InjectMocks
+    private PlanEventSequencer sequencer;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void burstOnSameChannel_IsCoalescedIntoOneVersionedBatch() {
+        // Cửa sổ lớn: chỉ gửi khi flush thủ công
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 60_000L);
+
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "UPDATE_TASK", "taskId", 1));
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "UPDATE_TASK", "taskId", 2));
+        sequencer.publish("abc", PlanChannel.PROGRESS, Map.of("type", "NEW_CHECK_IN"));
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "DELETE_TASK", "taskId", 3));
+        verifyNoInteractions(messagingTemplate);
+
+        sequencer.flush("abc", PlanChannel.TASKS);
+        sequencer.flush("abc", PlanChannel.PROGRESS);
+
+        ArgumentCaptor<Object> tasksFrame = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/plan/abc/tasks"), tasksFrame.capture());
+        Map<String, Object> batch = (Map<String, Object>) tasksFrame.getValue();
+        assertEquals("BATCH", batch.get("type"));
+        assertEquals(1L, batch.get("fromVersion"));
+        assertEquals(4L, batch.get("toVersion"));
+        assertEquals(3, ((List<?>) batch.get("events")).size());
+
+        ArgumentCaptor<Object> progressFrame = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/plan/abc/progress"), progressFrame.capture());
+        Map<String, Object> single = (Map<String, Object>) progressFrame.getValue();
+        assertEquals("NEW_CHECK_IN", single.get("type"));
+        assertEquals(3L, single.get("version"));
+    }
+
+    @Test
+    void eventsSince_ReturnsOnlyMissedEvents() {
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 0L);
+        sequencer.publish("abc", PlanChannel.DETAILS, Map.of("type", "MEMBER_JOINED"));
+        sequencer.publish("abc", PlanChannel.COMMUNITY, Map.of("type", "NEW_COMMENT"));
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "NEW_TASK"));
+        String epoch = sequencer.eventsSince("abc", null, 0).getEpoch();
+
+        PlanEventsResponse response = sequencer.eventsSince("abc", epoch, 1);
+
+        assertFalse(response.isReset());
+        assertEquals(3, response.getCurrentVersion());
+        assertEquals(List.of("community", "tasks"), response.getEvents().stream().map(e -> e.get("channel")).toList());
+        verify(messagingTemplate, times(3)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void eventsSince_OutsideReplayBufferOrOtherEpoch_RequestsReset() {
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 0L);
+        ReflectionTestUtils.setField(sequencer, "replayBufferSize", 2);
+        for (int i = 0; i < 5; i++) {
+            sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "UPDATE_TASK"));
+        }
+        String epoch = sequencer.eventsSince("abc", null, 0).getEpoch();
+
+        assertTrue(sequencer.eventsSince("abc", epoch, 1).isReset());
+        assertFalse(sequencer.eventsSince("abc", epoch, 3).isReset());
+        assertTrue(sequencer.eventsSince("abc", "old-epoch", 4).isReset());
+        assertTrue(sequencer.eventsSince("unknown", "old-epoch", 4).isReset());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void framesMirroredFromOtherNode_KeepTheirOwnEpochAndCanBeReplayedHere() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 60_000L);
+        ReflectionTestUtils.setField(sequencer, "configuredNodeId", "node-a");
+        PlanEventSequencer nodeB = new PlanEventSequencer(mock(SimpMessagingTemplate.class), objectMapper, null);
+        ReflectionTestUtils.setField(nodeB, "configuredNodeId", "node-b");
+
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "UPDATE_TASK", "taskId", 1));
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "UPDATE_TASK", "taskId", 2));
+        sequencer.flush("abc", PlanChannel.TASKS);
+        sequencer.publish("abc", PlanChannel.PROGRESS, Map.of("type", "NEW_CHECK_IN"));
+        sequencer.flush("abc", PlanChannel.PROGRESS);
+        nodeB.publish("abc", PlanChannel.DETAILS, Map.of("type", "UPDATE_DETAILS"));
+
+        ArgumentCaptor<String> destinations = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object> frames = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2)).convertAndSend(destinations.capture(), frames.capture());
+        for (int i = 0; i < frames.getAllValues().size(); i++) {
+            Map<String, Object> frame = (Map<String, Object>) frames.getAllValues().get(i);
+            assertEquals("node-a", frame.get("origin"));
+            nodeB.recordRemote(new BrokerEnvelope("node-a", destinations.getAllValues().get(i), "application/json",
+                    objectMapper.writeValueAsBytes(frame)));
+        }
+        String epochA = (String) ((Map<String, Object>) frames.getValue()).get("epoch");
+
+        PlanEventsResponse response = nodeB.eventsSince("abc", epochA, 1);
+        assertFalse(response.isReset());
+        assertEquals("node-a", response.getOrigin());
+        assertEquals(3, response.getCurrentVersion());
+        assertEquals(List.of("tasks", "progress"), response.getEvents().stream().map(e -> e.get("channel")).toList());
+
+        // Dãy riêng của node B không bị ảnh hưởng
+        PlanEventsResponse own = nodeB.eventsSince("abc", null, 0);
+        assertEquals("node-b", own.getOrigin());
+        assertEquals(1, own.getCurrentVersion());
+    }
+
+    @Test
+    void mirroredFramesWithGap_ResetClientsOlderThanTheGap() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        PlanEventSequencer nodeB = new PlanEventSequencer(mock(SimpMessagingTemplate.class), objectMapper, null);
+        Map<String, Object> v1 = Map.of("type", "A", "version", 1, "origin", "node-a", "epoch", "e1");
+        Map<String, Object> v3 = Map.of("type", "C", "version", 3, "origin", "node-a", "epoch", "e1");
+        nodeB.recordRemote(new BrokerEnvelope("node-a", "/topic/plan/abc/tasks", null, objectMapper.writeValueAsBytes(v1)));
+        nodeB.recordRemote(new BrokerEnvelope("node-a", "/topic/plan/abc/tasks", null, objectMapper.writeValueAsBytes(v3)));
+
+        assertTrue(nodeB.eventsSince("abc", "e1", 1).isReset());
+        assertFalse(nodeB.eventsSince("abc", "e1", 2).isReset());
+        assertTrue(nodeB.eventsSince("abc", "unknown", 2).isReset());
+    }
+
+    @Test
+    void publishInTransaction_IsVersionedAndSentOnlyAfterCommit() {
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 0L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "NEW_TASK"));
+
+            assertEquals(0, sequencer.eventsSince("abc", null, 0).getCurrentVersion());
+            verifyNoInteractions(messagingTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, sequencer.eventsSince("abc", null, 0).getCurrentVersion());
+        verify(messagingTemplate).convertAndSend(eq("/topic/plan/abc/tasks"), any(Object.class));
+    }
+
+    @Test
+    void publishInRolledBackTransaction_UsesNoVersionAndLeavesNoReplayEvent() {
+        ReflectionTestUtils.setField(sequencer, "coalesceWindowMs", 0L);
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "NEW_TASK"));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        sequencer.publish("abc", PlanChannel.TASKS, Map.of("type", "DELETE_TASK"));
+
+        PlanEventsResponse response = sequencer.eventsSince("abc", null, 0);
+        assertEquals(1, response.getCurrentVersion());
+        assertEquals(List.of("DELETE_TASK"), response.getEvents().stream().map(e -> e.get("type")).toList());
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.demo.user.service;
+
+import com.example.demo.user.dto.projection.UserDisplayRow;
+import com.example.demo.user.entity.User;
+import com.example.demo.user.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserDisplayNameResolverTest {
+
+    @Mock private UserRepository userRepository;
+
+    @InjectMocks
+    private UserDisplayNameResolver resolver;
+
+    private UserDisplayRow row(Integer userId, String customerName, String employeeName) {
+        UserDisplayRow row = mock(UserDisplayRow.class);
+        lenient().when(row.getUserId()).thenReturn(userId);
+        lenient().when(row.getEmail()).thenReturn("u" + userId + "@x.com");
+        lenient().when(row.getCustomerName()).thenReturn(customerName);
+        lenient().when(row.getEmployeeName()).thenReturn(employeeName);
+        lenient().when(row.getAvatarUrl()).thenReturn(customerName != null ? "/files/" + userId + ".png" : null);
+        return row;
+    }
+
+    @Test
+    void getAll_LoadsOnlyMissingUsersInOneQuery() {
+        List<UserDisplayRow> first = List.of(row(1, "Minh", null), row(2, null, "Lan"));
+        List<UserDisplayRow> second = List.of(row(3, " ", null));
+        when(userRepository.findDisplayRowsByIdIn(List.of(1, 2))).thenReturn(first);
+        when(userRepository.findDisplayRowsByIdIn(List.of(3))).thenReturn(second);
+
+        resolver.getAll(List.of(1, 2, 1));
+        Map<Integer, UserDisplayNameResolver.UserDisplay> result = resolver.getAll(List.of(1, 2, 3));
+
+        assertEquals("Minh", result.get(1).displayName());
+        assertEquals("/files/1.png", result.get(1).avatarUrl());
+        assertEquals("Lan", result.get(2).displayName());
+        // Tên rỗng -> email
+        assertEquals("u3@x.com", result.get(3).displayName());
+        verify(userRepository, times(2)).findDisplayRowsByIdIn(anyCollection());
+    }
+
+    @Test
+    void get_UnknownOrUnsavedUser_FallsBackToEmailWithoutCaching() {
+        when(userRepository.findDisplayRowsByIdIn(List.of(9))).thenReturn(List.of());
+
+        assertEquals("ghost@x.com", resolver.displayName(User.builder().id(9).email("ghost@x.com").build()));
+        assertEquals("new@x.com", resolver.displayName(User.builder().email("new@x.com").build()));
+        assertNull(resolver.get(null));
+        assertEquals("ghost@x.com", resolver.displayName(User.builder().id(9).email("ghost@x.com").build()));
+
+        verify(userRepository, times(2)).findDisplayRowsByIdIn(List.of(9));
+    }
+
+    @Test
+    void invalidate_ReloadsUpdatedNameOnNextLookup() {
+        List<UserDisplayRow> before = List.of(row(1, "Minh", null));
+        List<UserDisplayRow> after = List.of(row(1, "Minh Trần", null));
+        when(userRepository.findDisplayRowsByIdIn(List.of(1))).thenReturn(before).thenReturn(after);
+        User user = User.builder().id(1).email("u1@x.com").build();
+
+        assertEquals("Minh", resolver.displayName(user));
+        assertEquals("Minh", resolver.displayName(user));
+        resolver.invalidate(1);
+
+        assertEquals("Minh Trần", resolver.displayName(user));
+        verify(userRepository, times(2)).findDisplayRowsByIdIn(List.of(1));
+    }
+}
@@ -11,6 +11,7 @@ import com.example.demo.user.entity.UserStatus;
 import com.example.demo.user.repository.CustomerRepository;
 import com.example.demo.user.repository.EmployeeRepository;
 import com.example.demo.user.repository.UserRepository;
+import com.example.demo.user.service.UserDisplayNameResolver;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -30,6 +31,7 @@ class UserServiceImplTest {
     @Mock private UserRepository userRepository;
     @Mock private CustomerRepository customerRepository; // Mocked, used in update
     @Mock private EmployeeRepository employeeRepository; // Mocked, used in update
+    @Mock private UserDisplayNameResolver userDisplayNameResolver;
 
     @InjectMocks
     private UserServiceImpl userService;
@@ -114,6 +116,7 @@ class UserServiceImplTest {
         // Verify changes were made to the entity object (before potential save)
         assertEquals("Updated Customer", customerUser.getCustomer().getFullname());
         assertEquals("new_photo.png", customerUser.getCustomer().getPhoto());
+        verify(userDisplayNameResolver).invalidate(customerUser.getId());
         // verify(customerRepository).save(customerUser.getCustomer()); // Verify if you explicitly save customer
         // verify(userRepository).save(customerUser); // Verify if you explicitly save user
     }